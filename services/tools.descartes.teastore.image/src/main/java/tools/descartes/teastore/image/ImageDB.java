@@ -13,11 +13,10 @@
  */
 package tools.descartes.teastore.image;
 
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
-import java.util.Optional;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,22 +25,24 @@ import tools.descartes.teastore.entities.ImageSize;
 
 /**
  * Image database storing the relation between image names, product IDs and
- * image IDs as well as the available image size.
+ * image IDs as well as the available image size. Lookups do not lock, changes
+ * of the mappings are serialized.
  * 
  * @author Norbert Schmitt
  */
 public class ImageDB {
 
   // Internal storage container to allow mapping product IDs and image names (for
-  // non-generated images) to images
-  // with different sizes
-  private HashMap<Long, Map<Long, ImageSize>> products = new HashMap<>();
-  private HashMap<String, Map<Long, ImageSize>> webui = new HashMap<>();
-  private HashMap<Long, ImageSize> sizes = new HashMap<>();
+  // non-generated images) to the image IDs of their different sizes
+  private final Map<Long, Map<ImageSize, Long>> products = new ConcurrentHashMap<>();
+  private final Map<String, Map<ImageSize, Long>> webui = new ConcurrentHashMap<>();
+  // Reverse mapping from image IDs to their key and size
+  private final Map<Long, Mapping> images = new ConcurrentHashMap<>();
+  private volatile ImageDBIndex index;
   private final Logger log = LoggerFactory.getLogger(ImageDB.class);
 
-  // Locking
-  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  // Serializes changes spanning the maps
+  private final Object writeLock = new Object();
 
   /**
    * Standard constructor creating a new and empty image database.
@@ -51,7 +52,7 @@ public class ImageDB {
   }
 
   /**
-   * Copy constructor making a shallow copy of the given image database. If the
+   * Copy constructor copying all mappings of the given image database. If the
    * database to copy is null, a {@link java.lang.NullPointerException} will be
    * thrown.
    * 
@@ -64,9 +65,22 @@ public class ImageDB {
       throw new NullPointerException("The supplied image database to copy is null.");
     }
 
-    this.products = new HashMap<>(copy.products);
-    this.webui = new HashMap<>(copy.webui);
-    this.sizes = new HashMap<>(copy.sizes);
+    synchronized (copy.writeLock) {
+      copy.products.forEach((productID, sizes) -> products.put(productID, new ConcurrentHashMap<>(sizes)));
+      copy.webui.forEach((name, sizes) -> webui.put(name, new ConcurrentHashMap<>(sizes)));
+      images.putAll(copy.images);
+    }
+  }
+
+  /**
+   * Attaches an index all following mapping changes are appended to. Mappings already contained in this database are
+   * not written to the index.
+   * 
+   * @param index
+   *          Index to append changes to or null to stop appending.
+   */
+  public void setIndex(ImageDBIndex index) {
+    this.index = index;
   }
 
   /**
@@ -172,21 +186,16 @@ public class ImageDB {
   }
 
   // Does actually all the heavy lifting for the getImageID methods
-  private <K> long findImageID(K key, ImageSize imageSize, HashMap<K, Map<Long, ImageSize>> db) {
-    Optional<Map.Entry<Long, ImageSize>> img = null;
-    lock.readLock().lock();
-    try {
-      img = db.getOrDefault(key, new HashMap<>()).entrySet().stream()
-          .filter(t -> t.getValue().equals(imageSize)).findFirst();
-    } finally {
-      lock.readLock().unlock();
+  private <K> long findImageID(K key, ImageSize imageSize, Map<K, Map<ImageSize, Long>> db) {
+    if (key == null || imageSize == null) {
+      return 0;
     }
-
-    if (img.isPresent()) {
-      return img.get().getKey();
+    Map<ImageSize, Long> sizes = db.get(key);
+    if (sizes == null) {
+      return 0;
     }
-
-    return 0;
+    Long imageID = sizes.get(imageSize);
+    return imageID == null ? 0 : imageID;
   }
 
   /**
@@ -197,14 +206,8 @@ public class ImageDB {
    * @return The image size or null if the ID could not be found
    */
   public ImageSize getImageSize(long imageID) {
-    ImageSize result = null;
-    lock.readLock().lock();
-    try {
-      result = sizes.getOrDefault(imageID, null);
-    } finally {
-      lock.readLock().unlock();
-    }
-    return result;
+    Mapping mapping = images.get(imageID);
+    return mapping == null ? null : mapping.size;
   }
 
   /**
@@ -245,7 +248,11 @@ public class ImageDB {
    *          The size of the image
    */
   public void setImageMapping(long productID, long imageID, ImageSize imageSize) {
-    map(productID, imageID, imageSize, products);
+    map(new ImageDBKey(productID), productID, imageID, imageSize, products);
+    ImageDBIndex currentIndex = index;
+    if (currentIndex != null) {
+      currentIndex.appendMapping(new ImageDBKey(productID), imageID, imageSize);
+    }
   }
 
   /**
@@ -266,34 +273,34 @@ public class ImageDB {
       throw new NullPointerException("The supplied image name is null.");
     }
 
-    map(name, imageID, imageSize, webui);
+    map(new ImageDBKey(name), name, imageID, imageSize, webui);
+    ImageDBIndex currentIndex = index;
+    if (currentIndex != null) {
+      currentIndex.appendMapping(new ImageDBKey(name), imageID, imageSize);
+    }
   }
 
   // Actually creates the image mapping
-  private <K> void map(K key, long imageID, ImageSize imageSize,
-      HashMap<K, Map<Long, ImageSize>> db) {
+  private <K> void map(ImageDBKey imageKey, K key, long imageID, ImageSize imageSize,
+      Map<K, Map<ImageSize, Long>> db) {
     if (imageSize == null) {
       log.error("Supplied image size is null.");
       throw new NullPointerException("Supplied image size is null.");
     }
 
-    // In case the product ID or image name is not known, we create a new map to
-    // store the mapping
-    Map<Long, ImageSize> images = new HashMap<>();
-
-    lock.writeLock().lock();
-    try {
-      if (db.containsKey(key)) {
-        images = db.get(key);
+    // Image sizes are mutable, so keep a copy that cannot change its hash code
+    ImageSize size = new ImageSize(imageSize);
+    synchronized (writeLock) {
+      // The reverse mapping has to exist before the image ID can be found
+      Mapping previous = images.put(imageID, new Mapping(imageKey, size));
+      if (previous != null) {
+        unmap(imageID, previous);
+      }
+      Long replaced = db.computeIfAbsent(key, k -> new ConcurrentHashMap<>()).put(size, imageID);
+      // The image ID previously mapped to this key and size is not referenced anymore
+      if (replaced != null && replaced != imageID) {
+        images.remove(replaced);
       }
-
-      // Add the new mapping to the internal map and put it back into the correct
-      // database (map)
-      images.put(imageID, imageSize);
-      db.put(key, images);
-      sizes.put(imageID, imageSize);
-    } finally {
-      lock.writeLock().unlock();
     }
   }
 
@@ -303,21 +310,99 @@ public class ImageDB {
    * @param imageID Image ID to remove from this database.
    */
   public void removeImageMapping(long imageID) {
-    lock.writeLock().lock();
-    try {
-      unmap(imageID, webui);
-      unmap(imageID, products);
-      sizes.remove(imageID);
-    } finally {
-      lock.writeLock().unlock();
+    synchronized (writeLock) {
+      Mapping mapping = images.get(imageID);
+      if (mapping != null) {
+        unmap(imageID, mapping);
+        images.remove(imageID);
+      }
+    }
+    ImageDBIndex currentIndex = index;
+    if (currentIndex != null) {
+      currentIndex.appendRemoval(imageID);
+    }
+  }
+
+  private void unmap(long imageID, Mapping mapping) {
+    if (mapping.key.isProductKey()) {
+      unmap(mapping.key.getProductID(), imageID, mapping.size, products);
+    } else {
+      unmap(mapping.key.getWebUIName(), imageID, mapping.size, webui);
     }
   }
 
-  private <K> void unmap(long imageID, HashMap<K, Map<Long, ImageSize>> db) {
-    Map.Entry<String, Map<Long, ImageSize>> img = webui.entrySet().stream()
-        .filter(entry -> entry.getValue().containsKey(imageID)).findFirst().orElse(null);
-    if (img != null) {
-      webui.remove(img.getKey());
+  private <K> void unmap(K key, long imageID, ImageSize imageSize, Map<K, Map<ImageSize, Long>> db) {
+    Map<ImageSize, Long> sizes = db.get(key);
+    // The size might have been remapped to another image ID in the meantime
+    if (sizes != null && sizes.remove(imageSize, imageID) && sizes.isEmpty()) {
+      db.remove(key);
+    }
+  }
+
+  /**
+   * Returns all image IDs contained in this database.
+   * 
+   * @return Set of all image IDs.
+   */
+  public Set<Long> getImageIDs() {
+    return new HashSet<>(images.keySet());
+  }
+
+  /**
+   * Returns the image IDs of all sizes of the given product.
+   * 
+   * @param productID
+   *          Product ID.
+   * @return Set of image IDs, empty if the product is unknown.
+   */
+  public Set<Long> getImageIDs(long productID) {
+    Map<ImageSize, Long> sizes = products.get(productID);
+    if (sizes == null) {
+      return new HashSet<>();
+    }
+    return new HashSet<>(sizes.values());
+  }
+
+  /**
+   * Returns the IDs of all products contained in this database.
+   * 
+   * @return Set of all product IDs.
+   */
+  public Set<Long> getProductIDs() {
+    return new HashSet<>(products.keySet());
+  }
+
+  /**
+   * Returns the names of all web interface images contained in this database.
+   * 
+   * @return Set of all web interface image names.
+   */
+  public Set<String> getWebUINames() {
+    return new HashSet<>(webui.keySet());
+  }
+
+  // Writes all mappings to the given index
+  void writeTo(ImageDBIndex target) {
+    synchronized (writeLock) {
+      for (Map.Entry<Long, Map<ImageSize, Long>> product : products.entrySet()) {
+        ImageDBKey key = new ImageDBKey(product.getKey());
+        product.getValue().forEach((size, imageID) -> target.appendMapping(key, imageID, size));
+      }
+      for (Map.Entry<String, Map<ImageSize, Long>> name : webui.entrySet()) {
+        ImageDBKey key = new ImageDBKey(name.getKey());
+        name.getValue().forEach((size, imageID) -> target.appendMapping(key, imageID, size));
+      }
+    }
+  }
+
+  // Key and size an image ID is mapped to
+  private static final class Mapping {
+    private final ImageDBKey key;
+    private final ImageSize size;
+
+    private Mapping(ImageDBKey key, ImageSize size) {
+      this.key = key;
+      this.size = size;
     }
   }
 }
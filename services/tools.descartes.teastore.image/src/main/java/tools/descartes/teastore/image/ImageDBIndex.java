@@ -0,0 +1,279 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tools.descartes.teastore.image;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import tools.descartes.teastore.entities.ImageSize;
+
+/**
+ * Append-only index file persisting the mappings of an image database ({@link tools.descartes.teastore.image.ImageDB})
+ * in the working directory. The index starts with a fingerprint of the content it was generated for. An index is only
+ * loaded if the fingerprint matches, so images are regenerated if the product catalog changed.
+ */
+public class ImageDBIndex {
+
+  /**
+   * Standard file name of the index in the working directory.
+   */
+  public static final String STD_INDEX_FILE_NAME = "imagedb.index";
+
+  private static final int MAGIC = 0x54534958;
+  private static final int VERSION = 1;
+
+  private static final byte PRODUCT_MAPPING = 1;
+  private static final byte WEBUI_MAPPING = 2;
+  private static final byte REMOVED_MAPPING = 3;
+
+  private final Path file;
+  private DataOutputStream out;
+  private final Logger log = LoggerFactory.getLogger(ImageDBIndex.class);
+
+  /**
+   * Creates a new index backed by the given file. The file is neither read nor written before
+   * {@link #load(ImageDB, long)} or {@link #create(ImageDB, long)} is called. If the file is null, a
+   * {@link java.lang.NullPointerException} will be thrown.
+   *
+   * @param file
+   *          Index file.
+   */
+  public ImageDBIndex(Path file) {
+    if (file == null) {
+      log.error("The supplied index file is null.");
+      throw new NullPointerException("The supplied index file is null.");
+    }
+    this.file = file;
+  }
+
+  /**
+   * Returns the file backing this index.
+   *
+   * @return Index file.
+   */
+  public Path getFile() {
+    return file;
+  }
+
+  /**
+   * Reads all mappings from the index file into the given image database. Nothing is read if the file does not exist,
+   * is corrupted or has been written for a different fingerprint. A record truncated at the end of the file, e.g.
+   * because the service was killed while appending, is ignored.
+   *
+   * @param db
+   *          Image database to add the mappings to.
+   * @param fingerprint
+   *          Fingerprint of the content the index is expected to be written for.
+   * @return True if the index was read, otherwise false.
+   */
+  public boolean load(ImageDB db, long fingerprint) {
+    if (db == null) {
+      log.error("The supplied image database is null.");
+      throw new NullPointerException("The supplied image database is null.");
+    }
+
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(Files.newInputStream(file)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != fingerprint) {
+        log.info("Image database index {} is outdated.", file.toAbsolutePath());
+        return false;
+      }
+
+      int records = 0;
+      while (readRecord(in, db)) {
+        records++;
+      }
+      log.info("Read {} records from image database index {}.", records, file.toAbsolutePath());
+      return true;
+    } catch (NoSuchFileException noFile) {
+      log.info("No image database index found at {}.", file.toAbsolutePath());
+    } catch (EOFException truncatedHeader) {
+      log.warn("Image database index {} is truncated.", file.toAbsolutePath());
+    } catch (IOException | IllegalStateException ioException) {
+      log.warn("Image database index " + file.toAbsolutePath() + " could not be read.", ioException);
+    }
+    return false;
+  }
+
+  private boolean readRecord(DataInputStream in, ImageDB db) throws IOException {
+    int type = in.read();
+    if (type < 0) {
+      return false;
+    }
+    try {
+      switch (type) {
+      case PRODUCT_MAPPING:
+        long productID = in.readLong();
+        db.setImageMapping(productID, in.readLong(), new ImageSize(in.readInt(), in.readInt()));
+        break;
+      case WEBUI_MAPPING:
+        String name = in.readUTF();
+        db.setImageMapping(name, in.readLong(), new ImageSize(in.readInt(), in.readInt()));
+        break;
+      case REMOVED_MAPPING:
+        db.removeImageMapping(in.readLong());
+        break;
+      default:
+        throw new IllegalStateException("Unknown record type " + type + ".");
+      }
+    } catch (EOFException truncatedRecord) {
+      log.info("Ignoring truncated last record of image database index {}.", file.toAbsolutePath());
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Replaces the index file with a new index for the given fingerprint containing all current mappings of the given
+   * image database. Mappings can be appended afterwards.
+   *
+   * @param db
+   *          Image database whose mappings are written.
+   * @param fingerprint
+   *          Fingerprint of the content the index is written for.
+   * @return True if the index was written, otherwise false.
+   */
+  public synchronized boolean create(ImageDB db, long fingerprint) {
+    if (db == null) {
+      log.error("The supplied image database is null.");
+      throw new NullPointerException("The supplied image database is null.");
+    }
+
+    close();
+    try {
+      out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file,
+          StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)));
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeLong(fingerprint);
+      db.writeTo(this);
+      if (out == null) {
+        return false;
+      }
+      out.flush();
+      return true;
+    } catch (IOException ioException) {
+      log.warn("Image database index " + file.toAbsolutePath() + " could not be written.", ioException);
+      close();
+      return false;
+    }
+  }
+
+  /**
+   * Appends a new mapping to the index. Ignored if the index is not open.
+   *
+   * @param imageKey
+   *          Image key, either product ID or image name.
+   * @param imageID
+   *          Unique image ID.
+   * @param imageSize
+   *          Size of the image.
+   */
+  public synchronized void appendMapping(ImageDBKey imageKey, long imageID, ImageSize imageSize) {
+    if (out == null) {
+      return;
+    }
+    try {
+      if (imageKey.isProductKey()) {
+        out.writeByte(PRODUCT_MAPPING);
+        out.writeLong(imageKey.getProductID());
+      } else {
+        out.writeByte(WEBUI_MAPPING);
+        out.writeUTF(imageKey.getWebUIName());
+      }
+      out.writeLong(imageID);
+      out.writeInt(imageSize.getWidth());
+      out.writeInt(imageSize.getHeight());
+    } catch (IOException ioException) {
+      appendFailed(ioException);
+    }
+  }
+
+  /**
+   * Appends the removal of an image ID to the index. Ignored if the index is not open.
+   *
+   * @param imageID
+   *          Removed image ID.
+   */
+  public synchronized void appendRemoval(long imageID) {
+    if (out == null) {
+      return;
+    }
+    try {
+      out.writeByte(REMOVED_MAPPING);
+      out.writeLong(imageID);
+    } catch (IOException ioException) {
+      appendFailed(ioException);
+    }
+  }
+
+  /**
+   * Writes all buffered records to the index file.
+   */
+  public synchronized void flush() {
+    if (out == null) {
+      return;
+    }
+    try {
+      out.flush();
+    } catch (IOException ioException) {
+      appendFailed(ioException);
+    }
+  }
+
+  /**
+   * Flushes and closes the index file. Further mappings are not appended anymore.
+   */
+  public synchronized void close() {
+    if (out == null) {
+      return;
+    }
+    try {
+      out.close();
+    } catch (IOException ioException) {
+      log.warn("Image database index " + file.toAbsolutePath() + " could not be closed.", ioException);
+    }
+    out = null;
+  }
+
+  /**
+   * Closes and deletes the index file.
+   */
+  public synchronized void delete() {
+    close();
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException ioException) {
+      log.warn("Image database index " + file.toAbsolutePath() + " could not be deleted.", ioException);
+    }
+  }
+
+  // An incomplete index would hide images on the next startup, so stop appending and drop it
+  private void appendFailed(IOException ioException) {
+    log.warn("Could not append to image database index " + file.toAbsolutePath()
+        + ". Index is discarded.", ioException);
+    delete();
+  }
+}
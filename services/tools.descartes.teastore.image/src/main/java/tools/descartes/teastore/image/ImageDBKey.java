@@ -67,4 +67,39 @@ public class ImageDBKey {
     return webuiName;
   }
 
+  @Override
+  public int hashCode() {
+    final int prime = 31;
+    int result = 1;
+    result = prime * result + (isProductKey ? 1231 : 1237);
+    result = prime * result + Long.hashCode(productID);
+    result = prime * result + ((webuiName == null) ? 0 : webuiName.hashCode());
+    return result;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (obj == null) {
+      return false;
+    }
+    if (getClass() != obj.getClass()) {
+      return false;
+    }
+
+    ImageDBKey other = (ImageDBKey) obj;
+    if (isProductKey != other.isProductKey) {
+      return false;
+    }
+    if (productID != other.productID) {
+      return false;
+    }
+    if (webuiName == null) {
+      return other.webuiName == null;
+    }
+    return webuiName.equals(other.webuiName);
+  }
+
 }
@@ -13,17 +13,37 @@
  */
 package tools.descartes.teastore.image;
 
-import java.awt.image.BufferedImage;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import tools.descartes.teastore.entities.ImageSize;
 import tools.descartes.teastore.entities.ImageSizePreset;
+import tools.descartes.teastore.image.cache.IDataCache;
+import tools.descartes.teastore.image.encoder.IImageEncoder;
+import tools.descartes.teastore.image.encoder.ImageIOEncoder;
 import tools.descartes.teastore.image.setup.ImageIDFactory;
+import tools.descartes.teastore.image.stats.ProviderStatistics;
 import tools.descartes.teastore.image.storage.IDataStorage;
+import tools.descartes.teastore.image.tier.ISharedTier;
 
 /**
  * The actual image provider class containing the mapping between products, web interface static images, the 
@@ -42,14 +62,42 @@ public enum ImageProvider {
    */
   public static final String IMAGE_NOT_FOUND = "notFound";
 
+  /**
+   * Standard time in milliseconds a batch of images is resolved before the images found so far are returned.
+   */
+  public static final long STD_BATCH_TIMEOUT = 2000;
+
+  private static final int BATCH_QUEUE_SIZE = 1024;
+
   private ImageDB db;
   private IDataStorage<StoreImage> storage;
+  private volatile IImageEncoder encoder = new ImageIOEncoder();
+  private volatile Date lastModified = new Date();
+  private volatile long batchTimeout = STD_BATCH_TIMEOUT;
+  private volatile ISharedTier sharedTier;
+  private final Map<ScaleRequest, CompletableFuture<StoreImage>> scalings = new ConcurrentHashMap<>();
+  private final ExecutorService batchPool = createBatchPool();
+  private final ProviderStatistics statistics = new ProviderStatistics();
   private Logger log = LoggerFactory.getLogger(ImageProvider.class);
 
   private ImageProvider() {
 
   }
 
+  // Bounded pool resolving the images of a batch that are not cached
+  private static ExecutorService createBatchPool() {
+    int threads = Runtime.getRuntime().availableProcessors();
+    AtomicInteger nr = new AtomicInteger();
+    ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(BATCH_QUEUE_SIZE), r -> {
+          Thread thread = new Thread(r, "image-batch-" + nr.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+    pool.allowCoreThreadTimeOut(true);
+    return pool;
+  }
+
   /**
    * Assign the image provider the mapping between products and web interface static images.
    * @param imgDB Image database, mapping between products and web interface static images.
@@ -57,9 +105,60 @@ public enum ImageProvider {
   public void setImageDB(ImageDB imgDB) {
 	if (imgDB != null) {
 	  db = imgDB;
+	  lastModified = new Date();
 	}
   }
 
+  /**
+   * Returns the point in time the current image database was assigned. All images provided afterwards have been
+   * generated or registered at or after this time.
+   * @return Time the image database was last changed.
+   */
+  public Date getLastModified() {
+    return lastModified;
+  }
+
+  /**
+   * Assign the encoder used for scaled images.
+   * @param imgEncoder PNG encoder.
+   */
+  public void setEncoder(IImageEncoder imgEncoder) {
+    if (imgEncoder != null) {
+      encoder = imgEncoder;
+    }
+  }
+
+  /**
+   * Sets the time a batch of images is resolved before the images found so far are returned. Images not resolved in
+   * time are missing from the result. If the timeout is not positive, an {@link java.lang.IllegalArgumentException}
+   * will be thrown.
+   * @param timeout Timeout in milliseconds.
+   */
+  public void setBatchTimeout(long timeout) {
+    if (timeout <= 0) {
+      log.error("The supplied batch timeout must be positive.");
+      throw new IllegalArgumentException("The supplied batch timeout must be positive.");
+    }
+    batchTimeout = timeout;
+  }
+
+  /**
+   * Assign the tier shared with other image provider instances. Image variants owned by other instances are fetched
+   * from them instead of being scaled and stored locally.
+   * @param tier Shared tier or null to scale and store all variants locally.
+   */
+  public void setSharedTier(ISharedTier tier) {
+    sharedTier = tier;
+  }
+
+  /**
+   * Returns the request and scaling latencies and the most requested images.
+   * @return Image provider statistics.
+   */
+  public ProviderStatistics getStatistics() {
+    return statistics;
+  }
+
   /**
    * Assign the storage containing all available images. This can either be a cache or the actual hard drive storage.
    * @param imgStorage Image storage containing all available images.
@@ -73,50 +172,184 @@ public enum ImageProvider {
   /**
    * Searches and returns the requested product images in the requested sizes. If an image can not be found, the 
    * standard "not found" image is returned. If an image is found in the incorrect size, the largest size of this image 
-   * will be scaled and the scaled version will be moved to storage and returned.
+   * will be scaled and the scaled version will be moved to storage and returned. Cached images are returned
+   * immediately, all other images are resolved in parallel. Images not resolved within the batch timeout are missing
+   * from the result.
    * @param images Map of product IDs and image sizes to search for.
    * @return Map between product IDs and base64 encoded image data as string.
    */
   public Map<Long, String> getProductImages(Map<Long, ImageSize> images) {
-    Map<Long, String> result = new HashMap<>();
-    for (Map.Entry<Long, ImageSize> entry : images.entrySet()) {
-      String imgStr = getImageFor(new ImageDBKey(entry.getKey()), entry.getValue());
-      if (imgStr == null) {
-        continue;
-      }
-      result.put(entry.getKey(), imgStr);
-    }
-    return result;
+    return getImages(images, ImageDBKey::new);
+  }
+
+  /**
+   * Searches and returns the requested product image in the requested size. If the image can not be found, the 
+   * standard "not found" image is returned. If the image is found in the incorrect size, the largest size of this 
+   * image will be scaled and the scaled version will be moved to storage and returned.
+   * @param productID Product ID to search for.
+   * @param size Image size to search for.
+   * @return The image or null if neither the image nor the "not found" image is available.
+   */
+  public StoreImage getProductImage(long productID, ImageSize size) {
+    return getImageFor(new ImageDBKey(productID), size);
+  }
+
+  /**
+   * Returns the requested product image like {@link #getProductImage(long, ImageSize)}, but never fetches it from
+   * another image provider instance. Used by other instances to fetch the variants this instance owns.
+   * @param productID Product ID to search for.
+   * @param size Image size to search for.
+   * @return The image or null if neither the image nor the "not found" image is available.
+   */
+  public StoreImage getLocalProductImage(long productID, ImageSize size) {
+    return getImageFor(new ImageDBKey(productID), size, false);
   }
 
   /**
    * Searches and returns the requested web interface images in the requested sizes. If an image can not be found, the 
    * standard "not found" image is returned. If an image is found in the incorrect size, the largest size of this image 
-   * will be scaled and the scaled version will be moved to storage and returned.
+   * will be scaled and the scaled version will be moved to storage and returned. Cached images are returned
+   * immediately, all other images are resolved in parallel. Images not resolved within the batch timeout are missing
+   * from the result.
    * @param images Map of product IDs and image sizes to search for.
    * @return Map between product IDs and base64 encoded image data as string.
    */
   public Map<String, String> getWebUIImages(Map<String, ImageSize> images) {
-    Map<String, String> result = new HashMap<>();
-    for (Map.Entry<String, ImageSize> entry : images.entrySet()) {
-      String imgStr = getImageFor(new ImageDBKey(entry.getKey()), entry.getValue());
-      if (imgStr == null) {
-        continue;
+    return getImages(images, ImageDBKey::new);
+  }
+
+  /**
+   * Searches and returns the requested web interface image in the requested size. If the image can not be found, the 
+   * standard "not found" image is returned. If the image is found in the incorrect size, the largest size of this 
+   * image will be scaled and the scaled version will be moved to storage and returned.
+   * @param name Web interface image name to search for.
+   * @param size Image size to search for.
+   * @return The image or null if neither the image nor the "not found" image is available.
+   */
+  public StoreImage getWebUIImage(String name, ImageSize size) {
+    return getImageFor(new ImageDBKey(name), size);
+  }
+
+  /**
+   * Returns the requested web interface image like {@link #getWebUIImage(String, ImageSize)}, but never fetches it
+   * from another image provider instance. Used by other instances to fetch the variants this instance owns.
+   * @param name Web interface image name to search for.
+   * @param size Image size to search for.
+   * @return The image or null if neither the image nor the "not found" image is available.
+   */
+  public StoreImage getLocalWebUIImage(String name, ImageSize size) {
+    return getImageFor(new ImageDBKey(name), size, false);
+  }
+
+  // Answers cache hits directly and fans out all other images to the batch pool
+  private <K> Map<K, String> getImages(Map<K, ImageSize> images, Function<K, ImageDBKey> toKey) {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchTimeout);
+    Map<K, String> result = new HashMap<>();
+    Map<K, Future<StoreImage>> misses = new LinkedHashMap<>();
+    for (Map.Entry<K, ImageSize> entry : images.entrySet()) {
+      ImageDBKey key = toKey.apply(entry.getKey());
+      ImageSize size = entry.getValue();
+      if (isCached(key, size)) {
+        addImage(result, entry.getKey(), getImageFor(key, size));
+      } else {
+        try {
+          misses.put(entry.getKey(), batchPool.submit(() -> getImageFor(key, size)));
+        } catch (RejectedExecutionException rejected) {
+          addImage(result, entry.getKey(), getImageFor(key, size));
+        }
       }
-      result.put(entry.getKey(), imgStr);
+    }
+
+    int timedOut = 0;
+    for (Map.Entry<K, Future<StoreImage>> miss : misses.entrySet()) {
+      Future<StoreImage> img = miss.getValue();
+      try {
+        addImage(result, miss.getKey(), img.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+      } catch (TimeoutException timeout) {
+        // Not started images are skipped, running scalings finish and are cached for the next request
+        img.cancel(false);
+        timedOut++;
+      } catch (ExecutionException e) {
+        log.warn("Resolving image failed.", e.getCause());
+      } catch (InterruptedException interrupted) {
+        Thread.currentThread().interrupt();
+        misses.values().forEach(f -> f.cancel(false));
+        break;
+      }
+    }
+    if (timedOut > 0) {
+      statistics.recordBatchTimeouts(timedOut);
+      log.warn("{} of {} images could not be resolved within {}ms.", timedOut, images.size(), batchTimeout);
     }
     return result;
   }
 
-  private StoreImage scaleAndRegisterImg(BufferedImage image, ImageDBKey key, ImageSize size) {
-    StoreImage storedImg = new StoreImage(ImageIDFactory.ID.getNextImageID(),
-        ImageScaler.scale(image, size), size);
-    db.setImageMapping(key, storedImg.getId(), size);
-    storage.saveData(storedImg);
-    return storedImg;
+  private <K> void addImage(Map<K, String> result, K key, StoreImage img) {
+    if (img != null) {
+      result.put(key, img.toString());
+    }
+  }
+
+  // Checks without blocking whether the image can be answered from the cache
+  private boolean isCached(ImageDBKey key, ImageSize size) {
+    if (db == null || key == null || size == null || !(storage instanceof IDataCache)) {
+      return false;
+    }
+    if (!key.isProductKey() && key.getWebUIName() == null) {
+      return false;
+    }
+    long imgID = db.getImageID(key, size);
+    return imgID != 0 && ((IDataCache<StoreImage>) storage).dataIsInCache(imgID);
+  }
+
+  /*
+   * Scales the image to the requested size and registers it. Concurrent requests for the same key and size are
+   * coalesced: only the first thread scales the image, all others wait for and share its result.
+   */
+  private StoreImage scaleAndRegisterImg(StoreImage image, ImageDBKey key, ImageSize size) {
+    ScaleRequest request = new ScaleRequest(key, size);
+    CompletableFuture<StoreImage> scaling = new CompletableFuture<>();
+    CompletableFuture<StoreImage> running = scalings.putIfAbsent(request, scaling);
+    if (running != null) {
+      try {
+        return running.join();
+      } catch (CompletionException e) {
+        log.warn("Scaling image to size " + size.toString() + " failed.", e.getCause());
+        return null;
+      }
+    }
+
+    try {
+      // The image might have been registered after our lookup but before we started scaling
+      StoreImage storedImg = null;
+      long imgID = db.getImageID(key, size);
+      if (imgID != 0) {
+        storedImg = storage.loadData(imgID);
+      }
+      if (storedImg == null) {
+        long start = System.nanoTime();
+        storedImg = new StoreImage(ImageIDFactory.ID.getNextImageID(),
+            ImageScaler.scale(image.getImage(), size), size, encoder);
+        // Store before mapping, so the image can be loaded as soon as its ID can be looked up
+        storage.saveData(storedImg);
+        db.setImageMapping(key, storedImg.getId(), size);
+        statistics.recordScaling(System.nanoTime() - start);
+      }
+      scaling.complete(storedImg);
+      return storedImg;
+    } catch (RuntimeException e) {
+      scaling.completeExceptionally(e);
+      throw e;
+    } finally {
+      scalings.remove(request, scaling);
+    }
   }
 
-  private String getImageFor(ImageDBKey key, ImageSize size) {
+  private StoreImage getImageFor(ImageDBKey key, ImageSize size) {
+    return getImageFor(key, size, true);
+  }
+
+  private StoreImage getImageFor(ImageDBKey key, ImageSize size, boolean useSharedTier) {
     if (db == null || storage == null) {
       log.warn("Image provider not correctly initialized. Missing image database and storage.");
       return null;
@@ -130,6 +363,7 @@ public enum ImageProvider {
       return null;
     }
 
+    long start = System.nanoTime();
     ImageSize stdSize = ImageSizePreset.STD_IMAGE_SIZE;
     StoreImage storedImg = null;
 
@@ -139,11 +373,18 @@ public enum ImageProvider {
       storedImg = storage.loadData(imgID);
     }
 
+    // Variants owned by another instance are only scaled here if the owner cannot provide them
+    ISharedTier tier = sharedTier;
+    if (storedImg == null && useSharedTier && tier != null && !tier.isOwner(key, size)) {
+      storedImg = tier.fetch(key, size);
+      statistics.recordSharedTierFetch(storedImg != null);
+    }
+
     // If we dont have the image in the right size, get the biggest one and scale it
     if (storedImg == null) {
       storedImg = storage.loadData(db.getImageID(key, stdSize));
       if (storedImg != null) {
-        storedImg = scaleAndRegisterImg(storedImg.getImage(), key, size);
+        storedImg = scaleAndRegisterImg(storedImg, key, size);
       } else {
         storedImg = storage.loadData(db.getImageID(IMAGE_NOT_FOUND, size));
         if (storedImg == null) {
@@ -151,13 +392,45 @@ public enum ImageProvider {
           if (storedImg == null) {
             return null;
           }
-          storedImg = scaleAndRegisterImg(storedImg.getImage(), new ImageDBKey(IMAGE_NOT_FOUND),
-              size);
+          storedImg = scaleAndRegisterImg(storedImg, new ImageDBKey(IMAGE_NOT_FOUND), size);
         }
       }
     }
 
-    return storedImg.toString();
+    if (storedImg != null) {
+      statistics.recordRequest(storedImg.getId(), System.nanoTime() - start);
+    }
+    return storedImg;
+  }
+
+  /*
+   * Key of a running scaling operation.
+   */
+  private static final class ScaleRequest {
+    private final ImageDBKey key;
+    private final ImageSize size;
+
+    private ScaleRequest(ImageDBKey key, ImageSize size) {
+      this.key = key;
+      this.size = size;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(key, size);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof ScaleRequest)) {
+        return false;
+      }
+      ScaleRequest other = (ScaleRequest) obj;
+      return key.equals(other.key) && size.equals(other.size);
+    }
   }
 
 }
@@ -13,9 +13,10 @@
  */
 package tools.descartes.teastore.image;
 
-import java.awt.Graphics2D;
-import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.WritableRaster;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,13 +27,20 @@ import tools.descartes.teastore.entities.ImageSize;
  * Utility class with static methods to scale a
  * {@link java.awt.image.BufferedImage} to a given size or by a given ratio,
  * returning a copy of the {@link java.awt.image.BufferedImage} with the scaled
- * size and identical content.
+ * size and identical content. Large downscales are done in several steps,
+ * halving the image in each step, before the remaining scaling is interpolated
+ * bilinearly. All steps work directly on premultiplied ARGB pixel arrays reused
+ * per thread.
  * 
  * @author Norbert Schmitt
  *
  */
 public final class ImageScaler {
 
+  // Larger images get scratch buffers only for the current scaling, so idle threads do not hold on to them
+  private static final int MAX_BUFFERED_PIXELS = 1024 * 1024;
+  private static final ThreadLocal<int[][]> BUFFERS = ThreadLocal.withInitial(() -> new int[2][0]);
+
   private static Logger log = LoggerFactory.getLogger(ImageScaler.class);
 
   private ImageScaler() {
@@ -180,12 +188,168 @@ public final class ImageScaler {
       throw new IllegalArgumentException("The supplied pixel height is below 1.");
     }
 
-    BufferedImage scaledImg = new BufferedImage(width, height, BufferedImage.TRANSLUCENT);
-    Graphics2D graphics = scaledImg.createGraphics();
-    graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
-        RenderingHints.VALUE_INTERPOLATION_BICUBIC);
-    graphics.drawImage(image, 0, 0, width, height, null);
-    graphics.dispose();
+    int[][] buffers = BUFFERS.get();
+    int srcWidth = image.getWidth();
+    int srcHeight = image.getHeight();
+    int[] src = buffer(buffers, 0, srcWidth * srcHeight);
+    readPixels(image, src);
+
+    // Halve the image as long as it is at least twice as large as requested, so every source pixel contributes
+    while (srcWidth >= 2 * width || srcHeight >= 2 * height) {
+      int halvedWidth = srcWidth >= 2 * width ? srcWidth / 2 : srcWidth;
+      int halvedHeight = srcHeight >= 2 * height ? srcHeight / 2 : srcHeight;
+      int[] halved = buffer(buffers, src == buffers[0] ? 1 : 0, halvedWidth * halvedHeight);
+      halve(src, srcWidth, srcHeight, halved, halvedWidth, halvedHeight);
+      src = halved;
+      srcWidth = halvedWidth;
+      srcHeight = halvedHeight;
+    }
+
+    BufferedImage scaledImg = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+    int[] scaled = ((DataBufferInt) scaledImg.getRaster().getDataBuffer()).getData();
+    if (srcWidth == width && srcHeight == height) {
+      System.arraycopy(src, 0, scaled, 0, width * height);
+    } else {
+      interpolate(src, srcWidth, srcHeight, scaled, width, height);
+    }
     return scaledImg;
   }
+
+  private static int[] buffer(int[][] buffers, int index, int size) {
+    if (buffers[index].length >= size) {
+      return buffers[index];
+    }
+    int[] buffer = new int[size];
+    if (size <= MAX_BUFFERED_PIXELS) {
+      buffers[index] = buffer;
+    }
+    return buffer;
+  }
+
+  // Reads the image as premultiplied ARGB, directly from the raster for the common image types
+  private static void readPixels(BufferedImage image, int[] pixels) {
+    int length = image.getWidth() * image.getHeight();
+    WritableRaster raster = image.getRaster();
+    if (raster.getParent() != null) {
+      image.getRGB(0, 0, image.getWidth(), image.getHeight(), pixels, 0, image.getWidth());
+      premultiply(pixels, length);
+      return;
+    }
+
+    switch (image.getType()) {
+    case BufferedImage.TYPE_INT_ARGB_PRE:
+      System.arraycopy(((DataBufferInt) raster.getDataBuffer()).getData(), 0, pixels, 0, length);
+      break;
+    case BufferedImage.TYPE_INT_ARGB:
+      System.arraycopy(((DataBufferInt) raster.getDataBuffer()).getData(), 0, pixels, 0, length);
+      premultiply(pixels, length);
+      break;
+    case BufferedImage.TYPE_INT_RGB:
+      int[] rgb = ((DataBufferInt) raster.getDataBuffer()).getData();
+      for (int i = 0; i < length; i++) {
+        pixels[i] = 0xFF000000 | rgb[i];
+      }
+      break;
+    case BufferedImage.TYPE_3BYTE_BGR:
+      byte[] bgr = ((DataBufferByte) raster.getDataBuffer()).getData();
+      for (int i = 0, j = 0; i < length; i++, j += 3) {
+        pixels[i] = 0xFF000000 | ((bgr[j + 2] & 0xFF) << 16) | ((bgr[j + 1] & 0xFF) << 8) | (bgr[j] & 0xFF);
+      }
+      break;
+    case BufferedImage.TYPE_4BYTE_ABGR:
+      byte[] abgr = ((DataBufferByte) raster.getDataBuffer()).getData();
+      for (int i = 0, j = 0; i < length; i++, j += 4) {
+        pixels[i] = ((abgr[j] & 0xFF) << 24) | ((abgr[j + 3] & 0xFF) << 16) | ((abgr[j + 2] & 0xFF) << 8)
+            | (abgr[j + 1] & 0xFF);
+      }
+      premultiply(pixels, length);
+      break;
+    default:
+      image.getRGB(0, 0, image.getWidth(), image.getHeight(), pixels, 0, image.getWidth());
+      premultiply(pixels, length);
+    }
+  }
+
+  private static void premultiply(int[] pixels, int length) {
+    for (int i = 0; i < length; i++) {
+      int argb = pixels[i];
+      int alpha = argb >>> 24;
+      if (alpha == 0xFF) {
+        continue;
+      }
+      if (alpha == 0) {
+        pixels[i] = 0;
+        continue;
+      }
+      int red = (((argb >> 16) & 0xFF) * alpha + 127) / 255;
+      int green = (((argb >> 8) & 0xFF) * alpha + 127) / 255;
+      int blue = ((argb & 0xFF) * alpha + 127) / 255;
+      pixels[i] = (alpha << 24) | (red << 16) | (green << 8) | blue;
+    }
+  }
+
+  /*
+   * Averages blocks of 1x2, 2x1 or 2x2 pixels, an odd last row or column is dropped. Always four samples are summed
+   * up, blocks of two pixels count each pixel twice. Red and blue as well as alpha and green are summed up pairwise
+   * in the lower and upper 16 bits of an int, as four samples never exceed them.
+   */
+  private static void halve(int[] src, int srcWidth, int srcHeight, int[] dst, int dstWidth,
+      int dstHeight) {
+    int nextColumn = srcWidth / dstWidth - 1;
+    int nextRow = (srcHeight / dstHeight - 1) * srcWidth;
+    for (int y = 0; y < dstHeight; y++) {
+      int upper = y * (srcHeight / dstHeight) * srcWidth;
+      int target = y * dstWidth;
+      for (int x = 0; x < dstWidth; x++) {
+        int topLeft = src[upper];
+        int topRight = src[upper + nextColumn];
+        int bottomLeft = src[upper + nextRow];
+        int bottomRight = src[upper + nextRow + nextColumn];
+        int redBlue = (topLeft & 0x00FF00FF) + (topRight & 0x00FF00FF) + (bottomLeft & 0x00FF00FF)
+            + (bottomRight & 0x00FF00FF);
+        int alphaGreen = ((topLeft >>> 8) & 0x00FF00FF) + ((topRight >>> 8) & 0x00FF00FF)
+            + ((bottomLeft >>> 8) & 0x00FF00FF) + ((bottomRight >>> 8) & 0x00FF00FF);
+        dst[target + x] = ((((alphaGreen + 0x00020002) >>> 2) & 0x00FF00FF) << 8)
+            | (((redBlue + 0x00020002) >>> 2) & 0x00FF00FF);
+        upper += nextColumn + 1;
+      }
+    }
+  }
+
+  // Bilinear interpolation with 8 bit fixed point weights, mapping pixel centers onto each other
+  private static void interpolate(int[] src, int srcWidth, int srcHeight, int[] dst, int dstWidth,
+      int dstHeight) {
+    int[] left = new int[dstWidth];
+    int[] right = new int[dstWidth];
+    int[] weightX = new int[dstWidth];
+    for (int x = 0; x < dstWidth; x++) {
+      double srcX = Math.max(0.0, (x + 0.5) * srcWidth / dstWidth - 0.5);
+      left[x] = Math.min((int) srcX, srcWidth - 1);
+      right[x] = Math.min(left[x] + 1, srcWidth - 1);
+      weightX[x] = (int) ((srcX - left[x]) * 256);
+    }
+
+    for (int y = 0; y < dstHeight; y++) {
+      double srcY = Math.max(0.0, (y + 0.5) * srcHeight / dstHeight - 0.5);
+      int top = Math.min((int) srcY, srcHeight - 1);
+      int topRow = top * srcWidth;
+      int bottomRow = Math.min(top + 1, srcHeight - 1) * srcWidth;
+      int weightY = (int) ((srcY - top) * 256);
+      for (int x = 0; x < dstWidth; x++) {
+        int topLeft = src[topRow + left[x]];
+        int topRight = src[topRow + right[x]];
+        int bottomLeft = src[bottomRow + left[x]];
+        int bottomRight = src[bottomRow + right[x]];
+        int argb = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+          int upper = ((topLeft >>> shift) & 0xFF) * (256 - weightX[x])
+              + ((topRight >>> shift) & 0xFF) * weightX[x];
+          int lower = ((bottomLeft >>> shift) & 0xFF) * (256 - weightX[x])
+              + ((bottomRight >>> shift) & 0xFF) * weightX[x];
+          argb |= ((upper * (256 - weightY) + lower * weightY + 32768) >>> 16) << shift;
+        }
+        dst[y * dstWidth + x] = argb;
+      }
+    }
+  }
 }
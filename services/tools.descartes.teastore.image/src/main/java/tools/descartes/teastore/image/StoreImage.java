@@ -15,8 +15,9 @@ package tools.descartes.teastore.image;
 
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Base64;
 
@@ -27,6 +28,8 @@ import org.slf4j.LoggerFactory;
 
 import tools.descartes.teastore.entities.ImageSize;
 import tools.descartes.teastore.image.cache.entry.ICachable;
+import tools.descartes.teastore.image.encoder.IImageEncoder;
+import tools.descartes.teastore.image.encoder.ImageIOEncoder;
 
 /**
  * Entity for images provided by the image-provider service.
@@ -53,14 +56,17 @@ public class StoreImage implements ICachable<StoreImage> {
   public static final String STORE_IMAGE_DATA_STRING = "data:image/" + STORE_IMAGE_FORMAT
       + ";base64,";
 
+  private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+  private static final IImageEncoder STD_ENCODER = new ImageIOEncoder();
+
   private final long id;
-  private byte[] data;
+  private ByteBuffer data;
   private ImageSize size;
   private Logger log = LoggerFactory.getLogger(StoreImage.class);
 
   /**
    * Creates a new store image with a given id and size. The image is converted
-   * from the Java internal representation to a base64 encoded byte array.
+   * from the Java internal representation to a PNG encoded byte array.
    * 
    * @param id
    *          The unique image id.
@@ -70,30 +76,69 @@ public class StoreImage implements ICachable<StoreImage> {
    *          The image size.
    */
   public StoreImage(final long id, BufferedImage image, ImageSize size) {
+    this(id, image, size, STD_ENCODER);
+  }
+
+  /**
+   * Creates a new store image with a given id and size. The image is converted
+   * from the Java internal representation to PNG using the given encoder.
+   * 
+   * @param id
+   *          The unique image id.
+   * @param image
+   *          The image data itself.
+   * @param size
+   *          The image size.
+   * @param encoder
+   *          The PNG encoder.
+   */
+  public StoreImage(final long id, BufferedImage image, ImageSize size, IImageEncoder encoder) {
     if (image == null) {
       log.error("Supplied image is null.");
       throw new NullPointerException("Supplied image is null.");
     }
+    if (encoder == null) {
+      log.error("Supplied encoder is null.");
+      throw new NullPointerException("Supplied encoder is null.");
+    }
 
     this.id = id;
-    setImage(image);
+    setImage(image, encoder);
     setImageSize(size);
   }
 
   /**
    * Constructor.
    * @param id imageId
-   * @param base64 base64 encoded byte array
+   * @param png PNG encoded byte array
+   * @param size Imagesize object
+   */
+  public StoreImage(final long id, byte[] png, ImageSize size) {
+    if (png == null) {
+      log.error("Supplied PNG encoded byte array is null.");
+      throw new NullPointerException("Supplied PNG encoded byte array is null.");
+    }
+
+    this.id = id;
+    data = ByteBuffer.wrap(Arrays.copyOf(png, png.length));
+    setImageSize(size);
+  }
+
+  /**
+   * Creates a new store image backed by the given buffer without copying it, e.g. a slice of a memory mapped file.
+   * The buffer content between its position and limit must not change afterwards.
+   * @param id imageId
+   * @param png PNG encoded data
    * @param size Imagesize object
    */
-  public StoreImage(final long id, byte[] base64, ImageSize size) {
-    if (base64 == null) {
-      log.error("Supplied base64 encoded byte array is null.");
-      throw new NullPointerException("Supplied base64 encoded byte array is null.");
+  public StoreImage(final long id, ByteBuffer png, ImageSize size) {
+    if (png == null) {
+      log.error("Supplied PNG encoded buffer is null.");
+      throw new NullPointerException("Supplied PNG encoded buffer is null.");
     }
 
     this.id = id;
-    data = Arrays.copyOf(base64, base64.length);
+    data = png.slice().asReadOnlyBuffer();
     setImageSize(size);
   }
 
@@ -118,7 +163,7 @@ public class StoreImage implements ICachable<StoreImage> {
     }
 
     this.id = image.getId();
-    this.data = Arrays.copyOf(image.getByteArray(), image.getByteArray().length);
+    this.data = image.getByteBuffer();
     this.size = image.getSize();
   }
 
@@ -131,16 +176,34 @@ public class StoreImage implements ICachable<StoreImage> {
     return id;
   }
 
-  // Converts the Java internal image representation to a byte array and encodes
-  // it in base64 for embedding.
-  private void setImage(BufferedImage image) {
-    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+  // Converts the Java internal image representation to a PNG encoded byte array.
+  // Base64 encoding for embedding is only done once the image is serialized.
+  private void setImage(BufferedImage image, IImageEncoder encoder) {
     try {
-      ImageIO.write(image, STORE_IMAGE_FORMAT, stream);
+      data = encoder.encode(image);
     } catch (IOException ioException) {
-      log.warn("An IOException occured while trying to write image to a stream.", ioException);
+      log.warn("An IOException occured while trying to encode the image.", ioException);
+      data = ByteBuffer.allocate(0);
     }
-    data = Base64.getEncoder().encode(stream.toByteArray());
+  }
+
+  /**
+   * Checks whether the given byte array starts with the PNG file signature.
+   * 
+   * @param data
+   *          Byte array to check.
+   * @return True if the data is PNG encoded, false otherwise (e.g. base64 encoded data of older versions).
+   */
+  public static boolean isPNG(byte[] data) {
+    if (data == null || data.length < PNG_SIGNATURE.length) {
+      return false;
+    }
+    for (int i = 0; i < PNG_SIGNATURE.length; i++) {
+      if (data[i] != PNG_SIGNATURE[i]) {
+        return false;
+      }
+    }
+    return true;
   }
 
   /**
@@ -150,7 +213,12 @@ public class StoreImage implements ICachable<StoreImage> {
    */
   public BufferedImage getImage() {
     BufferedImage image = null;
-    ByteArrayInputStream stream = new ByteArrayInputStream(Base64.getDecoder().decode(data));
+    ByteArrayInputStream stream = null;
+    if (data.hasArray()) {
+      stream = new ByteArrayInputStream(data.array(), data.arrayOffset() + data.position(), data.remaining());
+    } else {
+      stream = new ByteArrayInputStream(getByteArray());
+    }
     try {
       image = ImageIO.read(stream);
     } catch (IOException ioException) {
@@ -175,7 +243,7 @@ public class StoreImage implements ICachable<StoreImage> {
    */
   @Override
   public long getByteSize() {
-    return data.length;
+    return data.remaining();
   }
 
   /**
@@ -184,15 +252,26 @@ public class StoreImage implements ICachable<StoreImage> {
    * @return Base64 encoded data as string.
    */
   public String getBase64() {
-    return new String(data);
+    ByteBuffer base64 = Base64.getEncoder().encode(data.duplicate());
+    return new String(base64.array(), base64.arrayOffset(), base64.remaining(), StandardCharsets.ISO_8859_1);
   }
 
   /**
-   * Getter for bytearray.
-   * @return bytearray
+   * Returns a copy of the PNG encoded image data.
+   * @return PNG encoded byte array.
    */
   public byte[] getByteArray() {
-    return Arrays.copyOf(data, data.length);
+    byte[] copy = new byte[data.remaining()];
+    data.duplicate().get(copy);
+    return copy;
+  }
+
+  /**
+   * Returns a read-only view of the PNG encoded image data without copying it.
+   * @return PNG encoded data between position and limit of the returned buffer.
+   */
+  public ByteBuffer getByteBuffer() {
+    return data.asReadOnlyBuffer();
   }
 
   @Override
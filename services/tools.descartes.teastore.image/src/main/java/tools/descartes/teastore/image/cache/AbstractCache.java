@@ -14,6 +14,8 @@
 package tools.descartes.teastore.image.cache;
 
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Predicate;
@@ -23,6 +25,7 @@ import org.slf4j.LoggerFactory;
 
 import tools.descartes.teastore.image.cache.entry.ICachable;
 import tools.descartes.teastore.image.cache.entry.ICacheEntry;
+import tools.descartes.teastore.image.stats.CacheStatistics;
 import tools.descartes.teastore.image.storage.IDataStorage;
 import tools.descartes.teastore.image.storage.NoStorage;
 
@@ -39,9 +42,11 @@ public abstract class AbstractCache<S extends Collection<F>, T extends ICachable
 
   private IDataStorage<T> cachedStorage;
   private S entries;
+  private final Map<Long, F> index = new HashMap<>();
   private long maxCacheSize;
   private long currentCacheSize;
   private Predicate<T> cachingRule;
+  private final CacheStatistics statistics = new CacheStatistics();
   private Logger log = LoggerFactory.getLogger(AbstractCache.class);
   private final ReadWriteLock lock = new ReentrantReadWriteLock();
 
@@ -91,7 +96,7 @@ public abstract class AbstractCache<S extends Collection<F>, T extends ICachable
   }
 
   private F findInEntries(long id) {
-    return entries.stream().filter(entry -> entry.getId() == id).findFirst().orElse(null);
+    return index.get(id);
   }
 
   private T getData(long id, boolean markUsed) {
@@ -145,6 +150,7 @@ public abstract class AbstractCache<S extends Collection<F>, T extends ICachable
       // entries
       while (getFreeSpace() < 0) {
         removeEntryByCachingStrategy();
+        statistics.recordEviction();
       }
     } finally {
       lock.writeLock().unlock();
@@ -188,6 +194,7 @@ public abstract class AbstractCache<S extends Collection<F>, T extends ICachable
     try {
       while (!hasStorageFor(data.getByteSize())) {
         removeEntryByCachingStrategy();
+        statistics.recordEviction();
       }
       addEntry(createEntry(data));
     } finally {
@@ -199,14 +206,21 @@ public abstract class AbstractCache<S extends Collection<F>, T extends ICachable
   public void uncacheData(T data) {
     lock.writeLock().lock();
     try {
-      if (entries.remove(createEntry(data))) {
-        dataRemovedFromCache(data.getByteSize());
+      // Remove the stored wrapper object, a newly created one might not be found in sorted collections
+      F entry = index.get(data.getId());
+      if (entry != null && entries.remove(entry)) {
+        entryRemoved(entry);
       }
     } finally {
       lock.writeLock().unlock();
     }
   }
 
+  @Override
+  public CacheStatistics getStatistics() {
+    return statistics;
+  }
+
   @Override
   public boolean dataIsCachable(T data) {
     return cachingRule.test(data);
@@ -222,6 +236,7 @@ public abstract class AbstractCache<S extends Collection<F>, T extends ICachable
     lock.writeLock().lock();
     try {
       entries.clear();
+      index.clear();
       currentCacheSize = 0;
     } finally {
       lock.writeLock().unlock();
@@ -254,12 +269,16 @@ public abstract class AbstractCache<S extends Collection<F>, T extends ICachable
     T entry = getData(id, true);
     if (entry == null) {
       // No entry in cache found, search in underlying storage
+      long start = System.nanoTime();
       entry = cachedStorage.loadData(id);
+      statistics.recordMiss(System.nanoTime() - start);
       if (entry == null) {
         return null;
       }
       // Data found, cache it and return
       cacheData(entry);
+    } else {
+      statistics.recordHit();
     }
     return entry;
   }
@@ -306,6 +325,21 @@ public abstract class AbstractCache<S extends Collection<F>, T extends ICachable
     }
   }
 
+  /**
+   * Removes the given wrapper object from the ID index and subtracts its byte size from the current size. Must be
+   * called by implementations after the wrapper object has been removed from the entry collection.
+   * @param data Wrapper object removed from the entry collection.
+   */
+  protected void entryRemoved(F data) {
+    lock.writeLock().lock();
+    try {
+      index.remove(data.getId());
+      dataRemovedFromCache(data.getByteSize());
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
   /**
    * Changes the current memory size of this cache by adding the given byte size to the current size.
    * @param size Bytes added to cache.
@@ -336,6 +370,7 @@ public abstract class AbstractCache<S extends Collection<F>, T extends ICachable
    */
   protected void addEntry(F data) {
     if (entries.add(data)) {
+      index.put(data.getId(), data);
       dataAddedToCache(data.getByteSize());
     }
   }
@@ -48,7 +48,7 @@ public abstract class AbstractTreeCache<T extends ICachable<T>, F extends ICache
 
   @Override
   protected void removeEntryByCachingStrategy() {
-    dataRemovedFromCache(getEntries().pollFirst().getByteSize());
+    entryRemoved(getEntries().pollFirst());
   }
 
   @Override
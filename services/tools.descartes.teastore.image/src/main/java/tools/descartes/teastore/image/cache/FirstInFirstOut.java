@@ -68,7 +68,7 @@ public class FirstInFirstOut<T extends ICachable<T>> extends AbstractQueueCache<
 
   @Override
   protected void removeEntryByCachingStrategy() {
-    dataRemovedFromCache(getEntries().pollFirst().getData().getByteSize());
+    entryRemoved(getEntries().pollFirst());
   }
 
 }
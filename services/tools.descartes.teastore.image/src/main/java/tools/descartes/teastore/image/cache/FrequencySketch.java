@@ -0,0 +1,138 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tools.descartes.teastore.image.cache;
+
+import java.util.Arrays;
+
+/**
+ * Count-min sketch with 4-bit counters estimating how often an ID was accessed. All counters are periodically halved
+ * so that the estimated frequencies age over time. This class is not thread safe.
+ */
+public class FrequencySketch {
+
+  private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL,
+      0xcbf29ce484222325L};
+  private static final long RESET_MASK = 0x7777777777777777L;
+  private static final long ONE_MASK = 0x1111111111111111L;
+  private static final int MAX_FREQUENCY = 15;
+  private static final int MAX_TABLE_SIZE = 1 << 30;
+  private static final int SAMPLE_FACTOR = 10;
+
+  private long[] table;
+  private int tableMask;
+  private int sampleSize;
+  private int size;
+
+  /**
+   * Creates a frequency sketch able to distinguish roughly the given number of IDs.
+   * @param expectedEntries Expected number of distinct IDs to count.
+   */
+  public FrequencySketch(long expectedEntries) {
+    ensureCapacity(expectedEntries);
+  }
+
+  /**
+   * Resizes the sketch for the given number of distinct IDs. All counted frequencies are discarded if the sketch has
+   * to grow.
+   * @param expectedEntries Expected number of distinct IDs to count.
+   */
+  public void ensureCapacity(long expectedEntries) {
+    int maximum = (int) Math.min(Math.max(expectedEntries, 1), MAX_TABLE_SIZE);
+    if (table != null && table.length >= maximum) {
+      return;
+    }
+    table = new long[ceilingPowerOfTwo(maximum)];
+    tableMask = table.length - 1;
+    sampleSize = SAMPLE_FACTOR * maximum;
+    size = 0;
+  }
+
+  /**
+   * Returns the estimated number of accesses of the given ID, capped at 15.
+   * @param id ID to estimate the access frequency for.
+   * @return Estimated access frequency between 0 and 15.
+   */
+  public int frequency(long id) {
+    int hash = spread(id);
+    int start = (hash & 3) << 2;
+    int frequency = MAX_FREQUENCY;
+    for (int i = 0; i < SEEDS.length; i++) {
+      int index = indexOf(hash, i);
+      int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+      frequency = Math.min(frequency, count);
+    }
+    return frequency;
+  }
+
+  /**
+   * Increments the access frequency of the given ID. Ages all counters if the sample size is reached.
+   * @param id ID that was accessed.
+   */
+  public void increment(long id) {
+    int hash = spread(id);
+    int start = (hash & 3) << 2;
+    boolean added = false;
+    for (int i = 0; i < SEEDS.length; i++) {
+      added |= incrementAt(indexOf(hash, i), start + i);
+    }
+    if (added && ++size == sampleSize) {
+      reset();
+    }
+  }
+
+  /**
+   * Discards all counted frequencies.
+   */
+  public void clear() {
+    Arrays.fill(table, 0L);
+    size = 0;
+  }
+
+  private boolean incrementAt(int index, int counter) {
+    int offset = counter << 2;
+    long mask = 0xfL << offset;
+    if ((table[index] & mask) != mask) {
+      table[index] += 1L << offset;
+      return true;
+    }
+    return false;
+  }
+
+  private void reset() {
+    int count = 0;
+    for (int i = 0; i < table.length; i++) {
+      count += Long.bitCount(table[i] & ONE_MASK);
+      table[i] = (table[i] >>> 1) & RESET_MASK;
+    }
+    size = (size >>> 1) - (count >>> 2);
+  }
+
+  private int indexOf(int hash, int depth) {
+    long result = (hash + SEEDS[depth]) * SEEDS[depth];
+    result += result >>> 32;
+    return ((int) result) & tableMask;
+  }
+
+  private static int spread(long id) {
+    int x = Long.hashCode(id);
+    x = ((x >>> 16) ^ x) * 0x45d9f3b;
+    x = ((x >>> 16) ^ x) * 0x45d9f3b;
+    return (x >>> 16) ^ x;
+  }
+
+  private static int ceilingPowerOfTwo(int value) {
+    return 1 << -Integer.numberOfLeadingZeros(value - 1);
+  }
+
+}
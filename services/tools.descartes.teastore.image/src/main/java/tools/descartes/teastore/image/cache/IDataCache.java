@@ -14,6 +14,7 @@
 package tools.descartes.teastore.image.cache;
 
 import tools.descartes.teastore.image.cache.entry.ICachable;
+import tools.descartes.teastore.image.stats.CacheStatistics;
 import tools.descartes.teastore.image.storage.IDataStorage;
 
 /**
@@ -95,4 +96,10 @@ public interface IDataCache<T extends ICachable<T>> extends IDataStorage<T> {
    */
   public boolean setMaxCacheSize(long cacheSize);
 
+  /**
+   * Returns the hit, miss and eviction counters of the cache.
+   * @return Cache statistics.
+   */
+  public CacheStatistics getStatistics();
+
 }
@@ -0,0 +1,447 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tools.descartes.teastore.image.cache;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import tools.descartes.teastore.entities.ImageSize;
+import tools.descartes.teastore.image.StoreImage;
+import tools.descartes.teastore.image.cache.rules.CacheAll;
+import tools.descartes.teastore.image.stats.CacheStatistics;
+import tools.descartes.teastore.image.storage.IDataStorage;
+import tools.descartes.teastore.image.storage.NoStorage;
+
+/**
+ * Cache storing the image data outside of the Java heap in direct buffer slabs. Only an index of the slab offsets is
+ * kept on the heap, so large caches neither bloat the heap nor prolong garbage collection pauses. Images are appended
+ * to the current slab. If it is full, the oldest slab is reused: images accessed since they were written are
+ * compacted at its start and get a second chance, all others are evicted. Loaded images are copied to the heap, so
+ * slab space can be reused while the image is still being sent. The maximum direct memory of the JVM has to be at
+ * least the maximum cache size.
+ */
+public class OffHeapCache implements IDataCache<StoreImage> {
+
+  /**
+   * Standard size of a slab in bytes. Images larger than a slab are not cached.
+   */
+  public static final int STD_SLAB_SIZE = 4 * 1024 * 1024;
+
+  private static final int INITIAL_SLAB_ENTRIES = 64;
+
+  private final IDataStorage<StoreImage> cachedStorage;
+  private final Predicate<StoreImage> cachingRule;
+  private final int maxSlabSize;
+  private final CacheStatistics statistics = new CacheStatistics();
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Logger log = LoggerFactory.getLogger(OffHeapCache.class);
+
+  // Fields below are modified under the write lock
+  private final Map<Long, Entry> index = new HashMap<>();
+  private ByteBuffer[] slabs = new ByteBuffer[0];
+  private int[] positions = new int[0];
+  // IDs in the order they were written to each slab, might contain IDs removed since
+  private long[][] slabIDs = new long[0][];
+  private int[] slabIDCounts = new int[0];
+  private int slabSize;
+  private int head;
+  private byte[] scratch = new byte[0];
+  private volatile long maxCacheSize;
+  private volatile long currentCacheSize;
+
+  /**
+   * Off-heap cache standard constructor setting the maximum cache size to the standard value
+   * {@link tools.descartes.teastore.image.cache.IDataCache.STD_MAX_CACHE_SIZE} and allowing all data to be cached.
+   */
+  public OffHeapCache() {
+    this(IDataCache.STD_MAX_CACHE_SIZE);
+  }
+
+  /**
+   * Off-heap cache constructor setting the maximum cache size to the given size and allowing all data to be cached.
+   * @param maxCacheSize Maximum cache size in bytes.
+   */
+  public OffHeapCache(long maxCacheSize) {
+    this(maxCacheSize, new CacheAll<StoreImage>());
+  }
+
+  /**
+   * Off-heap cache constructor setting the maximum cache size to the given size and caching only data that is tested
+   * true for the given caching rule.
+   * @param maxCacheSize Maximum cache size in bytes.
+   * @param cachingRule Cache rule determining which data will be cached.
+   */
+  public OffHeapCache(long maxCacheSize, Predicate<StoreImage> cachingRule) {
+    this(null, maxCacheSize, cachingRule);
+  }
+
+  /**
+   * Off-heap cache constructor setting the maximum cache size to the given size and caching only data that is tested
+   * true for the given caching rule. This constructor also lets you set the underlying storage, queried if an entry
+   * is not found in the cache.
+   * @param cachedStorage Storage object to query if an entry is not found in the cache.
+   * @param maxCacheSize Maximum cache size in bytes.
+   * @param cachingRule Cache rule determining which data will be cached.
+   */
+  public OffHeapCache(IDataStorage<StoreImage> cachedStorage, long maxCacheSize,
+      Predicate<StoreImage> cachingRule) {
+    this(cachedStorage, maxCacheSize, cachingRule, STD_SLAB_SIZE);
+  }
+
+  /**
+   * Off-heap cache constructor using slabs of the given size. Caches smaller than the slab size use a single slab
+   * of the cache size.
+   * @param cachedStorage Storage object to query if an entry is not found in the cache.
+   * @param maxCacheSize Maximum cache size in bytes.
+   * @param cachingRule Cache rule determining which data will be cached.
+   * @param slabSize Size of a slab in bytes.
+   */
+  public OffHeapCache(IDataStorage<StoreImage> cachedStorage, long maxCacheSize,
+      Predicate<StoreImage> cachingRule, int slabSize) {
+    if (cachingRule == null) {
+      log.error("The provided caching rule is null.");
+      throw new NullPointerException("The provided caching rule is null.");
+    }
+    if (slabSize <= 0) {
+      log.error("The provided slab size must be positive.");
+      throw new IllegalArgumentException("The provided slab size must be positive.");
+    }
+
+    if (cachedStorage == null) {
+      log.info("No underlying disk storage supplied, assuming no data is stored on disk.");
+      this.cachedStorage = new NoStorage<StoreImage>();
+    } else {
+      this.cachedStorage = cachedStorage;
+    }
+    this.cachingRule = cachingRule;
+    this.maxSlabSize = slabSize;
+    setMaxCacheSize(maxCacheSize);
+  }
+
+  /*
+   * Implementations for interface IDataCache
+   */
+
+  @Override
+  public long getMaxCacheSize() {
+    return maxCacheSize;
+  }
+
+  @Override
+  public boolean setMaxCacheSize(long maxCacheSize) {
+    if (maxCacheSize <= 0) {
+      log.error("The provided cache size is negative. Must be positive.");
+      throw new IllegalArgumentException("The provided cache size is negative. Must be positive.");
+    }
+
+    lock.writeLock().lock();
+    try {
+      int newSlabSize = (int) Math.min(maxSlabSize, maxCacheSize);
+      if (newSlabSize != slabSize) {
+        // Slabs of a different size cannot be reused
+        clear();
+        slabs = new ByteBuffer[0];
+        slabSize = newSlabSize;
+      }
+      // Never allocate more than the maximum cache size
+      int slabCount = (int) Math.min(Integer.MAX_VALUE - 8, maxCacheSize / slabSize);
+      for (int slab = slabCount; slab < slabs.length; slab++) {
+        evictSlab(slab);
+      }
+      slabs = Arrays.copyOf(slabs, slabCount);
+      positions = Arrays.copyOf(positions, slabCount);
+      slabIDs = Arrays.copyOf(slabIDs, slabCount);
+      slabIDCounts = Arrays.copyOf(slabIDCounts, slabCount);
+      if (head >= slabCount) {
+        head = 0;
+      }
+      this.maxCacheSize = maxCacheSize;
+    } finally {
+      lock.writeLock().unlock();
+    }
+    return true;
+  }
+
+  @Override
+  public long getCurrentCacheSize() {
+    return currentCacheSize;
+  }
+
+  @Override
+  public long getFreeSpace() {
+    return maxCacheSize - getCurrentCacheSize();
+  }
+
+  @Override
+  public boolean hasStorageFor(long size) {
+    return size <= getFreeSpace();
+  }
+
+  @Override
+  public void cacheData(StoreImage data) {
+    if (!dataIsCachable(data) || dataIsInCache(data.getId())) {
+      return;
+    }
+
+    ByteBuffer bytes = data.getByteBuffer();
+    int length = bytes.remaining();
+    lock.writeLock().lock();
+    try {
+      if (length > slabSize || index.containsKey(data.getId())) {
+        return;
+      }
+      if (slabs[head] == null) {
+        allocateSlab(head);
+      }
+      // Every slab is reused at most twice before all second chances are used up
+      while (positions[head] + length > slabSize) {
+        head = (head + 1) % slabs.length;
+        reuseSlab(head);
+      }
+      ByteBuffer target = slabs[head].duplicate();
+      target.position(positions[head]);
+      target.put(bytes);
+      index.put(data.getId(), new Entry(head, positions[head], length, data.getSize()));
+      addSlabID(head, data.getId());
+      positions[head] += length;
+      currentCacheSize += length;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void uncacheData(StoreImage data) {
+    lock.writeLock().lock();
+    try {
+      // The slab space is reclaimed when the slab is reused
+      Entry entry = index.remove(data.getId());
+      if (entry != null) {
+        currentCacheSize -= entry.length;
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public CacheStatistics getStatistics() {
+    return statistics;
+  }
+
+  @Override
+  public boolean dataIsCachable(StoreImage data) {
+    return data != null && cachingRule.test(data);
+  }
+
+  @Override
+  public boolean dataIsInCache(long id) {
+    lock.readLock().lock();
+    try {
+      return index.containsKey(id);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public void clearCache() {
+    lock.writeLock().lock();
+    try {
+      clear();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /*
+   * Implementations for interface IDataStorage
+   */
+
+  @Override
+  public boolean dataExists(long id) {
+    return dataIsInCache(id) || cachedStorage.dataExists(id);
+  }
+
+  @Override
+  public StoreImage loadData(long id) {
+    // Search entry in cache
+    StoreImage img = copyFromSlab(id);
+    if (img != null) {
+      statistics.recordHit();
+      return img;
+    }
+    // No entry in cache found, search in underlying storage
+    long start = System.nanoTime();
+    img = cachedStorage.loadData(id);
+    statistics.recordMiss(System.nanoTime() - start);
+    if (img == null) {
+      return null;
+    }
+    // Data found, cache it and return
+    cacheData(img);
+    return img;
+  }
+
+  @Override
+  public boolean saveData(StoreImage data) {
+    if (data == null) {
+      return false;
+    }
+
+    cacheData(data);
+    return cachedStorage.saveData(data);
+  }
+
+  @Override
+  public boolean dataIsStorable(StoreImage data) {
+    return cachedStorage.dataIsStorable(data);
+  }
+
+  @Override
+  public boolean deleteData(StoreImage data) {
+    uncacheData(data);
+    return cachedStorage.deleteData(data);
+  }
+
+  /*
+   * Slab management
+   */
+
+  private StoreImage copyFromSlab(long id) {
+    lock.readLock().lock();
+    try {
+      Entry entry = index.get(id);
+      if (entry == null) {
+        return null;
+      }
+      entry.accessed = true;
+      ByteBuffer source = slabs[entry.slab].duplicate();
+      source.limit(entry.offset + entry.length).position(entry.offset);
+      ByteBuffer copy = ByteBuffer.allocate(entry.length);
+      copy.put(source).flip();
+      return new StoreImage(id, copy, entry.size);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  // Requires the write lock
+  private void allocateSlab(int slab) {
+    slabs[slab] = ByteBuffer.allocateDirect(slabSize);
+    slabIDs[slab] = new long[INITIAL_SLAB_ENTRIES];
+  }
+
+  // Requires the write lock
+  private void addSlabID(int slab, long id) {
+    if (slabIDCounts[slab] == slabIDs[slab].length) {
+      slabIDs[slab] = Arrays.copyOf(slabIDs[slab], slabIDs[slab].length * 2);
+    }
+    slabIDs[slab][slabIDCounts[slab]++] = id;
+  }
+
+  // Requires the write lock. Compacts accessed entries at the start of the slab and evicts all others
+  private void reuseSlab(int slab) {
+    if (slabs[slab] == null) {
+      allocateSlab(slab);
+      return;
+    }
+
+    ByteBuffer buffer = slabs[slab];
+    int position = 0;
+    int survivors = 0;
+    for (int i = 0; i < slabIDCounts[slab]; i++) {
+      long id = slabIDs[slab][i];
+      Entry entry = index.get(id);
+      if (entry == null || entry.slab != slab) {
+        continue;
+      }
+      if (!entry.accessed) {
+        index.remove(id);
+        currentCacheSize -= entry.length;
+        statistics.recordEviction();
+        continue;
+      }
+      // Entries are visited in ascending order, so an entry never moves over one not yet visited
+      entry.accessed = false;
+      if (entry.offset != position) {
+        if (scratch.length < entry.length) {
+          scratch = new byte[entry.length];
+        }
+        ByteBuffer source = buffer.duplicate();
+        source.position(entry.offset);
+        source.get(scratch, 0, entry.length);
+        ByteBuffer target = buffer.duplicate();
+        target.position(position);
+        target.put(scratch, 0, entry.length);
+        entry.offset = position;
+      }
+      position += entry.length;
+      slabIDs[slab][survivors++] = id;
+    }
+    positions[slab] = position;
+    slabIDCounts[slab] = survivors;
+  }
+
+  // Requires the write lock
+  private void evictSlab(int slab) {
+    for (int i = 0; i < slabIDCounts[slab]; i++) {
+      Entry entry = index.get(slabIDs[slab][i]);
+      if (entry != null && entry.slab == slab) {
+        index.remove(slabIDs[slab][i]);
+        currentCacheSize -= entry.length;
+        statistics.recordEviction();
+      }
+    }
+    slabIDCounts[slab] = 0;
+    positions[slab] = 0;
+  }
+
+  // Requires the write lock
+  private void clear() {
+    index.clear();
+    Arrays.fill(positions, 0);
+    Arrays.fill(slabIDCounts, 0);
+    head = 0;
+    currentCacheSize = 0;
+  }
+
+  /*
+   * Location of an image in the slabs.
+   */
+  private static final class Entry {
+    private final int slab;
+    private final int length;
+    private final ImageSize size;
+    // Changed under the write lock
+    private int offset;
+    private volatile boolean accessed;
+
+    private Entry(int slab, int offset, int length, ImageSize size) {
+      this.slab = slab;
+      this.offset = offset;
+      this.length = length;
+      this.size = size;
+    }
+  }
+
+}
@@ -94,7 +94,7 @@ public class RandomReplacement<T extends ICachable<T>> extends AbstractQueueCach
 
   @Override
   protected void removeEntryByCachingStrategy() {
-    dataRemovedFromCache(getEntries().remove(rand.nextInt(getEntries().size())).getByteSize());
+    entryRemoved(getEntries().remove(rand.nextInt(getEntries().size())));
   }
 
 }
\ No newline at end of file
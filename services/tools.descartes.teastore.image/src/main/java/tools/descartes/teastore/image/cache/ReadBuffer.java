@@ -0,0 +1,99 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tools.descartes.teastore.image.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongConsumer;
+
+/**
+ * Lossy, striped buffer recording read accesses without taking a lock. Each thread writes into one of several small
+ * ring buffers. If a ring buffer is full, the access is dropped. The buffer is drained by a single thread holding the
+ * eviction lock of the owning cache.
+ */
+public class ReadBuffer {
+
+  private static final int STRIPE_SIZE = 16;
+  private static final int STRIPE_MASK = STRIPE_SIZE - 1;
+  private static final int STRIPES_PER_CPU = 4;
+  private static final long EMPTY = Long.MIN_VALUE;
+
+  private final AtomicLongArray buffer;
+  private final AtomicLong[] writeCounts;
+  private final AtomicLong[] readCounts;
+  private final int stripeMask;
+
+  /**
+   * Creates a read buffer with a number of stripes depending on the number of available processors.
+   */
+  public ReadBuffer() {
+    int stripes = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * STRIPES_PER_CPU);
+    stripeMask = stripes - 1;
+    buffer = new AtomicLongArray(stripes * STRIPE_SIZE);
+    writeCounts = new AtomicLong[stripes];
+    readCounts = new AtomicLong[stripes];
+    for (int i = 0; i < stripes; i++) {
+      writeCounts[i] = new AtomicLong();
+      readCounts[i] = new AtomicLong();
+    }
+    for (int i = 0; i < buffer.length(); i++) {
+      buffer.set(i, EMPTY);
+    }
+  }
+
+  /**
+   * Records an access to the given ID. The access is silently dropped if the stripe of the calling thread is full or
+   * contended.
+   * @param id Accessed ID.
+   * @return True if the stripe is at least half full and should be drained, otherwise false.
+   */
+  public boolean offer(long id) {
+    int stripe = (int) Thread.currentThread().getId() & stripeMask;
+    long head = readCounts[stripe].get();
+    long tail = writeCounts[stripe].get();
+    long used = tail - head;
+    if (used >= STRIPE_SIZE) {
+      return true;
+    }
+    if (writeCounts[stripe].compareAndSet(tail, tail + 1)) {
+      buffer.lazySet(stripe * STRIPE_SIZE + (int) (tail & STRIPE_MASK), id);
+      used++;
+    }
+    return used >= STRIPE_SIZE / 2;
+  }
+
+  /**
+   * Hands all recorded accesses to the given consumer. Must only be called by one thread at a time.
+   * @param consumer Consumer applying the recorded accesses.
+   */
+  public void drainTo(LongConsumer consumer) {
+    for (int stripe = 0; stripe <= stripeMask; stripe++) {
+      long head = readCounts[stripe].get();
+      long tail = writeCounts[stripe].get();
+      while (head < tail) {
+        int index = stripe * STRIPE_SIZE + (int) (head & STRIPE_MASK);
+        long id = buffer.get(index);
+        if (id == EMPTY) {
+          // Writer claimed the slot but has not published the ID yet
+          break;
+        }
+        buffer.lazySet(index, EMPTY);
+        consumer.accept(id);
+        head++;
+      }
+      readCounts[stripe].lazySet(head);
+    }
+  }
+
+}
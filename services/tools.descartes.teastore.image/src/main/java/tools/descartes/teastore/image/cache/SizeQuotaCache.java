@@ -0,0 +1,373 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tools.descartes.teastore.image.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongFunction;
+import java.util.function.Predicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import tools.descartes.teastore.entities.ImageSize;
+import tools.descartes.teastore.entities.ImageSizePreset;
+import tools.descartes.teastore.image.ImageDB;
+import tools.descartes.teastore.image.StoreImage;
+import tools.descartes.teastore.image.stats.CacheStatistics;
+import tools.descartes.teastore.image.storage.IDataStorage;
+import tools.descartes.teastore.image.storage.NoStorage;
+
+/**
+ * Cache layer splitting the maximum cache size into byte quotas per image size. Each quota is managed by its own
+ * partition cache, so images of one size can only evict images of the same size. Image sizes without a quota share
+ * the remaining cache size. If a partition is full, new images are only admitted if they were requested repeatedly,
+ * according to a frequency sketch, which keeps images requested only once, e.g. by crawlers, from evicting others.
+ * Accesses are recorded in a lossy read buffer and only applied to the sketch when it fills up or an image is about to
+ * be admitted, so cache hits do not take a shared lock. The partition of an image is found by its size in the image
+ * database.
+ */
+public class SizeQuotaCache implements IDataCache<StoreImage> {
+
+  /**
+   * Standard quotas in percent of the maximum cache size. The remaining 20 percent are shared by all other sizes.
+   */
+  public static final Map<ImageSize, Integer> STD_QUOTAS = createStandardQuotas();
+
+  /**
+   * Number of requests an image needs before it may evict other images of the same size.
+   */
+  private static final int ADMISSION_FREQUENCY = 2;
+  /**
+   * Estimated average entry size in bytes used to dimension the frequency sketch.
+   */
+  private static final long ESTIMATED_ENTRY_SIZE = 4 * 1024;
+
+  private final IDataStorage<StoreImage> cachedStorage;
+  private final ImageDB imgDB;
+  private final Predicate<StoreImage> cachingRule;
+  private final Map<ImageSize, Integer> quotas;
+  private final Map<ImageSize, IDataCache<StoreImage>> partitions = new HashMap<>();
+  private final IDataCache<StoreImage> sharedPartition;
+  private final List<IDataCache<StoreImage>> allPartitions = new ArrayList<>();
+  private final int sharedQuota;
+  private final CacheStatistics statistics;
+  private volatile long maxCacheSize;
+  // Fields below are guarded by the sketch lock
+  private final ReentrantLock sketchLock = new ReentrantLock();
+  private final ReadBuffer readBuffer = new ReadBuffer();
+  private final FrequencySketch sketch = new FrequencySketch(1);
+  private final Logger log = LoggerFactory.getLogger(SizeQuotaCache.class);
+
+  /**
+   * Creates a cache using the standard quotas and only caching data that is tested true for the given caching rule.
+   * @param cachedStorage Storage object to query if an entry is not found in the cache.
+   * @param imgDB Image database containing the sizes of the cached images.
+   * @param maxCacheSize Maximum cache size in bytes.
+   * @param cachingRule Cache rule determining which data will be cached.
+   * @param partitionFactory Creates an empty partition cache with the given maximum size in bytes.
+   */
+  public SizeQuotaCache(IDataStorage<StoreImage> cachedStorage, ImageDB imgDB, long maxCacheSize,
+      Predicate<StoreImage> cachingRule, LongFunction<IDataCache<StoreImage>> partitionFactory) {
+    this(cachedStorage, imgDB, maxCacheSize, cachingRule, STD_QUOTAS, partitionFactory);
+  }
+
+  /**
+   * Creates a cache using the given quotas and only caching data that is tested true for the given caching rule.
+   * @param cachedStorage Storage object to query if an entry is not found in the cache.
+   * @param imgDB Image database containing the sizes of the cached images.
+   * @param maxCacheSize Maximum cache size in bytes.
+   * @param cachingRule Cache rule determining which data will be cached.
+   * @param quotas Quotas per image size in percent of the maximum cache size. Must not exceed 100 percent in total.
+   * @param partitionFactory Creates an empty partition cache with the given maximum size in bytes.
+   */
+  public SizeQuotaCache(IDataStorage<StoreImage> cachedStorage, ImageDB imgDB, long maxCacheSize,
+      Predicate<StoreImage> cachingRule, Map<ImageSize, Integer> quotas,
+      LongFunction<IDataCache<StoreImage>> partitionFactory) {
+    if (imgDB == null) {
+      log.error("The provided image database is null.");
+      throw new NullPointerException("The provided image database is null.");
+    }
+    if (cachingRule == null) {
+      log.error("The provided caching rule is null.");
+      throw new NullPointerException("The provided caching rule is null.");
+    }
+    if (quotas == null) {
+      log.error("The provided quotas are null.");
+      throw new NullPointerException("The provided quotas are null.");
+    }
+    if (partitionFactory == null) {
+      log.error("The provided partition factory is null.");
+      throw new NullPointerException("The provided partition factory is null.");
+    }
+    if (maxCacheSize <= 0) {
+      log.error("The provided cache size is negative. Must be positive.");
+      throw new IllegalArgumentException("The provided cache size is negative. Must be positive.");
+    }
+    int total = 0;
+    for (int quota : quotas.values()) {
+      if (quota <= 0) {
+        log.error("The provided quotas must be positive.");
+        throw new IllegalArgumentException("The provided quotas must be positive.");
+      }
+      total += quota;
+    }
+    if (total > 100) {
+      log.error("The provided quotas exceed 100 percent.");
+      throw new IllegalArgumentException("The provided quotas exceed 100 percent.");
+    }
+
+    if (cachedStorage == null) {
+      log.info("No underlying disk storage supplied, assuming no data is stored on disk.");
+      this.cachedStorage = new NoStorage<StoreImage>();
+    } else {
+      this.cachedStorage = cachedStorage;
+    }
+    this.imgDB = imgDB;
+    this.cachingRule = cachingRule;
+    this.quotas = new HashMap<>(quotas);
+    this.maxCacheSize = maxCacheSize;
+    for (Map.Entry<ImageSize, Integer> quota : quotas.entrySet()) {
+      IDataCache<StoreImage> partition = partitionFactory.apply(quotaSize(maxCacheSize, quota.getValue()));
+      partitions.put(quota.getKey(), partition);
+      allPartitions.add(partition);
+    }
+    sharedQuota = 100 - total;
+    if (sharedQuota > 0) {
+      sharedPartition = partitionFactory.apply(quotaSize(maxCacheSize, sharedQuota));
+      allPartitions.add(sharedPartition);
+    } else {
+      sharedPartition = null;
+    }
+    List<CacheStatistics> partitionStatistics = new ArrayList<>();
+    for (IDataCache<StoreImage> partition : allPartitions) {
+      partitionStatistics.add(partition.getStatistics());
+    }
+    statistics = new CacheStatistics(partitionStatistics);
+    sketch.ensureCapacity(maxCacheSize / ESTIMATED_ENTRY_SIZE);
+  }
+
+  private static Map<ImageSize, Integer> createStandardQuotas() {
+    Map<ImageSize, Integer> quotas = new LinkedHashMap<>();
+    // Icons and previews share the same size
+    quotas.put(ImageSizePreset.ICON.getSize(), 45);
+    quotas.put(ImageSizePreset.RECOMMENDATION.getSize(), 10);
+    quotas.put(ImageSizePreset.MAIN_IMAGE.getSize(), 10);
+    quotas.put(ImageSizePreset.FULL.getSize(), 15);
+    return Collections.unmodifiableMap(quotas);
+  }
+
+  private static long quotaSize(long maxCacheSize, int quota) {
+    return Math.max(1, maxCacheSize / 100 * quota + maxCacheSize % 100 * quota / 100);
+  }
+
+  private IDataCache<StoreImage> getPartition(ImageSize size) {
+    IDataCache<StoreImage> partition = partitions.get(size);
+    return partition == null ? sharedPartition : partition;
+  }
+
+  private IDataCache<StoreImage> findPartition(long id) {
+    ImageSize size = imgDB.getImageSize(id);
+    return size == null ? null : getPartition(size);
+  }
+
+  private void recordAccess(long id) {
+    // Only drain if the buffer fills up and nobody else is already updating the sketch
+    if (readBuffer.offer(id) && sketchLock.tryLock()) {
+      try {
+        drainReadBuffer();
+      } finally {
+        sketchLock.unlock();
+      }
+    }
+  }
+
+  private boolean isAdmitted(long id) {
+    sketchLock.lock();
+    try {
+      drainReadBuffer();
+      return sketch.frequency(id) >= ADMISSION_FREQUENCY;
+    } finally {
+      sketchLock.unlock();
+    }
+  }
+
+  private void drainReadBuffer() {
+    readBuffer.drainTo(sketch::increment);
+  }
+
+  /*
+   * Implementations for interface IDataCache
+   */
+
+  @Override
+  public long getMaxCacheSize() {
+    return maxCacheSize;
+  }
+
+  @Override
+  public boolean setMaxCacheSize(long maxCacheSize) {
+    if (maxCacheSize <= 0) {
+      log.error("The provided cache size is negative. Must be positive.");
+      throw new IllegalArgumentException("The provided cache size is negative. Must be positive.");
+    }
+
+    sketchLock.lock();
+    try {
+      this.maxCacheSize = maxCacheSize;
+      for (Map.Entry<ImageSize, IDataCache<StoreImage>> partition : partitions.entrySet()) {
+        partition.getValue().setMaxCacheSize(quotaSize(maxCacheSize, quotas.get(partition.getKey())));
+      }
+      if (sharedPartition != null) {
+        sharedPartition.setMaxCacheSize(quotaSize(maxCacheSize, sharedQuota));
+      }
+      sketch.ensureCapacity(maxCacheSize / ESTIMATED_ENTRY_SIZE);
+    } finally {
+      sketchLock.unlock();
+    }
+    return true;
+  }
+
+  @Override
+  public long getCurrentCacheSize() {
+    long size = 0;
+    for (IDataCache<StoreImage> partition : allPartitions) {
+      size += partition.getCurrentCacheSize();
+    }
+    return size;
+  }
+
+  @Override
+  public long getFreeSpace() {
+    return maxCacheSize - getCurrentCacheSize();
+  }
+
+  @Override
+  public boolean hasStorageFor(long size) {
+    return size <= getFreeSpace();
+  }
+
+  @Override
+  public void cacheData(StoreImage data) {
+    if (!dataIsCachable(data)) {
+      return;
+    }
+
+    IDataCache<StoreImage> partition = getPartition(data.getSize());
+    // Only images requested repeatedly may evict other images
+    if (partition.hasStorageFor(data.getByteSize()) || isAdmitted(data.getId())) {
+      partition.cacheData(data);
+    } else {
+      statistics.recordRejection();
+    }
+  }
+
+  @Override
+  public void uncacheData(StoreImage data) {
+    if (data == null) {
+      return;
+    }
+    IDataCache<StoreImage> partition = getPartition(data.getSize());
+    if (partition != null) {
+      partition.uncacheData(data);
+    }
+  }
+
+  @Override
+  public CacheStatistics getStatistics() {
+    return statistics;
+  }
+
+  @Override
+  public boolean dataIsCachable(StoreImage data) {
+    return data != null && cachingRule.test(data) && getPartition(data.getSize()) != null;
+  }
+
+  @Override
+  public boolean dataIsInCache(long id) {
+    IDataCache<StoreImage> partition = findPartition(id);
+    return partition != null && partition.dataIsInCache(id);
+  }
+
+  @Override
+  public void clearCache() {
+    for (IDataCache<StoreImage> partition : allPartitions) {
+      partition.clearCache();
+    }
+    sketchLock.lock();
+    try {
+      drainReadBuffer();
+      sketch.clear();
+    } finally {
+      sketchLock.unlock();
+    }
+  }
+
+  /*
+   * Implementations for interface IDataStorage
+   */
+
+  @Override
+  public boolean dataExists(long id) {
+    return dataIsInCache(id) || cachedStorage.dataExists(id);
+  }
+
+  @Override
+  public StoreImage loadData(long id) {
+    recordAccess(id);
+    IDataCache<StoreImage> partition = findPartition(id);
+    StoreImage entry = partition == null ? null : partition.loadData(id);
+    if (entry == null) {
+      // No entry in cache found, search in underlying storage
+      long start = System.nanoTime();
+      entry = cachedStorage.loadData(id);
+      statistics.recordMiss(System.nanoTime() - start);
+      if (entry == null) {
+        return null;
+      }
+      // Data found, cache it and return
+      cacheData(entry);
+    } else {
+      statistics.recordHit();
+    }
+    return entry;
+  }
+
+  @Override
+  public boolean saveData(StoreImage data) {
+    if (data == null) {
+      return false;
+    }
+
+    cacheData(data);
+    return cachedStorage.saveData(data);
+  }
+
+  @Override
+  public boolean dataIsStorable(StoreImage data) {
+    return cachedStorage.dataIsStorable(data);
+  }
+
+  @Override
+  public boolean deleteData(StoreImage data) {
+    uncacheData(data);
+    return cachedStorage.deleteData(data);
+  }
+
+}
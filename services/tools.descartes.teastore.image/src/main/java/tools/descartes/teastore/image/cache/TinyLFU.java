@@ -0,0 +1,406 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tools.descartes.teastore.image.cache;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import tools.descartes.teastore.image.cache.entry.ICachable;
+import tools.descartes.teastore.image.cache.rules.CacheAll;
+import tools.descartes.teastore.image.stats.CacheStatistics;
+import tools.descartes.teastore.image.storage.IDataStorage;
+import tools.descartes.teastore.image.storage.NoStorage;
+
+/**
+ * Concurrent window TinyLFU cache. Cache hits are served from a concurrent map without locking and are recorded in a
+ * lossy read buffer. The eviction order is only modified by the thread holding the eviction lock, which applies the
+ * buffered hits in batches. New entries are placed in a small LRU window. Entries leaving the window have to compete
+ * with the eviction candidate of the segmented LRU main space and are only admitted if they were accessed more often,
+ * according to a frequency sketch.
+ *
+ * @param <T> Entry Type implementing ICachable.
+ */
+public class TinyLFU<T extends ICachable<T>> implements IDataCache<T> {
+
+  /**
+   * Percentage of the maximum cache size used for the LRU admission window.
+   */
+  private static final int WINDOW_PERCENTAGE = 1;
+  /**
+   * Percentage of the main space reserved for entries that were accessed at least twice.
+   */
+  private static final int PROTECTED_PERCENTAGE = 80;
+  /**
+   * Estimated average entry size in bytes used to dimension the frequency sketch.
+   */
+  private static final long ESTIMATED_ENTRY_SIZE = 4 * 1024;
+
+  private IDataStorage<T> cachedStorage;
+  private Predicate<T> cachingRule;
+  private final Map<Long, T> data = new ConcurrentHashMap<>();
+  private final AtomicLong currentCacheSize = new AtomicLong();
+  private volatile long maxCacheSize;
+  private final CacheStatistics statistics = new CacheStatistics();
+  private Logger log = LoggerFactory.getLogger(TinyLFU.class);
+
+  // Fields below are guarded by the eviction lock
+  private final ReentrantLock evictionLock = new ReentrantLock();
+  private final ReadBuffer readBuffer = new ReadBuffer();
+  private final FrequencySketch sketch = new FrequencySketch(1);
+  private final LinkedHashMap<Long, T> window = new LinkedHashMap<>();
+  private final LinkedHashMap<Long, T> probation = new LinkedHashMap<>();
+  private final LinkedHashMap<Long, T> protectedSpace = new LinkedHashMap<>();
+  private long windowSize;
+  private long protectedSize;
+  private long maxWindowSize;
+  private long maxProtectedSize;
+
+  /**
+   * TinyLFU cache standard constructor setting the maximum cache size to the standard value 
+   * {@link tools.descartes.teastore.image.cache.IDataCache.STD_MAX_CACHE_SIZE} and allowing all data to be cached.
+   */
+  public TinyLFU() {
+    this(IDataCache.STD_MAX_CACHE_SIZE);
+  }
+
+  /**
+   * TinyLFU cache constructor setting the maximum cache size to the given size and allowing all data to be cached.
+   * @param maxCacheSize Maximum cache size in bytes.
+   */
+  public TinyLFU(long maxCacheSize) {
+    this(maxCacheSize, new CacheAll<T>());
+  }
+
+  /**
+   * TinyLFU cache constructor setting the maximum cache size to the given size and caching only data that is tested 
+   * true for the given caching rule.
+   * @param maxCacheSize Maximum cache size in bytes.
+   * @param cachingRule Cache rule determining which data will be cached.
+   */
+  public TinyLFU(long maxCacheSize, Predicate<T> cachingRule) {
+    this(null, maxCacheSize, cachingRule);
+  }
+
+  /**
+   * TinyLFU cache constructor setting the maximum cache size to the given size and caching only data that is tested 
+   * true for the given caching rule. This constructor also lets you set the underlying storage, queried if an entry is 
+   * not found in the cache.
+   * @param cachedStorage Storage object to query if an entry is not found in the cache.
+   * @param maxCacheSize Maximum cache size in bytes.
+   * @param cachingRule Cache rule determining which data will be cached.
+   */
+  public TinyLFU(IDataStorage<T> cachedStorage, long maxCacheSize, Predicate<T> cachingRule) {
+    if (cachingRule == null) {
+      log.error("The provided caching rule is null.");
+      throw new NullPointerException("The provided caching rule is null.");
+    }
+
+    if (cachedStorage == null) {
+      log.info("No underlying disk storage supplied, assuming no data is stored on disk.");
+      this.cachedStorage = new NoStorage<T>();
+    } else {
+      this.cachedStorage = cachedStorage;
+    }
+    this.cachingRule = cachingRule;
+    setMaxCacheSize(maxCacheSize);
+  }
+
+  /*
+   * Implementations for interface IDataCache
+   */
+
+  @Override
+  public long getMaxCacheSize() {
+    return maxCacheSize;
+  }
+
+  @Override
+  public boolean setMaxCacheSize(long maxCacheSize) {
+    if (maxCacheSize <= 0) {
+      log.error("The provided cache size is negative. Must be positive.");
+      throw new IllegalArgumentException("The provided cache size is negative. Must be positive.");
+    }
+
+    evictionLock.lock();
+    try {
+      this.maxCacheSize = maxCacheSize;
+      maxWindowSize = Math.max(1, maxCacheSize * WINDOW_PERCENTAGE / 100);
+      maxProtectedSize = (maxCacheSize - maxWindowSize) * PROTECTED_PERCENTAGE / 100;
+      sketch.ensureCapacity(maxCacheSize / ESTIMATED_ENTRY_SIZE);
+      drainReadBuffer();
+      evict(new ArrayDeque<>());
+    } finally {
+      evictionLock.unlock();
+    }
+    return true;
+  }
+
+  @Override
+  public long getCurrentCacheSize() {
+    return currentCacheSize.get();
+  }
+
+  @Override
+  public long getFreeSpace() {
+    return maxCacheSize - getCurrentCacheSize();
+  }
+
+  @Override
+  public boolean hasStorageFor(long size) {
+    return size <= getFreeSpace();
+  }
+
+  @Override
+  public void cacheData(T data) {
+    if (!dataIsCachable(data) || dataIsInCache(data.getId())) {
+      return;
+    }
+
+    if (data.getByteSize() > maxCacheSize) {
+      return;
+    }
+
+    evictionLock.lock();
+    try {
+      drainReadBuffer();
+      sketch.increment(data.getId());
+      if (this.data.putIfAbsent(data.getId(), data) != null) {
+        return;
+      }
+      window.put(data.getId(), data);
+      windowSize += data.getByteSize();
+      currentCacheSize.addAndGet(data.getByteSize());
+      evict(moveOverflowingWindowEntries());
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  @Override
+  public void uncacheData(T data) {
+    evictionLock.lock();
+    try {
+      drainReadBuffer();
+      remove(data.getId());
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  @Override
+  public CacheStatistics getStatistics() {
+    return statistics;
+  }
+
+  @Override
+  public boolean dataIsCachable(T data) {
+    return cachingRule.test(data);
+  }
+
+  @Override
+  public boolean dataIsInCache(long id) {
+    return data.containsKey(id);
+  }
+
+  @Override
+  public void clearCache() {
+    evictionLock.lock();
+    try {
+      drainReadBuffer();
+      data.clear();
+      window.clear();
+      probation.clear();
+      protectedSpace.clear();
+      sketch.clear();
+      windowSize = 0;
+      protectedSize = 0;
+      currentCacheSize.set(0);
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  /*
+   * Implementations for interface IDataStorage
+   */
+
+  @Override
+  public boolean dataExists(long id) {
+    return dataIsInCache(id) || cachedStorage.dataExists(id);
+  }
+
+  @Override
+  public T loadData(long id) {
+    // Search entry in cache
+    T entry = data.get(id);
+    if (entry != null) {
+      statistics.recordHit();
+      recordHit(id);
+      return entry;
+    }
+    // No entry in cache found, search in underlying storage
+    long start = System.nanoTime();
+    entry = cachedStorage.loadData(id);
+    statistics.recordMiss(System.nanoTime() - start);
+    if (entry == null) {
+      return null;
+    }
+    // Data found, cache it and return
+    cacheData(entry);
+    return entry;
+  }
+
+  @Override
+  public boolean saveData(T data) {
+    if (data == null) {
+      return false;
+    }
+
+    cacheData(data);
+    return cachedStorage.saveData(data);
+  }
+
+  @Override
+  public boolean dataIsStorable(T data) {
+    return cachedStorage.dataIsStorable(data);
+  }
+
+  @Override
+  public boolean deleteData(T data) {
+    uncacheData(data);
+    return cachedStorage.deleteData(data);
+  }
+
+  /*
+   * Eviction policy, all methods below require the eviction lock
+   */
+
+  private void recordHit(long id) {
+    // Only drain if the buffer fills up and nobody else is already modifying the eviction order
+    if (readBuffer.offer(id) && evictionLock.tryLock()) {
+      try {
+        drainReadBuffer();
+      } finally {
+        evictionLock.unlock();
+      }
+    }
+  }
+
+  private void drainReadBuffer() {
+    readBuffer.drainTo(this::onHit);
+  }
+
+  private void onHit(long id) {
+    sketch.increment(id);
+    T entry = window.remove(id);
+    if (entry != null) {
+      window.put(id, entry);
+      return;
+    }
+    entry = protectedSpace.remove(id);
+    if (entry != null) {
+      protectedSpace.put(id, entry);
+      return;
+    }
+    entry = probation.remove(id);
+    if (entry != null) {
+      // Second access, promote to the protected space and demote the oldest protected entries if necessary
+      protectedSpace.put(id, entry);
+      protectedSize += entry.getByteSize();
+      Iterator<T> oldest = protectedSpace.values().iterator();
+      while (protectedSize > maxProtectedSize && oldest.hasNext()) {
+        T demoted = oldest.next();
+        oldest.remove();
+        protectedSize -= demoted.getByteSize();
+        probation.put(demoted.getId(), demoted);
+      }
+    }
+  }
+
+  private Deque<T> moveOverflowingWindowEntries() {
+    Deque<T> candidates = new ArrayDeque<>();
+    Iterator<T> oldest = window.values().iterator();
+    while (windowSize > maxWindowSize && oldest.hasNext()) {
+      T candidate = oldest.next();
+      oldest.remove();
+      windowSize -= candidate.getByteSize();
+      probation.put(candidate.getId(), candidate);
+      candidates.add(candidate);
+    }
+    return candidates;
+  }
+
+  private void evict(Deque<T> candidates) {
+    while (currentCacheSize.get() > maxCacheSize) {
+      T candidate = candidates.peek();
+      if (candidate != null && !probation.containsKey(candidate.getId())) {
+        // Candidate already left the probation space
+        candidates.poll();
+        continue;
+      }
+      T victim = findVictim(candidate);
+      if (candidate != null
+          && (victim == null || sketch.frequency(candidate.getId()) <= sketch.frequency(victim.getId()))) {
+        // The new entry is not accessed more often than the one it would replace, reject it
+        candidates.poll();
+        victim = candidate;
+        statistics.recordRejection();
+      } else if (victim != null) {
+        statistics.recordEviction();
+      }
+      if (victim == null) {
+        break;
+      }
+      remove(victim.getId());
+    }
+  }
+
+  private T findVictim(T candidate) {
+    for (LinkedHashMap<Long, T> space : Arrays.asList(probation, protectedSpace, window)) {
+      for (T entry : space.values()) {
+        if (entry != candidate) {
+          return entry;
+        }
+      }
+    }
+    return null;
+  }
+
+  private void remove(long id) {
+    T entry = data.remove(id);
+    if (entry == null) {
+      return;
+    }
+    if (window.remove(id) != null) {
+      windowSize -= entry.getByteSize();
+    } else if (protectedSpace.remove(id) != null) {
+      protectedSize -= entry.getByteSize();
+    } else {
+      probation.remove(id);
+    }
+    currentCacheSize.addAndGet(-entry.getByteSize());
+  }
+
+}
@@ -0,0 +1,62 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tools.descartes.teastore.image.cache.rules;
+
+import java.util.function.Predicate;
+
+import tools.descartes.teastore.entities.ImageSize;
+import tools.descartes.teastore.entities.ImageSizePreset;
+import tools.descartes.teastore.image.StoreImage;
+
+/**
+ * Caching rule only allowing images with less pixels than a full size product image to be cached. Keeps bursts of
+ * large images from evicting the small images most requests are for.
+ */
+public class CacheSmallImages implements Predicate<StoreImage> {
+
+  /**
+   * Standard number of pixels an image must stay below to be cached.
+   */
+  public static final long STD_MAX_PIXELS = pixels(ImageSizePreset.FULL.getSize());
+
+  private final long maxPixels;
+
+  /**
+   * Creates a caching rule allowing images with less pixels than a full size product image.
+   */
+  public CacheSmallImages() {
+    this(STD_MAX_PIXELS);
+  }
+
+  /**
+   * Creates a caching rule allowing images with less than the given number of pixels.
+   * @param maxPixels Number of pixels an image must stay below to be cached.
+   */
+  public CacheSmallImages(long maxPixels) {
+    this.maxPixels = maxPixels;
+  }
+
+  @Override
+  public boolean test(StoreImage t) {
+    if (t == null || t.getSize() == null) {
+      return false;
+    }
+    return pixels(t.getSize()) < maxPixels;
+  }
+
+  private static long pixels(ImageSize size) {
+    return (long) size.getWidth() * size.getHeight();
+  }
+
+}
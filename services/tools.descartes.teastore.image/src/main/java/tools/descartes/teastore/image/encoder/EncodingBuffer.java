@@ -0,0 +1,50 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tools.descartes.teastore.image.encoder;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Output stream collecting encoded image data in a buffer sized for the expected result. The data is handed out
+ * without copying unless much of the buffer remains unused.
+ */
+class EncodingBuffer extends ByteArrayOutputStream {
+
+  EncodingBuffer(int expectedSize) {
+    super(Math.max(expectedSize, 64));
+  }
+
+  /**
+   * Returns the internal buffer containing the written data in its first {@link #size()} bytes.
+   * @return Internal buffer.
+   */
+  byte[] buf() {
+    return buf;
+  }
+
+  /**
+   * Returns the written data. Cached images keep the whole buffer alive, so a buffer with more than a quarter unused
+   * is trimmed.
+   * @return Buffer containing the written data between position and limit.
+   */
+  ByteBuffer toByteBuffer() {
+    if (count < buf.length - buf.length / 4) {
+      return ByteBuffer.wrap(Arrays.copyOf(buf, count));
+    }
+    return ByteBuffer.wrap(buf, 0, count);
+  }
+
+}
@@ -0,0 +1,33 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tools.descartes.teastore.image.encoder;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Interface for encoders converting images to the PNG format the image provider stores and delivers.
+ */
+public interface IImageEncoder {
+
+  /**
+   * Encodes the given image as PNG. If the image is null, a {@link java.lang.NullPointerException} will be thrown.
+   * @param image Image to encode.
+   * @return Buffer containing the PNG encoded image between its position and limit.
+   * @throws IOException If the image cannot be encoded.
+   */
+  public ByteBuffer encode(BufferedImage image) throws IOException;
+
+}
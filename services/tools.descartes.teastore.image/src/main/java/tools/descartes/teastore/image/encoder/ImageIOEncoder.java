@@ -0,0 +1,107 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tools.descartes.teastore.image.encoder;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.zip.Deflater;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import tools.descartes.teastore.image.StoreImage;
+
+/**
+ * Encoder using the PNG writer of the Java image I/O API. The image is written to memory directly instead of going
+ * through the temporary file cache of {@link javax.imageio.ImageIO#write}.
+ */
+public class ImageIOEncoder implements IImageEncoder {
+
+  /**
+   * Expected size of an encoded image in bytes per pixel, used to size the output buffer.
+   */
+  static final double EXPECTED_BYTES_PER_PIXEL = 0.5;
+
+  private final int compressionLevel;
+  private final Logger log = LoggerFactory.getLogger(ImageIOEncoder.class);
+
+  /**
+   * Creates an encoder using the default compression level of the image writer.
+   */
+  public ImageIOEncoder() {
+    this(Deflater.DEFAULT_COMPRESSION);
+  }
+
+  /**
+   * Creates an encoder using the given deflate compression level. If the level is neither between 0 and 9 nor
+   * {@link java.util.zip.Deflater#DEFAULT_COMPRESSION}, an {@link java.lang.IllegalArgumentException} will be thrown.
+   * @param compressionLevel Deflate compression level from 0 (no compression) to 9 (best compression) or
+   *          {@link java.util.zip.Deflater#DEFAULT_COMPRESSION} for the default of the image writer.
+   */
+  public ImageIOEncoder(int compressionLevel) {
+    if (compressionLevel < Deflater.DEFAULT_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+      log.error("The supplied compression level is not between 0 and 9.");
+      throw new IllegalArgumentException("The supplied compression level is not between 0 and 9.");
+    }
+    this.compressionLevel = compressionLevel;
+  }
+
+  /**
+   * Returns the deflate compression level.
+   * @return Compression level or {@link java.util.zip.Deflater#DEFAULT_COMPRESSION}.
+   */
+  public int getCompressionLevel() {
+    return compressionLevel;
+  }
+
+  @Override
+  public ByteBuffer encode(BufferedImage image) throws IOException {
+    if (image == null) {
+      log.error("The supplied image is null.");
+      throw new NullPointerException("The supplied image is null.");
+    }
+
+    Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(StoreImage.STORE_IMAGE_FORMAT);
+    if (!writers.hasNext()) {
+      throw new IOException("No image writer for format " + StoreImage.STORE_IMAGE_FORMAT + " available.");
+    }
+    ImageWriter writer = writers.next();
+    ImageWriteParam param = writer.getDefaultWriteParam();
+    if (compressionLevel != Deflater.DEFAULT_COMPRESSION) {
+      // The writer uses a deflate level of (int) (9 * (1 - quality))
+      param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+      param.setCompressionQuality(Math.max(0.0f, 1.0f - (compressionLevel + 0.5f) / 9.0f));
+    }
+
+    EncodingBuffer buffer = new EncodingBuffer(
+        (int) (image.getWidth() * image.getHeight() * EXPECTED_BYTES_PER_PIXEL));
+    try (ImageOutputStream stream = new MemoryCacheImageOutputStream(buffer)) {
+      writer.setOutput(stream);
+      writer.write(null, new IIOImage(image, null, null), param);
+    } finally {
+      writer.dispose();
+    }
+    return buffer.toByteBuffer();
+  }
+
+}
@@ -13,18 +13,29 @@
  */
 package tools.descartes.teastore.image.rest;
 
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.util.HashMap;
 import java.util.stream.Collectors;
+import java.util.zip.CRC32C;
 
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.GET;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.CacheControl;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
 
 import tools.descartes.teastore.entities.ImageSize;
 import tools.descartes.teastore.image.ImageProvider;
+import tools.descartes.teastore.image.StoreImage;
 import tools.descartes.teastore.image.setup.SetupController;
 
 /**
@@ -36,6 +47,16 @@ import tools.descartes.teastore.image.setup.SetupController;
 @Consumes({ "application/json" })
 public class ImageProviderEndpoint {
 
+  /**
+   * Time in seconds clients and intermediate caches may reuse a binary image without revalidation.
+   */
+  public static final int IMAGE_MAX_AGE = 3600;
+
+  /**
+   * Media type of binary images.
+   */
+  public static final String IMAGE_MEDIA_TYPE = "image/" + StoreImage.STORE_IMAGE_FORMAT;
+
   /**
    * Queries the image provider for the given product IDs in the given size, provided as strings.
    * @param images Map of product IDs and the corresponding image size as string.
@@ -45,7 +66,7 @@ public class ImageProviderEndpoint {
   @Path("getProductImages")
   public Response getProductImages(HashMap<Long, String> images) {
     return Response.ok()
-        .entity(ImageProvider.IP.getProductImages(images.entrySet().parallelStream().collect(
+        .entity(ImageProvider.IP.getProductImages(images.entrySet().stream().collect(
             Collectors.toMap(e -> e.getKey(), e -> ImageSize.parseImageSize(e.getValue())))))
         .build();
   }
@@ -59,11 +80,131 @@ public class ImageProviderEndpoint {
   @Path("getWebImages")
   public Response getWebUIImages(HashMap<String, String> images) {
     return Response.ok()
-        .entity(ImageProvider.IP.getWebUIImages(images.entrySet().parallelStream().collect(
+        .entity(ImageProvider.IP.getWebUIImages(images.entrySet().stream().collect(
             Collectors.toMap(e -> e.getKey(), e -> ImageSize.parseImageSize(e.getValue())))))
         .build();
   }
 
+  /**
+   * Returns the binary image of the given product in the given size. Supports conditional requests using the ETag and
+   * Last-Modified headers.
+   * @param productID Product ID.
+   * @param size Image size as string.
+   * @param request Request to evaluate preconditions for.
+   * @return The PNG image, status code 304 if the client copy is still valid, 400 if the size is malformed or 404 if
+   *         no image is available.
+   */
+  @GET
+  @Path("{productId: [0-9]+}/{size}")
+  @Produces({ IMAGE_MEDIA_TYPE })
+  public Response getProductImage(@PathParam("productId") long productID,
+      @PathParam("size") String size, @Context Request request) {
+    ImageSize imgSize = parseImageSize(size);
+    if (imgSize == null) {
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    return buildImageResponse(ImageProvider.IP.getProductImage(productID, imgSize), request);
+  }
+
+  /**
+   * Returns the binary web interface image with the given name in the given size. Supports conditional requests using
+   * the ETag and Last-Modified headers.
+   * @param name Web interface image name.
+   * @param size Image size as string.
+   * @param request Request to evaluate preconditions for.
+   * @return The PNG image, status code 304 if the client copy is still valid, 400 if the size is malformed or 404 if
+   *         no image is available.
+   */
+  @GET
+  @Path("web/{name}/{size}")
+  @Produces({ IMAGE_MEDIA_TYPE })
+  public Response getWebUIImage(@PathParam("name") String name, @PathParam("size") String size,
+      @Context Request request) {
+    ImageSize imgSize = parseImageSize(size);
+    if (imgSize == null) {
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    return buildImageResponse(ImageProvider.IP.getWebUIImage(name, imgSize), request);
+  }
+
+  /**
+   * Returns the binary product image with the given ID in the given size without asking other image provider
+   * instances. Used by other instances to fetch the image variants owned by this instance.
+   * @param productID Product ID.
+   * @param size Image size as string.
+   * @param request Request to evaluate preconditions for.
+   * @return The PNG image, status code 400 if the size is malformed or 404 if no image is available.
+   */
+  @GET
+  @Path("tier/{productId: [0-9]+}/{size}")
+  @Produces({ IMAGE_MEDIA_TYPE })
+  public Response getOwnedProductImage(@PathParam("productId") long productID,
+      @PathParam("size") String size, @Context Request request) {
+    ImageSize imgSize = parseImageSize(size);
+    if (imgSize == null) {
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    return buildImageResponse(ImageProvider.IP.getLocalProductImage(productID, imgSize), request);
+  }
+
+  /**
+   * Returns the binary web interface image with the given name in the given size without asking other image provider
+   * instances. Used by other instances to fetch the image variants owned by this instance.
+   * @param name Web interface image name.
+   * @param size Image size as string.
+   * @param request Request to evaluate preconditions for.
+   * @return The PNG image, status code 400 if the size is malformed or 404 if no image is available.
+   */
+  @GET
+  @Path("tier/web/{name}/{size}")
+  @Produces({ IMAGE_MEDIA_TYPE })
+  public Response getOwnedWebUIImage(@PathParam("name") String name, @PathParam("size") String size,
+      @Context Request request) {
+    ImageSize imgSize = parseImageSize(size);
+    if (imgSize == null) {
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    return buildImageResponse(ImageProvider.IP.getLocalWebUIImage(name, imgSize), request);
+  }
+
+  private ImageSize parseImageSize(String size) {
+    try {
+      return ImageSize.parseImageSize(size);
+    } catch (IllegalArgumentException | NullPointerException malformed) {
+      return null;
+    }
+  }
+
+  private Response buildImageResponse(StoreImage img, Request request) {
+    if (img == null) {
+      return Response.status(Response.Status.NOT_FOUND).build();
+    }
+
+    ByteBuffer data = img.getByteBuffer();
+    // The image ID differs between image provider instances, the content does not
+    CRC32C checksum = new CRC32C();
+    checksum.update(data.duplicate());
+    EntityTag etag = new EntityTag(Long.toHexString(checksum.getValue()));
+    CacheControl cacheControl = new CacheControl();
+    cacheControl.setMaxAge(IMAGE_MAX_AGE);
+
+    Response.ResponseBuilder builder = request.evaluatePreconditions(
+        ImageProvider.IP.getLastModified(), etag);
+    if (builder == null) {
+      // Write the image buffer directly, it might be a slice of a memory mapped file
+      StreamingOutput entity = output -> {
+        WritableByteChannel channel = Channels.newChannel(output);
+        ByteBuffer content = data.duplicate();
+        while (content.hasRemaining()) {
+          channel.write(content);
+        }
+      };
+      builder = Response.ok(entity, IMAGE_MEDIA_TYPE).lastModified(ImageProvider.IP.getLastModified())
+          .header("Content-Length", data.remaining());
+    }
+    return builder.tag(etag).cacheControl(cacheControl).build();
+  }
+
   /**
    * Signals the image provider to regenerate all product images. This is usually necessary if the product database
    * changed.
@@ -101,6 +242,17 @@ public class ImageProviderEndpoint {
     return Response.ok().entity(SetupController.SETUP.getState()).build();
   }
 
+  /**
+   * Returns hit rates, eviction counts, latency percentiles and the most requested images of the image provider,
+   * its cache and its storage.
+   * @return Statistics by component.
+   */
+  @GET
+  @Path("stats")
+  public Response getStatistics() {
+    return Response.ok().entity(SetupController.SETUP.getStatistics()).build();
+  }
+
   /**
    * Sets the cache size to the given value.
    * @param cacheSize The new cache size in bytes. Cache size must be positive.
@@ -45,6 +45,14 @@ public enum CachingMode {
    * Most recently used cache.
    */
   MRU("MRU"), 
+  /**
+   * Concurrent window TinyLFU cache.
+   */
+  TINYLFU("TinyLFU"), 
+  /**
+   * Cache storing the image data outside of the Java heap in direct buffer slabs.
+   */
+  OFFHEAP("OffHeap"), 
   /**
    * Use no cache (Cache disabled).
    */
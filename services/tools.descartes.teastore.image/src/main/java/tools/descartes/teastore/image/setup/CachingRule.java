@@ -24,7 +24,16 @@ public enum CachingRule {
   /**
    * Cache all data without restrictions.
    */
-  ALL("All");
+  ALL("All"),
+  /**
+   * Cache only images with less pixels than a full size product image.
+   */
+  SMALL_IMG("SmallImages"),
+  /**
+   * Cache all data, but split the cache into byte quotas per image size and only let repeatedly requested images
+   * evict others.
+   */
+  SIZE_QUOTAS("SizeQuotas");
 
   /**
    * Standard caching rule implementation used by the image provider service.
@@ -14,6 +14,8 @@ import tools.descartes.teastore.entities.Category;
 import tools.descartes.teastore.entities.ImageSize;
 import tools.descartes.teastore.entities.ImageSizePreset;
 import tools.descartes.teastore.image.ImageDB;
+import tools.descartes.teastore.image.encoder.IImageEncoder;
+import tools.descartes.teastore.image.encoder.ImageIOEncoder;
 
 /**
  * Helper class creating image generation runnables for image provider setup.
@@ -29,6 +31,7 @@ public class CreatorFactory {
   private List<Category> categories;
   private ImageDB imgDB;
   private AtomicLong nrOfImagesGenerated;
+  private IImageEncoder encoder;
 
   private final Logger log = LoggerFactory.getLogger(CreatorFactory.class);
 
@@ -41,10 +44,11 @@ public class CreatorFactory {
    * @param products Product IDs for which images will be generated.
    * @param categoryImages Category images that are added after random shapes for the image have been generated.
    * @param nrOfImagesGenerated Current number of images that have been generated by all runnables.
+   * @param encoder PNG encoder for the generated images.
    */
   public CreatorFactory(int shapesPerImage, ImageDB imgDB, ImageSize imgSize, Path workingDir,
       Map<Category, List<Long>> products, Map<Category, BufferedImage> categoryImages,
-      AtomicLong nrOfImagesGenerated) {
+      AtomicLong nrOfImagesGenerated, IImageEncoder encoder) {
     if (imgDB == null) {
       log.error("Supplied image database is null.");
       throw new NullPointerException("Supplied image database is null.");
@@ -84,6 +88,12 @@ public class CreatorFactory {
         .collect(Collectors.toList());
     this.categories = products.entrySet().stream()
         .flatMap(e -> e.getValue().stream().map(x -> e.getKey())).collect(Collectors.toList());
+    if (encoder == null) {
+      log.info("Supplied encoder is null. Defaulting to the image I/O encoder.");
+      this.encoder = new ImageIOEncoder();
+    } else {
+      this.encoder = encoder;
+    }
     this.imgDB = imgDB;
     this.nrOfImagesGenerated = nrOfImagesGenerated;
   }
@@ -94,7 +104,8 @@ public class CreatorFactory {
    */
   public Runnable newRunnable() {
     return new CreatorRunner(imgDB, imgSize, products.remove(0), shapesPerImage,
-        categoryImages.getOrDefault(categories.remove(0), null), workingDir, nrOfImagesGenerated);
+        categoryImages.getOrDefault(categories.remove(0), null), workingDir, nrOfImagesGenerated,
+        encoder);
   }
 
 }
@@ -1,24 +1,23 @@
 package tools.descartes.teastore.image.setup;
 
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.ClosedByInterruptException;
-import java.nio.file.Files;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
-import java.util.Base64;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicLong;
 
-import javax.imageio.ImageIO;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import tools.descartes.teastore.entities.ImageSize;
 import tools.descartes.teastore.entities.ImageSizePreset;
 import tools.descartes.teastore.image.ImageDB;
-import tools.descartes.teastore.image.StoreImage;
+import tools.descartes.teastore.image.encoder.IImageEncoder;
+import tools.descartes.teastore.image.encoder.ImageIOEncoder;
 
 /**
  * Image generation runnable to generate a single image. 
@@ -34,6 +33,7 @@ public class CreatorRunner implements Runnable {
   private final int shapesPerImage;
   private final BufferedImage categoryImage;
   private final AtomicLong nrOfImagesGenerated;
+  private final IImageEncoder encoder;
 
   private final Logger log = LoggerFactory.getLogger(CreatorRunner.class);
 
@@ -46,9 +46,11 @@ public class CreatorRunner implements Runnable {
    * @param categoryImage Category images that are added after random shapes for the image have been generated.
    * @param workingDir Directory to store image.
    * @param nrOfImagesGenerated Current number of images that have been generated by all runnables.
+   * @param encoder PNG encoder for the generated image.
    */
   public CreatorRunner(ImageDB imgDB, ImageSize size, long productID, int shapesPerImage,
-      BufferedImage categoryImage, Path workingDir, AtomicLong nrOfImagesGenerated) {
+      BufferedImage categoryImage, Path workingDir, AtomicLong nrOfImagesGenerated,
+      IImageEncoder encoder) {
     this.imgDB = imgDB;
     this.productID = productID;
     this.shapesPerImage = shapesPerImage;
@@ -60,6 +62,11 @@ public class CreatorRunner implements Runnable {
     } else {
       this.size = ImageSizePreset.STD_IMAGE_SIZE;
     }
+    if (encoder != null) {
+      this.encoder = encoder;
+    } else {
+      this.encoder = new ImageIOEncoder();
+    }
   }
 
   @Override
@@ -67,20 +74,17 @@ public class CreatorRunner implements Runnable {
     long imgID = ImageIDFactory.ID.getNextImageID();
     Random rand = new Random(productID);
 
-    // All products must be added to the database
-    imgDB.setImageMapping(productID, imgID, size);
-
     // Resolve path and create a new image
     Path imgFile = workingDir.resolve(String.valueOf(imgID));
 
     BufferedImage img = ImageCreator.createImage(shapesPerImage, categoryImage, size, rand);
-    ByteArrayOutputStream stream = new ByteArrayOutputStream();
 
-    try {
-      ImageIO.write(img, StoreImage.STORE_IMAGE_FORMAT, stream);
-      Files.write(imgFile, Base64.getEncoder().encode(stream.toByteArray()),
-          StandardOpenOption.CREATE, StandardOpenOption.WRITE,
-          StandardOpenOption.TRUNCATE_EXISTING);
+    try (FileChannel channel = FileChannel.open(imgFile, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      ByteBuffer png = encoder.encode(img);
+      while (png.hasRemaining()) {
+        channel.write(png);
+      }
     } catch (IOException ioException) {
       if (!(ioException instanceof ClosedByInterruptException)) {
         log.warn("An IOException occured while writing image with ID " + String.valueOf(imgID)
@@ -91,6 +95,8 @@ public class CreatorRunner implements Runnable {
       }
     }
 
+    // All products must be added to the database, once the image file is complete it can be served
+    imgDB.setImageMapping(productID, imgID, size);
     nrOfImagesGenerated.incrementAndGet();
   }
 
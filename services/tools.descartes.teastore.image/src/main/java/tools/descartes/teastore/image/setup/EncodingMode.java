@@ -0,0 +1,62 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tools.descartes.teastore.image.setup;
+
+import java.util.Arrays;
+
+/**
+ * This enum contains the different PNG encoders and their string representation.
+ */
+public enum EncodingMode {
+
+  /**
+   * Encode images with the PNG writer of the Java image I/O API.
+   */
+  IMAGEIO("ImageIO"),
+  /**
+   * Encode images with the lightweight PNG encoder, trading a few percent of size for speed.
+   */
+  FAST("Fast");
+
+  /**
+   * Standard PNG encoder used by the image provider service.
+   */
+  public static final EncodingMode STD_ENCODING_MODE = IMAGEIO;
+
+  private final String strRepresentation;
+
+  private EncodingMode(String strRepresentation) {
+    this.strRepresentation = strRepresentation;
+  }
+
+  /**
+   * Returns the string representation of the used PNG encoder.
+   * @return String representation.
+   */
+  public String getStrRepresentation() {
+    return strRepresentation;
+  }
+
+  /**
+   * Convert string representation to the correct object. Will return the standard PNG encoder if the 
+   * string representation is unknown.
+   * @param strEncodingMode String representation of the PNG encoder.
+   * @return Enum value of the PNG encoder.
+   */
+  public static EncodingMode getEncodingModeFromString(String strEncodingMode) {
+    return Arrays.asList(EncodingMode.values()).stream()
+        .filter(mode -> mode.strRepresentation.equals(strEncodingMode)).findFirst()
+        .orElse(STD_ENCODING_MODE);
+  }
+}
@@ -0,0 +1,67 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tools.descartes.teastore.image.setup;
+
+import java.util.Arrays;
+
+/**
+ * This enum contains the different modes of pre-rendering product and web interface images in all preset sizes during
+ * setup and their string representation.
+ */
+public enum PrerenderMode {
+
+  /**
+   * Images are pre-rendered in the background. The setup is finished once the standard sized images are generated.
+   */
+  BACKGROUND("Background"), 
+  /**
+   * Images are pre-rendered and the setup is not finished before all images are pre-rendered.
+   */
+  BLOCKING("Blocking"), 
+  /**
+   * Images are not pre-rendered, scaled images are created on first request.
+   */
+  NONE("Disabled");
+
+  /**
+   * Standard pre-rendering mode used by the image provider service.
+   */
+  public static final PrerenderMode STD_PRERENDER_MODE = NONE;
+
+  private final String strRepresentation;
+
+  private PrerenderMode(String strRepresentation) {
+    this.strRepresentation = strRepresentation;
+  }
+
+  /**
+   * Returns the string representation of the pre-rendering mode.
+   * @return String representation.
+   */
+  public String getStrRepresentation() {
+    return strRepresentation;
+  }
+
+  /**
+   * Convert string representation to the correct object. Will return the standard pre-rendering mode if the string 
+   * representation is unknown.
+   * @param strPrerenderMode String representation of the pre-rendering mode.
+   * @return Enum value of the pre-rendering mode.
+   */
+  public static PrerenderMode getPrerenderModeFromString(String strPrerenderMode) {
+    return Arrays.asList(PrerenderMode.values()).stream()
+        .filter(mode -> mode.strRepresentation.equals(strPrerenderMode)).findFirst()
+        .orElse(STD_PRERENDER_MODE);
+  }
+}
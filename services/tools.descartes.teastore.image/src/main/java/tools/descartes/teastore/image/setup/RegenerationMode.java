@@ -0,0 +1,63 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tools.descartes.teastore.image.setup;
+
+import java.util.Arrays;
+
+/**
+ * This enum contains the different modes of regenerating images on request and their string representation.
+ */
+public enum RegenerationMode {
+
+  /**
+   * All images are deleted and generated again. The setup is not finished until all images are generated.
+   */
+  FULL("Full"),
+  /**
+   * Only images of products added since the last run are generated and images of removed products are deleted. All
+   * other images are served during the run.
+   */
+  INCREMENTAL("Incremental");
+
+  /**
+   * Standard regeneration mode used by the image provider service.
+   */
+  public static final RegenerationMode STD_REGENERATION_MODE = FULL;
+
+  private final String strRepresentation;
+
+  private RegenerationMode(String strRepresentation) {
+    this.strRepresentation = strRepresentation;
+  }
+
+  /**
+   * Returns the string representation of the used regeneration mode.
+   * @return String representation.
+   */
+  public String getStrRepresentation() {
+    return strRepresentation;
+  }
+
+  /**
+   * Convert string representation to the correct object. Will return the standard regeneration mode if the 
+   * string representation is unknown.
+   * @param strRegenerationMode String representation of the regeneration mode.
+   * @return Enum value of the regeneration mode.
+   */
+  public static RegenerationMode getRegenerationModeFromString(String strRegenerationMode) {
+    return Arrays.asList(RegenerationMode.values()).stream()
+        .filter(mode -> mode.strRepresentation.equals(strRegenerationMode)).findFirst()
+        .orElse(STD_REGENERATION_MODE);
+  }
+}
@@ -19,24 +19,40 @@ import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URL;
 import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.zip.Deflater;
 
 import javax.imageio.ImageIO;
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
 import jakarta.ws.rs.core.GenericType;
 import jakarta.ws.rs.core.Response;
 
@@ -55,6 +71,8 @@ import tools.descartes.teastore.entities.ImageSize;
 import tools.descartes.teastore.entities.ImageSizePreset;
 import tools.descartes.teastore.entities.Product;
 import tools.descartes.teastore.image.ImageDB;
+import tools.descartes.teastore.image.ImageDBIndex;
+import tools.descartes.teastore.image.ImageDBKey;
 import tools.descartes.teastore.image.ImageProvider;
 import tools.descartes.teastore.image.StoreImage;
 import tools.descartes.teastore.image.cache.FirstInFirstOut;
@@ -63,12 +81,23 @@ import tools.descartes.teastore.image.cache.LastInFirstOut;
 import tools.descartes.teastore.image.cache.LeastFrequentlyUsed;
 import tools.descartes.teastore.image.cache.LeastRecentlyUsed;
 import tools.descartes.teastore.image.cache.MostRecentlyUsed;
+import tools.descartes.teastore.image.cache.OffHeapCache;
 import tools.descartes.teastore.image.cache.RandomReplacement;
+import tools.descartes.teastore.image.cache.SizeQuotaCache;
+import tools.descartes.teastore.image.cache.TinyLFU;
 import tools.descartes.teastore.image.cache.rules.CacheAll;
+import tools.descartes.teastore.image.cache.rules.CacheSmallImages;
+import tools.descartes.teastore.image.encoder.FastPNGEncoder;
+import tools.descartes.teastore.image.encoder.IImageEncoder;
+import tools.descartes.teastore.image.encoder.ImageIOEncoder;
+import tools.descartes.teastore.image.stats.CacheStatistics;
+import tools.descartes.teastore.image.stats.ProviderStatistics;
 import tools.descartes.teastore.image.storage.DriveStorage;
 import tools.descartes.teastore.image.storage.IDataStorage;
+import tools.descartes.teastore.image.storage.MappedPackStorage;
 import tools.descartes.teastore.image.storage.rules.StoreAll;
 import tools.descartes.teastore.image.storage.rules.StoreLargeImages;
+import tools.descartes.teastore.image.tier.ReplicaTier;
 
 /**
  * Image provider setup class. Connects to the persistence service to collect all available products and generates
@@ -116,10 +145,11 @@ public enum SetupController {
     public static final long CREATION_THREAD_POOL_WAIT = 500;
 
     /**
-     * Wait time in ms (per image to generate) before an image provider service is registered if there is another
-     * image provider service registered.
+     * Sizes product images are pre-rendered in. These are the sizes the web interface requests product images in.
      */
-    public static final long CREATION_THREAD_POOL_WAIT_PER_IMG_NR = 70;
+    public static final List<ImageSize> PRERENDER_PRODUCT_SIZES = Arrays.asList(
+        ImageSizePreset.PREVIEW.getSize(), ImageSizePreset.RECOMMENDATION.getSize(),
+        ImageSizePreset.FULL.getSize());
   }
 
   private StorageRule storageRule = StorageRule.STD_STORAGE_RULE;
@@ -128,23 +158,124 @@ public enum SetupController {
   private long cacheSize = IDataCache.STD_MAX_CACHE_SIZE;
   private StorageMode storageMode = StorageMode.STD_STORAGE_MODE;
   private CachingMode cachingMode = CachingMode.STD_CACHING_MODE;
+  private PrerenderMode prerenderMode = PrerenderMode.STD_PRERENDER_MODE;
+  private EncodingMode encodingMode = EncodingMode.STD_ENCODING_MODE;
+  private RegenerationMode regenerationMode = RegenerationMode.STD_REGENERATION_MODE;
+  private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+  private IImageEncoder encoder = new ImageIOEncoder();
   private long nrOfImagesToGenerate = 0;
   private long nrOfImagesExisting = 0;
   private long nrOfImagesForCategory = 0;
   private AtomicLong nrOfImagesGenerated = new AtomicLong();
+  private long nrOfImagesToPrerender = 0;
+  private AtomicLong nrOfImagesPrerendered = new AtomicLong();
+  private List<Long> productIDs = new ArrayList<>();
+  private List<String> webImageNames = new ArrayList<>();
+  private volatile CompletableFuture<Void> imgGeneration = CompletableFuture.completedFuture(null);
+  private volatile CompletableFuture<Void> imgPrerendering = CompletableFuture.completedFuture(null);
   private HashMap<String, BufferedImage> categoryImages = new HashMap<>();
   private ImageDB imgDB = new ImageDB();
+  private boolean persistentIndex = false;
+  private boolean sharedTier = false;
+  private long batchTimeout = ImageProvider.STD_BATCH_TIMEOUT;
+  private ImageDBIndex imgDBIndex = null;
   private IDataStorage<StoreImage> storage = null;
   private IDataCache<StoreImage> cache = null;
   private ScheduledThreadPoolExecutor imgCreationPool = new ScheduledThreadPoolExecutor(
       SetupControllerConstants.CREATION_THREAD_POOL_SIZE);
   private Logger log = LoggerFactory.getLogger(SetupController.class);
   private AtomicBoolean isFinished = new AtomicBoolean();
+  private AtomicBoolean isUpdating = new AtomicBoolean();
 
   private SetupController() {
 
   }
 
+  /**
+   * Reads the image provider settings from the environment. Settings that are not specified keep their current value.
+   */
+  public void loadConfiguration() {
+    try {
+      cachingMode = CachingMode.getCachingModeFromString(
+          (String) new InitialContext().lookup("java:comp/env/imageCachingMode"));
+    } catch (NamingException e) {
+      log.info("Image caching mode not set. Using {}.", cachingMode.getStrRepresentation());
+    }
+    try {
+      cachingRule = CachingRule.getCachingRuleFromString(
+          (String) new InitialContext().lookup("java:comp/env/imageCachingRule"));
+    } catch (NamingException e) {
+      log.info("Image caching rule not set. Using {}.", cachingRule.getStrRepresentation());
+    }
+    try {
+      storageMode = StorageMode.getStorageModeFromString(
+          (String) new InitialContext().lookup("java:comp/env/imageStorageMode"));
+    } catch (NamingException e) {
+      log.info("Image storage mode not set. Using {}.", storageMode.getStrRepresentation());
+    }
+    try {
+      prerenderMode = PrerenderMode.getPrerenderModeFromString(
+          (String) new InitialContext().lookup("java:comp/env/imagePrerenderMode"));
+    } catch (NamingException e) {
+      log.info("Image pre-rendering mode not set. Using {}.", prerenderMode.getStrRepresentation());
+    }
+    try {
+      persistentIndex = Boolean.parseBoolean(
+          String.valueOf(new InitialContext().lookup("java:comp/env/imagePersistentIndex")));
+    } catch (NamingException e) {
+      log.info("Persistent image index not set. Using {}.", persistentIndex);
+    }
+    try {
+      sharedTier = Boolean.parseBoolean(
+          String.valueOf(new InitialContext().lookup("java:comp/env/imageSharedTier")));
+    } catch (NamingException e) {
+      log.info("Shared image tier not set. Using {}.", sharedTier);
+    }
+    try {
+      batchTimeout = Long.parseLong(
+          String.valueOf(new InitialContext().lookup("java:comp/env/imageBatchTimeout")));
+    } catch (NamingException | NumberFormatException e) {
+      log.info("Image batch timeout not set. Using {}ms.", batchTimeout);
+    }
+    try {
+      encodingMode = EncodingMode.getEncodingModeFromString(
+          (String) new InitialContext().lookup("java:comp/env/imageEncoder"));
+    } catch (NamingException e) {
+      log.info("Image encoder not set. Using {}.", encodingMode.getStrRepresentation());
+    }
+    try {
+      int level = Integer.parseInt(
+          String.valueOf(new InitialContext().lookup("java:comp/env/imageCompressionLevel")));
+      if (level >= Deflater.DEFAULT_COMPRESSION && level <= Deflater.BEST_COMPRESSION) {
+        compressionLevel = level;
+      } else {
+        log.info("Image compression level {} is not between -1 and 9. Using encoder default.", level);
+      }
+    } catch (NamingException | NumberFormatException e) {
+      log.info("Image compression level not set. Using encoder default.");
+    }
+    try {
+      regenerationMode = RegenerationMode.getRegenerationModeFromString(
+          (String) new InitialContext().lookup("java:comp/env/imageRegenerationMode"));
+    } catch (NamingException e) {
+      log.info("Image regeneration mode not set. Using {}.", regenerationMode.getStrRepresentation());
+    }
+    setupEncoder();
+  }
+
+  private void setupEncoder() {
+    switch (encodingMode) {
+    case FAST:
+      encoder = new FastPNGEncoder(compressionLevel);
+      break;
+    case IMAGEIO:
+    default:
+      encoder = new ImageIOEncoder(compressionLevel);
+      break;
+    }
+    log.info("Encoding images with {} encoder.", encodingMode.getStrRepresentation());
+  }
+
   private void waitForPersistence() {
     // We have to wait for the database that all entries are created before
     // generating images (which queries persistence). Yes we want to wait forever in
@@ -282,10 +413,13 @@ public enum SetupController {
    */
   public void generateImages() {
     List<Category> categories = fetchCategories();
+    generateImages(fetchProducts(categories), matchCategoriesToImage(categories));
+  }
+
+  private HashMap<Category, List<Long>> fetchProducts(List<Category> categories) {
     HashMap<Category, List<Long>> products = new HashMap<>();
     categories.forEach(cat -> fetchProductsForCategory(cat, products));
-
-    generateImages(products, matchCategoriesToImage(categories));
+    return products;
   }
 
   /**
@@ -295,14 +429,17 @@ public enum SetupController {
    */
   public void generateImages(Map<Category, List<Long>> products,
       Map<Category, BufferedImage> categoryImages) {
-    nrOfImagesToGenerate = products.entrySet().stream().flatMap(e -> e.getValue().stream()).count();
-
-    CreatorFactory factory = new CreatorFactory(ImageCreator.STD_NR_OF_SHAPES_PER_IMAGE, imgDB,
-        ImageSizePreset.STD_IMAGE_SIZE, workingDir, products, categoryImages, nrOfImagesGenerated);
+    productIDs = products.entrySet().stream().flatMap(e -> e.getValue().stream())
+        .collect(Collectors.toList());
+    nrOfImagesToGenerate = productIDs.size();
+    ImageDBIndex index = null;
+    if (persistentIndex) {
+      index = createIndex(imgDB, fingerprint(products, categoryImages));
+    }
 
-    // Schedule all image creation tasks
-    for (long i = 0; i < nrOfImagesToGenerate; i++) {
-      imgCreationPool.execute(factory.newRunnable());
+    imgGeneration = createImages(products, categoryImages, nrOfImagesToGenerate);
+    if (index != null) {
+      imgGeneration.thenRun(index::flush);
     }
 
     log.info("Image creator thread started. {} {} sized images to generate using {} threads.",
@@ -310,10 +447,184 @@ public enum SetupController {
         SetupControllerConstants.CREATION_THREAD_POOL_SIZE);
   }
 
+  // Schedules the creation of the images of all given products on the image creation thread pool
+  private CompletableFuture<Void> createImages(Map<Category, List<Long>> products,
+      Map<Category, BufferedImage> categoryImages, long nrOfImages) {
+    CreatorFactory factory = new CreatorFactory(ImageCreator.STD_NR_OF_SHAPES_PER_IMAGE, imgDB,
+        ImageSizePreset.STD_IMAGE_SIZE, workingDir, products, categoryImages, nrOfImagesGenerated,
+        encoder);
+
+    List<CompletableFuture<Void>> creators = new ArrayList<>();
+    for (long i = 0; i < nrOfImages; i++) {
+      creators.add(CompletableFuture.runAsync(factory.newRunnable(), imgCreationPool));
+    }
+    return CompletableFuture.allOf(creators.toArray(new CompletableFuture<?>[0]));
+  }
+
+  /**
+   * Updates the images to the product catalog of the persistence service without interrupting the image provider.
+   * Images are generated for products without images. Once they are available, the images of all sizes of products
+   * that no longer exist are removed from the image database and deleted from the working directory. Changed
+   * category images do not affect the images of existing products.
+   */
+  public void updateImages() {
+    // Products still being generated must not be detected as added
+    waitForImageGeneration();
+
+    List<Category> categories = fetchCategories();
+    HashMap<Category, List<Long>> products = fetchProducts(categories);
+    Map<Category, BufferedImage> categoryImages = matchCategoriesToImage(categories);
+    List<Long> ids = products.entrySet().stream().flatMap(e -> e.getValue().stream())
+        .collect(Collectors.toList());
+    Set<Long> existing = imgDB.getProductIDs();
+    Set<Long> fetched = new HashSet<>(ids);
+
+    Map<Category, List<Long>> added = new HashMap<>();
+    products.forEach((category, productsOfCategory) -> {
+      List<Long> missing = productsOfCategory.stream().filter(id -> !existing.contains(id))
+          .collect(Collectors.toList());
+      if (!missing.isEmpty()) {
+        added.put(category, missing);
+      }
+    });
+    List<Long> removed = existing.stream().filter(id -> !fetched.contains(id))
+        .collect(Collectors.toList());
+    log.info("Updating images. {} products added, {} products removed.",
+        added.values().stream().mapToInt(List::size).sum(), removed.size());
+
+    ImageDBIndex index = null;
+    if (persistentIndex) {
+      index = createIndex(imgDB, fingerprint(products, categoryImages));
+    }
+
+    // Generate new images first, so products moved to new IDs are never without an image
+    nrOfImagesGenerated.set(0);
+    nrOfImagesToGenerate = added.values().stream().mapToInt(List::size).sum();
+    imgGeneration = createImages(added, categoryImages, nrOfImagesToGenerate);
+    productIDs = ids;
+    waitForImageGeneration();
+
+    for (long productID : removed) {
+      imgDB.getImageIDs(productID).forEach(imgDB::removeImageMapping);
+    }
+    deleteUnusedImages(imgDB.getImageIDs());
+    if (index != null) {
+      index.flush();
+    }
+
+    prerenderImages();
+    waitForPrerendering();
+    log.info("Images updated. {} images generated.", nrOfImagesGenerated.get());
+  }
+
+  /*
+   * Fingerprint of everything the generated images depend on. Images are only restored from the persistent index if
+   * the fingerprint did not change.
+   */
+  private long fingerprint(Map<Category, List<Long>> products,
+      Map<Category, BufferedImage> categoryImages) {
+    Set<Long> categoriesWithImage = categoryImages.keySet().stream().map(Category::getId)
+        .collect(Collectors.toSet());
+    StringBuilder sb = new StringBuilder();
+    sb.append(ImageCreator.STD_NR_OF_SHAPES_PER_IMAGE).append(';')
+        .append(ImageSizePreset.STD_IMAGE_SIZE.toString()).append(';');
+    products.entrySet().stream().sorted(Comparator.comparingLong(e -> e.getKey().getId()))
+        .forEach(e -> {
+          sb.append(e.getKey().getId()).append(',').append(e.getKey().getName()).append(',')
+              .append(categoriesWithImage.contains(e.getKey().getId())).append(':');
+          e.getValue().forEach(id -> sb.append(id).append(','));
+          sb.append(';');
+        });
+
+    try {
+      byte[] hash = MessageDigest.getInstance("SHA-256")
+          .digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+      return ByteBuffer.wrap(hash).getLong();
+    } catch (NoSuchAlgorithmException e) {
+      log.error("SHA-256 is not available.");
+      throw new IllegalStateException("SHA-256 is not available.", e);
+    }
+  }
+
+  private Path getIndexFile() {
+    return workingDir.resolve(ImageDBIndex.STD_INDEX_FILE_NAME);
+  }
+
+  // Replaces the current index with a new one containing the given database and attaches it to the database
+  private ImageDBIndex createIndex(ImageDB db, long fingerprint) {
+    if (imgDBIndex != null) {
+      imgDBIndex.close();
+    }
+    ImageDBIndex index = new ImageDBIndex(getIndexFile());
+    if (index.create(db, fingerprint)) {
+      db.setIndex(index);
+      imgDBIndex = index;
+    } else {
+      imgDBIndex = null;
+    }
+    return imgDBIndex;
+  }
+
+  /**
+   * Restores the image database from the persistent index in the working directory instead of generating all
+   * images. Mappings to images that are not on disk as a single file are dropped, segment files of the pack storage
+   * and images on disk not referenced by the index are deleted.
+   * @param products Map of categories and the corresponding products.
+   * @param categoryImages Category image representing a specific category.
+   * @return True if the image database was restored, false if the index is missing, outdated or incomplete and images
+   *         have to be generated.
+   */
+  public boolean restoreImages(Map<Category, List<Long>> products,
+      Map<Category, BufferedImage> categoryImages) {
+    long fingerprint = fingerprint(products, categoryImages);
+    ImageDB db = new ImageDB();
+    if (!new ImageDBIndex(getIndexFile()).load(db, fingerprint)) {
+      return false;
+    }
+
+    // Segment files of the pack storage are not read back, so images only packed into them are dropped below
+    MappedPackStorage.deleteSegments(workingDir);
+    DriveStorage.deleteTemporaryFiles(workingDir);
+    // Scaled images might not have been stored on disk, depending on the storage rule
+    for (long imageID : db.getImageIDs()) {
+      if (!workingDir.resolve(String.valueOf(imageID)).toFile().isFile()) {
+        db.removeImageMapping(imageID);
+      }
+    }
+    List<Long> ids = products.entrySet().stream().flatMap(e -> e.getValue().stream())
+        .collect(Collectors.toList());
+    for (long productID : ids) {
+      if (!db.hasImageID(productID, ImageSizePreset.STD_IMAGE_SIZE)) {
+        log.info("Image database index is missing product {}. Regenerating images.", productID);
+        return false;
+      }
+    }
+
+    Set<Long> imageIDs = db.getImageIDs();
+    ImageIDFactory.ID.startAtID(imageIDs.stream().mapToLong(Long::longValue).max().orElse(0) + 1);
+    deleteUnusedImages(imageIDs);
+    imgDB = db;
+    createIndex(db, fingerprint);
+
+    productIDs = ids;
+    webImageNames = new ArrayList<>(db.getWebUINames());
+    nrOfImagesToGenerate = 0;
+    nrOfImagesGenerated.set(0);
+    nrOfImagesExisting = webImageNames.size();
+    imgGeneration = CompletableFuture.completedFuture(null);
+    log.info("Restored {} images of {} products from image database index.", imageIDs.size(), ids.size());
+    return true;
+  }
+
   /**
    * Search for category images in the resource folder.
    */
   public void detectCategoryImages() {
+    loadCategoryImages().join();
+  }
+
+  // Decodes all category images in parallel on the image creation thread pool
+  private CompletableFuture<Void> loadCategoryImages() {
     log.info("Trying to find images that indicate categories in generated images.");
 
     String resPath = "categoryimg" + File.separator + "black-tea.png";
@@ -324,30 +635,45 @@ public enum SetupController {
           dir.toPath().toAbsolutePath().toString());
     } else {
       log.info("Resource path {} not found.", resPath);
-      return;
+      return CompletableFuture.completedFuture(null);
     }
 
     nrOfImagesForCategory = 0;
+    File[] fileList = null;
     if (dir.exists() && dir.isDirectory()) {
-      File[] fileList = dir.listFiles();
-      if (fileList == null) {
-    	  return;
+      fileList = dir.listFiles();
+    }
+    if (fileList == null) {
+      return CompletableFuture.completedFuture(null);
+    }
+
+    Map<String, CompletableFuture<BufferedImage>> readers = new HashMap<>();
+    for (File file : fileList) {
+      if (file.isFile() && file.getName().endsWith(StoreImage.STORE_IMAGE_FORMAT)) {
+        readers.put(file.getName().substring(0, file.getName().length() - 4),
+            CompletableFuture.supplyAsync(() -> readImage(file), imgCreationPool));
       }
-      for (File file : fileList) {
-        if (file.isFile() && file.getName().endsWith(StoreImage.STORE_IMAGE_FORMAT)) {
-          try {
-            categoryImages.put(file.getName().substring(0, file.getName().length() - 4),
-                ImageIO.read(file));
-            nrOfImagesForCategory++;
-          } catch (IOException ioException) {
-            log.warn(
-                "An IOException occured while reading image file " + file.getAbsolutePath() + ".",
-                ioException);
-          }
+    }
+    return CompletableFuture.allOf(readers.values().toArray(new CompletableFuture<?>[0])).thenRun(() -> {
+      readers.forEach((name, reader) -> {
+        BufferedImage img = reader.join();
+        if (img != null) {
+          categoryImages.put(name, img);
+          nrOfImagesForCategory++;
         }
-      }
+      });
+      log.info("Found {} images for categories.", nrOfImagesForCategory);
+    });
+  }
+
+  private BufferedImage readImage(File file) {
+    try {
+      return ImageIO.read(file);
+    } catch (IOException ioException) {
+      log.warn("An IOException occured while reading image file " + file.getAbsolutePath() + ".",
+          ioException);
+      return null;
     }
-    log.info("Found {} images for categories.", nrOfImagesForCategory);
   }
 
   /**
@@ -400,7 +726,8 @@ public enum SetupController {
   }
 
   /**
-   * Search for web interface images and add them to the given image database.
+   * Search for web interface images and add them to the given image database. The images are read, re-encoded and
+   * written to the working directory in parallel on the image creation thread pool.
    * @param db Image database found web interface images will be added to.
    */
   public void detectExistingImages(ImageDB db) {
@@ -421,57 +748,60 @@ public enum SetupController {
     }
 
     File currentDir = dir.toFile();
-
+    webImageNames = new ArrayList<>();
+    File[] fileList = null;
     if (currentDir.exists() && currentDir.isDirectory()) {
-      File[] fileList = currentDir.listFiles();
-      if (fileList == null) {
-    	  return;
-      }
-      for (File file : fileList) {
-        if (file.isFile() && file.getName().endsWith(StoreImage.STORE_IMAGE_FORMAT)) {
-          long imageID = ImageIDFactory.ID.getNextImageID();
-
-          BufferedImage buffImg = null;
-          // Copy files to correct file with the image id number
-          try {
-            buffImg = ImageIO.read(file);
-
-          } catch (IOException ioException) {
-            log.warn("An IOException occured while reading the file " + file.getAbsolutePath()
-                + " from disk.", ioException.getMessage());
-          } finally {
-            if (buffImg == null) {
-              log.warn("The file \"" + file.toPath().toAbsolutePath() + "\" could not be read.");
-              continue;
-            }
-          }
+      fileList = currentDir.listFiles();
+    }
+    if (fileList == null) {
+      return;
+    }
 
-          db.setImageMapping(
-              file.getName().substring(0,
-                  file.getName().length() - StoreImage.STORE_IMAGE_FORMAT.length() - 1),
-              imageID, new ImageSize(buffImg.getWidth(), buffImg.getHeight()));
-          StoreImage img = new StoreImage(imageID, buffImg, ImageSizePreset.FULL.getSize());
-
-          try {
-            Files.write(workingDir.resolve(String.valueOf(imageID)), img.getByteArray(),
-                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
-                StandardOpenOption.TRUNCATE_EXISTING);
-          } catch (IOException ioException) {
-            log.warn("An IOException occured while writing the image with ID "
-                + String.valueOf(imageID) + " to the file "
-                + workingDir.resolve(String.valueOf(imageID)).toAbsolutePath() + ".",
-                ioException.getMessage());
-          }
-          // Increment to have correct number of images for the limited drive storage
-          nrOfImagesExisting++;
-        }
+    List<CompletableFuture<String>> importers = new ArrayList<>();
+    for (File file : fileList) {
+      if (file.isFile() && file.getName().endsWith(StoreImage.STORE_IMAGE_FORMAT)) {
+        // IDs are assigned in file order, independent of the order the images are imported in
+        long imageID = ImageIDFactory.ID.getNextImageID();
+        importers.add(CompletableFuture.supplyAsync(() -> importExistingImage(db, file, imageID),
+            imgCreationPool));
       }
     }
+    List<String> names = importers.stream().map(CompletableFuture::join).filter(Objects::nonNull)
+        .collect(Collectors.toList());
+    webImageNames = names;
+    // Increment to have correct number of images for the limited drive storage
+    nrOfImagesExisting += names.size();
 
     log.info("Scanned path {} for existing images. {} images found.",
         dir.toAbsolutePath().toString(), nrOfImagesExisting);
   }
 
+  // Copies the image to the file with the image ID as name and returns the name of the image or null if it failed
+  private String importExistingImage(ImageDB db, File file, long imageID) {
+    BufferedImage buffImg = readImage(file);
+    if (buffImg == null) {
+      log.warn("The file \"" + file.toPath().toAbsolutePath() + "\" could not be read.");
+      return null;
+    }
+
+    String name = file.getName().substring(0,
+        file.getName().length() - StoreImage.STORE_IMAGE_FORMAT.length() - 1);
+    db.setImageMapping(name, imageID, new ImageSize(buffImg.getWidth(), buffImg.getHeight()));
+    StoreImage img = new StoreImage(imageID, buffImg, ImageSizePreset.FULL.getSize(), encoder);
+
+    try {
+      Files.write(workingDir.resolve(String.valueOf(imageID)), img.getByteArray(),
+          StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+          StandardOpenOption.TRUNCATE_EXISTING);
+    } catch (IOException ioException) {
+      log.warn("An IOException occured while writing the image with ID "
+          + String.valueOf(imageID) + " to the file "
+          + workingDir.resolve(String.valueOf(imageID)).toAbsolutePath() + ".",
+          ioException.getMessage());
+    }
+    return name;
+  }
+
   /**
    * Sets the cache size of the specific implementation.
    * @param cacheSize Positive cache size in bytes.
@@ -493,14 +823,21 @@ public enum SetupController {
    * Delete all images from the current working directory.
    */
   public void deleteImages() {
-    deleteUnusedImages(new ArrayList<>());
+    deleteUnusedImages(new HashSet<>());
+    MappedPackStorage.deleteSegments(workingDir);
+    DriveStorage.deleteTemporaryFiles(workingDir);
+    if (imgDBIndex != null) {
+      imgDBIndex.close();
+      imgDBIndex = null;
+    }
+    new ImageDBIndex(getIndexFile()).delete();
   }
 
   /**
    * Delete all images from the current working directory, except the images with the IDs given.
-   * @param imagesToKeep List of images to keep.
+   * @param imagesToKeep Collection of images to keep.
    */
-  public void deleteUnusedImages(List<Long> imagesToKeep) {
+  public void deleteUnusedImages(Collection<Long> imagesToKeep) {
     File currentDir = workingDir.toFile();
     int nrOfImagesDeleted = 0;
 
@@ -510,7 +847,7 @@ public enum SetupController {
         return;
       }
       for (File file : fileList) {
-        if (file.isFile() && !imagesToKeep.contains(Long.parseLong(file.getName()))) {
+        if (file.isFile() && isImageFile(file) && !imagesToKeep.contains(Long.parseLong(file.getName()))) {
           boolean isDeleted = file.delete();
           if (isDeleted) {
             nrOfImagesDeleted++;
@@ -523,6 +860,10 @@ public enum SetupController {
         workingDir.toAbsolutePath().toString(), nrOfImagesDeleted);
   }
 
+  private boolean isImageFile(File file) {
+    return !file.getName().isEmpty() && file.getName().chars().allMatch(Character::isDigit);
+  }
+
   /**
    * Deletes the current working directory.
    */
@@ -556,56 +897,73 @@ public enum SetupController {
       break;
     }
 
-    // We only support Drive Storage at this moment
-    storage = new DriveStorage(workingDir, imgDB, storagePredicate);
-    /*
     switch (storageMode) {
-    case DRIVE:
-      storage = new DriveStorage(workingDir, imgDB, storagePredicate);
+    case MMAP_PACK:
+      storage = new MappedPackStorage(workingDir, imgDB, storagePredicate);
       break;
+    case DRIVE:
     default:
       storage = new DriveStorage(workingDir, imgDB, storagePredicate);
       break;
     }
-    */
 
     Predicate<StoreImage> cachePredicate = null;
     switch (cachingRule) {
-    case ALL:
-      cachePredicate = new CacheAll<StoreImage>();
+    case SMALL_IMG:
+      cachePredicate = new CacheSmallImages();
       break;
+    case ALL:
+    case SIZE_QUOTAS:
     default:
       cachePredicate = new CacheAll<StoreImage>();
       break;
     }
 
-    cache = null;
+    if (cachingRule == CachingRule.SIZE_QUOTAS && cachingMode != CachingMode.NONE) {
+      // Each image size gets a partition using the configured cache implementation
+      cache = new SizeQuotaCache(storage, imgDB, cacheSize, cachePredicate,
+          size -> createCache(null, size, new CacheAll<StoreImage>()));
+    } else {
+      cache = createCache(storage, cacheSize, cachePredicate);
+    }
+
+    log.info("Storage setup done.");
+  }
+
+  private IDataCache<StoreImage> createCache(IDataStorage<StoreImage> cachedStorage, long maxSize,
+      Predicate<StoreImage> predicate) {
+    IDataCache<StoreImage> created = null;
     switch (cachingMode) {
     case FIFO:
-      cache = new FirstInFirstOut<StoreImage>(storage, cacheSize, cachePredicate);
+      created = new FirstInFirstOut<StoreImage>(cachedStorage, maxSize, predicate);
       break;
     case LIFO:
-      cache = new LastInFirstOut<StoreImage>(storage, cacheSize, cachePredicate);
+      created = new LastInFirstOut<StoreImage>(cachedStorage, maxSize, predicate);
       break;
     case RR:
-      cache = new RandomReplacement<StoreImage>(storage, cacheSize, cachePredicate);
+      created = new RandomReplacement<StoreImage>(cachedStorage, maxSize, predicate);
       break;
     case LFU:
-      cache = new LeastFrequentlyUsed<StoreImage>(storage, cacheSize, cachePredicate);
+      created = new LeastFrequentlyUsed<StoreImage>(cachedStorage, maxSize, predicate);
       break;
     case LRU:
-      cache = new LeastRecentlyUsed<StoreImage>(storage, cacheSize, cachePredicate);
+      created = new LeastRecentlyUsed<StoreImage>(cachedStorage, maxSize, predicate);
       break;
     case MRU:
-      cache = new MostRecentlyUsed<StoreImage>(storage, cacheSize, cachePredicate);
+      created = new MostRecentlyUsed<StoreImage>(cachedStorage, maxSize, predicate);
+      break;
+    case TINYLFU:
+      created = new TinyLFU<StoreImage>(cachedStorage, maxSize, predicate);
+      break;
+    case OFFHEAP:
+      created = new OffHeapCache(cachedStorage, maxSize, predicate);
       break;
     case NONE:
       break;
     default:
       break;
     }
-
-    log.info("Storage setup done.");
+    return created;
   }
 
   /**
@@ -614,15 +972,97 @@ public enum SetupController {
    */
   public void configureImageProvider() {
     ImageProvider.IP.setImageDB(imgDB);
+    ImageProvider.IP.setEncoder(encoder);
+    ImageProvider.IP.setSharedTier(sharedTier ? new ReplicaTier() : null);
     if (cache == null) {
     	ImageProvider.IP.setStorage(storage);
     } else {
     	ImageProvider.IP.setStorage(cache);
     }
+    if (batchTimeout > 0) {
+      ImageProvider.IP.setBatchTimeout(batchTimeout);
+    }
 
     log.info("Storage and image database handed over to image provider");
   }
 
+  /**
+   * Pre-renders all product images in the sizes requested by the web interface and all web interface images in all
+   * preset sizes. Pre-rendering starts as soon as all standard sized product images are generated and runs in
+   * parallel on the image creation thread pool. The image provider must be configured before.
+   */
+  public void prerenderImages() {
+    nrOfImagesPrerendered.set(0);
+    if (prerenderMode == PrerenderMode.NONE) {
+      nrOfImagesToPrerender = 0;
+      imgPrerendering = CompletableFuture.completedFuture(null);
+      return;
+    }
+
+    ImageDB db = imgDB;
+    ScheduledThreadPoolExecutor pool = imgCreationPool;
+    List<Long> products = new ArrayList<>(productIDs);
+    List<String> names = new ArrayList<>(webImageNames);
+    List<ImageSize> webImageSizes = Arrays.stream(ImageSizePreset.values()).map(ImageSizePreset::getSize)
+        .collect(Collectors.toList());
+    nrOfImagesToPrerender = products.size() * SetupControllerConstants.PRERENDER_PRODUCT_SIZES.size()
+        + names.size() * webImageSizes.size();
+
+    imgPrerendering = imgGeneration.thenComposeAsync(generated -> {
+      log.info("Pre-rendering {} images using {} threads.", nrOfImagesToPrerender,
+          SetupControllerConstants.CREATION_THREAD_POOL_SIZE);
+      List<CompletableFuture<Void>> renderers = new ArrayList<>();
+      for (Long product : products) {
+        renderers.add(CompletableFuture.runAsync(() -> prerenderImage(db, new ImageDBKey(product),
+            SetupControllerConstants.PRERENDER_PRODUCT_SIZES), pool));
+      }
+      for (String name : names) {
+        renderers.add(CompletableFuture.runAsync(() -> prerenderImage(db, new ImageDBKey(name),
+            webImageSizes), pool));
+      }
+      return CompletableFuture.allOf(renderers.toArray(new CompletableFuture<?>[0]));
+    }, pool).whenComplete((rendered, exception) -> {
+      if (exception == null) {
+        log.info("Pre-rendering finished. {} images pre-rendered.", nrOfImagesPrerendered.get());
+      } else {
+        log.warn("Pre-rendering stopped after {} images.", nrOfImagesPrerendered.get(), exception);
+      }
+    });
+  }
+
+  private void prerenderImage(ImageDB db, ImageDBKey key, List<ImageSize> sizes) {
+    for (ImageSize size : sizes) {
+      // Stop if the setup has been started again in the meantime
+      if (db != imgDB) {
+        return;
+      }
+      if (!db.hasImageID(key, size)) {
+        if (key.isProductKey()) {
+          ImageProvider.IP.getProductImage(key.getProductID(), size);
+        } else {
+          ImageProvider.IP.getWebUIImage(key.getWebUIName(), size);
+        }
+      }
+      nrOfImagesPrerendered.incrementAndGet();
+    }
+  }
+
+  private void waitForImageGeneration() {
+    try {
+      imgGeneration.join();
+    } catch (CompletionException | CancellationException e) {
+      log.warn("Image generation did not complete.", e);
+    }
+  }
+
+  private void waitForPrerendering() {
+    try {
+      imgPrerendering.join();
+    } catch (CompletionException | CancellationException e) {
+      log.warn("Pre-rendering did not complete.", e);
+    }
+  }
+
   /**
    * Returns the current working directory.
    * @return Current working directory.
@@ -639,7 +1079,14 @@ public enum SetupController {
     if (storage == null) {
       return false;
     }
-    if (imgCreationPool.getQueue().size() != 0) {
+    // All images of unchanged products remain available while updating
+    if (isUpdating.get()) {
+      return true;
+    }
+    if (!imgGeneration.isDone()) {
+      return false;
+    }
+    if (prerenderMode == PrerenderMode.BLOCKING && !imgPrerendering.isDone()) {
       return false;
     }
     return isFinished.get();
@@ -664,34 +1111,72 @@ public enum SetupController {
         .append(System.lineSeparator());
     sb.append("Caching Rule: ").append(cachingRule.getStrRepresentation())
         .append(System.lineSeparator());
+    sb.append("Pre-Rendering Mode: ").append(prerenderMode.getStrRepresentation())
+        .append(System.lineSeparator());
+    sb.append("Encoder: ").append(encodingMode.getStrRepresentation())
+        .append(System.lineSeparator());
+    sb.append("Regeneration Mode: ").append(regenerationMode.getStrRepresentation())
+        .append(System.lineSeparator());
+    sb.append("Shared Tier: ").append(sharedTier ? "Enabled" : "Disabled").append(System.lineSeparator());
     String poolState = "Running";
-    if (imgCreationPool.getQueue().size() == 0) {
+    if (imgGeneration.isDone()) {
     	poolState = "Finished";
     }
     sb.append("Creator Thread: ").append(poolState)
         .append(System.lineSeparator());
     sb.append("Images Created: ").append(String.valueOf(nrOfImagesGenerated.get())).append(" / ")
         .append(String.valueOf(nrOfImagesToGenerate)).append(System.lineSeparator());
+    sb.append("Images Pre-Rendered: ").append(String.valueOf(nrOfImagesPrerendered.get()))
+        .append(" / ").append(String.valueOf(nrOfImagesToPrerender)).append(System.lineSeparator());
     sb.append("Pre-Existing Images Found: ").append(String.valueOf(nrOfImagesExisting))
         .append(System.lineSeparator());
     sb.append("Category Images Found: ").append(String.valueOf(nrOfImagesForCategory))
         .append(System.lineSeparator());
+    if (cache != null) {
+      CacheStatistics cacheStats = cache.getStatistics();
+      sb.append("Cache Hit Rate: ").append(String.format("%.2f%%", cacheStats.getHitRate() * 100))
+          .append(" (").append(cacheStats.getHits()).append(" Hits / ").append(cacheStats.getMisses())
+          .append(" Misses)").append(System.lineSeparator());
+      sb.append("Cache Evictions: ").append(cacheStats.getEvictions()).append(System.lineSeparator());
+    }
+    if (storage instanceof DriveStorage) {
+      sb.append("Storage Load Latency (p99): ")
+          .append(((DriveStorage) storage).getStatistics().getLoadLatency().getPercentileMicros(99))
+          .append("us").append(System.lineSeparator());
+    }
+    ProviderStatistics providerStats = ImageProvider.IP.getStatistics();
+    sb.append("Request Latency (p99): ").append(providerStats.getRequestLatency().getPercentileMicros(99))
+        .append("us").append(System.lineSeparator());
+    sb.append("Scaling Latency (p99): ").append(providerStats.getScaleLatency().getPercentileMicros(99))
+        .append("us").append(System.lineSeparator());
 
     return sb.toString();
   }
 
-  private void waitAndStopImageCreation(boolean terminate, long waitTime) {
+  /**
+   * Returns the statistics of the image provider, the cache and the storage, if they are in use.
+   * @return Statistics by component.
+   */
+  public Map<String, Object> getStatistics() {
+    Map<String, Object> statistics = new LinkedHashMap<>();
+    statistics.put("provider", ImageProvider.IP.getStatistics().toMap());
+    if (cache != null) {
+      statistics.put("cache", cache.getStatistics().toMap());
+    }
+    if (storage instanceof DriveStorage) {
+      statistics.put("storage", ((DriveStorage) storage).getStatistics().toMap());
+    }
+    return statistics;
+  }
+
+  private void stopImageCreation(long waitTime) {
     // Stop image creation to have sort of a steady state to work on
     // Shutdown now will finish all running tasks and not schedule new threads
-    // Shutdown does allow the thread pool to finish all available tasks but no new
-    // ones
-    if (terminate) {
-      imgCreationPool.shutdownNow();
-      log.info("Send termination signal to image creation thread pool.");
-    } else {
-      imgCreationPool.shutdown();
-      log.info("Send shutdown signal to image creation thread pool.");
-    }
+    imgCreationPool.shutdownNow();
+    log.info("Send termination signal to image creation thread pool.");
+    // Dropped tasks never complete, so anyone waiting for them has to be released
+    imgGeneration.cancel(false);
+    imgPrerendering.cancel(false);
     try {
       if (imgCreationPool.awaitTermination(waitTime, TimeUnit.MILLISECONDS)) {
         log.info("Image creation stopped.");
@@ -717,9 +1202,17 @@ public enum SetupController {
    */
 
   /**
-   * Deletes all images and the current working directory.
+   * Deletes all images and the current working directory. If the persistent index is enabled, the images and the
+   * index are kept for the next startup instead.
    */
   public void teardown() {
+    if (persistentIndex) {
+      if (imgDBIndex != null) {
+        imgDBIndex.close();
+      }
+      log.info("Keeping images and index in working directory {}.", workingDir.toAbsolutePath());
+      return;
+    }
     deleteImages();
     deleteWorkingDir();
   }
@@ -728,27 +1221,40 @@ public enum SetupController {
    * Deletes all images and the current working directory and starts the setup by generating product images and
    * adding web interface images to the image database. The final cache / storage and image database is then handed
    * over to the image provider instance. If this image provider service is the not the first image provider and other
-   * image provider services are registered, the registration is delayed until all images are generated.
+   * image provider services are registered, the registration is delayed until all images are generated. If the
+   * persistent index is enabled and the product catalog did not change, the images of the last run are reused instead.
    */
   public void startup() {
     // Delete all images in case the image provider was not shutdown gracefully last
     // time, leaving images on disk
     isFinished.set(false);
-    deleteImages();
-    deleteWorkingDir();
+    loadConfiguration();
+    if (!persistentIndex) {
+      deleteImages();
+      deleteWorkingDir();
+    }
     createWorkingDir();
-    detectExistingImages();
-    detectCategoryImages();
-    generateImages();
+    // Category images are decoded while the product catalog is fetched
+    CompletableFuture<Void> categoryImageLoading = loadCategoryImages();
+    List<Category> categories = fetchCategories();
+    HashMap<Category, List<Long>> products = fetchProducts(categories);
+    categoryImageLoading.join();
+    Map<Category, BufferedImage> matchedCategoryImages = matchCategoriesToImage(categories);
+    if (!persistentIndex || !restoreImages(products, matchedCategoryImages)) {
+      deleteImages();
+      detectExistingImages();
+      generateImages(products, matchedCategoryImages);
+    }
     setupStorage();
     configureImageProvider();
-    // Check if this is the first image provider. If not, wait for termination of
-    // the image creation before registering
+    // Check if this is the first image provider. If not, wait for the image creation to complete before registering
     if (!isFirstImageProvider()) {
-      waitAndStopImageCreation(false,
-          ((nrOfImagesToGenerate - nrOfImagesGenerated.get())
-              / SetupControllerConstants.CREATION_THREAD_POOL_SIZE)
-              * SetupControllerConstants.CREATION_THREAD_POOL_WAIT_PER_IMG_NR);
+      waitForImageGeneration();
+    }
+    prerenderImages();
+    // Other image providers are serving already, delay registration until all images are pre-rendered
+    if (prerenderMode == PrerenderMode.BLOCKING && !isFirstImageProvider()) {
+      waitForPrerendering();
     }
     isFinished.set(true);
   }
@@ -757,14 +1263,31 @@ public enum SetupController {
    * Deletes all images and the current working directory and starts the setup by generating product images and
    * adding web interface images to the image database. The final cache / storage and image database is then handed
    * over to the image provider instance. The reconfiguration and image generation takes place in a background thread.
-   * This service remains registered and might receive request from other services.
+   * This service remains registered and might receive request from other services. In incremental regeneration mode,
+   * only the images of added and removed products are updated instead (see {@link #updateImages()}).
    */
   public void reconfiguration() {
+    if (regenerationMode == RegenerationMode.INCREMENTAL && storage != null) {
+      if (!isUpdating.compareAndSet(false, true)) {
+        log.info("Images are already being updated.");
+        return;
+      }
+      Thread update = new Thread(() -> {
+        try {
+          updateImages();
+        } finally {
+          isUpdating.set(false);
+        }
+      });
+      update.start();
+      return;
+    }
+
     Thread x = new Thread() {
 
       @Override
       public void run() {
-        waitAndStopImageCreation(true, SetupControllerConstants.CREATION_THREAD_POOL_WAIT);
+        stopImageCreation(SetupControllerConstants.CREATION_THREAD_POOL_WAIT);
         imgDB = new ImageDB();
 
         isFinished.set(false);
@@ -774,6 +1297,7 @@ public enum SetupController {
         generateImages();
         setupStorage();
         configureImageProvider();
+        prerenderImages();
         isFinished.set(true);
       }
     };
@@ -24,7 +24,11 @@ public enum StorageMode {
   /**
    * Store all images on the pyhsical drive.
    */
-  DRIVE("Drive");
+  DRIVE("Drive"),
+  /**
+   * Pack all images into memory mapped segment files on the physical drive.
+   */
+  MMAP_PACK("MmapPack");
 
   /**
    * Standard storage implementation used by the image provider service.
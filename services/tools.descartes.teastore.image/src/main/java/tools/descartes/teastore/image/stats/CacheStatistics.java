@@ -0,0 +1,156 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tools.descartes.teastore.image.stats;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics of a cache. Counts hits, misses, evicted entries and entries rejected by the admission policy and
+ * measures how long loading missed entries from the underlying storage takes.
+ */
+public class CacheStatistics {
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private final LongAdder rejections = new LongAdder();
+  private final LatencyHistogram loadLatency = new LatencyHistogram();
+  private final List<CacheStatistics> partitions = new ArrayList<>();
+
+  /**
+   * Creates empty cache statistics.
+   */
+  public CacheStatistics() {
+
+  }
+
+  /**
+   * Creates empty statistics for a cache split into partitions. Entries evicted or rejected by the partitions are
+   * included.
+   * @param partitions Statistics of the partitions.
+   */
+  public CacheStatistics(Collection<CacheStatistics> partitions) {
+    this.partitions.addAll(partitions);
+  }
+
+  /**
+   * Records a request answered from the cache.
+   */
+  public void recordHit() {
+    hits.increment();
+  }
+
+  /**
+   * Records a request that had to be answered by the underlying storage.
+   * @param nanos Time spent loading the entry from the underlying storage in nanoseconds.
+   */
+  public void recordMiss(long nanos) {
+    misses.increment();
+    loadLatency.record(nanos);
+  }
+
+  /**
+   * Records an entry evicted to make space for another one.
+   */
+  public void recordEviction() {
+    evictions.increment();
+  }
+
+  /**
+   * Records an entry the admission policy did not let into the cache.
+   */
+  public void recordRejection() {
+    rejections.increment();
+  }
+
+  /**
+   * Returns the number of requests answered from the cache.
+   * @return Number of hits.
+   */
+  public long getHits() {
+    return hits.sum();
+  }
+
+  /**
+   * Returns the number of requests that had to be answered by the underlying storage.
+   * @return Number of misses.
+   */
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  /**
+   * Returns the share of requests answered from the cache.
+   * @return Hit rate between 0 and 1, 0 if there were no requests.
+   */
+  public double getHitRate() {
+    long hitCount = getHits();
+    long requests = hitCount + getMisses();
+    return requests == 0 ? 0 : (double) hitCount / requests;
+  }
+
+  /**
+   * Returns the number of evicted entries, including the entries evicted by partitions.
+   * @return Number of evictions.
+   */
+  public long getEvictions() {
+    long count = evictions.sum();
+    for (CacheStatistics partition : partitions) {
+      count += partition.getEvictions();
+    }
+    return count;
+  }
+
+  /**
+   * Returns the number of entries the admission policy did not let into the cache, including the entries rejected
+   * by partitions.
+   * @return Number of rejections.
+   */
+  public long getRejections() {
+    long count = rejections.sum();
+    for (CacheStatistics partition : partitions) {
+      count += partition.getRejections();
+    }
+    return count;
+  }
+
+  /**
+   * Returns the latencies of loading missed entries from the underlying storage.
+   * @return Load latency histogram.
+   */
+  public LatencyHistogram getLoadLatency() {
+    return loadLatency;
+  }
+
+  /**
+   * Returns all counters for reporting.
+   * @return Summary of the cache statistics.
+   */
+  public Map<String, Object> toMap() {
+    Map<String, Object> summary = new LinkedHashMap<>();
+    summary.put("hits", getHits());
+    summary.put("misses", getMisses());
+    summary.put("hitRate", getHitRate());
+    summary.put("evictions", getEvictions());
+    summary.put("rejections", getRejections());
+    summary.put("loadLatency", loadLatency.toMap());
+    return summary;
+  }
+
+}
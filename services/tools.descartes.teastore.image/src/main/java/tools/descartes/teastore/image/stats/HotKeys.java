@@ -0,0 +1,144 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tools.descartes.teastore.image.stats;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Approximates the most frequently requested keys with the space saving algorithm. Only a random sample of the
+ * requests is counted, so the lock is rarely taken. Counts are scaled by the sampling rate and are estimates.
+ */
+public class HotKeys {
+
+  /**
+   * Standard number of tracked keys.
+   */
+  public static final int STD_CAPACITY = 64;
+
+  /**
+   * Standard sampling rate, one in this many requests is counted.
+   */
+  public static final int STD_SAMPLE_RATE = 8;
+
+  private final int capacity;
+  private final int sampleRate;
+  // Guarded by this
+  private final Map<Long, long[]> counts = new HashMap<>();
+  private final Logger log = LoggerFactory.getLogger(HotKeys.class);
+
+  /**
+   * Creates a tracker for the standard number of keys.
+   */
+  public HotKeys() {
+    this(STD_CAPACITY);
+  }
+
+  /**
+   * Creates a tracker for the given number of keys. If the capacity is not positive, an
+   * {@link java.lang.IllegalArgumentException} will be thrown.
+   * @param capacity Number of tracked keys.
+   */
+  public HotKeys(int capacity) {
+    this(capacity, STD_SAMPLE_RATE);
+  }
+
+  /**
+   * Creates a tracker for the given number of keys, counting one in the given number of requests. A sampling rate of
+   * one counts every request. If the capacity or the sampling rate is not positive, an
+   * {@link java.lang.IllegalArgumentException} will be thrown.
+   * @param capacity Number of tracked keys.
+   * @param sampleRate One in this many requests is counted.
+   */
+  public HotKeys(int capacity, int sampleRate) {
+    if (capacity <= 0) {
+      log.error("The supplied capacity must be positive.");
+      throw new IllegalArgumentException("The supplied capacity must be positive.");
+    }
+    if (sampleRate <= 0) {
+      log.error("The supplied sampling rate must be positive.");
+      throw new IllegalArgumentException("The supplied sampling rate must be positive.");
+    }
+    this.capacity = capacity;
+    this.sampleRate = sampleRate;
+  }
+
+  /**
+   * Records a request for the given key.
+   * @param key Requested key.
+   */
+  public void record(long key) {
+    if (sampleRate == 1 || ThreadLocalRandom.current().nextInt(sampleRate) == 0) {
+      count(key);
+    }
+  }
+
+  private synchronized void count(long key) {
+    long[] count = counts.get(key);
+    if (count != null) {
+      count[0]++;
+      return;
+    }
+    if (counts.size() < capacity) {
+      counts.put(key, new long[] {1});
+      return;
+    }
+    // Replace the least counted key, the new key inherits its count as it might have been missed
+    Map.Entry<Long, long[]> least = null;
+    for (Map.Entry<Long, long[]> entry : counts.entrySet()) {
+      if (least == null || entry.getValue()[0] < least.getValue()[0]) {
+        least = entry;
+      }
+    }
+    long[] inherited = least.getValue();
+    counts.remove(least.getKey());
+    inherited[0]++;
+    counts.put(key, inherited);
+  }
+
+  /**
+   * Returns the hottest keys with their estimated number of requests, ordered by the number of requests.
+   * @param limit Maximum number of keys returned.
+   * @return Keys and estimated number of requests.
+   */
+  public Map<Long, Long> getHottest(int limit) {
+    List<Map.Entry<Long, Long>> hottest = new ArrayList<>();
+    synchronized (this) {
+      for (Map.Entry<Long, long[]> entry : counts.entrySet()) {
+        hottest.add(Map.entry(entry.getKey(), entry.getValue()[0] * sampleRate));
+      }
+    }
+    hottest.sort(Map.Entry.<Long, Long>comparingByValue().reversed());
+    Map<Long, Long> result = new LinkedHashMap<>();
+    for (Map.Entry<Long, Long> entry : hottest.subList(0, Math.min(limit, hottest.size()))) {
+      result.put(entry.getKey(), entry.getValue());
+    }
+    return result;
+  }
+
+  /**
+   * Discards all counts.
+   */
+  public synchronized void clear() {
+    counts.clear();
+  }
+
+}
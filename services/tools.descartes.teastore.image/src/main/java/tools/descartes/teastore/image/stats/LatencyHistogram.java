@@ -0,0 +1,116 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tools.descartes.teastore.image.stats;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with power of two microsecond buckets. Recording only increments two striped counters,
+ * so it can be used on hot paths. Percentiles are reported as the upper bound of the bucket they fall into.
+ */
+public class LatencyHistogram {
+
+  // Bucket i counts latencies below 2^i microseconds, the last one all larger latencies
+  private static final int BUCKETS = 32;
+
+  private final LongAdder[] buckets = new LongAdder[BUCKETS];
+  private final LongAdder totalNanos = new LongAdder();
+
+  /**
+   * Creates an empty histogram.
+   */
+  public LatencyHistogram() {
+    for (int i = 0; i < BUCKETS; i++) {
+      buckets[i] = new LongAdder();
+    }
+  }
+
+  /**
+   * Records a measured latency.
+   * @param nanos Latency in nanoseconds.
+   */
+  public void record(long nanos) {
+    long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+    buckets[Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros))].increment();
+    totalNanos.add(Math.max(0, nanos));
+  }
+
+  /**
+   * Returns the number of recorded latencies.
+   * @return Number of recorded latencies.
+   */
+  public long getCount() {
+    long count = 0;
+    for (LongAdder bucket : buckets) {
+      count += bucket.sum();
+    }
+    return count;
+  }
+
+  /**
+   * Returns the mean of all recorded latencies.
+   * @return Mean latency in microseconds or 0 if nothing was recorded.
+   */
+  public double getMeanMicros() {
+    long count = getCount();
+    if (count == 0) {
+      return 0;
+    }
+    return totalNanos.sum() / 1000.0 / count;
+  }
+
+  /**
+   * Returns an upper bound of the given percentile of all recorded latencies.
+   * @param percentile Percentile between 0 and 100.
+   * @return Upper bound of the percentile in microseconds or 0 if nothing was recorded.
+   */
+  public long getPercentileMicros(double percentile) {
+    long[] counts = new long[BUCKETS];
+    long count = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      counts[i] = buckets[i].sum();
+      count += counts[i];
+    }
+    if (count == 0) {
+      return 0;
+    }
+    long rank = (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * count);
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts[i];
+      if (seen >= Math.max(1, rank)) {
+        return 1L << i;
+      }
+    }
+    return 1L << (BUCKETS - 1);
+  }
+
+  /**
+   * Returns the number of recorded latencies, their mean and percentiles for reporting.
+   * @return Summary of the recorded latencies.
+   */
+  public Map<String, Object> toMap() {
+    Map<String, Object> summary = new LinkedHashMap<>();
+    summary.put("count", getCount());
+    summary.put("meanMicros", getMeanMicros());
+    summary.put("p50Micros", getPercentileMicros(50));
+    summary.put("p90Micros", getPercentileMicros(90));
+    summary.put("p99Micros", getPercentileMicros(99));
+    return summary;
+  }
+
+}
@@ -0,0 +1,138 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tools.descartes.teastore.image.stats;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics of the image provider. Counts requested and scaled images as well as images missing from batches due
+ * to the batch timeout, measures request and scaling latencies and tracks the most requested images.
+ */
+public class ProviderStatistics {
+
+  /**
+   * Number of hottest images reported.
+   */
+  public static final int REPORTED_HOT_KEYS = 10;
+
+  private final LongAdder batchTimeouts = new LongAdder();
+  private final LongAdder sharedTierFetches = new LongAdder();
+  private final LongAdder sharedTierFailures = new LongAdder();
+  private final LatencyHistogram requestLatency = new LatencyHistogram();
+  private final LatencyHistogram scaleLatency = new LatencyHistogram();
+  private final HotKeys hotImages = new HotKeys();
+
+  /**
+   * Records a requested image.
+   * @param imageID ID of the image returned.
+   * @param nanos Time spent retrieving the image in nanoseconds.
+   */
+  public void recordRequest(long imageID, long nanos) {
+    requestLatency.record(nanos);
+    hotImages.record(imageID);
+  }
+
+  /**
+   * Records an image scaled to a new size.
+   * @param nanos Time spent scaling, encoding and storing the image in nanoseconds.
+   */
+  public void recordScaling(long nanos) {
+    scaleLatency.record(nanos);
+  }
+
+  /**
+   * Records images of a batch that were not resolved within the batch timeout.
+   * @param images Number of images not resolved.
+   */
+  public void recordBatchTimeouts(int images) {
+    batchTimeouts.add(images);
+  }
+
+  /**
+   * Records an image variant fetched from the image provider instance owning it.
+   * @param success True if the owner provided the image, otherwise false.
+   */
+  public void recordSharedTierFetch(boolean success) {
+    sharedTierFetches.increment();
+    if (!success) {
+      sharedTierFailures.increment();
+    }
+  }
+
+  /**
+   * Returns the number of image variants fetched from the instances owning them.
+   * @return Number of fetches.
+   */
+  public long getSharedTierFetches() {
+    return sharedTierFetches.sum();
+  }
+
+  /**
+   * Returns the number of image variants the owning instances could not provide.
+   * @return Number of failed fetches.
+   */
+  public long getSharedTierFailures() {
+    return sharedTierFailures.sum();
+  }
+
+  /**
+   * Returns the number of images that were not resolved within the batch timeout.
+   * @return Number of images missing from batches.
+   */
+  public long getBatchTimeouts() {
+    return batchTimeouts.sum();
+  }
+
+  /**
+   * Returns the latencies of retrieving requested images.
+   * @return Request latency histogram.
+   */
+  public LatencyHistogram getRequestLatency() {
+    return requestLatency;
+  }
+
+  /**
+   * Returns the latencies of scaling images to new sizes.
+   * @return Scaling latency histogram.
+   */
+  public LatencyHistogram getScaleLatency() {
+    return scaleLatency;
+  }
+
+  /**
+   * Returns the most requested images.
+   * @return Tracker of the most requested image IDs.
+   */
+  public HotKeys getHotImages() {
+    return hotImages;
+  }
+
+  /**
+   * Returns all counters for reporting.
+   * @return Summary of the image provider statistics.
+   */
+  public Map<String, Object> toMap() {
+    Map<String, Object> summary = new LinkedHashMap<>();
+    summary.put("requestLatency", requestLatency.toMap());
+    summary.put("scaleLatency", scaleLatency.toMap());
+    summary.put("batchTimeouts", getBatchTimeouts());
+    summary.put("sharedTierFetches", getSharedTierFetches());
+    summary.put("sharedTierFailures", getSharedTierFailures());
+    summary.put("hotImages", hotImages.getHottest(REPORTED_HOT_KEYS));
+    return summary;
+  }
+
+}
@@ -0,0 +1,89 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tools.descartes.teastore.image.stats;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics of a storage on the physical disc. Measures how long loading and saving images takes and counts
+ * requested images that were not found.
+ */
+public class StorageStatistics {
+
+  private final LongAdder notFound = new LongAdder();
+  private final LatencyHistogram loadLatency = new LatencyHistogram();
+  private final LatencyHistogram saveLatency = new LatencyHistogram();
+
+  /**
+   * Records a loaded image.
+   * @param nanos Time spent loading the image in nanoseconds.
+   */
+  public void recordLoad(long nanos) {
+    loadLatency.record(nanos);
+  }
+
+  /**
+   * Records a requested image that was not found.
+   */
+  public void recordNotFound() {
+    notFound.increment();
+  }
+
+  /**
+   * Records a saved image.
+   * @param nanos Time spent saving the image in nanoseconds.
+   */
+  public void recordSave(long nanos) {
+    saveLatency.record(nanos);
+  }
+
+  /**
+   * Returns the number of requested images that were not found.
+   * @return Number of images not found.
+   */
+  public long getNotFound() {
+    return notFound.sum();
+  }
+
+  /**
+   * Returns the latencies of loading images.
+   * @return Load latency histogram.
+   */
+  public LatencyHistogram getLoadLatency() {
+    return loadLatency;
+  }
+
+  /**
+   * Returns the latencies of saving images.
+   * @return Save latency histogram.
+   */
+  public LatencyHistogram getSaveLatency() {
+    return saveLatency;
+  }
+
+  /**
+   * Returns all counters for reporting.
+   * @return Summary of the storage statistics.
+   */
+  public Map<String, Object> toMap() {
+    Map<String, Object> summary = new LinkedHashMap<>();
+    summary.put("notFound", getNotFound());
+    summary.put("loadLatency", loadLatency.toMap());
+    summary.put("saveLatency", saveLatency.toMap());
+    return summary;
+  }
+
+}
@@ -13,11 +13,16 @@
  */
 package tools.descartes.teastore.image.storage;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
-import java.util.HashMap;
+import java.util.Base64;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Predicate;
@@ -28,6 +33,7 @@ import org.slf4j.LoggerFactory;
 import tools.descartes.teastore.entities.ImageSize;
 import tools.descartes.teastore.image.ImageDB;
 import tools.descartes.teastore.image.StoreImage;
+import tools.descartes.teastore.image.stats.StorageStatistics;
 
 /**
  * Storage implementation that saves data in a directory on the physical disc.
@@ -35,13 +41,21 @@ import tools.descartes.teastore.image.StoreImage;
  */
 public class DriveStorage implements IDataStorage<StoreImage> {
 
+  /**
+   * File name extension of the temporary files images are written to before they are renamed.
+   */
+  public static final String TEMPORARY_FILE_EXTENSION = ".tmp";
+
   private Path workingDir;
   private ImageDB imgDB;
   private Predicate<StoreImage> storageRule;
+  private final StorageStatistics statistics = new StorageStatistics();
   private Logger log = LoggerFactory.getLogger(DriveStorage.class);
 
-  private final HashMap<Long, ReadWriteLock> lockedIDs = new HashMap<>();
-  private final ReadWriteLock mapLock = new ReentrantReadWriteLock();
+  // Images are guarded by a fixed number of lock stripes instead of one lock per image ID, so the number of locks does
+  // not grow with the number of images and looking up a lock does not need a global lock
+  private static final int LOCK_STRIPE_BITS = 6;
+  private final ReadWriteLock[] lockStripes = new ReadWriteLock[1 << LOCK_STRIPE_BITS];
 
   /**
    * Standard constructor creating a storage in the working directory on the physical disc.
@@ -67,6 +81,9 @@ public class DriveStorage implements IDataStorage<StoreImage> {
     this.workingDir = workingDir.normalize();
     this.imgDB = imgDB;
     this.storageRule = storageRule;
+    for (int i = 0; i < lockStripes.length; i++) {
+      lockStripes[i] = new ReentrantReadWriteLock();
+    }
   }
 
   @Override
@@ -74,20 +91,54 @@ public class DriveStorage implements IDataStorage<StoreImage> {
     return workingDir.resolve(Long.toString(id)).toFile().exists();
   }
 
+  /**
+   * Deletes all temporary files in the given directory. Temporary files are left behind if the image provider stops
+   * while writing an image. An image written while its temporary file is deleted is not saved.
+   * @param dir Directory containing temporary files.
+   */
+  public static void deleteTemporaryFiles(Path dir) {
+    File[] tmpFiles = dir.toFile().listFiles(
+        (file, name) -> name.startsWith(".") && name.endsWith(TEMPORARY_FILE_EXTENSION));
+    if (tmpFiles == null) {
+      return;
+    }
+    for (File file : tmpFiles) {
+      if (!file.delete()) {
+        LoggerFactory.getLogger(DriveStorage.class).warn("Temporary file {} could not be deleted.",
+            file.getAbsolutePath());
+      }
+    }
+  }
+
   private ReadWriteLock getIDLock(long id) {
-    ReadWriteLock l = null;
-    mapLock.writeLock().lock();
+    // Image IDs are sequential, spread them over the stripes using the upper bits of a multiplicative hash
+    return lockStripes[(int) ((id * 0x9E3779B97F4A7C15L) >>> (Long.SIZE - LOCK_STRIPE_BITS))];
+  }
+
+  /**
+   * Writes the data to a temporary file that is renamed to the given file afterwards. Readers either see the complete
+   * old file or the complete new one, but never a partially written file.
+   * @param imgFile File to write.
+   * @param data Data to write between position and limit of the buffer.
+   * @throws IOException If writing or renaming the temporary file fails.
+   */
+  private void writeAtomically(Path imgFile, ByteBuffer data) throws IOException {
+    Path tmpFile = Files.createTempFile(workingDir, "." + imgFile.getFileName().toString(),
+        TEMPORARY_FILE_EXTENSION);
     try {
-      if (lockedIDs.containsKey(id)) {
-        l = lockedIDs.get(id);
-      } else {
-        l = new ReentrantReadWriteLock();
-        lockedIDs.put(id, l);
+      try (FileChannel channel = FileChannel.open(tmpFile, StandardOpenOption.WRITE)) {
+        while (data.hasRemaining()) {
+          channel.write(data);
+        }
+      }
+      try {
+        Files.move(tmpFile, imgFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException atomicMoveNotSupported) {
+        Files.move(tmpFile, imgFile, StandardCopyOption.REPLACE_EXISTING);
       }
     } finally {
-      mapLock.writeLock().unlock();
+      Files.deleteIfExists(tmpFile);
     }
-    return l;
   }
 
   /**
@@ -115,6 +166,13 @@ public class DriveStorage implements IDataStorage<StoreImage> {
       return null;
     }
 
+    if (!StoreImage.isPNG(imgData)) {
+      imgData = migrateBase64File(imgFile, id, imgData);
+      if (imgData == null) {
+        return null;
+      }
+    }
+
     ImageSize size = imgDB.getImageSize(id);
     if (size == null) {
       return null;
@@ -123,14 +181,56 @@ public class DriveStorage implements IDataStorage<StoreImage> {
     return new StoreImage(id, imgData, size);
   }
 
+  // Images written by older versions are stored base64 encoded. Decode them and replace the file with the binary
+  // PNG data, so the conversion happens only once.
+  private byte[] migrateBase64File(Path imgFile, long id, byte[] base64) {
+    byte[] imgData = null;
+    try {
+      imgData = Base64.getMimeDecoder().decode(base64);
+    } catch (IllegalArgumentException illegalArgument) {
+      log.warn("The file \"" + imgFile.toAbsolutePath() + "\" is neither a PNG image nor base64 encoded. "
+          + "Returning null.", illegalArgument);
+      return null;
+    }
+
+    ReadWriteLock l = getIDLock(id);
+    l.writeLock().lock();
+    try {
+      writeAtomically(imgFile, ByteBuffer.wrap(imgData));
+      log.info("Migrated base64 encoded file \"{}\" to binary PNG.", imgFile.toAbsolutePath());
+    } catch (IOException ioException) {
+      log.warn("An IOException occured while trying to migrate the file \"" + imgFile.toAbsolutePath()
+          + "\" to binary PNG.", ioException);
+    } finally {
+      l.writeLock().unlock();
+    }
+    return imgData;
+  }
+
+  /**
+   * Returns the load and save latencies of this storage.
+   * @return Storage statistics.
+   */
+  public StorageStatistics getStatistics() {
+    return statistics;
+  }
+
   @Override
   public StoreImage loadData(long id) {
+    long start = System.nanoTime();
     Path imgFile = workingDir.resolve(Long.toString(id));
     if (!imgFile.toFile().exists()) {
+      statistics.recordNotFound();
       return null;
     }
 
-    return loadFromDisk(imgFile, id);
+    StoreImage img = loadFromDisk(imgFile, id);
+    if (img == null) {
+      statistics.recordNotFound();
+    } else {
+      statistics.recordLoad(System.nanoTime() - start);
+    }
+    return img;
   }
 
   @Override
@@ -145,12 +245,13 @@ public class DriveStorage implements IDataStorage<StoreImage> {
       return true;
     }
 
+    long start = System.nanoTime();
     ReadWriteLock l = getIDLock(data.getId());
     l.writeLock().lock();
 
     try {
-      Files.write(imgFile, data.getByteArray(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
-          StandardOpenOption.TRUNCATE_EXISTING);
+      writeAtomically(imgFile, data.getByteBuffer());
+      statistics.recordSave(System.nanoTime() - start);
     } catch (IOException ioException) {
       log.warn("An IOException occured while trying to write the file \"" + imgFile.toAbsolutePath()
           + "\" to disk.", ioException);
@@ -0,0 +1,236 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tools.descartes.teastore.image.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import tools.descartes.teastore.entities.ImageSize;
+import tools.descartes.teastore.image.ImageDB;
+import tools.descartes.teastore.image.StoreImage;
+
+/**
+ * Storage implementation that packs images into large memory mapped segment files in the working directory. Images
+ * are handed out as read-only slices of the mapped segments, so loading an image neither needs a system call nor
+ * copies the image data. Images not yet packed, e.g. the generated product images, are read once from their single
+ * file in the working directory and packed afterwards. Space of deleted images is not reclaimed. Segment files are not
+ * read back, so images only stored in segments are lost after a restart.
+ */
+public class MappedPackStorage implements IDataStorage<StoreImage> {
+
+  /**
+   * Standard size of a segment file in bytes.
+   */
+  public static final int STD_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+  /**
+   * File name extension of segment files.
+   */
+  public static final String SEGMENT_FILE_EXTENSION = ".pack";
+
+  private static final String SEGMENT_FILE_PREFIX = "segment-";
+
+  // Segment file names stay unique if a new storage replaces the current one while it is still in use
+  private static final AtomicLong NEXT_SEGMENT = new AtomicLong();
+
+  private final Path workingDir;
+  private final ImageDB imgDB;
+  private final Predicate<StoreImage> storageRule;
+  private final DriveStorage files;
+  private final int segmentSize;
+  private final Map<Long, ByteBuffer> images = new ConcurrentHashMap<>();
+  private final Logger log = LoggerFactory.getLogger(MappedPackStorage.class);
+
+  // Segment currently appended to, guarded by this
+  private MappedByteBuffer segment;
+
+  /**
+   * Standard constructor creating a storage in the working directory on the physical disc using segment files of the
+   * standard size.
+   * @param workingDir Working directory on the physical disc where the data is stored.
+   * @param imgDB Image database containing the IDs for the data.
+   * @param storageRule Storage rule which data can be stored.
+   */
+  public MappedPackStorage(Path workingDir, ImageDB imgDB, Predicate<StoreImage> storageRule) {
+    this(workingDir, imgDB, storageRule, STD_SEGMENT_SIZE);
+  }
+
+  /**
+   * Creates a storage in the working directory on the physical disc using segment files of the given size.
+   * @param workingDir Working directory on the physical disc where the data is stored.
+   * @param imgDB Image database containing the IDs for the data.
+   * @param storageRule Storage rule which data can be stored.
+   * @param segmentSize Size of a segment file in bytes. Larger images get a segment file of their own.
+   */
+  public MappedPackStorage(Path workingDir, ImageDB imgDB, Predicate<StoreImage> storageRule,
+      int segmentSize) {
+    if (segmentSize <= 0) {
+      log.error("The supplied segment size must be positive.");
+      throw new IllegalArgumentException("The supplied segment size must be positive.");
+    }
+    // Checks the remaining arguments
+    files = new DriveStorage(workingDir, imgDB, storageRule);
+
+    this.workingDir = workingDir.normalize();
+    this.imgDB = imgDB;
+    this.storageRule = storageRule;
+    this.segmentSize = segmentSize;
+
+    // Segment files of a previous run might still exist, e.g. if the persistent index kept the working directory
+    long lastSegment = -1;
+    for (File file : listSegments(this.workingDir)) {
+      lastSegment = Math.max(lastSegment, segmentNumber(file.getName()));
+    }
+    NEXT_SEGMENT.accumulateAndGet(lastSegment + 1, Math::max);
+  }
+
+  private static File[] listSegments(Path dir) {
+    File[] segments = dir.toFile().listFiles((file, name) -> name.endsWith(SEGMENT_FILE_EXTENSION));
+    return segments == null ? new File[0] : segments;
+  }
+
+  private static long segmentNumber(String name) {
+    if (!name.startsWith(SEGMENT_FILE_PREFIX)) {
+      return -1;
+    }
+    try {
+      return Long.parseLong(name.substring(SEGMENT_FILE_PREFIX.length(),
+          name.length() - SEGMENT_FILE_EXTENSION.length()));
+    } catch (NumberFormatException notASegment) {
+      return -1;
+    }
+  }
+
+  /**
+   * Deletes all segment files in the given directory.
+   * @param dir Directory containing segment files.
+   */
+  public static void deleteSegments(Path dir) {
+    for (File file : listSegments(dir)) {
+      if (!file.delete()) {
+        LoggerFactory.getLogger(MappedPackStorage.class).warn("Segment file {} could not be deleted.",
+            file.getAbsolutePath());
+      }
+    }
+  }
+
+  @Override
+  public boolean dataExists(long id) {
+    return images.containsKey(id) || files.dataExists(id);
+  }
+
+  @Override
+  public StoreImage loadData(long id) {
+    ImageSize size = imgDB.getImageSize(id);
+    if (size == null) {
+      return null;
+    }
+
+    ByteBuffer packed = images.get(id);
+    if (packed != null) {
+      return new StoreImage(id, packed, size);
+    }
+
+    // Not packed yet, read the single image file once
+    StoreImage img = files.loadData(id);
+    if (img == null) {
+      return null;
+    }
+    packed = pack(img);
+    if (packed == null) {
+      return img;
+    }
+    return new StoreImage(id, packed, size);
+  }
+
+  @Override
+  public boolean saveData(StoreImage data) {
+    // We return true so we do not trigger an error. This is intended
+    if (!dataIsStorable(data) || images.containsKey(data.getId())) {
+      return true;
+    }
+    return pack(data) != null;
+  }
+
+  private ByteBuffer pack(StoreImage img) {
+    ByteBuffer data = img.getByteBuffer();
+    int length = data.remaining();
+    ByteBuffer target;
+    try {
+      target = allocate(length);
+    } catch (IOException ioException) {
+      log.warn("An IOException occured while trying to create a new segment file in \""
+          + workingDir.toAbsolutePath() + "\".", ioException);
+      return null;
+    }
+
+    // Regions are disjoint, so copying does not need the lock
+    target.put(data);
+    target.flip();
+    ByteBuffer packed = target.asReadOnlyBuffer();
+    ByteBuffer existing = images.putIfAbsent(img.getId(), packed);
+    return existing == null ? packed : existing;
+  }
+
+  // Reserves space for an image in the current segment or a new one and returns a buffer for exactly that region
+  private synchronized ByteBuffer allocate(int length) throws IOException {
+    if (segment == null || segment.remaining() < length) {
+      segment = mapSegment(Math.max(segmentSize, length));
+    }
+    ByteBuffer region = segment.slice();
+    region.limit(length);
+    segment.position(segment.position() + length);
+    return region;
+  }
+
+  private MappedByteBuffer mapSegment(int size) throws IOException {
+    while (true) {
+      Path file = workingDir.resolve(SEGMENT_FILE_PREFIX + NEXT_SEGMENT.getAndIncrement() + SEGMENT_FILE_EXTENSION);
+      // The mapping stays valid after closing the channel
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+          StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+        log.info("Created segment file {} with {} bytes.", file.toAbsolutePath(), size);
+        return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      } catch (FileAlreadyExistsException existing) {
+        // Created by another process or left over, never overwrite it
+        log.debug("Segment file {} already exists.", file.toAbsolutePath());
+      }
+    }
+  }
+
+  @Override
+  public boolean dataIsStorable(StoreImage data) {
+    return storageRule.test(data);
+  }
+
+  @Override
+  public boolean deleteData(StoreImage data) {
+    images.remove(data.getId());
+    return files.deleteData(data);
+  }
+
+}
@@ -0,0 +1,42 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tools.descartes.teastore.image.tier;
+
+import tools.descartes.teastore.entities.ImageSize;
+import tools.descartes.teastore.image.ImageDBKey;
+import tools.descartes.teastore.image.StoreImage;
+
+/**
+ * Tier shared by all image provider instances. Each image variant has one owning instance, which is the only one
+ * scaling and storing it. All other instances fetch the variant from its owner.
+ */
+public interface ISharedTier {
+
+  /**
+   * Checks if this image provider instance owns the given image variant.
+   * @param key Image key, either product ID or web interface image name.
+   * @param size Image size.
+   * @return True if this instance scales and stores the variant itself, otherwise false.
+   */
+  public boolean isOwner(ImageDBKey key, ImageSize size);
+
+  /**
+   * Fetches the given image variant from its owning image provider instance.
+   * @param key Image key, either product ID or web interface image name.
+   * @param size Image size.
+   * @return The image or null if the owner could not provide it.
+   */
+  public StoreImage fetch(ImageDBKey key, ImageSize size);
+
+}
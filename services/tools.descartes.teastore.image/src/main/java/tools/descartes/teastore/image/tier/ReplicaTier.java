@@ -0,0 +1,180 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tools.descartes.teastore.image.tier;
+
+import jakarta.ws.rs.client.WebTarget;
+import jakarta.ws.rs.core.Response;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.netflix.loadbalancer.Server;
+
+import tools.descartes.teastore.entities.ImageSize;
+import tools.descartes.teastore.image.ImageDBKey;
+import tools.descartes.teastore.image.StoreImage;
+import tools.descartes.teastore.image.cache.IDataCache;
+import tools.descartes.teastore.image.cache.LeastRecentlyUsed;
+import tools.descartes.teastore.registryclient.RegistryClient;
+import tools.descartes.teastore.registryclient.Service;
+import tools.descartes.teastore.registryclient.loadbalancers.ServiceLoadBalancer;
+import tools.descartes.teastore.registryclient.rest.HttpWrapper;
+import tools.descartes.teastore.registryclient.rest.ResponseWrapper;
+import tools.descartes.teastore.registryclient.util.RESTClient;
+
+/**
+ * Shared tier distributing image variants over all registered image provider instances. The owner of a variant is
+ * chosen by consistent hashing over the instances known to the registry client, so all instances agree on the owner
+ * and only the variants of joining or leaving instances move. Variants are fetched from the owner's tier endpoint,
+ * which never forwards requests itself. Fetched variants are kept in a small local cache, so hot variants owned by
+ * another instance do not cost a remote request each time. A new tier, and thus an empty local cache, is created
+ * whenever the image provider is reconfigured after image regeneration.
+ */
+public class ReplicaTier implements ISharedTier {
+
+  /**
+   * Standard size of the local cache for fetched variants in bytes.
+   */
+  public static final long STD_LOCAL_CACHE_SIZE = IDataCache.STD_MAX_CACHE_SIZE / 4;
+
+  private static final String IMAGE_MEDIA_TYPE = "image/png";
+
+  private final Logger log = LoggerFactory.getLogger(ReplicaTier.class);
+  private final IDataCache<StoreImage> local;
+
+  /**
+   * Creates a shared tier with a local cache of the standard size
+   * {@link tools.descartes.teastore.image.tier.ReplicaTier.STD_LOCAL_CACHE_SIZE}.
+   */
+  public ReplicaTier() {
+    this(STD_LOCAL_CACHE_SIZE);
+  }
+
+  /**
+   * Creates a shared tier with a local cache of the given size.
+   * @param localCacheSize Maximum size of the local cache for fetched variants in bytes.
+   */
+  public ReplicaTier(long localCacheSize) {
+    local = new LeastRecentlyUsed<>(localCacheSize);
+  }
+
+  @Override
+  public boolean isOwner(ImageDBKey key, ImageSize size) {
+    Server me = RegistryClient.getClient().getMyServiceInstanceServer();
+    if (me == null) {
+      return true;
+    }
+    Server owner = ServiceLoadBalancer.getServerForKey(Service.IMAGE, routingKey(key, size));
+    return owner == null || owner.equals(me);
+  }
+
+  @Override
+  public StoreImage fetch(ImageDBKey key, ImageSize size) {
+    long id = variantID(key, size);
+    StoreImage img = local.loadData(id);
+    if (img != null && img.getSize().equals(size)) {
+      return img;
+    }
+    byte[] data = fetchFromOwner(key, size);
+    if (data == null) {
+      return null;
+    }
+    img = new StoreImage(id, data, size);
+    local.cacheData(img);
+    return img;
+  }
+
+  /**
+   * Requests the encoded image variant from its owner.
+   * @param key Image key, either product ID or web interface image name.
+   * @param size Image size.
+   * @return The encoded image or null if the owner could not provide it.
+   */
+  protected byte[] fetchFromOwner(ImageDBKey key, ImageSize size) {
+    Response response = ServiceLoadBalancer.keyedRESTOperation(Service.IMAGE, routingKey(key, size), "image",
+        String.class, client -> ResponseWrapper.wrap(HttpWrapper.wrap(getTarget(client, key, size))
+            .accept(IMAGE_MEDIA_TYPE).get()));
+    if (response == null) {
+      return null;
+    }
+    try {
+      if (response.getStatus() != Response.Status.OK.getStatusCode()) {
+        log.info("Owner of image variant could not provide it. Status code {}.", response.getStatus());
+        return null;
+      }
+      return response.readEntity(byte[].class);
+    } catch (RuntimeException e) {
+      log.warn("Reading image variant from its owner failed.", e);
+      return null;
+    } finally {
+      response.close();
+    }
+  }
+
+  private WebTarget getTarget(RESTClient<String> client, ImageDBKey key, ImageSize size) {
+    WebTarget target = client.getEndpointTarget().path("tier");
+    if (key.isProductKey()) {
+      target = target.path(String.valueOf(key.getProductID()));
+    } else {
+      target = target.path("web").path(key.getWebUIName());
+    }
+    return target.path(size.toString());
+  }
+
+  /**
+   * Returns the key used to find the owner of an image variant.
+   * @param key Image key, either product ID or web interface image name.
+   * @param size Image size.
+   * @return Routing key.
+   */
+  public static long routingKey(ImageDBKey key, ImageSize size) {
+    long hash = key.isProductKey() ? key.getProductID() : key.getWebUIName().hashCode() * 0x9E3779B97F4A7C15L;
+    return hash * 31 + size.hashCode();
+  }
+
+  /**
+   * Returns the ID under which a fetched image variant is cached and recorded in the statistics. The ID is the same
+   * for every fetch of the variant. Its sign bit is always set, so it never collides with the positive IDs of images
+   * stored by this instance.
+   * @param key Image key, either product ID or web interface image name.
+   * @param size Image size.
+   * @return Stable negative ID of the image variant.
+   */
+  public static long variantID(ImageDBKey key, ImageSize size) {
+    long hash;
+    if (key.isProductKey()) {
+      hash = mix(key.getProductID());
+    } else {
+      // FNV-1a, String.hashCode only spreads names over 32 bits
+      hash = 0xCBF29CE484222325L;
+      for (int i = 0; i < key.getWebUIName().length(); i++) {
+        hash = (hash ^ key.getWebUIName().charAt(i)) * 0x100000001B3L;
+      }
+      hash = mix(hash ^ 0x9E3779B97F4A7C15L);
+    }
+    hash = mix(hash ^ size.getWidth());
+    hash = mix(hash ^ ((long) size.getHeight() << 32));
+    return hash | Long.MIN_VALUE;
+  }
+
+  /*
+   * Finalizer of the 64 bit MurmurHash3.
+   */
+  private static long mix(long hash) {
+    hash = (hash ^ (hash >>> 33)) * 0xFF51AFD7ED558CCDL;
+    hash = (hash ^ (hash >>> 33)) * 0xC4CEB9FE1A85EC53L;
+    return hash ^ (hash >>> 33);
+  }
+
+}
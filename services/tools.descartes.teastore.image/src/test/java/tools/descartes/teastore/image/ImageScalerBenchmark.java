@@ -0,0 +1,110 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tools.descartes.teastore.image;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import tools.descartes.teastore.entities.ImageSize;
+import tools.descartes.teastore.entities.ImageSizePreset;
+
+/**
+ * JMH benchmark comparing {@link ImageScaler} with the former single step bicubic scaling using
+ * {@link java.awt.Graphics2D}. Run the main method from the test classpath, e.g. with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=tools.descartes.teastore.image.ImageScalerBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageScalerBenchmark {
+
+  /**
+   * Target size preset.
+   */
+  @Param({ "ICON", "RECOMMENDATION", "MAIN_IMAGE" })
+  public String target;
+
+  private BufferedImage image;
+  private ImageSize size;
+
+  /**
+   * Creates a standard sized source image with a gradient, like the generated product images.
+   */
+  @Setup
+  public void setup() {
+    ImageSize std = ImageSizePreset.STD_IMAGE_SIZE;
+    image = new BufferedImage(std.getWidth(), std.getHeight(), BufferedImage.TYPE_INT_RGB);
+    Graphics2D graphics = image.createGraphics();
+    graphics.setPaint(new GradientPaint(0, 0, Color.ORANGE, std.getWidth(), std.getHeight(), Color.BLUE));
+    graphics.fillRect(0, 0, std.getWidth(), std.getHeight());
+    graphics.dispose();
+    size = ImageSizePreset.valueOf(target).getSize();
+  }
+
+  /**
+   * Scales with the current image scaler.
+   * @return Scaled image.
+   */
+  @Benchmark
+  public BufferedImage imageScaler() {
+    return ImageScaler.scale(image, size);
+  }
+
+  /**
+   * Scales with a single bicubic draw into a new image, as done before.
+   * @return Scaled image.
+   */
+  @Benchmark
+  public BufferedImage graphics2D() {
+    BufferedImage scaledImg = new BufferedImage(size.getWidth(), size.getHeight(), BufferedImage.TRANSLUCENT);
+    Graphics2D graphics = scaledImg.createGraphics();
+    graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+        RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+    graphics.drawImage(image, 0, 0, size.getWidth(), size.getHeight(), null);
+    graphics.dispose();
+    return scaledImg;
+  }
+
+  /**
+   * Runs the benchmark.
+   * @param args Unused.
+   * @throws RunnerException If the benchmark fails.
+   */
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(ImageScalerBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -177,4 +177,63 @@ public class TestImageDB {
   public void testSetImageMappingKeySizeNull() {
     uut.setImageMapping(mockedNameKey, NAME_IMAGE_ID, null);
   }
+
+  @Test
+  public void testRemoveImageMapping() {
+    uut.setImageMapping(PRODUCT_ID, PRODUCT_IMAGE_ID, size);
+    uut.setImageMapping(PRODUCT_ID, PRODUCT_IMAGE_ID_LARGE, sizeLarge);
+    uut.setImageMapping(NAME, NAME_IMAGE_ID, size);
+    uut.removeImageMapping(PRODUCT_IMAGE_ID);
+    assertFalse(uut.hasImageID(PRODUCT_ID, size));
+    assertEquals(PRODUCT_IMAGE_ID_LARGE, uut.getImageID(PRODUCT_ID, sizeLarge));
+    assertNull(uut.getImageSize(PRODUCT_IMAGE_ID));
+    uut.removeImageMapping(NAME_IMAGE_ID);
+    assertFalse(uut.hasImageID(NAME, size));
+    assertEquals(1, uut.getImageIDs().size());
+    assertTrue(uut.getWebUINames().isEmpty());
+  }
+
+  @Test
+  public void testGetProductIDs() {
+    uut.setImageMapping(PRODUCT_ID, PRODUCT_IMAGE_ID, size);
+    uut.setImageMapping(PRODUCT_ID, PRODUCT_IMAGE_ID_LARGE, sizeLarge);
+    uut.setImageMapping(NAME, NAME_IMAGE_ID, size);
+    assertEquals(1, uut.getProductIDs().size());
+    assertTrue(uut.getProductIDs().contains(PRODUCT_ID));
+    assertEquals(2, uut.getImageIDs(PRODUCT_ID).size());
+    assertTrue(uut.getImageIDs(PRODUCT_ID).contains(PRODUCT_IMAGE_ID_LARGE));
+    assertTrue(uut.getImageIDs(PRODUCT_ID + 1).isEmpty());
+  }
+
+  @Test
+  public void testRemapImageSize() {
+    uut.setImageMapping(PRODUCT_ID, PRODUCT_IMAGE_ID, size);
+    uut.setImageMapping(PRODUCT_ID, PRODUCT_IMAGE_ID_LARGE, size);
+    assertEquals(PRODUCT_IMAGE_ID_LARGE, uut.getImageID(PRODUCT_ID, size));
+    // The replaced image ID is not known anymore
+    assertNull(uut.getImageSize(PRODUCT_IMAGE_ID));
+    assertEquals(1, uut.getImageIDs().size());
+    assertTrue(uut.getImageIDs().contains(PRODUCT_IMAGE_ID_LARGE));
+    // Remapping the same image ID keeps it
+    uut.setImageMapping(PRODUCT_ID, PRODUCT_IMAGE_ID_LARGE, size);
+    assertEquals(size, uut.getImageSize(PRODUCT_IMAGE_ID_LARGE));
+    // Removing the replaced image ID keeps the current mapping
+    uut.removeImageMapping(PRODUCT_IMAGE_ID);
+    assertEquals(PRODUCT_IMAGE_ID_LARGE, uut.getImageID(PRODUCT_ID, size));
+
+    // Moving an image ID to another key removes the old mapping
+    uut.setImageMapping(NAME, PRODUCT_IMAGE_ID_LARGE, size);
+    assertFalse(uut.hasImageID(PRODUCT_ID, size));
+    assertEquals(PRODUCT_IMAGE_ID_LARGE, uut.getImageID(NAME, size));
+  }
+
+  @Test
+  public void testCopyIsIndependent() {
+    uut.setImageMapping(PRODUCT_ID, PRODUCT_IMAGE_ID, size);
+    ImageDB copy = new ImageDB(uut);
+    copy.setImageMapping(PRODUCT_ID, PRODUCT_IMAGE_ID_LARGE, sizeLarge);
+    assertFalse(uut.hasImageID(PRODUCT_ID, sizeLarge));
+    assertEquals(PRODUCT_IMAGE_ID, copy.getImageID(PRODUCT_ID, size));
+    assertEquals(0, uut.getImageID((String) null, size));
+  }
 }
@@ -0,0 +1,132 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tools.descartes.teastore.image;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import tools.descartes.teastore.entities.ImageSize;
+import tools.descartes.teastore.entities.ImageSizePreset;
+
+public class TestImageDBIndex {
+
+  private static final long FINGERPRINT = 4711;
+  private static final long PRODUCT_ID = 1234567890;
+  private static final String NAME = "testname";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private Path file;
+  private ImageSize size = ImageSizePreset.ICON.getSize();
+  private ImageSize sizeLarge = ImageSizePreset.FULL.getSize();
+
+  @Before
+  public void initialize() throws IOException {
+    file = folder.newFolder().toPath().resolve(ImageDBIndex.STD_INDEX_FILE_NAME);
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void testConstructorNull() {
+    new ImageDBIndex(null);
+  }
+
+  @Test
+  public void testCreateAndLoad() {
+    ImageDB db = new ImageDB();
+    db.setImageMapping(PRODUCT_ID, 1, sizeLarge);
+    ImageDBIndex uut = new ImageDBIndex(file);
+    assertTrue(uut.create(db, FINGERPRINT));
+    db.setIndex(uut);
+    db.setImageMapping(PRODUCT_ID, 2, size);
+    db.setImageMapping(NAME, 3, size);
+    uut.close();
+
+    ImageDB loaded = new ImageDB();
+    assertTrue(new ImageDBIndex(file).load(loaded, FINGERPRINT));
+    assertEquals(1, loaded.getImageID(PRODUCT_ID, sizeLarge));
+    assertEquals(2, loaded.getImageID(PRODUCT_ID, size));
+    assertEquals(3, loaded.getImageID(NAME, size));
+    assertEquals(db.getImageIDs(), loaded.getImageIDs());
+  }
+
+  @Test
+  public void testLoadRemoval() {
+    ImageDB db = new ImageDB();
+    ImageDBIndex uut = new ImageDBIndex(file);
+    assertTrue(uut.create(db, FINGERPRINT));
+    db.setIndex(uut);
+    db.setImageMapping(PRODUCT_ID, 1, sizeLarge);
+    db.setImageMapping(PRODUCT_ID, 2, size);
+    db.removeImageMapping(2);
+    uut.close();
+
+    ImageDB loaded = new ImageDB();
+    assertTrue(new ImageDBIndex(file).load(loaded, FINGERPRINT));
+    assertEquals(1, loaded.getImageID(PRODUCT_ID, sizeLarge));
+    assertFalse(loaded.hasImageID(PRODUCT_ID, size));
+  }
+
+  @Test
+  public void testLoadOutdated() {
+    ImageDB db = new ImageDB();
+    db.setImageMapping(PRODUCT_ID, 1, sizeLarge);
+    ImageDBIndex uut = new ImageDBIndex(file);
+    assertTrue(uut.create(db, FINGERPRINT));
+    uut.close();
+
+    assertFalse(new ImageDBIndex(file).load(new ImageDB(), FINGERPRINT + 1));
+    assertFalse(new ImageDBIndex(file.resolveSibling("missing")).load(new ImageDB(), FINGERPRINT));
+  }
+
+  @Test
+  public void testLoadTruncated() throws IOException {
+    ImageDB db = new ImageDB();
+    db.setImageMapping(PRODUCT_ID, 1, sizeLarge);
+    db.setImageMapping(NAME, 2, size);
+    ImageDBIndex uut = new ImageDBIndex(file);
+    assertTrue(uut.create(db, FINGERPRINT));
+    uut.close();
+
+    byte[] data = Files.readAllBytes(file);
+    Files.write(file, Arrays.copyOf(data, data.length - 3));
+    ImageDB loaded = new ImageDB();
+    assertTrue(new ImageDBIndex(file).load(loaded, FINGERPRINT));
+    assertEquals(1, loaded.getImageIDs().size());
+
+    Files.write(file, Arrays.copyOf(data, 6));
+    assertFalse(new ImageDBIndex(file).load(new ImageDB(), FINGERPRINT));
+  }
+
+  @Test
+  public void testDelete() {
+    ImageDBIndex uut = new ImageDBIndex(file);
+    assertTrue(uut.create(new ImageDB(), FINGERPRINT));
+    assertTrue(Files.exists(file));
+    uut.delete();
+    assertFalse(Files.exists(file));
+  }
+
+}
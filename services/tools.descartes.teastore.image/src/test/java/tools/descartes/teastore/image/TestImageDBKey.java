@@ -15,6 +15,7 @@ package tools.descartes.teastore.image;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
@@ -52,4 +53,15 @@ public class TestImageDBKey {
     assertEquals(TEST_FILENAME, uut.getWebUIName());
     assertEquals(0, uut.getProductID());
   }
+
+  @Test
+  public void testEquals() {
+    assertEquals(new ImageDBKey(TEST_PRODUCT_KEY), new ImageDBKey(TEST_PRODUCT_KEY));
+    assertEquals(new ImageDBKey(TEST_PRODUCT_KEY).hashCode(), new ImageDBKey(TEST_PRODUCT_KEY).hashCode());
+    assertEquals(new ImageDBKey(TEST_FILENAME), new ImageDBKey(TEST_FILENAME));
+    assertEquals(new ImageDBKey(TEST_FILENAME).hashCode(), new ImageDBKey(TEST_FILENAME).hashCode());
+    assertNotEquals(new ImageDBKey(TEST_PRODUCT_KEY), new ImageDBKey(TEST_PRODUCT_KEY + 1));
+    assertNotEquals(new ImageDBKey(TEST_FILENAME), new ImageDBKey(TEST_FILENAME + "x"));
+    assertNotEquals(new ImageDBKey(0), new ImageDBKey((String) null));
+  }
 }
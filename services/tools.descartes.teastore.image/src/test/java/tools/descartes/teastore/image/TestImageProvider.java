@@ -13,6 +13,211 @@
  */
 package tools.descartes.teastore.image;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import tools.descartes.teastore.entities.ImageSize;
+import tools.descartes.teastore.entities.ImageSizePreset;
+import tools.descartes.teastore.image.setup.ImageIDFactory;
+import tools.descartes.teastore.image.storage.IDataStorage;
+import tools.descartes.teastore.image.tier.ISharedTier;
+
 public class TestImageProvider {
 
+  private static final long PRODUCT_ID = 42;
+  private static final long BLOCKED_PRODUCT_ID = 43;
+  private static final int THREADS = 8;
+
+  private CountingStorage storage;
+  private StoreImage blocked;
+
+  @Before
+  public void initialize() {
+    ImageSize stdSize = ImageSizePreset.STD_IMAGE_SIZE;
+    StoreImage std = new StoreImage(ImageIDFactory.ID.getNextImageID(),
+        new BufferedImage(stdSize.getWidth(), stdSize.getHeight(), BufferedImage.TYPE_INT_RGB), stdSize);
+    blocked = new StoreImage(ImageIDFactory.ID.getNextImageID(), std.getByteArray(), stdSize);
+    ImageDB db = new ImageDB();
+    db.setImageMapping(PRODUCT_ID, std.getId(), stdSize);
+    db.setImageMapping(BLOCKED_PRODUCT_ID, blocked.getId(), stdSize);
+    storage = new CountingStorage();
+    storage.saveData(std);
+    storage.saveData(blocked);
+    storage.saves.set(0);
+
+    ImageProvider.IP.setImageDB(db);
+    ImageProvider.IP.setStorage(storage);
+  }
+
+  @After
+  public void cleanup() {
+    storage.release.countDown();
+    ImageProvider.IP.setBatchTimeout(ImageProvider.STD_BATCH_TIMEOUT);
+    ImageProvider.IP.setSharedTier(null);
+  }
+
+  @Test
+  public void testSharedTier() {
+    ImageSize size = ImageSizePreset.PREVIEW.getSize();
+    StoreImage remote = new StoreImage(ImageIDFactory.ID.getNextImageID(),
+        new BufferedImage(size.getWidth(), size.getHeight(), BufferedImage.TYPE_INT_RGB), size);
+    AtomicInteger fetches = new AtomicInteger();
+    ImageProvider.IP.setSharedTier(new ISharedTier() {
+      @Override
+      public boolean isOwner(ImageDBKey key, ImageSize imgSize) {
+        return false;
+      }
+
+      @Override
+      public StoreImage fetch(ImageDBKey key, ImageSize imgSize) {
+        fetches.incrementAndGet();
+        return key.getProductID() == PRODUCT_ID ? remote : null;
+      }
+    });
+
+    // Variants owned by another instance are neither scaled nor stored
+    assertEquals(remote, ImageProvider.IP.getProductImage(PRODUCT_ID, size));
+    assertEquals(1, fetches.get());
+    assertEquals(0, storage.saves.get());
+
+    // Requests from the owner are never forwarded
+    StoreImage local = ImageProvider.IP.getLocalProductImage(PRODUCT_ID, size);
+    assertEquals(size, local.getSize());
+    assertTrue(local.getId() != remote.getId());
+    assertEquals(1, fetches.get());
+    assertEquals(1, storage.saves.get());
+  }
+
+  @Test
+  public void testSharedTierFallback() {
+    ImageProvider.IP.setSharedTier(new ISharedTier() {
+      @Override
+      public boolean isOwner(ImageDBKey key, ImageSize imgSize) {
+        return false;
+      }
+
+      @Override
+      public StoreImage fetch(ImageDBKey key, ImageSize imgSize) {
+        return null;
+      }
+    });
+    long failures = ImageProvider.IP.getStatistics().getSharedTierFailures();
+    ImageSize size = ImageSizePreset.ICON.getSize();
+    assertEquals(size, ImageProvider.IP.getProductImage(PRODUCT_ID, size).getSize());
+    assertEquals(1, storage.saves.get());
+    assertEquals(failures + 1, ImageProvider.IP.getStatistics().getSharedTierFailures());
+  }
+
+  @Test
+  public void testBatch() {
+    Map<Long, ImageSize> request = new HashMap<>();
+    request.put(PRODUCT_ID, ImageSizePreset.PREVIEW.getSize());
+    request.put(BLOCKED_PRODUCT_ID, ImageSizePreset.ICON.getSize());
+    Map<Long, String> result = ImageProvider.IP.getProductImages(request);
+    assertEquals(2, result.size());
+    assertTrue(result.get(PRODUCT_ID).startsWith("data:image/png;base64,"));
+  }
+
+  @Test
+  public void testBatchTimeout() {
+    storage.blockedID = blocked.getId();
+    ImageProvider.IP.setBatchTimeout(100);
+    Map<Long, ImageSize> request = new HashMap<>();
+    request.put(PRODUCT_ID, ImageSizePreset.PREVIEW.getSize());
+    request.put(BLOCKED_PRODUCT_ID, ImageSizePreset.PREVIEW.getSize());
+    Map<Long, String> result = ImageProvider.IP.getProductImages(request);
+    assertEquals(1, result.size());
+    assertTrue(result.containsKey(PRODUCT_ID));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBatchTimeoutNotPositive() {
+    ImageProvider.IP.setBatchTimeout(0);
+  }
+
+  @Test
+  public void testConcurrentScalingIsCoalesced() throws Exception {
+    ImageSize size = ImageSizePreset.PREVIEW.getSize();
+    CyclicBarrier start = new CyclicBarrier(THREADS);
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    List<Future<StoreImage>> results = new ArrayList<>();
+    for (int i = 0; i < THREADS; i++) {
+      results.add(executor.submit(() -> {
+        start.await();
+        return ImageProvider.IP.getProductImage(PRODUCT_ID, size);
+      }));
+    }
+
+    long id = results.get(0).get().getId();
+    for (Future<StoreImage> result : results) {
+      StoreImage img = result.get();
+      assertNotNull(img);
+      assertEquals(id, img.getId());
+      assertEquals(size, img.getSize());
+    }
+    executor.shutdown();
+    assertEquals(1, storage.saves.get());
+  }
+
+  private static class CountingStorage implements IDataStorage<StoreImage> {
+    private final Map<Long, StoreImage> images = new ConcurrentHashMap<>();
+    private final AtomicInteger saves = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private volatile long blockedID = -1;
+
+    @Override
+    public boolean dataExists(long id) {
+      return images.containsKey(id);
+    }
+
+    @Override
+    public StoreImage loadData(long id) {
+      if (id == blockedID) {
+        // Released after the test, the image must not be scaled and saved into the storage of the next test
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return null;
+      }
+      return images.get(id);
+    }
+
+    @Override
+    public boolean saveData(StoreImage data) {
+      saves.incrementAndGet();
+      images.put(data.getId(), data);
+      return true;
+    }
+
+    @Override
+    public boolean dataIsStorable(StoreImage data) {
+      return true;
+    }
+
+    @Override
+    public boolean deleteData(StoreImage data) {
+      return images.remove(data.getId()) != null;
+    }
+  }
+
 }
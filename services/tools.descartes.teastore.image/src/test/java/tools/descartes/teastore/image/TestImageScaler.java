@@ -120,6 +120,25 @@ public class TestImageScaler {
     assertEquals(1, uut.getHeight());
   }
 
+  @Test
+  public void testScaleContent() {
+    BufferedImage solid = new BufferedImage(301, 300, BufferedImage.TYPE_INT_ARGB);
+    for (int y = 0; y < solid.getHeight(); y++) {
+      for (int x = 0; x < solid.getWidth(); x++) {
+        // Left half opaque red, right half fully transparent
+        solid.setRGB(x, y, x < 150 ? 0xFFFF0000 : 0x00000000);
+      }
+    }
+
+    BufferedImage uut = ImageScaler.scale(solid, ImageSizePreset.ICON.getSize());
+    assertEquals(0xFFFF0000, uut.getRGB(0, 0));
+    assertEquals(0xFFFF0000, uut.getRGB(20, 63));
+    assertEquals(0, uut.getRGB(63, 0) >>> 24);
+    uut = ImageScaler.scale(solid, 700, 450);
+    assertEquals(0xFFFF0000, uut.getRGB(0, 449));
+    assertEquals(0, uut.getRGB(699, 0) >>> 24);
+  }
+
   @Test(expected = NullPointerException.class)
   public void testScaleImageSizeNull() {
     ImageScaler.scale(img, (ImageSize) null);
@@ -23,6 +23,7 @@ import static org.mockito.Mockito.when;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Base64;
 
 import javax.imageio.ImageIO;
@@ -44,6 +45,7 @@ public class TestStoreImage {
       + "3ZpxJiywakzbvd9r3RWPS9I2+MWk0+kbf0Hih9Y17U0nTHibrDDQ0NDQ0NDQ0NDQ0NDQ0NTXbRSL/AK72o6GhoaGho"
       + "RlL8951vwsNDQ0NDQ1NDc0WyHtDTEhDQ0NDQ0NTS5MdGhoaGhoaGhoaGhoaGhoaGhoaGhoaGposzSHAAErMwwQ2HwR"
       + "QAAAAAElFTkSuQmCC";
+  private static final byte[] PNG_DATA = Base64.getDecoder().decode(IMG_DATA);
   private static final long IMG_ID0 = 0L;
   private static final long IMG_ID1 = 6648764502374L;
 
@@ -67,8 +69,8 @@ public class TestStoreImage {
   @Before
   public void initialize() {
     MockitoAnnotations.openMocks(this);
-    when(mockedImg0.getByteSize()).thenReturn((long) IMG_DATA.getBytes().length);
-    when(mockedImg0.getByteArray()).thenReturn(IMG_DATA.getBytes());
+    when(mockedImg0.getByteSize()).thenReturn((long) PNG_DATA.length);
+    when(mockedImg0.getByteArray()).thenReturn(PNG_DATA);
     when(mockedImg0.getId()).thenReturn(IMG_ID0);
     when(mockedImg0.getImage()).thenReturn(img);
     when(mockedImg1.getId()).thenReturn(IMG_ID1);
@@ -81,7 +83,7 @@ public class TestStoreImage {
   @Test
   public void testConstructor() {
     new StoreImage(IMG_ID0, img, ImageSizePreset.ICON.getSize());
-    new StoreImage(IMG_ID0, IMG_DATA.getBytes(), ImageSizePreset.ICON.getSize());
+    new StoreImage(IMG_ID0, PNG_DATA, ImageSizePreset.ICON.getSize());
     new StoreImage(mockedImg0);
   }
 
@@ -90,6 +92,24 @@ public class TestStoreImage {
     new StoreImage(IMG_ID0, (byte[]) null, ImageSizePreset.ICON.getSize());
   }
 
+  @Test(expected = NullPointerException.class)
+  public void testByteBufferConstructorNull() {
+    new StoreImage(IMG_ID0, (ByteBuffer) null, ImageSizePreset.ICON.getSize());
+  }
+
+  @Test
+  public void testByteBufferConstructor() {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(PNG_DATA.length + 2);
+    buffer.put((byte) 0).put(PNG_DATA).put((byte) 0);
+    buffer.position(1).limit(PNG_DATA.length + 1);
+    StoreImage uut = new StoreImage(IMG_ID0, buffer, ImageSizePreset.ICON.getSize());
+    assertEquals(PNG_DATA.length, uut.getByteSize());
+    assertArrayEquals(PNG_DATA, uut.getByteArray());
+    assertEquals(IMG_DATA, uut.getBase64());
+    assertTrue(uut.getByteBuffer().isReadOnly());
+    assertEquals(img.getWidth(), uut.getImage().getWidth());
+  }
+
   @Test(expected = NullPointerException.class)
   public void testImageConstructorNull() {
     new StoreImage(IMG_ID0, (BufferedImage) null, ImageSizePreset.ICON.getSize());
@@ -97,7 +117,7 @@ public class TestStoreImage {
 
   @Test(expected = NullPointerException.class)
   public void testByteArrayConstructorSizeNull() {
-    new StoreImage(IMG_ID0, IMG_DATA.getBytes(), null);
+    new StoreImage(IMG_ID0, PNG_DATA, null);
   }
 
   @Test(expected = NullPointerException.class)
@@ -118,7 +138,7 @@ public class TestStoreImage {
 
   @Test
   public void testGetImage() {
-    StoreImage uut = new StoreImage(IMG_ID1, IMG_DATA.getBytes(), ImageSizePreset.ICON.getSize());
+    StoreImage uut = new StoreImage(IMG_ID1, PNG_DATA, ImageSizePreset.ICON.getSize());
     BufferedImage bi = uut.getImage();
     if (bi == null)
       fail();
@@ -128,38 +148,47 @@ public class TestStoreImage {
 
   @Test
   public void testGetSize() {
-    StoreImage uut = new StoreImage(IMG_ID1, IMG_DATA.getBytes(), ImageSizePreset.ICON.getSize());
+    StoreImage uut = new StoreImage(IMG_ID1, PNG_DATA, ImageSizePreset.ICON.getSize());
     assertEquals(ImageSizePreset.ICON.getSize(), uut.getSize());
   }
 
   @Test
   public void testGetByteSize() {
-    StoreImage uut = new StoreImage(IMG_ID1, IMG_DATA.getBytes(), ImageSizePreset.ICON.getSize());
-    assertEquals(IMG_DATA.getBytes().length, uut.getByteSize());
+    StoreImage uut = new StoreImage(IMG_ID1, PNG_DATA, ImageSizePreset.ICON.getSize());
+    assertEquals(PNG_DATA.length, uut.getByteSize());
   }
 
   @Test
   public void testGetBase64() {
-    StoreImage uut = new StoreImage(IMG_ID1, IMG_DATA.getBytes(), ImageSizePreset.ICON.getSize());
+    StoreImage uut = new StoreImage(IMG_ID1, PNG_DATA, ImageSizePreset.ICON.getSize());
     assertEquals(IMG_DATA, uut.getBase64());
   }
 
   @Test
   public void testGetByteArray() {
-    StoreImage uut = new StoreImage(IMG_ID1, IMG_DATA.getBytes(), ImageSizePreset.ICON.getSize());
-    assertArrayEquals(IMG_DATA.getBytes(), uut.getByteArray());
+    StoreImage uut = new StoreImage(IMG_ID1, PNG_DATA, ImageSizePreset.ICON.getSize());
+    assertArrayEquals(PNG_DATA, uut.getByteArray());
+  }
+
+  @Test
+  public void testIsPNG() {
+    assertTrue(StoreImage.isPNG(PNG_DATA));
+    assertTrue(StoreImage.isPNG(new StoreImage(IMG_ID1, img, ImageSizePreset.ICON.getSize()).getByteArray()));
+    assertFalse(StoreImage.isPNG(IMG_DATA.getBytes()));
+    assertFalse(StoreImage.isPNG(new byte[0]));
+    assertFalse(StoreImage.isPNG(null));
   }
 
   @Test
   public void testToString() {
-    StoreImage uut = new StoreImage(IMG_ID1, IMG_DATA.getBytes(), ImageSizePreset.ICON.getSize());
+    StoreImage uut = new StoreImage(IMG_ID1, PNG_DATA, ImageSizePreset.ICON.getSize());
     assertEquals(IMG_STRING + IMG_DATA, uut.toString());
   }
 
   @SuppressWarnings("unlikely-arg-type")
   @Test
   public void testEquals() {
-    StoreImage uut = new StoreImage(IMG_ID1, IMG_DATA.getBytes(), ImageSizePreset.ICON.getSize());
+    StoreImage uut = new StoreImage(IMG_ID1, PNG_DATA, ImageSizePreset.ICON.getSize());
     StoreImage test = new StoreImage(uut);
     assertTrue(uut.equals(uut));
     assertFalse(uut.equals(null));
@@ -170,7 +199,7 @@ public class TestStoreImage {
 
   @Test
   public void testHashCode() {
-    StoreImage uut = new StoreImage(IMG_ID1, IMG_DATA.getBytes(), ImageSizePreset.ICON.getSize());
+    StoreImage uut = new StoreImage(IMG_ID1, PNG_DATA, ImageSizePreset.ICON.getSize());
     int result = 31 + (int) (IMG_ID1 ^ (IMG_ID1 >>> 32));
     assertEquals(uut.hashCode(), result);
   }
@@ -18,7 +18,7 @@ public final class AbstractCacheWrapper
 
   @Override
   protected void removeEntryByCachingStrategy() {
-    dataRemovedFromCache(getEntries().remove(0).getByteSize());
+    entryRemoved(getEntries().remove(0));
   }
 
   @Override
@@ -312,6 +312,20 @@ public class TestAbstractCache {
     assertEquals(c3, uut.loadData(c3.getId()));
   }
 
+  @Test
+  public void testStatistics() {
+    AbstractCacheWrapper uut = new AbstractCacheWrapper(entries, storageAll, 3000, predicate -> true);
+    uut.loadData(c0.getId());
+    uut.loadData(c0.getId());
+    uut.loadData(c1.getId());
+    uut.loadData(c2.getId());
+    assertEquals(1, uut.getStatistics().getHits());
+    assertEquals(3, uut.getStatistics().getMisses());
+    assertEquals(0.25, uut.getStatistics().getHitRate(), 0.0001);
+    assertEquals(3, uut.getStatistics().getLoadLatency().getCount());
+    assertTrue(uut.getStatistics().getEvictions() > 0);
+  }
+
   @Test
   public void testSaveData() {
     AbstractCacheWrapper uut = new AbstractCacheWrapper(entries, storageAll, 20000,
@@ -0,0 +1,38 @@
+package tools.descartes.teastore.image.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TestFrequencySketch {
+
+  @Test
+  public void testIncrement() {
+    FrequencySketch uut = new FrequencySketch(512);
+    assertEquals(0, uut.frequency(42));
+    uut.increment(42);
+    uut.increment(42);
+    assertEquals(2, uut.frequency(42));
+    for (int i = 0; i < 20; i++) {
+      uut.increment(42);
+    }
+    assertEquals(15, uut.frequency(42));
+    uut.clear();
+    assertEquals(0, uut.frequency(42));
+  }
+
+  @Test
+  public void testAging() {
+    FrequencySketch uut = new FrequencySketch(16);
+    for (int i = 0; i < 15; i++) {
+      uut.increment(1);
+    }
+    // Incrementing many other IDs reaches the sample size and halves all counters
+    for (long id = 2; id < 200; id++) {
+      uut.increment(id);
+    }
+    assertTrue(uut.frequency(1) < 15);
+  }
+
+}
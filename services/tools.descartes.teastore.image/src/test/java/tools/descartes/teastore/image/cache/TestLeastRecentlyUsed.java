@@ -1,5 +1,6 @@
 package tools.descartes.teastore.image.cache;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -74,4 +75,17 @@ public class TestLeastRecentlyUsed extends AbstractCacheTestInit {
     assertTrue(uut.dataIsInCache(c3.getId()));
   }
 
+  @Test
+  public void testUncacheData() {
+    LeastRecentlyUsed<DummyData> uut = new LeastRecentlyUsed<>(storage, 6500,
+        predicate -> predicate != null);
+    uut.cacheData(c0);
+    uut.cacheData(c1);
+    uut.loadData(c0.getId());
+    uut.uncacheData(c0);
+    assertFalse(uut.dataIsInCache(c0.getId()));
+    assertTrue(uut.dataIsInCache(c1.getId()));
+    assertEquals(c1.getByteSize(), uut.getCurrentCacheSize());
+  }
+
 }
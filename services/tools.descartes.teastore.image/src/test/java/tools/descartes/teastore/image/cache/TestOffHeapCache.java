@@ -0,0 +1,171 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tools.descartes.teastore.image.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import tools.descartes.teastore.entities.ImageSizePreset;
+import tools.descartes.teastore.image.StoreImage;
+import tools.descartes.teastore.image.cache.rules.CacheAll;
+import tools.descartes.teastore.image.storage.IDataStorage;
+
+public class TestOffHeapCache {
+
+  @Mock
+  private IDataStorage<StoreImage> storage;
+
+  private StoreImage image(long id, int length) {
+    byte[] data = new byte[length];
+    for (int i = 0; i < length; i++) {
+      data[i] = (byte) (id + i);
+    }
+    StoreImage img = new StoreImage(id, data, ImageSizePreset.ICON.getSize());
+    when(storage.loadData(id)).thenReturn(img);
+    return img;
+  }
+
+  private OffHeapCache create(long maxCacheSize, int slabSize) {
+    return new OffHeapCache(storage, maxCacheSize, new CacheAll<StoreImage>(), slabSize);
+  }
+
+  @Before
+  public void initialize() {
+    MockitoAnnotations.openMocks(this);
+    when(storage.loadData(anyLong())).thenReturn(null);
+  }
+
+  @Test
+  public void testConstructor() {
+    new OffHeapCache();
+    new OffHeapCache(1);
+    new OffHeapCache(null, 1, new CacheAll<StoreImage>());
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void testConstructorPredicateNull() {
+    new OffHeapCache(1, null);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructorZeroSize() {
+    new OffHeapCache(0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructorSlabSize() {
+    create(1000, 0);
+  }
+
+  @Test
+  public void testLoadData() {
+    OffHeapCache uut = create(1000, 500);
+    StoreImage img = image(1, 300);
+    assertArrayEquals(img.getByteArray(), uut.loadData(1).getByteArray());
+    assertTrue(uut.dataIsInCache(1));
+    assertEquals(300, uut.getCurrentCacheSize());
+
+    StoreImage cached = uut.loadData(1);
+    assertArrayEquals(img.getByteArray(), cached.getByteArray());
+    assertEquals(img.getSize(), cached.getSize());
+    assertFalse(cached.getByteBuffer().isDirect());
+    assertEquals(1, uut.getStatistics().getHits());
+    assertEquals(1, uut.getStatistics().getMisses());
+    assertNull(uut.loadData(2));
+  }
+
+  @Test
+  public void testSlabReuse() {
+    OffHeapCache uut = create(1000, 500);
+    List<StoreImage> images = new ArrayList<>();
+    for (int id = 1; id <= 6; id++) {
+      images.add(image(id, 200));
+      uut.cacheData(images.get(id - 1));
+    }
+    // Two images per slab, the first slab was reused for images 5 and 6
+    assertFalse(uut.dataIsInCache(1));
+    assertFalse(uut.dataIsInCache(2));
+    assertEquals(800, uut.getCurrentCacheSize());
+    assertEquals(2, uut.getStatistics().getEvictions());
+
+    // The accessed image 4 gets a second chance and is moved to the start of the reused slab
+    assertArrayEquals(images.get(3).getByteArray(), uut.loadData(4).getByteArray());
+    StoreImage img = image(7, 200);
+    uut.cacheData(img);
+    assertFalse(uut.dataIsInCache(3));
+    assertTrue(uut.dataIsInCache(4));
+    assertTrue(uut.dataIsInCache(7));
+    assertEquals(3, uut.getStatistics().getEvictions());
+    assertArrayEquals(images.get(3).getByteArray(), uut.loadData(4).getByteArray());
+    assertArrayEquals(img.getByteArray(), uut.loadData(7).getByteArray());
+    for (int id = 5; id <= 6; id++) {
+      assertArrayEquals(images.get(id - 1).getByteArray(), uut.loadData(id).getByteArray());
+    }
+    assertEquals(800, uut.getCurrentCacheSize());
+  }
+
+  @Test
+  public void testLargeImage() {
+    OffHeapCache uut = create(1000, 500);
+    uut.cacheData(image(1, 501));
+    assertFalse(uut.dataIsInCache(1));
+    uut.cacheData(image(2, 500));
+    assertTrue(uut.dataIsInCache(2));
+  }
+
+  @Test
+  public void testUncacheAndClear() {
+    OffHeapCache uut = create(1000, 500);
+    StoreImage img = image(1, 100);
+    uut.cacheData(img);
+    uut.cacheData(image(2, 100));
+    uut.uncacheData(img);
+    assertFalse(uut.dataIsInCache(1));
+    assertEquals(100, uut.getCurrentCacheSize());
+    uut.clearCache();
+    assertFalse(uut.dataIsInCache(2));
+    assertEquals(0, uut.getCurrentCacheSize());
+  }
+
+  @Test
+  public void testSetMaxCacheSize() {
+    OffHeapCache uut = create(1000, 500);
+    uut.cacheData(image(1, 400));
+    uut.cacheData(image(2, 400));
+    assertTrue(uut.setMaxCacheSize(500));
+    assertTrue(uut.dataIsInCache(1));
+    assertFalse(uut.dataIsInCache(2));
+    assertEquals(400, uut.getCurrentCacheSize());
+
+    // Smaller than a slab, the slabs are replaced
+    assertTrue(uut.setMaxCacheSize(300));
+    assertEquals(0, uut.getCurrentCacheSize());
+    uut.cacheData(image(3, 300));
+    assertTrue(uut.dataIsInCache(3));
+  }
+
+}
@@ -0,0 +1,205 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tools.descartes.teastore.image.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import tools.descartes.teastore.entities.ImageSize;
+import tools.descartes.teastore.entities.ImageSizePreset;
+import tools.descartes.teastore.image.ImageDB;
+import tools.descartes.teastore.image.StoreImage;
+import tools.descartes.teastore.image.cache.rules.CacheAll;
+import tools.descartes.teastore.image.storage.IDataStorage;
+
+public class TestSizeQuotaCache {
+
+  private static final ImageSize ICON = ImageSizePreset.ICON.getSize();
+  private static final ImageSize FULL = ImageSizePreset.FULL.getSize();
+  private static final ImageSize RECOMMENDATION = ImageSizePreset.RECOMMENDATION.getSize();
+
+  private Map<ImageSize, Integer> quotas;
+  private MapStorage storage;
+  private ImageDB db;
+
+  @Before
+  public void initialize() {
+    quotas = new HashMap<>();
+    quotas.put(ICON, 50);
+    quotas.put(FULL, 25);
+    storage = new MapStorage();
+    db = new ImageDB();
+  }
+
+  private SizeQuotaCache create(long maxCacheSize) {
+    return new SizeQuotaCache(storage, db, maxCacheSize, new CacheAll<StoreImage>(), quotas,
+        size -> new LeastRecentlyUsed<StoreImage>(size));
+  }
+
+  private StoreImage image(long id, ImageSize size, int bytes) {
+    StoreImage img = new StoreImage(id, new byte[bytes], size);
+    db.setImageMapping(id, id, size);
+    storage.saveData(img);
+    return img;
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void testConstructorQuotasNull() {
+    new SizeQuotaCache(storage, db, 1000, new CacheAll<StoreImage>(), null,
+        size -> new LeastRecentlyUsed<StoreImage>(size));
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void testConstructorImageDBNull() {
+    new SizeQuotaCache(storage, null, 1000, new CacheAll<StoreImage>(), quotas,
+        size -> new LeastRecentlyUsed<StoreImage>(size));
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void testConstructorFactoryNull() {
+    new SizeQuotaCache(storage, db, 1000, new CacheAll<StoreImage>(), null);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructorQuotasExceeded() {
+    quotas.put(RECOMMENDATION, 26);
+    create(1000);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructorZeroSize() {
+    create(0);
+  }
+
+  @Test
+  public void testQuotas() {
+    SizeQuotaCache uut = create(1000);
+    StoreImage icon = image(1, ICON, 400);
+    uut.loadData(icon.getId());
+    assertTrue(uut.dataIsInCache(icon.getId()));
+
+    // Full size images only evict each other
+    for (long id = 10; id < 20; id++) {
+      StoreImage full = image(id, FULL, 200);
+      uut.loadData(id);
+      uut.loadData(id);
+      assertTrue(uut.dataIsInCache(full.getId()));
+    }
+    assertTrue(uut.dataIsInCache(icon.getId()));
+    assertTrue(uut.getCurrentCacheSize() <= uut.getMaxCacheSize());
+
+    // Other sizes share the remaining quota
+    StoreImage preview = image(2, RECOMMENDATION, 250);
+    uut.loadData(preview.getId());
+    assertTrue(uut.dataIsInCache(preview.getId()));
+    assertEquals(850, uut.getCurrentCacheSize());
+  }
+
+  @Test
+  public void testAdmission() {
+    SizeQuotaCache uut = create(1000);
+    StoreImage first = image(1, FULL, 200);
+    assertEquals(first, uut.loadData(first.getId()));
+    assertTrue(uut.dataIsInCache(first.getId()));
+
+    // A full partition only admits images requested more than once
+    StoreImage second = image(2, FULL, 200);
+    assertEquals(second, uut.loadData(second.getId()));
+    assertFalse(uut.dataIsInCache(second.getId()));
+    assertTrue(uut.dataIsInCache(first.getId()));
+    uut.loadData(second.getId());
+    assertTrue(uut.dataIsInCache(second.getId()));
+    assertFalse(uut.dataIsInCache(first.getId()));
+  }
+
+  @Test
+  public void testNoSharedQuota() {
+    quotas.put(RECOMMENDATION, 25);
+    SizeQuotaCache uut = create(1000);
+    StoreImage other = image(1, ImageSizePreset.LOGO.getSize(), 10);
+    assertFalse(uut.dataIsCachable(other));
+    assertEquals(other, uut.loadData(other.getId()));
+    assertFalse(uut.dataIsInCache(other.getId()));
+  }
+
+  @Test
+  public void testUncacheAndClear() {
+    SizeQuotaCache uut = create(1000);
+    StoreImage icon = image(1, ICON, 100);
+    StoreImage full = image(2, FULL, 100);
+    uut.cacheData(icon);
+    uut.cacheData(full);
+    assertEquals(200, uut.getCurrentCacheSize());
+    assertTrue(uut.deleteData(icon));
+    assertFalse(uut.dataIsInCache(icon.getId()));
+    assertFalse(uut.dataExists(icon.getId()));
+    assertNull(uut.loadData(icon.getId()));
+    uut.clearCache();
+    assertEquals(0, uut.getCurrentCacheSize());
+    assertTrue(uut.dataExists(full.getId()));
+  }
+
+  @Test
+  public void testSetMaxCacheSize() {
+    SizeQuotaCache uut = create(1000);
+    uut.cacheData(image(1, ICON, 400));
+    uut.cacheData(image(2, FULL, 200));
+    assertTrue(uut.setMaxCacheSize(500));
+    assertEquals(500, uut.getMaxCacheSize());
+    assertEquals(0, uut.getCurrentCacheSize());
+    uut.cacheData(image(3, ICON, 250));
+    assertEquals(250, uut.getCurrentCacheSize());
+  }
+
+  private static class MapStorage implements IDataStorage<StoreImage> {
+
+    private final Map<Long, StoreImage> images = new HashMap<>();
+
+    @Override
+    public boolean dataExists(long id) {
+      return images.containsKey(id);
+    }
+
+    @Override
+    public StoreImage loadData(long id) {
+      return images.get(id);
+    }
+
+    @Override
+    public boolean saveData(StoreImage data) {
+      images.put(data.getId(), data);
+      return true;
+    }
+
+    @Override
+    public boolean dataIsStorable(StoreImage data) {
+      return true;
+    }
+
+    @Override
+    public boolean deleteData(StoreImage data) {
+      return images.remove(data.getId()) != null;
+    }
+
+  }
+
+}
@@ -0,0 +1,135 @@
+package tools.descartes.teastore.image.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TestTinyLFU extends AbstractCacheTestInit {
+
+  @Test
+  public void testConstructorSimple() {
+    new TinyLFU<DummyData>();
+  }
+
+  @Test
+  public void testConstructorSize() {
+    new TinyLFU<DummyData>(24 * 1024 * 1024);
+    new TinyLFU<DummyData>(1);
+  }
+
+  @Test
+  public void testConstructorSizePredicate() {
+    new TinyLFU<DummyData>(1, predicate -> true);
+  }
+
+  @Test
+  public void testConstructorStorageSizePredicate() {
+    new TinyLFU<DummyData>(storage, 1, predicate -> true);
+  }
+
+  @Test
+  public void testConstructorStorageNull() {
+    new TinyLFU<DummyData>(null, 1, predicate -> true);
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void testConstructorPredicateNull() {
+    new TinyLFU<DummyData>(1, null);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructorZeroSize() {
+    new TinyLFU<DummyData>(0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructorNegativeSize() {
+    new TinyLFU<DummyData>(-1);
+  }
+
+  @Test
+  public void testCacheData() {
+    // Standard caching behavior
+    TinyLFU<DummyData> uut = new TinyLFU<>(storage, 6500, predicate -> predicate != null);
+    uut.cacheData(c1);
+    uut.cacheData(c2);
+    for (int i = 0; i < 3; i++) {
+      assertEquals(c1, uut.loadData(c1.getId()));
+      assertEquals(c2, uut.loadData(c2.getId()));
+    }
+    uut.cacheData(c0);
+    assertTrue(uut.dataIsInCache(c0.getId()));
+    assertTrue(uut.dataIsInCache(c1.getId()));
+    assertTrue(uut.dataIsInCache(c2.getId()));
+
+    // A new entry seen only once is not admitted in favor of the frequently used entries
+    uut.cacheData(c3);
+    assertTrue(uut.dataIsInCache(c1.getId()));
+    assertTrue(uut.dataIsInCache(c2.getId()));
+    assertFalse(uut.dataIsInCache(c3.getId()));
+    assertTrue(uut.getCurrentCacheSize() <= uut.getMaxCacheSize());
+
+    // Test not caching items larger than the max cache size
+    uut = new TinyLFU<>(storage, 1000, predicate -> true);
+    uut.cacheData(c3);
+    assertFalse(uut.dataIsInCache(c3.getId()));
+  }
+
+  @Test
+  public void testUncacheData() {
+    TinyLFU<DummyData> uut = new TinyLFU<>(storage, 6500, predicate -> true);
+    uut.cacheData(c0);
+    uut.cacheData(c1);
+    uut.loadData(c0.getId());
+    uut.uncacheData(c0);
+    assertFalse(uut.dataIsInCache(c0.getId()));
+    assertTrue(uut.dataIsInCache(c1.getId()));
+    assertEquals(c1.getByteSize(), uut.getCurrentCacheSize());
+    uut.clearCache();
+    assertFalse(uut.dataIsInCache(c1.getId()));
+    assertEquals(0, uut.getCurrentCacheSize());
+  }
+
+  @Test
+  public void testSetMaxCacheSize() {
+    TinyLFU<DummyData> uut = new TinyLFU<>(storage, 20000, predicate -> true);
+    uut.cacheData(c0);
+    uut.cacheData(c1);
+    uut.cacheData(c2);
+    assertEquals(6000, uut.getCurrentCacheSize());
+    assertTrue(uut.setMaxCacheSize(3000));
+    assertTrue(uut.getCurrentCacheSize() <= 3000);
+  }
+
+  @Test
+  public void testConcurrentLoadData() throws InterruptedException {
+    TinyLFU<DummyData> uut = new TinyLFU<>(storage, 20000, predicate -> true);
+    List<Thread> threads = new ArrayList<>();
+    List<Throwable> errors = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      Thread thread = new Thread(() -> {
+        for (int i = 0; i < 10000; i++) {
+          if (uut.loadData(i % 4) == null) {
+            synchronized (errors) {
+              errors.add(new AssertionError("Entry " + (i % 4) + " not found."));
+            }
+          }
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertTrue(errors.isEmpty());
+    assertEquals(c0.getByteSize() + c1.getByteSize() + c2.getByteSize() + c3.getByteSize(),
+        uut.getCurrentCacheSize());
+  }
+
+}
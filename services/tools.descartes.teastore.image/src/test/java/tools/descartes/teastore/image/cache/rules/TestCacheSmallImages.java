@@ -0,0 +1,65 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tools.descartes.teastore.image.cache.rules;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import tools.descartes.teastore.entities.ImageSizePreset;
+import tools.descartes.teastore.image.StoreImage;
+
+public class TestCacheSmallImages {
+
+  @Mock
+  private StoreImage mockedLargeImg;
+  @Mock
+  private StoreImage mockedIconImg;
+  @Mock
+  private StoreImage mockedMainImg;
+  @Mock
+  private StoreImage mockedPreviewImg;
+
+  @Before
+  public void initialize() {
+    MockitoAnnotations.openMocks(this);
+    when(mockedLargeImg.getSize()).thenReturn(ImageSizePreset.FULL.getSize());
+    when(mockedIconImg.getSize()).thenReturn(ImageSizePreset.ICON.getSize());
+    when(mockedMainImg.getSize()).thenReturn(ImageSizePreset.MAIN_IMAGE.getSize());
+    when(mockedPreviewImg.getSize()).thenReturn(ImageSizePreset.PREVIEW.getSize());
+  }
+
+  @Test
+  public void testRule() {
+    CacheSmallImages uut = new CacheSmallImages();
+    assertFalse(uut.test(mockedLargeImg));
+    assertTrue(uut.test(mockedIconImg));
+    assertFalse(uut.test(mockedMainImg));
+    assertTrue(uut.test(mockedPreviewImg));
+    assertFalse(uut.test(null));
+  }
+
+  @Test
+  public void testRuleMaxPixels() {
+    CacheSmallImages uut = new CacheSmallImages(Long.MAX_VALUE);
+    assertTrue(uut.test(mockedLargeImg));
+    assertTrue(uut.test(mockedMainImg));
+  }
+
+}
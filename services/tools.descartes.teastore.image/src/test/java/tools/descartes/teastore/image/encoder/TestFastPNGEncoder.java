@@ -0,0 +1,94 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tools.descartes.teastore.image.encoder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+import tools.descartes.teastore.image.StoreImage;
+
+public class TestFastPNGEncoder {
+
+  static BufferedImage createImage(int type) {
+    BufferedImage img = new BufferedImage(37, 23, type);
+    Random rand = new Random(5);
+    for (int y = 0; y < img.getHeight(); y++) {
+      for (int x = 0; x < img.getWidth(); x++) {
+        // Mostly flat areas like the generated images, with some noise
+        int argb = x < 20 ? 0xFF3366CC : rand.nextInt();
+        if (type == BufferedImage.TYPE_INT_ARGB_PRE) {
+          argb |= 0xFF000000;
+        }
+        img.setRGB(x, y, argb);
+      }
+    }
+    return img;
+  }
+
+  static void assertRoundTrip(IImageEncoder encoder, BufferedImage img) throws IOException {
+    ByteBuffer png = encoder.encode(img);
+    byte[] data = new byte[png.remaining()];
+    png.get(data);
+    assertTrue(StoreImage.isPNG(data));
+    BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(data));
+    assertEquals(img.getWidth(), decoded.getWidth());
+    assertEquals(img.getHeight(), decoded.getHeight());
+    for (int y = 0; y < img.getHeight(); y++) {
+      for (int x = 0; x < img.getWidth(); x++) {
+        assertEquals(img.getRGB(x, y), decoded.getRGB(x, y));
+      }
+    }
+  }
+
+  @Test
+  public void testEncode() throws IOException {
+    FastPNGEncoder uut = new FastPNGEncoder();
+    assertRoundTrip(uut, createImage(BufferedImage.TYPE_INT_RGB));
+    assertRoundTrip(uut, createImage(BufferedImage.TYPE_INT_ARGB));
+    assertRoundTrip(uut, createImage(BufferedImage.TYPE_INT_ARGB_PRE));
+    assertRoundTrip(uut, createImage(BufferedImage.TYPE_3BYTE_BGR));
+  }
+
+  @Test
+  public void testCompressionLevel() throws IOException {
+    BufferedImage img = createImage(BufferedImage.TYPE_INT_RGB);
+    assertRoundTrip(new FastPNGEncoder(Deflater.NO_COMPRESSION), img);
+    assertTrue(new FastPNGEncoder(Deflater.NO_COMPRESSION).encode(img).remaining()
+        > new FastPNGEncoder(Deflater.BEST_COMPRESSION).encode(img).remaining());
+    assertEquals(FastPNGEncoder.STD_COMPRESSION_LEVEL,
+        new FastPNGEncoder(Deflater.DEFAULT_COMPRESSION).getCompressionLevel());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testCompressionLevelInvalid() {
+    new FastPNGEncoder(10);
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void testEncodeNull() throws IOException {
+    new FastPNGEncoder().encode(null);
+  }
+
+}
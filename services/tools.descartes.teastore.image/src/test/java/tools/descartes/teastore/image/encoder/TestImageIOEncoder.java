@@ -0,0 +1,46 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tools.descartes.teastore.image.encoder;
+
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.zip.Deflater;
+
+import org.junit.Test;
+
+public class TestImageIOEncoder {
+
+  @Test
+  public void testEncode() throws IOException {
+    ImageIOEncoder uut = new ImageIOEncoder();
+    TestFastPNGEncoder.assertRoundTrip(uut, TestFastPNGEncoder.createImage(BufferedImage.TYPE_INT_RGB));
+    TestFastPNGEncoder.assertRoundTrip(uut, TestFastPNGEncoder.createImage(BufferedImage.TYPE_INT_ARGB));
+  }
+
+  @Test
+  public void testCompressionLevel() throws IOException {
+    BufferedImage img = TestFastPNGEncoder.createImage(BufferedImage.TYPE_INT_RGB);
+    TestFastPNGEncoder.assertRoundTrip(new ImageIOEncoder(Deflater.NO_COMPRESSION), img);
+    assertTrue(new ImageIOEncoder(Deflater.NO_COMPRESSION).encode(img).remaining()
+        > new ImageIOEncoder(Deflater.BEST_COMPRESSION).encode(img).remaining());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testCompressionLevelInvalid() {
+    new ImageIOEncoder(-2);
+  }
+
+}
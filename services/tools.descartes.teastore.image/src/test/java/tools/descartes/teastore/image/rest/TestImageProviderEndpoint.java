@@ -0,0 +1,126 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tools.descartes.teastore.image.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.awt.image.BufferedImage;
+import java.net.URI;
+import java.util.concurrent.ExecutionException;
+
+import jakarta.ws.rs.core.HttpHeaders;
+
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.server.ApplicationHandler;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.glassfish.jersey.server.ContainerResponse;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.junit.Before;
+import org.junit.Test;
+
+import tools.descartes.teastore.entities.ImageSize;
+import tools.descartes.teastore.entities.ImageSizePreset;
+import tools.descartes.teastore.image.ImageDB;
+import tools.descartes.teastore.image.ImageProvider;
+import tools.descartes.teastore.image.StoreImage;
+import tools.descartes.teastore.image.setup.ImageIDFactory;
+import tools.descartes.teastore.image.storage.IDataStorage;
+
+public class TestImageProviderEndpoint {
+
+  private static final long PRODUCT_ID = 42;
+  private static final long UNKNOWN_PRODUCT_ID = 43;
+
+  private ApplicationHandler handler;
+  private StoreImage image;
+
+  @SuppressWarnings("unchecked")
+  @Before
+  public void initialize() {
+    ImageSize size = ImageSizePreset.STD_IMAGE_SIZE;
+    image = new StoreImage(ImageIDFactory.ID.getNextImageID(),
+        new BufferedImage(size.getWidth(), size.getHeight(), BufferedImage.TYPE_INT_RGB), size);
+    ImageDB db = new ImageDB();
+    db.setImageMapping(PRODUCT_ID, image.getId(), size);
+    IDataStorage<StoreImage> storage = mock(IDataStorage.class);
+    when(storage.dataExists(image.getId())).thenReturn(true);
+    when(storage.loadData(image.getId())).thenReturn(image);
+
+    ImageProvider.IP.setImageDB(db);
+    ImageProvider.IP.setStorage(storage);
+    handler = new ApplicationHandler(new ResourceConfig(ImageProviderEndpoint.class));
+  }
+
+  @Test
+  public void testGetImage() {
+    ContainerResponse response = get(PRODUCT_ID, null);
+    assertEquals(200, response.getStatus());
+    assertEquals(ImageProviderEndpoint.IMAGE_MEDIA_TYPE, response.getMediaType().toString());
+    assertNotNull(response.getEntityTag());
+    assertEquals(String.valueOf(image.getByteArray().length), response.getHeaderString(HttpHeaders.CONTENT_LENGTH));
+    assertTrue(response.getHeaderString(HttpHeaders.CACHE_CONTROL)
+        .contains("max-age=" + ImageProviderEndpoint.IMAGE_MAX_AGE));
+  }
+
+  @Test
+  public void testNotModified() {
+    String etag = get(PRODUCT_ID, null).getHeaderString(HttpHeaders.ETAG);
+
+    ContainerResponse response = get(PRODUCT_ID, etag);
+    assertEquals(304, response.getStatus());
+    assertEquals(etag, response.getHeaderString(HttpHeaders.ETAG));
+
+    assertEquals(304, get(PRODUCT_ID, "W/" + etag).getStatus());
+    assertEquals(304, get(PRODUCT_ID, "\"0\", " + etag).getStatus());
+    assertEquals(304, get(PRODUCT_ID, "*").getStatus());
+    assertEquals(200, get(PRODUCT_ID, "\"0\"").getStatus());
+  }
+
+  @Test
+  public void testUnknownImage() {
+    assertEquals(404, get(UNKNOWN_PRODUCT_ID, null).getStatus());
+  }
+
+  @Test
+  public void testMalformedSize() {
+    ContainerRequest request = request("image/" + PRODUCT_ID + "/large");
+    assertEquals(400, apply(request).getStatus());
+  }
+
+  private ContainerResponse get(long productID, String ifNoneMatch) {
+    ContainerRequest request = request("image/" + productID + "/" + ImageSizePreset.STD_IMAGE_SIZE.toString());
+    if (ifNoneMatch != null) {
+      request.header(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+    }
+    return apply(request);
+  }
+
+  private ContainerRequest request(String path) {
+    URI base = URI.create("http://localhost/");
+    return new ContainerRequest(base, base.resolve(path), "GET", null, new MapPropertiesDelegate(),
+        handler.getConfiguration());
+  }
+
+  private ContainerResponse apply(ContainerRequest request) {
+    try {
+      return handler.apply(request).get();
+    } catch (InterruptedException | ExecutionException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
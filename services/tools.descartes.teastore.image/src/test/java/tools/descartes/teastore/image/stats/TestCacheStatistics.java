@@ -0,0 +1,42 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tools.descartes.teastore.image.stats;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class TestCacheStatistics {
+
+  @Test
+  public void testPartitions() {
+    CacheStatistics small = new CacheStatistics();
+    CacheStatistics large = new CacheStatistics();
+    CacheStatistics uut = new CacheStatistics(Arrays.asList(small, large));
+    uut.recordEviction();
+    uut.recordRejection();
+    small.recordEviction();
+    small.recordRejection();
+    large.recordRejection();
+    large.recordRejection();
+
+    assertEquals(2, uut.getEvictions());
+    assertEquals(4, uut.getRejections());
+    assertEquals(4L, uut.toMap().get("rejections"));
+    assertEquals(2, large.getRejections());
+  }
+
+}
@@ -0,0 +1,74 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tools.descartes.teastore.image.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class TestHotKeys {
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructorCapacity() {
+    new HotKeys(0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructorSampleRate() {
+    new HotKeys(1, 0);
+  }
+
+  @Test
+  public void testHottest() {
+    HotKeys uut = new HotKeys(2, 1);
+    record(uut, 1, 1, 1, 2);
+    assertEquals(hottest(1, 3, 2, 1), uut.getHottest(2));
+    assertEquals(hottest(1, 3), uut.getHottest(1));
+
+    // key 3 replaces the least counted key 2 and inherits its count
+    record(uut, 3);
+    assertEquals(hottest(1, 3, 3, 2), uut.getHottest(2));
+    record(uut, 3, 3);
+    assertEquals(hottest(3, 4, 1, 3), uut.getHottest(2));
+    assertEquals(Arrays.asList(3L, 1L), new ArrayList<>(uut.getHottest(2).keySet()));
+
+    // key 2 comes back and replaces key 1
+    record(uut, 2);
+    assertEquals(hottest(3, 4, 2, 4), uut.getHottest(2));
+
+    uut.clear();
+    assertTrue(uut.getHottest(2).isEmpty());
+  }
+
+  private static void record(HotKeys uut, long... keys) {
+    for (long key : keys) {
+      uut.record(key);
+    }
+  }
+
+  private static Map<Long, Long> hottest(long... keysAndCounts) {
+    Map<Long, Long> result = new LinkedHashMap<>();
+    for (int i = 0; i < keysAndCounts.length; i += 2) {
+      result.put(keysAndCounts[i], keysAndCounts[i + 1]);
+    }
+    return result;
+  }
+
+}
@@ -0,0 +1,57 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tools.descartes.teastore.image.stats;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class TestLatencyHistogram {
+
+  @Test
+  public void testEmpty() {
+    LatencyHistogram uut = new LatencyHistogram();
+    assertEquals(0, uut.getCount());
+    assertEquals(0, uut.getMeanMicros(), 0);
+    assertEquals(0, uut.getPercentileMicros(99));
+  }
+
+  @Test
+  public void testPercentiles() {
+    LatencyHistogram uut = new LatencyHistogram();
+    for (int i = 0; i < 99; i++) {
+      uut.record(TimeUnit.MICROSECONDS.toNanos(100));
+    }
+    uut.record(TimeUnit.MILLISECONDS.toNanos(50));
+    assertEquals(100, uut.getCount());
+    assertEquals((99 * 100 + 50000) / 100.0, uut.getMeanMicros(), 0.001);
+    assertEquals(128, uut.getPercentileMicros(50));
+    assertEquals(128, uut.getPercentileMicros(99));
+    assertEquals(65536, uut.getPercentileMicros(100));
+    assertEquals(128, uut.getPercentileMicros(0));
+  }
+
+  @Test
+  public void testLimits() {
+    LatencyHistogram uut = new LatencyHistogram();
+    uut.record(-1);
+    uut.record(Long.MAX_VALUE);
+    assertEquals(2, uut.getCount());
+    assertEquals(1, uut.getPercentileMicros(50));
+    assertEquals(1L << 31, uut.getPercentileMicros(100));
+  }
+
+}
@@ -13,6 +13,109 @@
  */
 package tools.descartes.teastore.image.storage;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import tools.descartes.teastore.entities.ImageSizePreset;
+import tools.descartes.teastore.image.ImageDB;
+import tools.descartes.teastore.image.StoreImage;
+import tools.descartes.teastore.image.storage.rules.StoreAll;
+
 public class TestDriveStorage {
 
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private Path workingDir;
+  private ImageDB db;
+  private StoreImage img;
+
+  @Before
+  public void initialize() throws IOException {
+    workingDir = folder.newFolder().toPath();
+    db = new ImageDB();
+    db.setImageMapping(1L, 1L, ImageSizePreset.ICON.getSize());
+    img = new StoreImage(1L, new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB),
+        ImageSizePreset.ICON.getSize());
+  }
+
+  @Test
+  public void testSaveAndLoadData() {
+    DriveStorage uut = new DriveStorage(workingDir, db, new StoreAll<StoreImage>());
+    assertFalse(uut.dataExists(img.getId()));
+    assertTrue(uut.saveData(img));
+    assertTrue(uut.dataExists(img.getId()));
+    assertArrayEquals(img.getByteArray(), uut.loadData(img.getId()).getByteArray());
+    assertTrue(uut.deleteData(img));
+    assertNull(uut.loadData(img.getId()));
+
+    assertEquals(1, uut.getStatistics().getLoadLatency().getCount());
+    assertEquals(1, uut.getStatistics().getSaveLatency().getCount());
+    assertEquals(1, uut.getStatistics().getNotFound());
+  }
+
+  @Test
+  public void testDeleteTemporaryFiles() throws IOException {
+    DriveStorage uut = new DriveStorage(workingDir, db, new StoreAll<StoreImage>());
+    assertTrue(uut.saveData(img));
+    Path orphaned = Files.createTempFile(workingDir, "." + img.getId(), DriveStorage.TEMPORARY_FILE_EXTENSION);
+    Path other = Files.createFile(workingDir.resolve("notes.tmp"));
+
+    DriveStorage.deleteTemporaryFiles(workingDir);
+    assertFalse(Files.exists(orphaned));
+    assertTrue(Files.exists(other));
+    assertTrue(uut.dataExists(img.getId()));
+  }
+
+  @Test
+  public void testLoadBase64File() throws IOException {
+    Path imgFile = workingDir.resolve(String.valueOf(img.getId()));
+    Files.write(imgFile, Base64.getEncoder().encode(img.getByteArray()));
+
+    DriveStorage uut = new DriveStorage(workingDir, db, new StoreAll<StoreImage>());
+    StoreImage loaded = uut.loadData(img.getId());
+    assertArrayEquals(img.getByteArray(), loaded.getByteArray());
+    assertEquals(4, loaded.getImage().getWidth());
+    // File is migrated to the binary format
+    assertTrue(StoreImage.isPNG(Files.readAllBytes(imgFile)));
+  }
+
+  @Test
+  public void testConcurrentSaveAndLoad() throws Exception {
+    DriveStorage uut = new DriveStorage(workingDir, db, new StoreAll<StoreImage>());
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    List<Future<Boolean>> results = new ArrayList<>();
+    for (long id = 2; id < 202; id++) {
+      StoreImage copy = new StoreImage(id, img.getByteArray(), img.getSize());
+      db.setImageMapping(id, id, img.getSize());
+      results.add(executor.submit(() -> uut.saveData(copy)
+          && uut.loadData(copy.getId()).getByteSize() == img.getByteSize()));
+    }
+    for (Future<Boolean> result : results) {
+      assertTrue(result.get());
+    }
+    executor.shutdown();
+    // Temporary files are renamed to the image files
+    assertEquals(200, workingDir.toFile().list().length);
+  }
+
 }
@@ -0,0 +1,137 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tools.descartes.teastore.image.storage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import tools.descartes.teastore.entities.ImageSizePreset;
+import tools.descartes.teastore.image.ImageDB;
+import tools.descartes.teastore.image.StoreImage;
+import tools.descartes.teastore.image.storage.rules.StoreAll;
+
+public class TestMappedPackStorage {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private Path workingDir;
+  private ImageDB db;
+  private StoreImage img;
+
+  @Before
+  public void initialize() throws IOException {
+    workingDir = folder.newFolder().toPath();
+    db = new ImageDB();
+    img = new StoreImage(1L, new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB),
+        ImageSizePreset.ICON.getSize());
+    db.setImageMapping(1L, img.getId(), img.getSize());
+  }
+
+  private File[] segments() {
+    return workingDir.toFile().listFiles(
+        (file, name) -> name.endsWith(MappedPackStorage.SEGMENT_FILE_EXTENSION));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructorSegmentSize() {
+    new MappedPackStorage(workingDir, db, new StoreAll<StoreImage>(), 0);
+  }
+
+  @Test
+  public void testSaveAndLoadData() {
+    MappedPackStorage uut = new MappedPackStorage(workingDir, db, new StoreAll<StoreImage>(), 1024);
+    assertFalse(uut.dataExists(img.getId()));
+    assertNull(uut.loadData(img.getId()));
+    assertTrue(uut.saveData(img));
+    assertTrue(uut.dataExists(img.getId()));
+    assertEquals(1, segments().length);
+
+    StoreImage loaded = uut.loadData(img.getId());
+    assertArrayEquals(img.getByteArray(), loaded.getByteArray());
+    assertEquals(img.getSize(), loaded.getSize());
+    assertTrue(loaded.getByteBuffer().isReadOnly());
+    assertTrue(loaded.getByteBuffer().isDirect());
+  }
+
+  @Test
+  public void testSegments() {
+    MappedPackStorage uut = new MappedPackStorage(workingDir, db, new StoreAll<StoreImage>(),
+        (int) img.getByteSize() + 1);
+    StoreImage second = new StoreImage(2L, img.getByteArray(), img.getSize());
+    db.setImageMapping(2L, second.getId(), second.getSize());
+    assertTrue(uut.saveData(img));
+    assertTrue(uut.saveData(second));
+    assertEquals(2, segments().length);
+    assertArrayEquals(img.getByteArray(), uut.loadData(img.getId()).getByteArray());
+    assertArrayEquals(img.getByteArray(), uut.loadData(second.getId()).getByteArray());
+
+    MappedPackStorage.deleteSegments(workingDir);
+    assertEquals(0, segments().length);
+  }
+
+  @Test
+  public void testLoadImageFile() throws IOException {
+    Files.write(workingDir.resolve(String.valueOf(img.getId())), img.getByteArray());
+    MappedPackStorage uut = new MappedPackStorage(workingDir, db, new StoreAll<StoreImage>());
+    assertTrue(uut.dataExists(img.getId()));
+    assertArrayEquals(img.getByteArray(), uut.loadData(img.getId()).getByteArray());
+    assertEquals(1, segments().length);
+    assertTrue(uut.loadData(img.getId()).getByteBuffer().isDirect());
+  }
+
+  @Test
+  public void testRestartWithExistingSegments() throws IOException {
+    // Segments of a previous run, numbered beyond the segments of this run so far
+    Path left = workingDir.resolve("segment-1000" + MappedPackStorage.SEGMENT_FILE_EXTENSION);
+    Files.write(left, new byte[] { 1, 2, 3 });
+    MappedPackStorage uut = new MappedPackStorage(workingDir, db, new StoreAll<StoreImage>(), 1024);
+    assertTrue(uut.saveData(img));
+    assertArrayEquals(img.getByteArray(), uut.loadData(img.getId()).getByteArray());
+    assertEquals(2, segments().length);
+    assertArrayEquals(new byte[] { 1, 2, 3 }, Files.readAllBytes(left));
+
+    // A restarted storage over the same directory neither overwrites nor fails on the existing segments
+    MappedPackStorage restarted = new MappedPackStorage(workingDir, db, new StoreAll<StoreImage>(), 1024);
+    assertFalse(restarted.dataExists(img.getId()));
+    assertTrue(restarted.saveData(img));
+    assertArrayEquals(img.getByteArray(), restarted.loadData(img.getId()).getByteArray());
+    assertEquals(3, segments().length);
+    assertArrayEquals(img.getByteArray(), uut.loadData(img.getId()).getByteArray());
+  }
+
+  @Test
+  public void testDeleteData() {
+    MappedPackStorage uut = new MappedPackStorage(workingDir, db, new StoreAll<StoreImage>(), 1024);
+    assertTrue(uut.saveData(img));
+    assertTrue(uut.deleteData(img));
+    assertFalse(uut.dataExists(img.getId()));
+    assertNull(uut.loadData(img.getId()));
+  }
+
+}
@@ -0,0 +1,93 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tools.descartes.teastore.image.tier;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import tools.descartes.teastore.entities.ImageSize;
+import tools.descartes.teastore.image.ImageDBKey;
+import tools.descartes.teastore.image.StoreImage;
+
+public class TestReplicaTier {
+
+  private static final byte[] DATA = { 1, 2, 3, 4 };
+  private static final ImageSize SIZE = new ImageSize(64, 64);
+  private static final ImageDBKey PRODUCT = new ImageDBKey(12345L);
+  private static final ImageDBKey WEB = new ImageDBKey("front");
+
+  private int remoteFetches;
+  private byte[] remoteData;
+  private ReplicaTier uut;
+
+  @Before
+  public void initialize() {
+    remoteFetches = 0;
+    remoteData = DATA;
+    uut = new ReplicaTier() {
+      @Override
+      protected byte[] fetchFromOwner(ImageDBKey key, ImageSize size) {
+        remoteFetches++;
+        return remoteData;
+      }
+    };
+  }
+
+  @Test
+  public void testVariantID() {
+    long id = ReplicaTier.variantID(PRODUCT, SIZE);
+    assertTrue(id < 0);
+    assertEquals(id, ReplicaTier.variantID(new ImageDBKey(12345L), new ImageSize(64, 64)));
+    assertNotEquals(id, ReplicaTier.variantID(new ImageDBKey(12346L), SIZE));
+    assertNotEquals(id, ReplicaTier.variantID(PRODUCT, new ImageSize(64, 65)));
+    assertNotEquals(id, ReplicaTier.variantID(PRODUCT, new ImageSize(65, 64)));
+    assertTrue(ReplicaTier.variantID(WEB, SIZE) < 0);
+    assertEquals(ReplicaTier.variantID(WEB, SIZE), ReplicaTier.variantID(new ImageDBKey("front"), SIZE));
+    assertNotEquals(ReplicaTier.variantID(WEB, SIZE), ReplicaTier.variantID(new ImageDBKey("back"), SIZE));
+  }
+
+  @Test
+  public void testFetchCachesLocally() {
+    StoreImage first = uut.fetch(PRODUCT, SIZE);
+    StoreImage second = uut.fetch(PRODUCT, SIZE);
+    assertEquals(1, remoteFetches);
+    assertEquals(ReplicaTier.variantID(PRODUCT, SIZE), first.getId());
+    assertEquals(first.getId(), second.getId());
+    assertArrayEquals(DATA, second.getByteArray());
+
+    uut.fetch(WEB, SIZE);
+    uut.fetch(PRODUCT, new ImageSize(32, 32));
+    assertEquals(3, remoteFetches);
+  }
+
+  @Test
+  public void testFetchFailure() {
+    remoteData = null;
+    assertNull(uut.fetch(PRODUCT, SIZE));
+    assertNull(uut.fetch(PRODUCT, SIZE));
+    assertEquals(2, remoteFetches);
+
+    remoteData = DATA;
+    assertArrayEquals(DATA, uut.fetch(PRODUCT, SIZE).getByteArray());
+    uut.fetch(PRODUCT, SIZE);
+    assertEquals(3, remoteFetches);
+  }
+
+}
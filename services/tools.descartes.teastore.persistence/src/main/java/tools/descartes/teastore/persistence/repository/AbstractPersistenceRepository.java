@@ -107,6 +107,8 @@ public abstract class AbstractPersistenceRepository<E, P extends E> {
 	/**
 	 * Get all entities of the generic types of entities managed in this repository.
 	 * Starts with the "start" entity and returns at maximum "limit" entities.
+	 * Entities are ordered by ID, so consecutive pages neither overlap nor skip entities
+	 * if new entities are created in between.
 	 * @param start The index of the entity to start with. Set to negative value to start at the beginning.
 	 * @param limit The maximum number of entites to return. Set to negative value to return all.
 	 * @return List of entities.
@@ -116,7 +118,8 @@ public abstract class AbstractPersistenceRepository<E, P extends E> {
 		List<P> entities = null;
 		try {
 			TypedQuery<P> allMatchesQuery =
-					em.createQuery("SELECT u FROM " + getEntityClass().getName() + " u", getEntityClass());
+					em.createQuery("SELECT u FROM " + getEntityClass().getName() + " u ORDER BY u.id",
+							getEntityClass());
 			if (start >= 0) {
 				allMatchesQuery = allMatchesQuery.setFirstResult(start);
 		    }
@@ -32,12 +32,14 @@ import tools.descartes.teastore.entities.Product;
 import tools.descartes.teastore.entities.User;
 
 /**
- * Abstract class for basic recommendation functionality.
+ * Abstract class for basic recommendation functionality. Training and updating
+ * replace the trained data instead of changing it, so a {@link #copy()} can be
+ * trained or updated while this instance keeps serving recommendations.
  * 
  * @author Johannes Grohmann
  *
  */
-public abstract class AbstractRecommender implements IRecommender {
+public abstract class AbstractRecommender implements IRecommender, Cloneable {
 
 	private boolean trainingFinished = false;
 
@@ -69,51 +71,162 @@ public abstract class AbstractRecommender implements IRecommender {
 
 	@Override
 	public void train(List<OrderItem> orderItems, List<Order> orders) {
+		train(createUserItemSets(orderItems, orders));
+	}
+
+	@Override
+	public void train(Map<Long, Set<OrderItemSet>> userItemSets) {
 		long tic = System.currentTimeMillis();
 		totalProducts = new HashSet<>();
+		addProducts(userItemSets, totalProducts);
+		this.userItemSets = userItemSets;
+		userBuyingMatrix = createUserBuyingMatrix(userItemSets);
+		executePreprocessing();
+		LOG.info("Training recommender finished. Training took: " + (System.currentTimeMillis() - tic) + "ms.");
+		trainingFinished = true;
+	}
+
+	@Override
+	public void update(List<OrderItem> orderItems, List<Order> orders) throws UnsupportedOperationException {
+		update(createUserItemSets(orderItems, orders));
+	}
+
+	@Override
+	public void update(Map<Long, Set<OrderItemSet>> newItemSets) throws UnsupportedOperationException {
+		if (!trainingFinished) {
+			throw new UnsupportedOperationException("This instance is not fully trained yet.");
+		}
+		long tic = System.currentTimeMillis();
+		Set<Long> products = new HashSet<>(totalProducts);
+		addProducts(newItemSets, products);
+		// the trained data is copied instead of changed, as it is still used for recommendations
+		Map<Long, Set<OrderItemSet>> itemSets = new HashMap<>(userItemSets);
+		Map<Long, Map<Long, Double>> matrix = new HashMap<>(userBuyingMatrix);
+		Map<Long, Map<Long, Double>> previousRatings = new HashMap<>();
+		for (Entry<Long, Set<OrderItemSet>> entry : newItemSets.entrySet()) {
+			Set<OrderItemSet> sets = new HashSet<>(entry.getValue());
+			Map<Long, Double> line = new HashMap<>();
+			Map<Long, Double> previous = matrix.get(entry.getKey());
+			if (previous != null) {
+				// this user has bought something before
+				previousRatings.put(entry.getKey(), previous);
+				sets.addAll(itemSets.get(entry.getKey()));
+				line.putAll(previous);
+			}
+			addToUserBuyingLine(line, entry.getValue());
+			itemSets.put(entry.getKey(), sets);
+			matrix.put(entry.getKey(), line);
+		}
+		userItemSets = itemSets;
+		userBuyingMatrix = matrix;
+		totalProducts = products;
+		executeUpdate(newItemSets, previousRatings);
+		LOG.info("Updating recommender finished. Update took: " + (System.currentTimeMillis() - tic) + "ms.");
+	}
+
+	/**
+	 * Creates a shallow copy of this recommender sharing all trained data. As
+	 * training and updating replace the trained data, the copy can be trained or
+	 * updated without affecting this instance.
+	 * 
+	 * @return A copy of this recommender
+	 */
+	public AbstractRecommender copy() {
+		try {
+			return (AbstractRecommender) clone();
+		} catch (CloneNotSupportedException e) {
+			throw new IllegalStateException("Recommender could not be copied.", e);
+		}
+	}
+
+	/**
+	 * Groups the given order items by order and the orders by user. The orders are
+	 * indexed by ID, so both lists are traversed only once. Order items of unknown
+	 * orders are ignored.
+	 * 
+	 * @param orderItems
+	 *            The order items to group
+	 * @param orders
+	 *            The orders of the order items
+	 * @return A map assigning each user-ID the OrderItemSets of its orders
+	 */
+	private Map<Long, Set<OrderItemSet>> createUserItemSets(List<OrderItem> orderItems, List<Order> orders) {
+		Map<Long, Order> ordersById = new HashMap<>();
+		for (Order order : orders) {
+			ordersById.put(order.getId(), order);
+		}
 		// first create order mapping unorderized
 		Map<Long, OrderItemSet> unOrderizeditemSets = new HashMap<>();
 		for (OrderItem orderItem : orderItems) {
-			if (!unOrderizeditemSets.containsKey(orderItem.getOrderId())) {
-				unOrderizeditemSets.put(orderItem.getOrderId(), new OrderItemSet());
-				unOrderizeditemSets.get(orderItem.getOrderId()).setOrderId(orderItem.getOrderId());
-			}
-			unOrderizeditemSets.get(orderItem.getOrderId()).getOrderset().put(orderItem.getProductId(),
-					orderItem.getQuantity());
-			// see, if we already have our item
-			if (!totalProducts.contains(orderItem.getProductId())) {
-				// if not known yet -> add
-				totalProducts.add(orderItem.getProductId());
+			OrderItemSet itemSet = unOrderizeditemSets.get(orderItem.getOrderId());
+			if (itemSet == null) {
+				Order realOrder = ordersById.get(orderItem.getOrderId());
+				if (realOrder == null) {
+					continue;
+				}
+				itemSet = new OrderItemSet();
+				itemSet.setOrderId(orderItem.getOrderId());
+				itemSet.setUserId(realOrder.getUserId());
+				unOrderizeditemSets.put(orderItem.getOrderId(), itemSet);
 			}
+			itemSet.getOrderset().put(orderItem.getProductId(), orderItem.getQuantity());
 		}
-		// now map each id with the corresponding order
-		Map<Order, OrderItemSet> itemSets = new HashMap<>();
-		for (Long orderid : unOrderizeditemSets.keySet()) {
-			Order realOrder = findOrder(orders, orderid);
-			itemSets.put(realOrder, unOrderizeditemSets.get(orderid));
+		// now group the complete sets by user, as their hash changes while items are added
+		Map<Long, Set<OrderItemSet>> useritemsets = new HashMap<>();
+		for (OrderItemSet itemSet : unOrderizeditemSets.values()) {
+			Set<OrderItemSet> sets = useritemsets.get(itemSet.getUserId());
+			if (sets == null) {
+				sets = new HashSet<>();
+				useritemsets.put(itemSet.getUserId(), sets);
+			}
+			sets.add(itemSet);
 		}
-		userItemSets = new HashMap<>();
-		for (Order order : itemSets.keySet()) {
-			if (!userItemSets.containsKey(order.getUserId())) {
-				userItemSets.put(order.getUserId(), new HashSet<OrderItemSet>());
+		return useritemsets;
+	}
+
+	/**
+	 * Adds the IDs of all products bought in the given OrderItemSets to the given
+	 * set.
+	 * 
+	 * @param useritemsets
+	 *            A map assigning each user-ID all its OrderItemSets
+	 * @param products
+	 *            The set to add the product IDs to
+	 */
+	private static void addProducts(Map<Long, Set<OrderItemSet>> useritemsets, Set<Long> products) {
+		for (Set<OrderItemSet> sets : useritemsets.values()) {
+			for (OrderItemSet set : sets) {
+				products.addAll(set.getOrderset().keySet());
 			}
-			itemSets.get(order).setUserId(order.getUserId());
-			userItemSets.get(order.getUserId()).add(itemSets.get(order));
 		}
-		userBuyingMatrix = createUserBuyingMatrix(userItemSets);
-		executePreprocessing();
-		LOG.info("Training recommender finished. Training took: " + (System.currentTimeMillis() - tic) + "ms.");
-		trainingFinished = true;
 	}
 
 	/**
 	 * Triggers implementing classes if they want to execute a pre-processing step
-	 * during {@link AbstractRecommender#train(List, List)}.
+	 * during {@link AbstractRecommender#train(Map)}.
 	 */
 	protected void executePreprocessing() {
 		// do nothing
 	}
 
+	/**
+	 * Triggers implementing classes to fold new orders into their pre-processed
+	 * data during {@link AbstractRecommender#update(Map)}. The user buying
+	 * matrix and the user item sets already contain the new orders. By default,
+	 * the pre-processing is executed again.
+	 * 
+	 * @param newItemSets
+	 *            A map assigning each user-ID the OrderItemSets of its new orders
+	 * @param previousRatings
+	 *            The lines of the user buying matrix of all users with new orders
+	 *            before the update. Users without previous orders are not
+	 *            contained.
+	 */
+	protected void executeUpdate(Map<Long, Set<OrderItemSet>> newItemSets,
+			Map<Long, Map<Long, Double>> previousRatings) {
+		executePreprocessing();
+	}
+
 	@Override
 	public List<Long> recommendProducts(Long userid, List<OrderItem> currentItems)
 			throws UnsupportedOperationException {
@@ -192,15 +305,6 @@ public abstract class AbstractRecommender implements IRecommender {
 	 */
 	protected abstract List<Long> execute(Long userid, List<Long> currentItems);
 
-	private Order findOrder(List<Order> orders, long orderid) {
-		for (Order order : orders) {
-			if (order.getId() == orderid) {
-				return order;
-			}
-		}
-		return null;
-	}
-
 	/**
 	 * @return the userBuyingMatrix
 	 */
@@ -264,23 +368,36 @@ public abstract class AbstractRecommender implements IRecommender {
 		for (Entry<Long, Set<OrderItemSet>> entry : useritemsets.entrySet()) {
 			// create a new line for this user-ID
 			Map<Long, Double> line = new HashMap<>();
-			// for all orders of that user
-			for (OrderItemSet orderset : entry.getValue()) {
-				// for all orderitems of that orderset
-				for (Entry<Long, Integer> product : orderset.getOrderset().entrySet()) {
-					// if key was not known before -> first occurence
-					if (!line.containsKey(product.getKey())) {
-						line.put(product.getKey(), Double.valueOf(product.getValue()));
-					} else {
-						// if key was known before -> increase counter
-						line.put(product.getKey(), Double.valueOf(line.get(product.getKey()) + product.getValue()));
-					}
-				}
-			}
+			addToUserBuyingLine(line, entry.getValue());
 			// add this user-ID to the matrix
 			matrix.put(entry.getKey(), line);
 		}
 		return matrix;
 	}
 
+	/**
+	 * Adds the number of buys of all products in the given OrderItemSets to one
+	 * line of the user buying matrix.
+	 * 
+	 * @param line
+	 *            The line of the user buying matrix
+	 * @param ordersets
+	 *            The OrderItemSets of the user of the line
+	 */
+	private static void addToUserBuyingLine(Map<Long, Double> line, Set<OrderItemSet> ordersets) {
+		// for all orders of that user
+		for (OrderItemSet orderset : ordersets) {
+			// for all orderitems of that orderset
+			for (Entry<Long, Integer> product : orderset.getOrderset().entrySet()) {
+				// if key was not known before -> first occurence
+				if (!line.containsKey(product.getKey())) {
+					line.put(product.getKey(), Double.valueOf(product.getValue()));
+				} else {
+					// if key was known before -> increase counter
+					line.put(product.getKey(), Double.valueOf(line.get(product.getKey()) + product.getValue()));
+				}
+			}
+		}
+	}
+
 }
@@ -14,6 +14,8 @@
 package tools.descartes.teastore.recommender.algorithm;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import tools.descartes.teastore.entities.Order;
 import tools.descartes.teastore.entities.OrderItem;
@@ -43,6 +45,51 @@ public interface IRecommender {
 	 */
 	public void train(List<OrderItem> orderItems, List<Order> orders);
 
+	/**
+	 * Trains this recommender with historical orders that are already grouped by
+	 * user. Allows callers to group the {@link OrderItem}s while retrieving them,
+	 * without holding all {@link OrderItem}s and {@link Order}s in memory.<br>
+	 * The given map must not be modified afterwards.
+	 * 
+	 * @param userItemSets
+	 *            A map assigning each user-ID the {@link OrderItemSet}s of all
+	 *            orders placed by the user.
+	 */
+	public void train(Map<Long, Set<OrderItemSet>> userItemSets);
+
+	/**
+	 * Folds the given {@link OrderItem}s and {@link Order}s into the knowledge
+	 * basis of this recommender without training it from scratch. The given
+	 * {@link Order}s must not have been used for training or updating before.
+	 * <br>
+	 * {@link IRecommender#train(List, List)} must be called before.
+	 * 
+	 * @param orderItems
+	 *            A list of {@link OrderItem}s that were placed by users since the
+	 *            last training or update.
+	 * @param orders
+	 *            A list of {@link Order}s that were placed by users since the last
+	 *            training or update.
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             If this instance is not trained yet.
+	 */
+	public void update(List<OrderItem> orderItems, List<Order> orders) throws UnsupportedOperationException;
+
+	/**
+	 * Folds new orders that are already grouped by user into the knowledge basis
+	 * of this recommender, see {@link IRecommender#update(List, List)}.<br>
+	 * The given map must not be modified afterwards.
+	 * 
+	 * @param newItemSets
+	 *            A map assigning each user-ID the {@link OrderItemSet}s of all
+	 *            orders placed by the user since the last training or update.
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             If this instance is not trained yet.
+	 */
+	public void update(Map<Long, Set<OrderItemSet>> newItemSets) throws UnsupportedOperationException;
+
 	/**
 	 * Return a list of all {@link Product}s, which are recommended for the given
 	 * {@link User} buying the given list of {@link OrderItem}s. <br>
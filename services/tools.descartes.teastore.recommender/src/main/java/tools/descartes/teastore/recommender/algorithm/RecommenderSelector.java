@@ -17,6 +17,8 @@ import java.lang.reflect.InvocationTargetException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import javax.naming.InitialContext;
 import javax.naming.NamingException;
@@ -33,7 +35,9 @@ import tools.descartes.teastore.entities.Order;
 import tools.descartes.teastore.entities.OrderItem;
 
 /**
- * A strategy selector for the Recommender functionality.
+ * A strategy selector for the Recommender functionality. Training and updating
+ * work on copies of the current recommenders, which are published once they are
+ * complete. Recommendations are served by the previous recommenders meanwhile.
  * 
  * @author Johannes Grohmann
  *
@@ -44,10 +48,10 @@ public final class RecommenderSelector implements IRecommender {
 	 * This map lists all currently available recommending approaches and assigns
 	 * them their "name" for the environment variable.
 	 */
-	private static Map<String, Class<? extends IRecommender>> recommenders = new HashMap<>();
+	private static Map<String, Class<? extends AbstractRecommender>> recommenders = new HashMap<>();
 
 	static {
-		recommenders = new HashMap<String, Class<? extends IRecommender>>();
+		recommenders = new HashMap<String, Class<? extends AbstractRecommender>>();
 		recommenders.put("Popularity", PopularityBasedRecommender.class);
 		recommenders.put("SlopeOne", SlopeOneRecommender.class);
 		recommenders.put("PreprocessedSlopeOne", PreprocessedSlopeOneRecommender.class);
@@ -57,15 +61,15 @@ public final class RecommenderSelector implements IRecommender {
 	/**
 	 * The default recommender to choose, if no other recommender was set.
 	 */
-	private static final Class<? extends IRecommender> DEFAULT_RECOMMENDER = SlopeOneRecommender.class;
+	private static final Class<? extends AbstractRecommender> DEFAULT_RECOMMENDER = SlopeOneRecommender.class;
 
 	private static final Logger LOG = LoggerFactory.getLogger(RecommenderSelector.class);
 
 	private static RecommenderSelector instance;
 
-	private IRecommender fallbackrecommender;
+	private volatile AbstractRecommender fallbackrecommender;
 
-	private IRecommender recommender;
+	private volatile AbstractRecommender recommender;
 
 	/**
 	 * Private Constructor.
@@ -134,6 +138,9 @@ public final class RecommenderSelector implements IRecommender {
 	@Override
 	public List<Long> recommendProducts(Long userid, List<OrderItem> currentItems)
 			throws UnsupportedOperationException {
+		// use the same recommenders for the whole request, even if new ones are published
+		AbstractRecommender recommender = this.recommender;
+		AbstractRecommender fallbackrecommender = this.fallbackrecommender;
 		try {
 			return recommender.recommendProducts(userid, currentItems);
 		} catch (UseFallBackException e) {
@@ -177,8 +184,62 @@ public final class RecommenderSelector implements IRecommender {
 	 */
 	@Override
 	public void train(List<OrderItem> orderItems, List<Order> orders) {
-		recommender.train(orderItems, orders);
-		fallbackrecommender.train(orderItems, orders);
+		replaceRecommenders(next -> next.train(orderItems, orders));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * tools.descartes.teastore.recommender.IRecommender#train(java.util.Map)
+	 */
+	@Override
+	public void train(Map<Long, Set<OrderItemSet>> userItemSets) {
+		replaceRecommenders(next -> next.train(userItemSets));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * tools.descartes.teastore.recommender.IRecommender#update(java.util.List,
+	 * java.util.List)
+	 */
+	@Override
+	public void update(List<OrderItem> orderItems, List<Order> orders) throws UnsupportedOperationException {
+		replaceRecommenders(next -> next.update(orderItems, orders));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * tools.descartes.teastore.recommender.IRecommender#update(java.util.Map)
+	 */
+	@Override
+	public void update(Map<Long, Set<OrderItemSet>> newItemSets) throws UnsupportedOperationException {
+		replaceRecommenders(next -> next.update(newItemSets));
+	}
+
+	/**
+	 * Trains or updates copies of the current recommenders and publishes them. The
+	 * fallback recommender is published first, so a new recommender never falls
+	 * back to an older fallback recommender. Nothing is published if training
+	 * fails.
+	 * 
+	 * @param training
+	 *            Trains or updates a copy of a recommender
+	 */
+	private synchronized void replaceRecommenders(Consumer<AbstractRecommender> training) {
+		AbstractRecommender nextFallback = fallbackrecommender.copy();
+		training.accept(nextFallback);
+		AbstractRecommender next = nextFallback;
+		if (recommender != fallbackrecommender) {
+			next = recommender.copy();
+			training.accept(next);
+		}
+		fallbackrecommender = nextFallback;
+		recommender = next;
 	}
 
 }
@@ -13,8 +13,14 @@
  */
 package tools.descartes.teastore.recommender.algorithm.impl.cf;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import tools.descartes.teastore.recommender.algorithm.OrderItemSet;
 
 /**
  * Recommender based on item-based collaborative filtering with the slope one
@@ -55,13 +61,42 @@ public class PreprocessedSlopeOneRecommender extends SlopeOneRecommender {
 	@Override
 	protected void executePreprocessing() {
 		super.executePreprocessing();
-		predictedRatings = new HashMap<>();
-		// Moving the matrix calculation to the preprocessing to optimize runtime
-		// behavior
-		for (Long userid : getUserBuyingMatrix().keySet()) {
-			// for all known users
-			Map<Long, Double> pred = super.getUserVector(userid);
-			predictedRatings.put(userid, pred);
+		predictRatings();
+	}
+
+	@Override
+	protected void executeUpdate(Map<Long, Set<OrderItemSet>> newItemSets,
+			Map<Long, Map<Long, Double>> previousRatings) {
+		super.executeUpdate(newItemSets, previousRatings);
+		// the differences only changed between products rated by the users with new
+		// orders, so only users who rated one of these products are predicted again
+		Set<Long> changedProducts = new HashSet<>();
+		for (Long userid : newItemSets.keySet()) {
+			changedProducts.addAll(getUserBuyingMatrix().get(userid).keySet());
 		}
+		Map<Long, Map<Long, Double>> previousPredictions = predictedRatings;
+		predictedRatings = getUserBuyingMatrix().entrySet().parallelStream()
+				.collect(Collectors.toConcurrentMap(Map.Entry::getKey, entry -> {
+					Map<Long, Double> previous = previousPredictions.get(entry.getKey());
+					if (previous == null || !Collections.disjoint(entry.getValue().keySet(), changedProducts)) {
+						return super.getUserVector(entry.getKey());
+					}
+					if (previous.size() == getTotalProducts().size()) {
+						return previous;
+					}
+					// products bought for the first time can not be predicted for this user
+					Map<Long, Double> prediction = new HashMap<>(previous);
+					for (Long productid : getTotalProducts()) {
+						prediction.putIfAbsent(productid, -1.0);
+					}
+					return prediction;
+				}));
+	}
+
+	private void predictRatings() {
+		// Moving the matrix calculation to the preprocessing to optimize runtime
+		// behavior. The users are independent, so they are predicted in parallel.
+		predictedRatings = getUserBuyingMatrix().keySet().parallelStream()
+				.collect(Collectors.toConcurrentMap(userid -> userid, super::getUserVector));
 	}
 }
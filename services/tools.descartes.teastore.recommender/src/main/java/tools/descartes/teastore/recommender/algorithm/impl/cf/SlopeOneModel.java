@@ -0,0 +1,460 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tools.descartes.teastore.recommender.algorithm.impl.cf;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+/**
+ * Compact slope one model. Product IDs are mapped to dense indices and the
+ * difference and frequency matrices are stored row by row in primitive arrays
+ * (compressed sparse rows). Only pairs of products bought by at least one
+ * common user are stored. Differences are kept as running sums, so the model
+ * can be updated with the changed ratings of single users. Rows are built in
+ * parallel on the common fork-join pool.
+ */
+public final class SlopeOneModel {
+
+	/**
+	 * Number of blocks of rows per thread of the fork-join pool. More blocks than
+	 * threads let idle threads steal work if the estimate is off.
+	 */
+	private static final int BLOCKS_PER_THREAD = 4;
+
+	/**
+	 * Maps a dense index to its product ID.
+	 */
+	private final long[] productIds;
+
+	/**
+	 * Maps a product ID to its dense index.
+	 */
+	private final Map<Long, Integer> indices;
+
+	/**
+	 * Row i consists of the entries rowStart[i] (inclusive) to rowStart[i + 1]
+	 * (exclusive).
+	 */
+	private final int[] rowStart;
+
+	/**
+	 * Dense index of the column of each entry, ascending within a row.
+	 */
+	private final int[] columns;
+
+	/**
+	 * Sum of all differences of each entry.
+	 */
+	private final double[] differenceSums;
+
+	/**
+	 * Number of users that bought both products of each entry.
+	 */
+	private final int[] frequencies;
+
+	private SlopeOneModel(long[] productIds, Map<Long, Integer> indices, int[] rowStart, int[] columns,
+			double[] differenceSums, int[] frequencies) {
+		this.productIds = productIds;
+		this.indices = indices;
+		this.rowStart = rowStart;
+		this.columns = columns;
+		this.differenceSums = differenceSums;
+		this.frequencies = frequencies;
+	}
+
+	/**
+	 * Calculates the differences and frequencies of all pairs of products
+	 * from the given rating matrix.
+	 * 
+	 * @param userRatingMatrix
+	 *            The user rating matrix, assigning each user ID a rating for each
+	 *            product ID the user bought
+	 * @return The model
+	 */
+	public static SlopeOneModel build(Map<Long, Map<Long, Double>> userRatingMatrix) {
+		long[] productIds = userRatingMatrix.values().stream().flatMap(ratings -> ratings.keySet().stream())
+				.mapToLong(Long::longValue).distinct().sorted().toArray();
+		Map<Long, Integer> indices = createIndices(productIds);
+		int n = productIds.length;
+
+		// ratings of each user, addressed by dense index
+		int[][] userItems = new int[userRatingMatrix.size()][];
+		double[][] userRatings = new double[userRatingMatrix.size()][];
+		int[] buyers = new int[n + 1];
+		int user = 0;
+		for (Map<Long, Double> ratings : userRatingMatrix.values()) {
+			userItems[user] = new int[ratings.size()];
+			userRatings[user] = new double[ratings.size()];
+			int k = 0;
+			for (Entry<Long, Double> rating : ratings.entrySet()) {
+				userItems[user][k] = indices.get(rating.getKey());
+				userRatings[user][k] = rating.getValue();
+				buyers[userItems[user][k] + 1]++;
+				k++;
+			}
+			user++;
+		}
+
+		// users that bought each product, in the same order as the rating matrix
+		for (int i = 0; i < n; i++) {
+			buyers[i + 1] += buyers[i];
+		}
+		int[] buyerUsers = new int[buyers[n]];
+		double[] buyerRatings = new double[buyers[n]];
+		int[] next = Arrays.copyOf(buyers, n);
+		for (int u = 0; u < userItems.length; u++) {
+			for (int k = 0; k < userItems[u].length; k++) {
+				int slot = next[userItems[u][k]]++;
+				buyerUsers[slot] = u;
+				buyerRatings[slot] = userRatings[u][k];
+			}
+		}
+
+		// rows are independent, so blocks of rows with about the same work are built in parallel
+		long[] work = new long[n + 1];
+		for (int i = 0; i < n; i++) {
+			work[i + 1] = work[i];
+			for (int b = buyers[i]; b < buyers[i + 1]; b++) {
+				work[i + 1] += userItems[buyerUsers[b]].length;
+			}
+		}
+		int nrOfBlocks = Math.min(n, ForkJoinPool.getCommonPoolParallelism() * BLOCKS_PER_THREAD);
+		int[] bounds = new int[nrOfBlocks + 1];
+		bounds[nrOfBlocks] = n;
+		for (int b = 1; b < nrOfBlocks; b++) {
+			long target = work[n] * b / nrOfBlocks;
+			int row = bounds[b - 1];
+			while (row < n && work[row] < target) {
+				row++;
+			}
+			bounds[b] = row;
+		}
+		RowBlock[] blocks = IntStream.range(0, nrOfBlocks).parallel().mapToObj(b -> buildRows(bounds[b],
+				bounds[b + 1], n, buyers, buyerUsers, buyerRatings, userItems, userRatings))
+				.toArray(RowBlock[]::new);
+
+		// concatenate the blocks
+		int entries = 0;
+		for (RowBlock block : blocks) {
+			entries += block.entries;
+		}
+		int[] rowStart = new int[n + 1];
+		int[] columns = new int[entries];
+		double[] differenceSums = new double[entries];
+		int[] frequencies = new int[entries];
+		int offset = 0;
+		for (RowBlock block : blocks) {
+			for (int i = block.from; i < block.to; i++) {
+				rowStart[i + 1] = offset + block.rowEnd[i - block.from];
+			}
+			System.arraycopy(block.columns, 0, columns, offset, block.entries);
+			System.arraycopy(block.differenceSums, 0, differenceSums, offset, block.entries);
+			System.arraycopy(block.frequencies, 0, frequencies, offset, block.entries);
+			offset += block.entries;
+		}
+		return new SlopeOneModel(productIds, indices, rowStart, columns, differenceSums, frequencies);
+	}
+
+	/**
+	 * Rows of the model built by one task.
+	 */
+	private static final class RowBlock {
+		private final int from;
+		private final int to;
+		private final int[] rowEnd;
+		private int[] columns;
+		private double[] differenceSums;
+		private int[] frequencies;
+		private int entries;
+
+		private RowBlock(int from, int to) {
+			this.from = from;
+			this.to = to;
+			rowEnd = new int[to - from];
+			columns = new int[Math.max(16, to - from)];
+			differenceSums = new double[columns.length];
+			frequencies = new int[columns.length];
+		}
+	}
+
+	private static RowBlock buildRows(int from, int to, int n, int[] buyers, int[] buyerUsers,
+			double[] buyerRatings, int[][] userItems, double[][] userRatings) {
+		RowBlock block = new RowBlock(from, to);
+		// accumulate one row at a time in dense scratch arrays
+		double[] diffSums = new double[n];
+		int[] counts = new int[n];
+		int[] touched = new int[n];
+		for (int i = from; i < to; i++) {
+			int nrOfTouched = 0;
+			for (int b = buyers[i]; b < buyers[i + 1]; b++) {
+				int u = buyerUsers[b];
+				double rating = buyerRatings[b];
+				for (int k = 0; k < userItems[u].length; k++) {
+					int j = userItems[u][k];
+					if (counts[j] == 0) {
+						touched[nrOfTouched++] = j;
+					}
+					counts[j]++;
+					diffSums[j] += rating - userRatings[u][k];
+				}
+			}
+			Arrays.sort(touched, 0, nrOfTouched);
+			if (block.entries + nrOfTouched > block.columns.length) {
+				int capacity = Math.max(block.columns.length * 2, block.entries + nrOfTouched);
+				block.columns = Arrays.copyOf(block.columns, capacity);
+				block.differenceSums = Arrays.copyOf(block.differenceSums, capacity);
+				block.frequencies = Arrays.copyOf(block.frequencies, capacity);
+			}
+			for (int t = 0; t < nrOfTouched; t++) {
+				int j = touched[t];
+				block.columns[block.entries] = j;
+				block.differenceSums[block.entries] = diffSums[j];
+				block.frequencies[block.entries] = counts[j];
+				block.entries++;
+				diffSums[j] = 0;
+				counts[j] = 0;
+			}
+			block.rowEnd[i - from] = block.entries;
+		}
+		return block;
+	}
+
+	/**
+	 * Creates a new model with the changed ratings of some users folded in. The
+	 * running sums of the pairs of products rated by these users are corrected,
+	 * all other entries are copied.
+	 * 
+	 * @param previousRatings
+	 *            The ratings of the changed users before the change. Users that
+	 *            did not rate any product before are not contained.
+	 * @param currentRatings
+	 *            The ratings of the changed users after the change
+	 * @return The updated model
+	 */
+	public SlopeOneModel update(Map<Long, Map<Long, Double>> previousRatings,
+			Map<Long, Map<Long, Double>> currentRatings) {
+		// products bought for the first time are added to the index
+		long[] ids = LongStream.concat(Arrays.stream(productIds), currentRatings.values().stream()
+				.flatMap(ratings -> ratings.keySet().stream()).mapToLong(Long::longValue)).distinct().sorted()
+				.toArray();
+		Map<Long, Integer> newIndices = ids.length == productIds.length ? indices : createIndices(ids);
+		int n = ids.length;
+		// both indices are ordered by product ID, so the order of the columns is kept
+		int[] remap = new int[productIds.length];
+		for (int i = 0; i < productIds.length; i++) {
+			remap[i] = newIndices.get(productIds[i]);
+		}
+
+		// changes of the running sums, addressed by row * n + column
+		Map<Long, double[]> changes = new HashMap<>();
+		for (Map<Long, Double> ratings : previousRatings.values()) {
+			addChanges(changes, ratings, newIndices, n, -1);
+		}
+		for (Map<Long, Double> ratings : currentRatings.values()) {
+			addChanges(changes, ratings, newIndices, n, 1);
+		}
+		long[] changed = changes.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+
+		int[] newRowStart = new int[n + 1];
+		int capacity = columns.length + changed.length;
+		int[] newColumns = new int[capacity];
+		double[] newDifferenceSums = new double[capacity];
+		int[] newFrequencies = new int[capacity];
+		int entries = 0;
+		int c = 0;
+		int oldRow = 0;
+		for (int i = 0; i < n; i++) {
+			int e = 0;
+			int end = 0;
+			if (oldRow < productIds.length && productIds[oldRow] == ids[i]) {
+				e = rowStart[oldRow];
+				end = rowStart[oldRow + 1];
+				oldRow++;
+			}
+			// merge the old row and the changes of the row, both ordered by column
+			long rowOffset = (long) i * n;
+			while (e < end || (c < changed.length && changed[c] < rowOffset + n)) {
+				int oldColumn = e < end ? remap[columns[e]] : Integer.MAX_VALUE;
+				int changedColumn = c < changed.length && changed[c] < rowOffset + n
+						? (int) (changed[c] - rowOffset) : Integer.MAX_VALUE;
+				int column = Math.min(oldColumn, changedColumn);
+				double sum = 0;
+				int frequency = 0;
+				if (oldColumn == column) {
+					sum += differenceSums[e];
+					frequency += frequencies[e];
+					e++;
+				}
+				if (changedColumn == column) {
+					double[] change = changes.get(changed[c]);
+					sum += change[0];
+					frequency += (int) change[1];
+					c++;
+				}
+				if (frequency > 0) {
+					newColumns[entries] = column;
+					newDifferenceSums[entries] = sum;
+					newFrequencies[entries] = frequency;
+					entries++;
+				}
+			}
+			newRowStart[i + 1] = entries;
+		}
+		return new SlopeOneModel(ids, newIndices, newRowStart, Arrays.copyOf(newColumns, entries),
+				Arrays.copyOf(newDifferenceSums, entries), Arrays.copyOf(newFrequencies, entries));
+	}
+
+	private static void addChanges(Map<Long, double[]> changes, Map<Long, Double> ratings,
+			Map<Long, Integer> indices, int n, int sign) {
+		for (Entry<Long, Double> rating : ratings.entrySet()) {
+			long row = (long) indices.get(rating.getKey()) * n;
+			for (Entry<Long, Double> otherRating : ratings.entrySet()) {
+				double[] change = changes.computeIfAbsent(row + indices.get(otherRating.getKey()),
+						key -> new double[2]);
+				change[0] += sign * (rating.getValue() - otherRating.getValue());
+				change[1] += sign;
+			}
+		}
+	}
+
+	private static Map<Long, Integer> createIndices(long[] productIds) {
+		Map<Long, Integer> indices = new HashMap<>(productIds.length * 2);
+		for (int i = 0; i < productIds.length; i++) {
+			indices.put(productIds[i], i);
+		}
+		return indices;
+	}
+
+	/**
+	 * @return The number of products known to this model
+	 */
+	public int getNumberOfProducts() {
+		return productIds.length;
+	}
+
+	/**
+	 * @param index
+	 *            Dense index of a product
+	 * @return The product ID of the given index
+	 */
+	public long getProductId(int index) {
+		return productIds[index];
+	}
+
+	/**
+	 * @param productId
+	 *            A product ID
+	 * @return The dense index of the product or -1 if the product is unknown
+	 */
+	public int indexOf(long productId) {
+		Integer index = indices.get(productId);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * Predicts the rating of all products for a user. If the user rated a product,
+	 * the prediction is this rating. If there is a rated product that was never
+	 * bought together with a product, there is not enough information and the
+	 * prediction is -1.
+	 * 
+	 * @param ratings
+	 *            The ratings of the user, assigning each bought product ID a
+	 *            rating
+	 * @return Predicted rating of each product, addressed by dense index
+	 */
+	public double[] predict(Map<Long, Double> ratings) {
+		int n = productIds.length;
+		double[] scores = new double[n];
+		double[] weights = new double[n];
+		int[] covered = new int[n];
+		int[] rated = new int[ratings.size()];
+		int nrOfRated = 0;
+		for (Entry<Long, Double> rating : ratings.entrySet()) {
+			int row = indexOf(rating.getKey());
+			rated[nrOfRated++] = row;
+			if (row < 0) {
+				continue;
+			}
+			double value = rating.getValue();
+			for (int e = rowStart[row]; e < rowStart[row + 1]; e++) {
+				int j = columns[e];
+				int frequency = frequencies[e];
+				scores[j] += value * frequency;
+				scores[j] += differenceSums[e];
+				weights[j] += frequency;
+				covered[j]++;
+			}
+		}
+		for (int j = 0; j < n; j++) {
+			// normalize
+			scores[j] = covered[j] == nrOfRated ? scores[j] / weights[j] : -1.0;
+		}
+		int k = 0;
+		for (Double rating : ratings.values()) {
+			if (rated[k] >= 0) {
+				scores[rated[k]] = rating;
+			}
+			k++;
+		}
+		return scores;
+	}
+
+	/**
+	 * Creates the difference matrix of this model as map.
+	 * 
+	 * @return A matrix assigning each pair of products bought together the average
+	 *         difference
+	 */
+	public Map<Long, Map<Long, Double>> getDifferenceMatrix() {
+		Map<Long, Map<Long, Double>> matrix = new HashMap<>();
+		for (int i = 0; i < productIds.length; i++) {
+			if (rowStart[i] == rowStart[i + 1]) {
+				continue;
+			}
+			Map<Long, Double> row = new HashMap<>();
+			for (int e = rowStart[i]; e < rowStart[i + 1]; e++) {
+				// transform the sum of all found differences into the average difference
+				row.put(productIds[columns[e]], differenceSums[e] / frequencies[e]);
+			}
+			matrix.put(productIds[i], row);
+		}
+		return matrix;
+	}
+
+	/**
+	 * Creates the frequency matrix of this model as map.
+	 * 
+	 * @return A matrix assigning each pair of products bought together the number
+	 *         of users that bought both
+	 */
+	public Map<Long, Map<Long, Integer>> getFrequencyMatrix() {
+		Map<Long, Map<Long, Integer>> matrix = new HashMap<>();
+		for (int i = 0; i < productIds.length; i++) {
+			if (rowStart[i] == rowStart[i + 1]) {
+				continue;
+			}
+			Map<Long, Integer> row = new HashMap<>();
+			for (int e = rowStart[i]; e < rowStart[i + 1]; e++) {
+				row.put(productIds[columns[e]], frequencies[e]);
+			}
+			matrix.put(productIds[i], row);
+		}
+		return matrix;
+	}
+}
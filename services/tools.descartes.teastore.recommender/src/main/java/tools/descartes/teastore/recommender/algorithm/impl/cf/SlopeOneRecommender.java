@@ -16,9 +16,10 @@ package tools.descartes.teastore.recommender.algorithm.impl.cf;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Set;
 
 import tools.descartes.teastore.recommender.algorithm.AbstractRecommender;
+import tools.descartes.teastore.recommender.algorithm.OrderItemSet;
 import tools.descartes.teastore.recommender.algorithm.impl.UseFallBackException;
 
 /**
@@ -31,45 +32,39 @@ import tools.descartes.teastore.recommender.algorithm.impl.UseFallBackException;
 public class SlopeOneRecommender extends AbstractRecommender {
 
 	/**
-	 * Represents a matrix, assigning each itemid an average difference (in
-	 * rating/buying) to any other itemid.
+	 * Represents the difference and frequency matrices, assigning each pair of
+	 * itemids an average difference (in rating/buying) and the number of users
+	 * rating/buying both items.
 	 */
-	private Map<Long, Map<Long, Double>> differences = new HashMap<>();
+	private SlopeOneModel model;
 
 	/**
-	 * Represents a matrix, counting the frequencies of each combination (i.e. users
-	 * rating/buying both items).
+	 * @return the model
 	 */
-	private Map<Long, Map<Long, Integer>> frequencies = new HashMap<>();
-
-	/**
-	 * @return the differences
-	 */
-	public Map<Long, Map<Long, Double>> getDifferences() {
-		return differences;
+	public SlopeOneModel getModel() {
+		return model;
 	}
 
 	/**
-	 * @param differences
-	 *            the differences to set
+	 * @param model
+	 *            the model to set
 	 */
-	public void setDifferences(Map<Long, Map<Long, Double>> differences) {
-		this.differences = differences;
+	public void setModel(SlopeOneModel model) {
+		this.model = model;
 	}
 
 	/**
-	 * @return the frequencies
+	 * @return the differences, created from the model
 	 */
-	public Map<Long, Map<Long, Integer>> getFrequencies() {
-		return frequencies;
+	public Map<Long, Map<Long, Double>> getDifferences() {
+		return model.getDifferenceMatrix();
 	}
 
 	/**
-	 * @param frequencies
-	 *            the frequencies to set
+	 * @return the frequencies, created from the model
 	 */
-	public void setFrequencies(Map<Long, Map<Long, Integer>> frequencies) {
-		this.frequencies = frequencies;
+	public Map<Long, Map<Long, Integer>> getFrequencies() {
+		return model.getFrequencyMatrix();
 	}
 
 	/*
@@ -106,97 +101,36 @@ public class SlopeOneRecommender extends AbstractRecommender {
 	protected Map<Long, Double> getUserVector(Long userid) {
 		// This could be further optimized by moving this part into the pre-processing
 		// step, but we want to have nicer performance behavior
-		HashMap<Long, Double> importances = new HashMap<>();
-		for (Long productid : getTotalProducts()) {
-			try {
-				importances.put(productid, calculateScoreForItem(userid, productid));
-			} catch (NullPointerException e) {
-				// this exception can be thrown if we have not enough information
-				importances.put(productid, -1.0);
-			}
+		double[] scores = model.predict(getUserBuyingMatrix().get(userid));
+		HashMap<Long, Double> importances = new HashMap<>(scores.length * 2);
+		for (int i = 0; i < scores.length; i++) {
+			importances.put(model.getProductId(i), scores[i]);
 		}
-		return importances;
-	}
-
-	private double calculateScoreForItem(long userid, long itemid) {
-		double score = 0;
-		double cumWeights = 0;
-		for (Entry<Long, Double> useritem : getUserBuyingMatrix().get(userid).entrySet()) {
-			// if we find that the user actually bought this item before, we can return this
-			// value
-			// (considering it is his rating, we can directly return this rating)
-			if (useritem.getKey() == itemid) {
-				return useritem.getValue();
+		if (importances.size() != getTotalProducts().size()) {
+			// products unknown to the model or not seen during training
+			importances.keySet().retainAll(getTotalProducts());
+			for (Long productid : getTotalProducts()) {
+				importances.putIfAbsent(productid, -1.0);
 			}
-			// if not, we can calculate the (expected) rating for that user based on item i
-			int frequency = frequencies.get(useritem.getKey()).get(itemid);
-			score += useritem.getValue() * frequency;
-			score += differences.get(useritem.getKey()).get(itemid) * frequency;
-			cumWeights += frequency;
 		}
-		// normalize
-		return score / cumWeights;
+		return importances;
 	}
 
 	@Override
 	protected void executePreprocessing() {
 		// The buying matrix is considered to be the rating
 		// i.e. the more buys, the higher the rating
-		buildDifferencesMatrices(getUserBuyingMatrix());
+		model = SlopeOneModel.build(getUserBuyingMatrix());
 	}
 
-	/**
-	 * Based on the available data, calculate the relationships between the items
-	 * and number of occurrences. Fill the difference and frequencies matrix.
-	 * 
-	 * @param data
-	 *            The user rating matrix
-	 */
-	private void buildDifferencesMatrices(Map<Long, Map<Long, Double>> userRatingMatrix) {
-		for (Map<Long, Double> uservalues : userRatingMatrix.values()) {
-			for (Entry<Long, Double> singleRating : uservalues.entrySet()) {
-				// if not present -> create
-				if (!frequencies.containsKey(singleRating.getKey())) {
-					frequencies.put(singleRating.getKey(), new HashMap<Long, Integer>());
-					differences.put(singleRating.getKey(), new HashMap<Long, Double>());
-				}
-				// for all other ratings of that user
-				for (Entry<Long, Double> otherRating : uservalues.entrySet()) {
-					int currCount = 0;
-					Integer count = frequencies.get(singleRating.getKey()).get(otherRating.getKey());
-					if (count != null) {
-						// count is != null, if the key is actually found
-						// if so, we use the known count value as count, otherwise the count until now
-						// is 0
-						currCount = count.intValue();
-					}
-
-					double currDiff = 0;
-					Double diff = differences.get(singleRating.getKey()).get(otherRating.getKey());
-					if (diff != null) {
-						// diff is != null, if the key is actually found
-						// if so, we use the known difference value as currDiff, otherwise the diff
-						// until now is 0.0
-						currDiff = diff.doubleValue();
-					}
-
-					// get the diff value of this user
-					double userdiff = singleRating.getValue() - otherRating.getValue();
-					frequencies.get(singleRating.getKey()).put(otherRating.getKey(), currCount + 1);
-					differences.get(singleRating.getKey()).put(otherRating.getKey(), currDiff + userdiff);
-				}
-			}
-		}
-
-		// now, transform the differences matrix into real differences (not just the sum
-		// of all found differences)
-		for (Long i : differences.keySet()) {
-			for (Long j : differences.get(i).keySet()) {
-				// for all matrix entries divide the differences by the sum of occurences
-				double diffval = differences.get(i).get(j);
-				double freq = frequencies.get(i).get(j);
-				differences.get(i).put(j, diffval / freq);
-			}
+	@Override
+	protected void executeUpdate(Map<Long, Set<OrderItemSet>> newItemSets,
+			Map<Long, Map<Long, Double>> previousRatings) {
+		// only the ratings of users with new orders changed
+		Map<Long, Map<Long, Double>> currentRatings = new HashMap<>();
+		for (Long userid : newItemSets.keySet()) {
+			currentRatings.put(userid, getUserBuyingMatrix().get(userid));
 		}
+		model = model.update(previousRatings, currentRatings);
 	}
 }
@@ -13,8 +13,13 @@
  */
 package tools.descartes.teastore.recommender.algorithm.impl.orderbased;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 
 import tools.descartes.teastore.recommender.algorithm.AbstractRecommender;
@@ -30,6 +35,12 @@ import tools.descartes.teastore.recommender.algorithm.impl.UseFallBackException;
  */
 public class OrderBasedRecommender extends AbstractRecommender {
 
+	/**
+	 * Represents a matrix, counting for each pair of product IDs the number of
+	 * orders containing both products.
+	 */
+	private Map<Long, Map<Long, Double>> cooccurrences;
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -67,21 +78,67 @@ public class OrderBasedRecommender extends AbstractRecommender {
 	 *            The product id of the specific product.
 	 */
 	private void addAllCountsOfProduct(HashMap<Long, Double> counts, Long product) {
+		Map<Long, Double> row = cooccurrences.get(product);
+		if (row != null) {
+			for (Entry<Long, Double> o : row.entrySet()) {
+				counts.merge(o.getKey(), o.getValue(), Double::sum);
+			}
+		}
+	}
+
+	@Override
+	protected void executePreprocessing() {
+		Map<Long, Map<Long, Double>> matrix = new HashMap<>();
 		for (Set<OrderItemSet> set : getUserItemSets().values()) {
-			// ignore which user bought which set
-			for (OrderItemSet orderset : set) {
-				// look through all orders bought
-				if (orderset.getOrderset().keySet().contains(product)) {
-					for (Long o : orderset.getOrderset().keySet()) {
-						// we count all order of the set (including the product we are currently looking
-						// at)
-						if (counts.containsKey(o)) {
-							// we do not count the NUMBER of items, just if the item occurred in the order
-							counts.put(o, counts.get(o) + 1);
-						} else {
-							counts.put(o, 1.0);
-						}
-					}
+			addCooccurrences(matrix, set, false);
+		}
+		cooccurrences = matrix;
+	}
+
+	@Override
+	protected void executeUpdate(Map<Long, Set<OrderItemSet>> newItemSets,
+			Map<Long, Map<Long, Double>> previousRatings) {
+		// only the rows of products in new orders are copied and changed
+		Map<Long, Map<Long, Double>> matrix = new HashMap<>(cooccurrences);
+		List<OrderItemSet> ordersets = new ArrayList<>();
+		for (Set<OrderItemSet> set : newItemSets.values()) {
+			ordersets.addAll(set);
+		}
+		addCooccurrences(matrix, ordersets, true);
+		cooccurrences = matrix;
+	}
+
+	/**
+	 * Counts the co-occurrences of all products in the given orders.
+	 * 
+	 * @param matrix
+	 *            The co-occurrence matrix to add the counts to
+	 * @param ordersets
+	 *            The orders to count
+	 * @param copyRows
+	 *            Whether rows that existed before have to be copied before they
+	 *            are changed
+	 */
+	private void addCooccurrences(Map<Long, Map<Long, Double>> matrix, Collection<OrderItemSet> ordersets,
+			boolean copyRows) {
+		Set<Long> copied = new HashSet<>();
+		// ignore which user bought which set
+		for (OrderItemSet orderset : ordersets) {
+			for (Long product : orderset.getOrderset().keySet()) {
+				Map<Long, Double> row = matrix.get(product);
+				if (row == null) {
+					row = new HashMap<>();
+					matrix.put(product, row);
+					copied.add(product);
+				} else if (copyRows && copied.add(product)) {
+					row = new HashMap<>(row);
+					matrix.put(product, row);
+				}
+				for (Long o : orderset.getOrderset().keySet()) {
+					// we count all order of the set (including the product we are currently looking
+					// at)
+					// we do not count the NUMBER of items, just if the item occurred in the order
+					row.merge(o, 1.0, Double::sum);
 				}
 			}
 		}
@@ -17,8 +17,10 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import tools.descartes.teastore.recommender.algorithm.AbstractRecommender;
+import tools.descartes.teastore.recommender.algorithm.OrderItemSet;
 
 /**
  * A simple Recommender that makes recommendations based on general popularity.
@@ -61,4 +63,19 @@ public class PopularityBasedRecommender extends AbstractRecommender {
 		}
 
 	}
+
+	@Override
+	protected void executeUpdate(Map<Long, Set<OrderItemSet>> newItemSets,
+			Map<Long, Map<Long, Double>> previousRatings) {
+		// add the quantities of the new orders to a copy of the running counts
+		HashMap<Long, Double> updated = new HashMap<>(counts);
+		for (Set<OrderItemSet> ordersets : newItemSets.values()) {
+			for (OrderItemSet orderset : ordersets) {
+				for (Entry<Long, Integer> product : orderset.getOrderset().entrySet()) {
+					updated.merge(product.getKey(), Double.valueOf(product.getValue()), Double::sum);
+				}
+			}
+		}
+		counts = updated;
+	}
 }
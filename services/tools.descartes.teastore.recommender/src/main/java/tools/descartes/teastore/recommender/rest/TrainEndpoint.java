@@ -35,12 +35,17 @@ public class TrainEndpoint {
 
 	/**
 	 * Triggers the training of the recommendation algorithm. It retrieves all data
-	 * {@link OrderItem}s and all {@link Order}s from the database entity and is
-	 * therefore both very network and computation time intensive. <br>
+	 * {@link OrderItem}s and all {@link Order}s from the database entity page by
+	 * page and is therefore both very network and computation time intensive. <br>
 	 * This method must be called before the {@link RecommendEndpoint} is usable, as
 	 * the {@link IRecommender} will throw an
 	 * {@link UnsupportedOperationException}.<br>
-	 * Calling this method a second time initiates a new training process from scratch.
+	 * Calling this method a second time trains a new recommender from scratch,
+	 * while the previous one keeps serving recommendations. In incremental
+	 * training mode, it instead retrieves only the {@link Order}s and
+	 * {@link OrderItem}s added since the last training and folds the new orders
+	 * into the trained recommender. If the database changed otherwise, e.g.,
+	 * because it was regenerated, the recommender is still trained from scratch.
 	 *
 	 * @return Returns a {@link Response} with
 	 *         {@link jakarta.servlet.http.HttpServletResponse#SC_OK} or with
@@ -87,12 +92,10 @@ public class TrainEndpoint {
 
 	/**
 	 * This methods checks, if the service is ready to serve recommendation
-	 * requests, i.e., if the algorithm has finished training and no retraining process
-	 * is running. However, this does not imply that issuing a recommendation will
-	 * fail, if this method returns false. For example, if a retraining is issued,
-	 * the old trained instance might still answer issued requests until the new
-	 * instance is fully trained. However, performance behavior is probably
-	 * influenced.
+	 * requests, i.e., if the algorithm has finished its first training. During a
+	 * retraining, the old trained instance answers issued requests until the new
+	 * instance is fully trained and replaces it, so the service stays ready.
+	 * However, performance behavior is probably influenced.
 	 *
 	 * @return True, if recommender is ready; false, if not.
 	 */
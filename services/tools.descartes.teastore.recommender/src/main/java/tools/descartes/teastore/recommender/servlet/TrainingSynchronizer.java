@@ -21,8 +21,17 @@ import java.time.format.DateTimeFormatter;
 import java.time.temporal.TemporalAccessor;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ToLongFunction;
+
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
 
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
@@ -30,6 +39,8 @@ import jakarta.ws.rs.core.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import tools.descartes.teastore.recommender.algorithm.IRecommender;
+import tools.descartes.teastore.recommender.algorithm.OrderItemSet;
 import tools.descartes.teastore.recommender.algorithm.RecommenderSelector;
 import tools.descartes.teastore.registryclient.Service;
 import tools.descartes.teastore.registryclient.loadbalancers.LoadBalancerTimeoutException;
@@ -59,10 +70,111 @@ public final class TrainingSynchronizer {
 	// Wait time in ms before checking again for an existing persistence service
 	private static final List<Integer> PERSISTENCE_CREATION_WAIT_TIME = Arrays.asList(1000, 2000, 5000, 10000, 30000,
 			60000);
+	// Number of orders and order items retrieved with one request during training
+	private static final int TRAINING_PAGE_SIZE = 5000;
+
+	/**
+	 * Training mode in which only new orders are folded into a trained recommender.
+	 */
+	public static final String INCREMENTAL_TRAINING_MODE = "Incremental";
 
 	private static TrainingSynchronizer instance;
 
-	private boolean isReady = false;
+	private final DataSource source;
+
+	private final IRecommender recommender;
+
+	private final int pageSize;
+
+	private volatile boolean isReady = false;
+
+	private boolean isTrained = false;
+
+	private boolean incrementalTraining = false;
+
+	/**
+	 * IDs of all trained orders placed exactly at maxTime. Orders placed at the
+	 * same time, but retrieved later, are not trained yet.
+	 */
+	private Set<Long> ordersAtMaxTime = new HashSet<>();
+
+	/**
+	 * Positions in the orders and order items tables, up to which all entities
+	 * were considered by the last training. Both tables are listed by ascending
+	 * ID, so incremental training resumes paging at these positions.
+	 */
+	private TablePosition orderPosition = new TablePosition();
+	private TablePosition itemPosition = new TablePosition();
+
+	/**
+	 * Position in a table listed by ascending ID. Advances with each considered
+	 * entity until the first entity that must be retrieved again by the next
+	 * training.
+	 */
+	private static final class TablePosition {
+		private int offset = 0;
+		private long lastId;
+		private boolean settled = false;
+
+		private TablePosition resume() {
+			TablePosition position = new TablePosition();
+			position.offset = offset;
+			position.lastId = lastId;
+			return position;
+		}
+
+		private void consumed(int index, long id) {
+			if (!settled && index == offset) {
+				offset++;
+				lastId = id;
+			}
+		}
+
+		private void retainFrom(int index) {
+			settled = settled || index >= offset;
+		}
+	}
+
+	/**
+	 * Source of the entities used for training and of the training times of the
+	 * other recommender instances.
+	 */
+	interface DataSource {
+
+		/**
+		 * Blocks until all entities are created and can be retrieved.
+		 */
+		void waitUntilAvailable();
+
+		/**
+		 * Retrieves a page of entities listed by ascending ID.
+		 *
+		 * @param endpointURI
+		 *            endpoint of the entities, e.g. "orders"
+		 * @param entityClass
+		 *            class of the entities
+		 * @param start
+		 *            index of the first entity
+		 * @param limit
+		 *            maximum number of entities
+		 * @param <T>
+		 *            entity type
+		 * @return The entities, fewer than limit if the end of the table is reached.
+		 * @throws NotFoundException
+		 *             If 404 was returned.
+		 * @throws LoadBalancerTimeoutException
+		 *             On receiving the 408 status code and on repeated load balancer
+		 *             socket timeouts.
+		 */
+		<T> List<T> getEntities(String endpointURI, Class<T> entityClass, int start, int limit)
+				throws NotFoundException, LoadBalancerTimeoutException;
+
+		/**
+		 * @return the maximum considered order times of all other recommender
+		 *         instances, which answered
+		 */
+		List<Long> getMaxTimes();
+	}
 
 	/**
 	 * @return the isReady
@@ -79,8 +191,47 @@ public final class TrainingSynchronizer {
 		this.isReady = isReady;
 	}
 
-	private TrainingSynchronizer() {
+	/**
+	 * @return true, if only new orders are folded into the recommender after the
+	 *         first training
+	 */
+	public boolean isIncrementalTraining() {
+		return incrementalTraining;
+	}
 
+	/**
+	 * @param incrementalTraining
+	 *            true, if only new orders are folded into the recommender after
+	 *            the first training
+	 */
+	public void setIncrementalTraining(boolean incrementalTraining) {
+		this.incrementalTraining = incrementalTraining;
+	}
+
+	/**
+	 * Creates a synchronizer training the given recommender.
+	 *
+	 * @param source
+	 *            source of the training data
+	 * @param recommender
+	 *            recommender to train
+	 * @param pageSize
+	 *            number of entities retrieved with one request
+	 */
+	TrainingSynchronizer(DataSource source, IRecommender recommender, int pageSize) {
+		this.source = source;
+		this.recommender = recommender;
+		this.pageSize = pageSize;
+	}
+
+	private TrainingSynchronizer() {
+		this(new PersistenceDataSource(), RecommenderSelector.getInstance(), TRAINING_PAGE_SIZE);
+		try {
+			String mode = (String) new InitialContext().lookup("java:comp/env/recommenderTrainingMode");
+			incrementalTraining = INCREMENTAL_TRAINING_MODE.equalsIgnoreCase(mode);
+		} catch (NamingException e) {
+			LOG.info("Recommender training mode not set. Retraining from scratch.");
+		}
 	}
 
 	/**
@@ -101,7 +252,7 @@ public final class TrainingSynchronizer {
 	 * The maximum considered time in milliseconds. DEFAULT_MAX_TIME_VALUE signals
 	 * no entry, e.g. all orders are used for training.
 	 */
-	private long maxTime = DEFAULT_MAX_TIME_VALUE;
+	private volatile long maxTime = DEFAULT_MAX_TIME_VALUE;
 
 	/**
 	 * @return the maxTime
@@ -126,145 +277,176 @@ public final class TrainingSynchronizer {
 		this.maxTime = maxTime;
 	}
 
-	private void waitForPersistence() {
-		// We have to wait for the database that all entries are created before
-		// generating images (which queries persistence). Yes we want to wait forever in
-		// case the persistence is
-		// not answering.
-		Iterator<Integer> waitTimes = PERSISTENCE_CREATION_WAIT_TIME.iterator();
-		while (true) {
-			Response result = null;
-			try {
-				result = ServiceLoadBalancer.loadBalanceRESTOperation(Service.PERSISTENCE, "generatedb", String.class,
-						client -> client.getService().path(client.getApplicationURI()).path(client.getEndpointURI())
-								.path("finished").request().get());
-
-								if (result != null && Boolean.parseBoolean(result.readEntity(String.class))) {
-									break;
-				}
-			} catch (NullPointerException | NotFoundException | LoadBalancerTimeoutException e) {
-				// continue waiting as usual
-			} finally {
-				if (result != null) {
-					result.close();
-				}
-			}
-			try {
-				int nextWaitTime;
-				if (waitTimes.hasNext()) {
-					nextWaitTime = waitTimes.next();
-				} else {
-					nextWaitTime = PERSISTENCE_CREATION_MAX_WAIT_TIME;
-				}
-				LOG.info("Persistence not reachable. Waiting for {}ms.", nextWaitTime);
-				Thread.sleep(nextWaitTime);
-			} catch (InterruptedException interrupted) {
-				LOG.warn("Thread interrupted while waiting for persistence to be available.", interrupted);
-			}
-		}
-	}
-
 	/**
-	 * Connects via REST to the database and retrieves all {@link OrderItem}s and
-	 * all {@link Order}s. Then, it triggers the training of the recommender.
+	 * Connects via REST to the database and retrieves all {@link Order}s and
+	 * {@link OrderItem}s page by page. While paging, the {@link OrderItem}s are
+	 * grouped by order and user, so the complete tables are never held in memory.
+	 * Then, it triggers the training of the recommender. In incremental training
+	 * mode, only orders newer than the last trained ones are folded into an
+	 * already trained recommender. Paging then resumes after the orders and order
+	 * items considered by the last training, unless the tables changed in
+	 * between, e.g., because the database was regenerated. Once trained, the
+	 * previous recommender keeps serving recommendations and the service stays
+	 * ready during retraining.
 	 *
 	 * @return The number of elements retrieved from the database or -1 if the
 	 *         process failed.
 	 */
-	public long retrieveDataAndRetrain() {
-		setReady(false);
+	public synchronized long retrieveDataAndRetrain() {
+		setReady(isTrained);
 		LOG.trace("Retrieving data objects from database...");
 
-		waitForPersistence();
+		source.waitUntilAvailable();
 
-		List<OrderItem> items = null;
-		List<Order> orders = null;
+		// only the user of each considered order is kept
+		Map<Long, Long> orderUsers = new HashMap<>();
+		Map<Long, Long> orderTimes = new HashMap<>();
+		Map<Long, OrderItemSet> itemSets = new HashMap<>();
+		boolean update;
+		TablePosition orders;
+		TablePosition items;
+		long noOrders;
+		long noItems;
 		// retrieve
 		try {
-			items = LoadBalancedCRUDOperations.getEntities(Service.PERSISTENCE, "orderitems", OrderItem.class, -1, -1);
-			long noItems = items.size();
-			LOG.trace("Retrieved " + noItems + " orderItems, starting retrieving of orders now.");
+			update = incrementalTraining && isTrained
+					&& isUnchanged("orders", Order.class, orderPosition, Order::getId)
+					&& isUnchanged("orderitems", OrderItem.class, itemPosition, OrderItem::getId);
+			if (incrementalTraining && isTrained && !update) {
+				LOG.info("Orders changed since the last training. Retraining from scratch.");
+				maxTime = DEFAULT_MAX_TIME_VALUE;
+			}
+			if (!update) {
+				synchronizeMaxTime();
+			}
+			orders = update ? orderPosition.resume() : new TablePosition();
+			items = update ? itemPosition.resume() : new TablePosition();
+			noOrders = retrievePaged("orders", Order.class, orders.offset, (or, index) -> {
+				long time = toMillis(or.getTime());
+				if (update ? time > maxTime || (time == maxTime && !ordersAtMaxTime.contains(or.getId()))
+						: maxTime == DEFAULT_MAX_TIME_VALUE || time <= maxTime) {
+					orderUsers.put(or.getId(), or.getUserId());
+					orderTimes.put(or.getId(), time);
+				} else if (!update) {
+					// newer than the synchronized time, considered by the next training
+					orders.retainFrom(index);
+				}
+				orders.consumed(index, or.getId());
+			});
+			LOG.trace("Retrieved " + noOrders + " orders, starting retrieving of orderItems now.");
+			// items of orders not considered yet, or created after retrieving the orders,
+			// are retrieved again by the next training
+			long nextOrderId = orders.lastId + 1;
+			noItems = retrievePaged("orderitems", OrderItem.class, items.offset, (orderItem, index) -> {
+				if (orderItem.getOrderId() >= nextOrderId) {
+					items.retainFrom(index);
+				}
+				items.consumed(index, orderItem.getId());
+				Long userId = orderUsers.get(orderItem.getOrderId());
+				if (userId == null) {
+					// order is not considered
+					return;
+				}
+				OrderItemSet set = itemSets.get(orderItem.getOrderId());
+				if (set == null) {
+					set = new OrderItemSet();
+					set.setOrderId(orderItem.getOrderId());
+					set.setUserId(userId);
+					itemSets.put(orderItem.getOrderId(), set);
+				}
+				set.getOrderset().put(orderItem.getProductId(), orderItem.getQuantity());
+			});
+			LOG.trace("Retrieved " + noItems + " orderItems, starting training now.");
 		} catch (NotFoundException | LoadBalancerTimeoutException e) {
 			// set ready anyway to avoid deadlocks
 			setReady(true);
 			LOG.error("Database retrieving failed.");
 			return -1;
 		}
-		try {
-			orders = LoadBalancedCRUDOperations.getEntities(Service.PERSISTENCE, "orders", Order.class, -1, -1);
-			long noOrders = orders.size();
-			LOG.trace("Retrieved " + noOrders + " orders, starting training now.");
-		} catch (NotFoundException | LoadBalancerTimeoutException e) {
-			// set ready anyway to avoid deadlocks
+		if (update && orderTimes.isEmpty()) {
+			LOG.trace("No new orders, recommender is up to date.");
+			orderPosition = orders;
+			itemPosition = items;
 			setReady(true);
-			LOG.error("Database retrieving failed.");
-			return -1;
+			return 0;
+		}
+
+		// sets are grouped only now, as their hash changes while items are added
+		Map<Long, Set<OrderItemSet>> userItemSets = new HashMap<>();
+		for (OrderItemSet set : itemSets.values()) {
+			Set<OrderItemSet> sets = userItemSets.get(set.getUserId());
+			if (sets == null) {
+				sets = new HashSet<>();
+				userItemSets.put(set.getUserId(), sets);
+			}
+			sets.add(set);
 		}
-		// filter lists
-		filterLists(items, orders);
 		// train instance
-		RecommenderSelector.getInstance().train(items, orders);
-		LOG.trace("Finished training, ready for recommendation.");
-		setReady(true);
-		return items.size() + orders.size();
-	}
+		if (!update) {
+			recommender.train(userItemSets);
+		} else if (!userItemSets.isEmpty()) {
+			recommender.update(userItemSets);
+		}
 
-	private void filterLists(List<OrderItem> orderItems, List<Order> orders) {
-		// since we are not registered ourselves, we can multicast to all services
-		List<Response> maxTimeResponses = ServiceLoadBalancer.multicastRESTOperation(Service.RECOMMENDER,
-				"train/timestamp", Response.class,
-				client -> client.getService().path(client.getApplicationURI()).path(client.getEndpointURI())
-						.request(MediaType.TEXT_PLAIN).accept(MediaType.TEXT_PLAIN).get());
-		for (Response response : maxTimeResponses) {
-			if (response == null) {
-				LOG.warn("One service response was null and is therefore not available for time-check.");
-			} else if (response.getStatus() == Response.Status.OK.getStatusCode()) {
-				// only consider if status was fine
-				long milliTS = response.readEntity(Long.class);
-				if (maxTime != TrainingSynchronizer.DEFAULT_MAX_TIME_VALUE && maxTime != milliTS) {
-					LOG.warn("Services disagree about timestamp: " + maxTime + " vs " + milliTS
-							+ ". Therfore using the minimum.");
-				}
-				maxTime = Math.min(maxTime, milliTS);
-			} else {
-				// release connection by buffering entity
-				response.bufferEntity();
-				LOG.warn("Service " + response + "was not available for time-check.");
+		// all considered orders count, even those without items
+		long newMaxTime = maxTime;
+		if (update || maxTime == DEFAULT_MAX_TIME_VALUE) {
+			for (long time : orderTimes.values()) {
+				newMaxTime = Math.max(newMaxTime, time);
 			}
 		}
-		if (maxTime == Long.MIN_VALUE) {
-			// we are the only known service
-			// therefore we find max and set it
-			for (Order or : orders) {
-				maxTime = Math.max(maxTime, toMillis(or.getTime()));
+		if (!update || newMaxTime != maxTime) {
+			ordersAtMaxTime = new HashSet<>();
+		}
+		for (Map.Entry<Long, Long> order : orderTimes.entrySet()) {
+			if (order.getValue() == newMaxTime) {
+				ordersAtMaxTime.add(order.getKey());
 			}
 		}
-		filterForMaxtimeStamp(orderItems, orders);
+		maxTime = newMaxTime;
+		orderPosition = orders;
+		itemPosition = items;
+		isTrained = true;
+		if (update) {
+			LOG.trace("Folded " + orderTimes.size() + " new orders into the recommender.");
+		} else {
+			LOG.trace("Finished training, ready for recommendation.");
+		}
+		setReady(true);
+		return noItems + noOrders;
 	}
 
-	private void filterForMaxtimeStamp(List<OrderItem> orderItems, List<Order> orders) {
-		// filter orderItems and orders and ignore newer entries.
-		List<Order> remove = new ArrayList<>();
-		for (Order or : orders) {
-			if (toMillis(or.getTime()) > maxTime) {
-				remove.add(or);
+	private <T> long retrievePaged(String endpointURI, Class<T> entityClass, int offset,
+			ObjIntConsumer<T> consumer) throws NotFoundException, LoadBalancerTimeoutException {
+		int start = offset;
+		List<T> page;
+		do {
+			page = source.getEntities(endpointURI, entityClass, start, pageSize);
+			for (T entity : page) {
+				consumer.accept(entity, start++);
 			}
+		} while (page.size() == pageSize);
+		return start - offset;
+	}
+
+	// Checks that the entity before the position is still the one seen by the last training
+	private <T> boolean isUnchanged(String endpointURI, Class<T> entityClass, TablePosition position,
+			ToLongFunction<T> id) throws NotFoundException, LoadBalancerTimeoutException {
+		if (position.offset == 0) {
+			return true;
 		}
-		orders.removeAll(remove);
-
-		List<OrderItem> removeItems = new ArrayList<>();
-		for (OrderItem orderItem : orderItems) {
-			boolean contained = false;
-			for (Order or : orders) {
-				if (or.getId() == orderItem.getOrderId()) {
-					contained = true;
-				}
-			}
-			if (!contained) {
-				removeItems.add(orderItem);
+		List<T> page = source.getEntities(endpointURI, entityClass, position.offset - 1, 1);
+		return page.size() == 1 && id.applyAsLong(page.get(0)) == position.lastId;
+	}
+
+	private void synchronizeMaxTime() {
+		for (long milliTS : source.getMaxTimes()) {
+			if (maxTime != TrainingSynchronizer.DEFAULT_MAX_TIME_VALUE && maxTime != milliTS) {
+				LOG.warn("Services disagree about timestamp: " + maxTime + " vs " + milliTS
+						+ ". Therfore using the minimum.");
 			}
+			maxTime = Math.min(maxTime, milliTS);
 		}
-		orderItems.removeAll(removeItems);
 	}
 
 	private long toMillis(String date) {
@@ -275,4 +457,80 @@ public final class TrainingSynchronizer {
 		return instant.toEpochMilli();
 	}
 
+	/**
+	 * Retrieves the training data from the persistence service and the training
+	 * times from all other recommender instances.
+	 */
+	private static final class PersistenceDataSource implements DataSource {
+
+		@Override
+		public void waitUntilAvailable() {
+			// We have to wait for the database that all entries are created before
+			// generating images (which queries persistence). Yes we want to wait forever in
+			// case the persistence is
+			// not answering.
+			Iterator<Integer> waitTimes = PERSISTENCE_CREATION_WAIT_TIME.iterator();
+			while (true) {
+				Response result = null;
+				try {
+					result = ServiceLoadBalancer.loadBalanceRESTOperation(Service.PERSISTENCE, "generatedb",
+							String.class, client -> client.getService().path(client.getApplicationURI())
+									.path(client.getEndpointURI()).path("finished").request().get());
+
+					if (result != null && Boolean.parseBoolean(result.readEntity(String.class))) {
+						break;
+					}
+				} catch (NullPointerException | NotFoundException | LoadBalancerTimeoutException e) {
+					// continue waiting as usual
+				} finally {
+					if (result != null) {
+						result.close();
+					}
+				}
+				try {
+					int nextWaitTime;
+					if (waitTimes.hasNext()) {
+						nextWaitTime = waitTimes.next();
+					} else {
+						nextWaitTime = PERSISTENCE_CREATION_MAX_WAIT_TIME;
+					}
+					LOG.info("Persistence not reachable. Waiting for {}ms.", nextWaitTime);
+					Thread.sleep(nextWaitTime);
+				} catch (InterruptedException interrupted) {
+					LOG.warn("Thread interrupted while waiting for persistence to be available.", interrupted);
+				}
+			}
+		}
+
+		@Override
+		public <T> List<T> getEntities(String endpointURI, Class<T> entityClass, int start, int limit)
+				throws NotFoundException, LoadBalancerTimeoutException {
+			return LoadBalancedCRUDOperations.getEntities(Service.PERSISTENCE, endpointURI, entityClass, start,
+					limit);
+		}
+
+		@Override
+		public List<Long> getMaxTimes() {
+			// since we are not registered ourselves, we can multicast to all services
+			List<Response> maxTimeResponses = ServiceLoadBalancer.multicastRESTOperation(Service.RECOMMENDER,
+					"train/timestamp", Response.class,
+					client -> client.getService().path(client.getApplicationURI()).path(client.getEndpointURI())
+							.request(MediaType.TEXT_PLAIN).accept(MediaType.TEXT_PLAIN).get());
+			List<Long> maxTimes = new ArrayList<>();
+			for (Response response : maxTimeResponses) {
+				if (response == null) {
+					LOG.warn("One service response was null and is therefore not available for time-check.");
+				} else if (response.getStatus() == Response.Status.OK.getStatusCode()) {
+					// only consider if status was fine
+					maxTimes.add(response.readEntity(Long.class));
+				} else {
+					// release connection by buffering entity
+					response.bufferEntity();
+					LOG.warn("Service " + response + "was not available for time-check.");
+				}
+			}
+			return maxTimes;
+		}
+	}
+
 }
@@ -15,6 +15,7 @@ package tools.descartes.teastore.recommender.algorithm;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -309,6 +310,55 @@ public abstract class AbstractRecommenderTest {
 		testMultiResults();
 	}
 
+	/**
+	 * Test that training with some orders and updating with the remaining orders
+	 * gives the same results as training with all orders.
+	 */
+	@Test
+	public void testUpdate() {
+		try {
+			getAlgo().update(getTrainOrderItems(), getTrainOrders());
+			Assert.fail("Recommender is supposed to throw an exception before being trained.");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+		// orders 10 to 13 are trained, orders 14 to 17 add products and users
+		List<Order> orders = getTrainOrders().subList(0, 4);
+		List<Order> newOrders = getTrainOrders().subList(4, getTrainOrders().size());
+		List<OrderItem> items = new ArrayList<>();
+		List<OrderItem> newItems = new ArrayList<>();
+		for (OrderItem item : getTrainOrderItems()) {
+			if (item.getOrderId() <= 13) {
+				items.add(item);
+			} else {
+				newItems.add(item);
+			}
+		}
+		getAlgo().train(items, orders);
+		getAlgo().update(newItems, newOrders);
+		testSingleResults();
+		testMultiResults();
+	}
+
+	/**
+	 * Test that training and updating a copy does not change the trained data of
+	 * the original, so the original can keep serving recommendations.
+	 */
+	@Test
+	public void testCopy() {
+		getAlgo().train(getTrainOrderItems(), getTrainOrders());
+		Map<Long, Map<Long, Double>> matrix = getAlgo().getUserBuyingMatrix();
+		AbstractRecommender copy = getAlgo().copy();
+		Assert.assertNotSame(getAlgo(), copy);
+		// order 10 is trained, order 11 is added
+		copy.train(getTrainOrderItems().subList(0, 3), getTrainOrders().subList(0, 1));
+		copy.update(getTrainOrderItems().subList(3, 5), getTrainOrders().subList(1, 2));
+		Assert.assertSame(matrix, getAlgo().getUserBuyingMatrix());
+		Assert.assertEquals(2, copy.getUserBuyingMatrix().size());
+		testSingleResults();
+		testMultiResults();
+	}
+
 	/**
 	 * Test the results of the single recommender interface.
 	 */
@@ -14,9 +14,15 @@
 package tools.descartes.teastore.recommender.algorithm;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
 
 import tools.descartes.teastore.recommender.algorithm.impl.cf.PreprocessedSlopeOneRecommender;
 
@@ -52,6 +58,43 @@ public class PreprocessedSlopeOneRecommenderTest extends SlopeOneRecommenderTest
 		checkUserPredictionMatrix();
 	}
 
+	/**
+	 * Test that an update only predicts the users again, who rated a product also
+	 * rated by a user with new orders.
+	 */
+	@Test
+	public void testUpdateUnaffectedUsers() {
+		getAlgo().train(getTrainOrderItems(), getTrainOrders());
+		PreprocessedSlopeOneRecommender algo = (PreprocessedSlopeOneRecommender) getAlgo();
+		Map<Long, Map<Long, Double>> trained = algo.getPredictedRatings();
+
+		// a new user buys a new product
+		algo.update(newOrder(200L, 98L, 6L));
+		Map<Long, Map<Long, Double>> updated = algo.getPredictedRatings();
+		assertEquals(1.0, updated.get(200L).get(6L), 0.0);
+		for (Long userid : trained.keySet()) {
+			Map<Long, Double> prediction = new HashMap<>(updated.get(userid));
+			assertEquals(-1.0, prediction.remove(6L), 0.0);
+			assertEquals(trained.get(userid), prediction);
+		}
+
+		// the same user buys the product again, no other user rated it
+		algo.update(newOrder(200L, 99L, 6L));
+		for (Long userid : trained.keySet()) {
+			assertSame(updated.get(userid), algo.getPredictedRatings().get(userid));
+		}
+	}
+
+	private Map<Long, Set<OrderItemSet>> newOrder(long userid, long orderid, long productid) {
+		OrderItemSet set = new OrderItemSet();
+		set.setUserId(userid);
+		set.setOrderId(orderid);
+		set.getOrderset().put(productid, 1);
+		Map<Long, Set<OrderItemSet>> itemSets = new HashMap<>();
+		itemSets.put(userid, new HashSet<>(Collections.singleton(set)));
+		return itemSets;
+	}
+
 	private void checkUserPredictionMatrix() {
 		Map<Long, Map<Long, Double>> ratings = new HashMap<>();
 
@@ -0,0 +1,123 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tools.descartes.teastore.recommender.algorithm;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import tools.descartes.teastore.recommender.algorithm.impl.cf.SlopeOneModel;
+
+/**
+ * Test for the compact slope one model.
+ */
+public class SlopeOneModelTest {
+
+	private SlopeOneModel model;
+
+	/**
+	 * Builds a model for two users. User 1 bought {1, 2^2}, user 2 bought {2, 3^3}.
+	 */
+	@Before
+	public void setup() {
+		Map<Long, Map<Long, Double>> matrix = new HashMap<>();
+		Map<Long, Double> ratings = new HashMap<>();
+		ratings.put(1L, 1.0);
+		ratings.put(2L, 2.0);
+		matrix.put(1L, ratings);
+		ratings = new HashMap<>();
+		ratings.put(2L, 1.0);
+		ratings.put(3L, 3.0);
+		matrix.put(2L, ratings);
+		model = SlopeOneModel.build(matrix);
+	}
+
+	/**
+	 * Tests the dense indices and the resulting matrices.
+	 */
+	@Test
+	public void testBuild() {
+		Assert.assertEquals(3, model.getNumberOfProducts());
+		Assert.assertEquals(-1, model.indexOf(4L));
+		for (long productId = 1; productId <= 3; productId++) {
+			Assert.assertEquals(productId, model.getProductId(model.indexOf(productId)));
+		}
+
+		Assert.assertEquals(-1.0, model.getDifferenceMatrix().get(1L).get(2L), 0.0);
+		Assert.assertEquals(-2.0, model.getDifferenceMatrix().get(2L).get(3L), 0.0);
+		Assert.assertEquals(2, model.getFrequencyMatrix().get(2L).get(2L).intValue());
+		Assert.assertNull(model.getFrequencyMatrix().get(1L).get(3L));
+	}
+
+	/**
+	 * Tests a model large enough to be built in several blocks of rows against
+	 * the pairwise definition of the differences and frequencies.
+	 */
+	@Test
+	public void testBuildBlocks() {
+		Random random = new Random(42);
+		Map<Long, Map<Long, Double>> matrix = new HashMap<>();
+		for (long user = 0; user < 200; user++) {
+			Map<Long, Double> ratings = new HashMap<>();
+			for (int k = 0; k < 5; k++) {
+				ratings.put((long) random.nextInt(50), (double) (1 + random.nextInt(3)));
+			}
+			matrix.put(user, ratings);
+		}
+		Map<Long, Map<Long, Double>> sums = new HashMap<>();
+		Map<Long, Map<Long, Integer>> frequencies = new HashMap<>();
+		for (Map<Long, Double> ratings : matrix.values()) {
+			for (Map.Entry<Long, Double> i : ratings.entrySet()) {
+				for (Map.Entry<Long, Double> j : ratings.entrySet()) {
+					sums.computeIfAbsent(i.getKey(), key -> new HashMap<>()).merge(j.getKey(),
+							i.getValue() - j.getValue(), Double::sum);
+					frequencies.computeIfAbsent(i.getKey(), key -> new HashMap<>()).merge(j.getKey(), 1,
+							Integer::sum);
+				}
+			}
+		}
+
+		SlopeOneModel blocks = SlopeOneModel.build(matrix);
+		Assert.assertEquals(frequencies, blocks.getFrequencyMatrix());
+		Map<Long, Map<Long, Double>> differences = blocks.getDifferenceMatrix();
+		for (Long i : sums.keySet()) {
+			for (Long j : sums.get(i).keySet()) {
+				Assert.assertEquals(sums.get(i).get(j) / frequencies.get(i).get(j), differences.get(i).get(j),
+						1e-9);
+			}
+		}
+	}
+
+	/**
+	 * Tests the predictions for bought, related and unrelated products.
+	 */
+	@Test
+	public void testPredict() {
+		Map<Long, Double> ratings = new HashMap<>();
+		ratings.put(1L, 2.0);
+		double[] scores = model.predict(ratings);
+		Assert.assertEquals(2.0, scores[model.indexOf(1L)], 0.0);
+		Assert.assertEquals(1.0, scores[model.indexOf(2L)], 0.0);
+		// product 3 was never bought together with product 1
+		Assert.assertEquals(-1.0, scores[model.indexOf(3L)], 0.0);
+
+		ratings.put(4L, 1.0);
+		scores = model.predict(ratings);
+		Assert.assertEquals(-1.0, scores[model.indexOf(2L)], 0.0);
+	}
+}
@@ -0,0 +1,151 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tools.descartes.teastore.recommender.algorithm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import tools.descartes.teastore.entities.Order;
+import tools.descartes.teastore.entities.OrderItem;
+import tools.descartes.teastore.recommender.algorithm.impl.cf.SlopeOneRecommender;
+import tools.descartes.teastore.recommender.algorithm.impl.pop.PopularityBasedRecommender;
+
+/**
+ * JMH benchmark training a recommender with a growing number of orders. The
+ * popularity recommender barely does any pre-processing, so the measured time
+ * is dominated by joining the order items with their orders and should grow
+ * linearly with the number of orders. The slope one recommender additionally
+ * builds its difference matrix, which grows with the pairs of products bought
+ * by the same user. The growth is only measured here, not in the unit tests, as
+ * it depends on the machine. Run the main method from the test classpath, e.g.
+ * with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=tools.descartes.teastore.recommender.algorithm.TrainingBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TrainingBenchmark {
+
+	private static final int PRODUCTS = 500;
+
+	private static final int ORDERS_PER_USER = 4;
+
+	private static final int MAX_ITEMS_PER_ORDER = 5;
+
+	/**
+	 * Number of orders to train with.
+	 */
+	@Param({ "2000", "8000", "32000" })
+	public int orderCount;
+
+	/**
+	 * Recommender to train.
+	 */
+	@Param({ "Popularity", "SlopeOne" })
+	public String recommender;
+
+	private List<OrderItem> orderItems;
+
+	private List<Order> orders;
+
+	/**
+	 * Creates the orders to train with.
+	 */
+	@Setup
+	public void setup() {
+		orders = new ArrayList<>(orderCount);
+		orderItems = new ArrayList<>();
+		createOrders(orderCount, orders, orderItems);
+	}
+
+	/**
+	 * Creates random orders with up to five items each. The same number of orders
+	 * always results in the same orders.
+	 * 
+	 * @param orderCount
+	 *            The number of orders to create
+	 * @param orders
+	 *            The list to add the orders to
+	 * @param orderItems
+	 *            The list to add the order items to
+	 */
+	static void createOrders(int orderCount, List<Order> orders, List<OrderItem> orderItems) {
+		Random random = new Random(42);
+		for (int i = 0; i < orderCount; i++) {
+			Order order = new Order();
+			order.setId(i);
+			order.setUserId(random.nextInt(orderCount / ORDERS_PER_USER));
+			orders.add(order);
+			int items = 1 + random.nextInt(MAX_ITEMS_PER_ORDER);
+			for (int j = 0; j < items; j++) {
+				OrderItem item = new OrderItem();
+				item.setId(orderItems.size());
+				item.setOrderId(i);
+				item.setProductId(random.nextInt(PRODUCTS));
+				item.setQuantity(1 + random.nextInt(3));
+				orderItems.add(item);
+			}
+		}
+	}
+
+	/**
+	 * Trains a new recommender with all orders.
+	 * 
+	 * @return The trained recommender.
+	 */
+	@Benchmark
+	public AbstractRecommender train() {
+		AbstractRecommender trained;
+		if (recommender.equals("SlopeOne")) {
+			trained = new SlopeOneRecommender();
+		} else {
+			trained = new PopularityBasedRecommender();
+		}
+		trained.train(orderItems, orders);
+		return trained;
+	}
+
+	/**
+	 * Runs the benchmark.
+	 * 
+	 * @param args
+	 *            Unused.
+	 * @throws RunnerException
+	 *             If the benchmark fails.
+	 */
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(TrainingBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
@@ -0,0 +1,100 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tools.descartes.teastore.recommender.algorithm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import tools.descartes.teastore.entities.Order;
+import tools.descartes.teastore.entities.OrderItem;
+import tools.descartes.teastore.recommender.algorithm.impl.pop.PopularityBasedRecommender;
+
+/**
+ * Test for joining order items with their orders during training, using the
+ * orders of the {@link TrainingBenchmark}. The training time is measured by the
+ * benchmark only, as wall clock times are not reliable in unit tests.
+ */
+public class TrainingJoinTest {
+
+	private static final int ORDER_COUNT = 16000;
+
+	/**
+	 * Test that each order item is joined with its order, independent of the
+	 * order of both lists.
+	 */
+	@Test
+	public void testJoin() {
+		List<Order> orders = new ArrayList<>(ORDER_COUNT);
+		List<OrderItem> orderItems = new ArrayList<>();
+		TrainingBenchmark.createOrders(ORDER_COUNT, orders, orderItems);
+		Map<Long, Set<Long>> userOrders = new HashMap<>();
+		for (Order order : orders) {
+			userOrders.computeIfAbsent(order.getUserId(), user -> new HashSet<>()).add(order.getId());
+		}
+		Map<Long, Map<Long, Integer>> orderSets = new HashMap<>();
+		for (OrderItem item : orderItems) {
+			orderSets.computeIfAbsent(item.getOrderId(), order -> new HashMap<>()).put(item.getProductId(),
+					item.getQuantity());
+		}
+		Collections.reverse(orders);
+
+		AbstractRecommender algo = new PopularityBasedRecommender();
+		algo.train(orderItems, orders);
+		Assert.assertEquals(userOrders.keySet(), algo.getUserItemSets().keySet());
+		for (Map.Entry<Long, Set<OrderItemSet>> user : algo.getUserItemSets().entrySet()) {
+			Set<Long> orderIds = new HashSet<>();
+			for (OrderItemSet set : user.getValue()) {
+				Assert.assertEquals((long) user.getKey(), set.getUserId());
+				Assert.assertEquals(orderSets.get(set.getOrderId()), set.getOrderset());
+				orderIds.add(set.getOrderId());
+			}
+			Assert.assertEquals(userOrders.get(user.getKey()), orderIds);
+		}
+	}
+
+	/**
+	 * Test that order items of unknown orders are ignored.
+	 */
+	@Test
+	public void testUnknownOrder() {
+		List<Order> orders = new ArrayList<>();
+		List<OrderItem> orderItems = new ArrayList<>();
+		TrainingBenchmark.createOrders(100, orders, orderItems);
+		OrderItem unknown = new OrderItem();
+		unknown.setId(orderItems.size());
+		unknown.setOrderId(orders.size());
+		unknown.setProductId(1L);
+		unknown.setQuantity(1);
+		orderItems.add(0, unknown);
+
+		AbstractRecommender algo = new PopularityBasedRecommender();
+		algo.train(orderItems, orders);
+		int sets = 0;
+		for (Set<OrderItemSet> userSets : algo.getUserItemSets().values()) {
+			for (OrderItemSet set : userSets) {
+				Assert.assertNotEquals(orders.size(), set.getOrderId());
+				sets++;
+			}
+		}
+		Assert.assertEquals(orders.size(), sets);
+	}
+}
@@ -0,0 +1,251 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tools.descartes.teastore.recommender.servlet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import tools.descartes.teastore.recommender.algorithm.IRecommender;
+import tools.descartes.teastore.recommender.algorithm.OrderItemSet;
+import tools.descartes.teastore.entities.Order;
+import tools.descartes.teastore.entities.OrderItem;
+
+/**
+ * Test for the paging and incremental training of the
+ * {@link TrainingSynchronizer}.
+ */
+public class TrainingSynchronizerTest {
+
+	private static final int PAGE_SIZE = 2;
+	private static final String TIME = "2026-10-18T12:00:00";
+	private static final String LATER = "2026-10-18T12:00:01";
+
+	private List<Order> orders;
+	private List<OrderItem> items;
+	private List<String> requests;
+	private List<Set<Long>> trained;
+	private List<Set<Long>> updated;
+	private TrainingSynchronizer synchronizer;
+
+	/**
+	 * Creates a synchronizer training a recording recommender with entities from
+	 * in-memory tables.
+	 */
+	@Before
+	public void setUp() {
+		orders = new ArrayList<>();
+		items = new ArrayList<>();
+		requests = new ArrayList<>();
+		trained = new ArrayList<>();
+		updated = new ArrayList<>();
+		synchronizer = new TrainingSynchronizer(new TableSource(), new RecordingRecommender(), PAGE_SIZE);
+		synchronizer.setIncrementalTraining(true);
+	}
+
+	/**
+	 * Test that incremental training resumes paging after the orders and order
+	 * items considered by the last training.
+	 */
+	@Test
+	public void testResumeAfterConsumedOrders() {
+		addOrder(1L, TIME, 1L);
+		addOrder(2L, TIME, 2L, 3L);
+		addOrder(3L, TIME, 4L);
+		assertEquals(7, synchronizer.retrieveDataAndRetrain());
+		assertEquals(Arrays.asList(ids(1L, 2L, 3L)), trained);
+
+		addOrder(4L, LATER, 5L);
+		requests.clear();
+		assertEquals(2, synchronizer.retrieveDataAndRetrain());
+		assertEquals(Arrays.asList(ids(4L)), updated);
+		assertEquals(1, trained.size());
+		assertEquals(Arrays.asList("orders 2 1", "orderitems 3 1", "orders 3 2", "orderitems 4 2"), requests);
+		assertEquals(toMillis(LATER), synchronizer.getMaxTime());
+
+		requests.clear();
+		assertEquals(0, synchronizer.retrieveDataAndRetrain());
+		assertEquals(1, updated.size());
+		assertEquals(Arrays.asList("orders 3 1", "orderitems 4 1", "orders 4 2", "orderitems 5 2"), requests);
+	}
+
+	/**
+	 * Test that orders placed at the latest trained time, but retrieved on later
+	 * pages or by later trainings, are each trained exactly once.
+	 */
+	@Test
+	public void testOrdersAtMaxTimeAcrossPages() {
+		addOrder(1L, TIME, 1L);
+		addOrder(2L, TIME, 2L);
+		addOrder(3L, TIME, 3L);
+		synchronizer.retrieveDataAndRetrain();
+		assertEquals(Arrays.asList(ids(1L, 2L, 3L)), trained);
+		assertEquals(toMillis(TIME), synchronizer.getMaxTime());
+
+		addOrder(4L, TIME, 4L);
+		addOrder(5L, TIME, 5L);
+		addOrder(6L, TIME, 6L);
+		synchronizer.retrieveDataAndRetrain();
+		assertEquals(Arrays.asList(ids(4L, 5L, 6L)), updated);
+
+		addOrder(7L, TIME, 7L);
+		synchronizer.retrieveDataAndRetrain();
+		assertEquals(Arrays.asList(ids(4L, 5L, 6L), ids(7L)), updated);
+		assertEquals(1, trained.size());
+		assertEquals(toMillis(TIME), synchronizer.getMaxTime());
+	}
+
+	/**
+	 * Test that the latest trained time includes orders without items.
+	 */
+	@Test
+	public void testMaxTimeOfOrdersWithoutItems() {
+		addOrder(1L, TIME, 1L);
+		addOrder(2L, LATER);
+		synchronizer.retrieveDataAndRetrain();
+		assertEquals(Arrays.asList(ids(1L)), trained);
+		assertEquals(toMillis(LATER), synchronizer.getMaxTime());
+
+		assertEquals(0, synchronizer.retrieveDataAndRetrain());
+		assertTrue(updated.isEmpty());
+	}
+
+	/**
+	 * Test that a regenerated database is detected and the recommender is trained
+	 * from scratch with all orders of the new tables.
+	 */
+	@Test
+	public void testRegeneratedTables() {
+		addOrder(1L, LATER, 1L);
+		addOrder(2L, LATER, 2L);
+		addOrder(3L, LATER, 3L);
+		synchronizer.retrieveDataAndRetrain();
+
+		orders.clear();
+		items.clear();
+		addOrder(11L, TIME, 11L);
+		addOrder(12L, TIME, 12L);
+		addOrder(13L, TIME, 13L);
+		addOrder(14L, TIME, 14L);
+		assertEquals(8, synchronizer.retrieveDataAndRetrain());
+		assertTrue(updated.isEmpty());
+		assertEquals(Arrays.asList(ids(1L, 2L, 3L), ids(11L, 12L, 13L, 14L)), trained);
+		assertEquals(toMillis(TIME), synchronizer.getMaxTime());
+
+		addOrder(15L, TIME, 15L);
+		synchronizer.retrieveDataAndRetrain();
+		assertEquals(Arrays.asList(ids(15L)), updated);
+	}
+
+	private void addOrder(long id, String time, long... itemIds) {
+		Order order = new Order();
+		order.setId(id);
+		order.setUserId(100L + id);
+		order.setTime(time);
+		orders.add(order);
+		for (long itemId : itemIds) {
+			OrderItem item = new OrderItem();
+			item.setId(itemId);
+			item.setOrderId(id);
+			item.setProductId(itemId % 3);
+			item.setQuantity(1);
+			items.add(item);
+		}
+	}
+
+	private static Set<Long> ids(Long... ids) {
+		return new HashSet<>(Arrays.asList(ids));
+	}
+
+	private static long toMillis(String time) {
+		return LocalDateTime.parse(time).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+	}
+
+	private static Set<Long> orderIds(Map<Long, Set<OrderItemSet>> userItemSets) {
+		Set<Long> ids = new HashSet<>();
+		for (Set<OrderItemSet> sets : userItemSets.values()) {
+			for (OrderItemSet set : sets) {
+				ids.add(set.getOrderId());
+			}
+		}
+		return ids;
+	}
+
+	/**
+	 * Lists the in-memory tables by ascending ID.
+	 */
+	private class TableSource implements TrainingSynchronizer.DataSource {
+
+		@Override
+		public void waitUntilAvailable() {
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public <T> List<T> getEntities(String endpointURI, Class<T> entityClass, int start, int limit) {
+			requests.add(endpointURI + " " + start + " " + limit);
+			List<?> table = "orders".equals(endpointURI) ? orders : items;
+			int from = Math.min(start, table.size());
+			return new ArrayList<>((List<T>) table.subList(from, Math.min(from + limit, table.size())));
+		}
+
+		@Override
+		public List<Long> getMaxTimes() {
+			return Collections.emptyList();
+		}
+	}
+
+	/**
+	 * Records the orders of each training and update.
+	 */
+	private class RecordingRecommender implements IRecommender {
+
+		@Override
+		public void train(List<OrderItem> orderItems, List<Order> orders) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void train(Map<Long, Set<OrderItemSet>> userItemSets) {
+			trained.add(orderIds(userItemSets));
+		}
+
+		@Override
+		public void update(List<OrderItem> orderItems, List<Order> orders) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void update(Map<Long, Set<OrderItemSet>> newItemSets) {
+			updated.add(orderIds(newItemSets));
+		}
+
+		@Override
+		public List<Long> recommendProducts(Long userid, List<OrderItem> currentItems) {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
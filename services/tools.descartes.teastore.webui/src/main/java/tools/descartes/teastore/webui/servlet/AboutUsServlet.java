@@ -24,7 +24,6 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 import tools.descartes.teastore.registryclient.loadbalancers.LoadBalancerTimeoutException;
-import tools.descartes.teastore.registryclient.rest.LoadBalancedImageOperations;
 import tools.descartes.teastore.registryclient.rest.LoadBalancedStoreOperations;
 import tools.descartes.teastore.entities.ImageSizePreset;
 
@@ -51,8 +50,8 @@ public class AboutUsServlet extends AbstractUIServlet {
   protected void handleGETRequest(HttpServletRequest request, HttpServletResponse response)
       throws ServletException, IOException, LoadBalancerTimeoutException {
     checkforCookie(request, response);
-    HashMap<String, String> portraits = LoadBalancedImageOperations
-        .getWebImages(Arrays.asList("andreBauer", "johannesGrohmann", "joakimKistowski",
+    HashMap<String, String> portraits = getWebImages(request,
+        Arrays.asList("andreBauer", "johannesGrohmann", "joakimKistowski",
             "simonEismann", "norbertSchmitt", "samuelKounev"), ImageSizePreset.PORTRAIT.getSize());
     request.setAttribute("portraitAndre", portraits.get("andreBauer"));
     request.setAttribute("portraitJohannes", portraits.get("johannesGrohmann"));
@@ -61,9 +60,9 @@ public class AboutUsServlet extends AbstractUIServlet {
     request.setAttribute("portraitNorbert", portraits.get("norbertSchmitt"));
     request.setAttribute("portraitKounev", portraits.get("samuelKounev"));
     request.setAttribute("descartesLogo",
-        LoadBalancedImageOperations.getWebImage("descartesLogo", ImageSizePreset.LOGO.getSize()));
+        getWebImage(request, "descartesLogo", ImageSizePreset.LOGO.getSize()));
     request.setAttribute("storeIcon",
-        LoadBalancedImageOperations.getWebImage("icon", ImageSizePreset.ICON.getSize()));
+        getWebImage(request, "icon", ImageSizePreset.ICON.getSize()));
     request.setAttribute("title", "TeaStore About Us");
     request.setAttribute("login", LoadBalancedStoreOperations.isLoggedIn(getSessionBlob(request)));
 
@@ -20,6 +20,11 @@ import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
 
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.Cookie;
@@ -32,8 +37,11 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 
 import tools.descartes.teastore.registryclient.Service;
 import tools.descartes.teastore.registryclient.loadbalancers.LoadBalancerTimeoutException;
+import tools.descartes.teastore.registryclient.rest.LoadBalancedImageOperations;
 import tools.descartes.teastore.registryclient.util.NotFoundException;
 import tools.descartes.teastore.entities.Category;
+import tools.descartes.teastore.entities.ImageSize;
+import tools.descartes.teastore.entities.Product;
 import tools.descartes.teastore.entities.message.SessionBlob;
 
 /**
@@ -90,6 +98,123 @@ public abstract class AbstractUIServlet extends HttpServlet {
 	 */
 	protected static final String REMOVEPRODUCT = "Product %s is removed from cart!";
 
+	private static volatile Boolean imageLinks;
+
+	/**
+	 * Checks if images are referenced by URL to the {@link ImageServlet} instead
+	 * of being embedded into the page as base64 data. Configured with the
+	 * webuiImageLinks environment entry, images are embedded by default.
+	 * 
+	 * @return True if images are referenced by URL.
+	 */
+	protected static boolean useImageLinks() {
+		Boolean links = imageLinks;
+		if (links == null) {
+			links = false;
+			try {
+				links = Boolean.parseBoolean(
+						String.valueOf(new InitialContext().lookup("java:comp/env/webuiImageLinks")));
+			} catch (NamingException e) {
+				// Entry not set, keep embedding images
+			}
+			imageLinks = links;
+		}
+		return links;
+	}
+
+	/**
+	 * Returns the img source for a web interface image.
+	 * 
+	 * @param request servlet request
+	 * @param name name of the image
+	 * @param size size of the image
+	 * @return image URL or base64 encoded image
+	 * @throws NotFoundException If 404 was returned.
+	 * @throws LoadBalancerTimeoutException On timeout.
+	 */
+	protected String getWebImage(HttpServletRequest request, String name, ImageSize size)
+			throws NotFoundException, LoadBalancerTimeoutException {
+		if (useImageLinks()) {
+			return webImageLink(request, name, size);
+		}
+		return LoadBalancedImageOperations.getWebImage(name, size);
+	}
+
+	/**
+	 * Returns the img sources for several web interface images.
+	 * 
+	 * @param request servlet request
+	 * @param names names of the images
+	 * @param size size of the images
+	 * @return image URLs or base64 encoded images by name
+	 * @throws NotFoundException If 404 was returned.
+	 * @throws LoadBalancerTimeoutException On timeout.
+	 */
+	protected HashMap<String, String> getWebImages(HttpServletRequest request, List<String> names,
+			ImageSize size) throws NotFoundException, LoadBalancerTimeoutException {
+		if (useImageLinks()) {
+			HashMap<String, String> links = new HashMap<>();
+			for (String name : names) {
+				links.put(name, webImageLink(request, name, size));
+			}
+			return links;
+		}
+		return LoadBalancedImageOperations.getWebImages(names, size);
+	}
+
+	/**
+	 * Returns the img source for a product image.
+	 * 
+	 * @param request servlet request
+	 * @param product product
+	 * @param size size of the image
+	 * @return image URL or base64 encoded image
+	 * @throws NotFoundException If 404 was returned.
+	 * @throws LoadBalancerTimeoutException On timeout.
+	 */
+	protected String getProductImage(HttpServletRequest request, Product product, ImageSize size)
+			throws NotFoundException, LoadBalancerTimeoutException {
+		if (useImageLinks()) {
+			return productImageLink(request, product.getId(), size);
+		}
+		return LoadBalancedImageOperations.getProductImage(product, size);
+	}
+
+	/**
+	 * Returns the img sources for several product images.
+	 * 
+	 * @param request servlet request
+	 * @param products list of products
+	 * @param size size of the images
+	 * @return image URLs or base64 encoded images by product ID
+	 * @throws NotFoundException If 404 was returned.
+	 * @throws LoadBalancerTimeoutException On timeout.
+	 */
+	protected HashMap<Long, String> getProductImages(HttpServletRequest request, List<Product> products,
+			ImageSize size) throws NotFoundException, LoadBalancerTimeoutException {
+		if (useImageLinks()) {
+			HashMap<Long, String> links = new HashMap<>();
+			for (Product product : products) {
+				links.put(product.getId(), productImageLink(request, product.getId(), size));
+			}
+			return links;
+		}
+		return LoadBalancedImageOperations.getProductImages(products, size);
+	}
+
+	private static String productImageLink(HttpServletRequest request, long productId, ImageSize size) {
+		return request.getContextPath() + "/image?id=" + productId + "&size=" + size.toString();
+	}
+
+	private static String webImageLink(HttpServletRequest request, String name, ImageSize size) {
+		try {
+			return request.getContextPath() + "/image?name=" + URLEncoder.encode(name, "UTF-8") + "&size="
+					+ size.toString();
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException("Could not encode image name!");
+		}
+	}
+
 	/**
 	 * Try to read the SessionBlob from the cookie. If no SessioBlob exist, a new
 	 * SessionBlob is created. If the SessionBlob is corrupted, an
@@ -29,7 +29,6 @@ import jakarta.servlet.http.HttpServletResponse;
 import tools.descartes.teastore.registryclient.Service;
 import tools.descartes.teastore.registryclient.loadbalancers.LoadBalancerTimeoutException;
 import tools.descartes.teastore.registryclient.rest.LoadBalancedCRUDOperations;
-import tools.descartes.teastore.registryclient.rest.LoadBalancedImageOperations;
 import tools.descartes.teastore.registryclient.rest.LoadBalancedRecommenderOperations;
 import tools.descartes.teastore.registryclient.rest.LoadBalancedStoreOperations;
 import tools.descartes.teastore.entities.Category;
@@ -77,7 +76,7 @@ public class CartServlet extends AbstractUIServlet {
     }
 
     request.setAttribute("storeIcon",
-        LoadBalancedImageOperations.getWebImage("icon", ImageSizePreset.ICON.getSize()));
+        getWebImage(request, "icon", ImageSizePreset.ICON.getSize()));
     request.setAttribute("title", "TeaStore Cart");
     request.setAttribute("CategoryList", LoadBalancedCRUDOperations.getEntities(Service.PERSISTENCE,
         "categories", Category.class, -1, -1));
@@ -98,7 +97,7 @@ public class CartServlet extends AbstractUIServlet {
     }
     request.setAttribute("Advertisment", ads);
 
-    request.setAttribute("productImages", LoadBalancedImageOperations.getProductPreviewImages(ads));
+    request.setAttribute("productImages", getProductImages(request, ads, ImageSizePreset.PREVIEW.getSize()));
 
     request.getRequestDispatcher("WEB-INF/pages/cart.jsp").forward(request, response);
 
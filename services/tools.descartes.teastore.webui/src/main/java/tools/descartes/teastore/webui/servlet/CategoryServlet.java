@@ -28,7 +28,6 @@ import tools.descartes.teastore.registryclient.loadbalancers.LoadBalancerTimeout
 import tools.descartes.teastore.registryclient.loadbalancers.ServiceLoadBalancer;
 import tools.descartes.teastore.registryclient.rest.HttpWrapper;
 import tools.descartes.teastore.registryclient.rest.LoadBalancedCRUDOperations;
-import tools.descartes.teastore.registryclient.rest.LoadBalancedImageOperations;
 import tools.descartes.teastore.registryclient.rest.LoadBalancedStoreOperations;
 import tools.descartes.teastore.registryclient.rest.ResponseWrapper;
 import tools.descartes.teastore.entities.Category;
@@ -94,9 +93,9 @@ public class CategoryServlet extends AbstractUIServlet {
           "products", Product.class, "category", categoryID, (page - 1) * numberProducts,
           numberProducts);
       request.setAttribute("productImages",
-          LoadBalancedImageOperations.getProductPreviewImages(productlist));
+          getProductImages(request, productlist, ImageSizePreset.PREVIEW.getSize()));
       request.setAttribute("storeIcon",
-          LoadBalancedImageOperations.getWebImage("icon", ImageSizePreset.ICON.getSize()));
+          getWebImage(request, "icon", ImageSizePreset.ICON.getSize()));
       request.setAttribute("CategoryList", LoadBalancedCRUDOperations
           .getEntities(Service.PERSISTENCE, "categories", Category.class, -1, -1));
       request.setAttribute("title", "TeaStore Categorie " + category.getName());
@@ -22,7 +22,6 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 import tools.descartes.teastore.registryclient.loadbalancers.LoadBalancerTimeoutException;
-import tools.descartes.teastore.registryclient.rest.LoadBalancedImageOperations;
 import tools.descartes.teastore.entities.ImageSizePreset;
 
 /**
@@ -49,7 +48,7 @@ public class DataBaseServlet extends AbstractUIServlet {
 			throws ServletException, IOException, LoadBalancerTimeoutException {
 		checkforCookie(request, response);
 		request.setAttribute("storeIcon", 
-				LoadBalancedImageOperations.getWebImage("icon", ImageSizePreset.ICON.getSize()));
+				getWebImage(request, "icon", ImageSizePreset.ICON.getSize()));
 		request.setAttribute("title", "TeaStore Database");
 		request.getRequestDispatcher("WEB-INF/pages/database.jsp").forward(request, response);
 	}
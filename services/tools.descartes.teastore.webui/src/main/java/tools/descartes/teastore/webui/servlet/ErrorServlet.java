@@ -24,7 +24,6 @@ import jakarta.servlet.http.HttpServletResponse;
 import tools.descartes.teastore.registryclient.Service;
 import tools.descartes.teastore.registryclient.loadbalancers.LoadBalancerTimeoutException;
 import tools.descartes.teastore.registryclient.rest.LoadBalancedCRUDOperations;
-import tools.descartes.teastore.registryclient.rest.LoadBalancedImageOperations;
 import tools.descartes.teastore.registryclient.rest.LoadBalancedStoreOperations;
 import tools.descartes.teastore.entities.Category;
 import tools.descartes.teastore.entities.ImageSizePreset;
@@ -60,9 +59,9 @@ public class ErrorServlet extends AbstractUIServlet {
 			request.setAttribute("CategoryList",
 					LoadBalancedCRUDOperations.getEntities(Service.PERSISTENCE, "categories", Category.class, -1, -1));
 			request.setAttribute("storeIcon",
-					LoadBalancedImageOperations.getWebImage("icon", ImageSizePreset.ICON.getSize()));
+					getWebImage(request, "icon", ImageSizePreset.ICON.getSize()));
 			request.setAttribute("errorImage",
-					LoadBalancedImageOperations.getWebImage("error", ImageSizePreset.ERROR.getSize()));
+					getWebImage(request, "error", ImageSizePreset.ERROR.getSize()));
 			request.setAttribute("title", "TeaStore Error ");
 			request.setAttribute("login", LoadBalancedStoreOperations.isLoggedIn(getSessionBlob(request)));
 			request.getRequestDispatcher("WEB-INF/pages/error.jsp").forward(request, response);
@@ -0,0 +1,132 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tools.descartes.teastore.webui.servlet;
+
+import java.io.IOException;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response;
+
+import tools.descartes.teastore.registryclient.loadbalancers.LoadBalancerTimeoutException;
+import tools.descartes.teastore.registryclient.rest.LoadBalancedImageOperations;
+import tools.descartes.teastore.registryclient.util.NotFoundException;
+import tools.descartes.teastore.entities.ImageSize;
+
+/**
+ * Servlet serving binary product and web interface images. Used by the pages if
+ * images are referenced by URL instead of being embedded as base64 data, so
+ * browsers can fetch them in parallel and cache them. Conditional requests are
+ * forwarded to the image service, which answers them without sending the image
+ * again if the client copy is still valid.
+ */
+@WebServlet("/image")
+public class ImageServlet extends HttpServlet {
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Seconds browsers may reuse an image without revalidating it.
+   */
+  private static final int IMAGE_MAX_AGE = 3600;
+
+  /**
+   * @see HttpServlet#HttpServlet()
+   */
+  public ImageServlet() {
+    super();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void doGet(HttpServletRequest request, HttpServletResponse response)
+      throws ServletException, IOException {
+    String id = request.getParameter("id");
+    String name = request.getParameter("name");
+    String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+    String ifModifiedSince = request.getHeader(HttpHeaders.IF_MODIFIED_SINCE);
+    Response image;
+    try {
+      ImageSize size = ImageSize.parseImageSize(request.getParameter("size"));
+      if (id != null) {
+        image = LoadBalancedImageOperations.getProductImageData(Long.parseLong(id), size,
+            ifNoneMatch, ifModifiedSince);
+      } else if (name != null) {
+        image = LoadBalancedImageOperations.getWebImageData(name, size, ifNoneMatch,
+            ifModifiedSince);
+      } else {
+        response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+        return;
+      }
+    } catch (NullPointerException | IllegalArgumentException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+      return;
+    } catch (NotFoundException e) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND);
+      return;
+    } catch (LoadBalancerTimeoutException e) {
+      response.sendError(HttpServletResponse.SC_REQUEST_TIMEOUT);
+      return;
+    }
+
+    writeImage(response, image);
+  }
+
+  /**
+   * Writes the image service response to the client. The ETag and
+   * Last-Modified headers are passed through, so the client can revalidate its
+   * copy later. Status code 304 is passed through without image.
+   *
+   * @param response servlet response
+   * @param image buffered image service response, null if no image service is
+   *          available
+   * @throws IOException If writing the image fails.
+   */
+  void writeImage(HttpServletResponse response, Response image) throws IOException {
+    if (image == null) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND);
+      return;
+    }
+    int status = image.getStatus();
+    if (status != HttpServletResponse.SC_OK && status != HttpServletResponse.SC_NOT_MODIFIED) {
+      response.sendError(status);
+      return;
+    }
+
+    copyHeader(image, response, HttpHeaders.ETAG);
+    copyHeader(image, response, HttpHeaders.LAST_MODIFIED);
+    response.setHeader(HttpHeaders.CACHE_CONTROL, "public, max-age=" + IMAGE_MAX_AGE);
+    if (status == HttpServletResponse.SC_NOT_MODIFIED) {
+      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      return;
+    }
+    byte[] data = image.readEntity(byte[].class);
+    response.setContentType(LoadBalancedImageOperations.IMAGE_MEDIA_TYPE);
+    response.setContentLength(data.length);
+    response.getOutputStream().write(data);
+  }
+
+  private static void copyHeader(Response from, HttpServletResponse to, String header) {
+    String value = from.getHeaderString(header);
+    if (value != null) {
+      to.setHeader(header, value);
+    }
+  }
+}
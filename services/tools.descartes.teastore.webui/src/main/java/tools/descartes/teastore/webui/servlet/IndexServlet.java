@@ -23,7 +23,6 @@ import jakarta.servlet.http.HttpServletResponse;
 import tools.descartes.teastore.registryclient.Service;
 import tools.descartes.teastore.registryclient.loadbalancers.LoadBalancerTimeoutException;
 import tools.descartes.teastore.registryclient.rest.LoadBalancedCRUDOperations;
-import tools.descartes.teastore.registryclient.rest.LoadBalancedImageOperations;
 import tools.descartes.teastore.registryclient.rest.LoadBalancedStoreOperations;
 import tools.descartes.teastore.entities.Category;
 import tools.descartes.teastore.entities.ImageSizePreset;
@@ -57,7 +56,7 @@ public class IndexServlet extends AbstractUIServlet {
 		request.setAttribute("title", "TeaStore Home");
 		request.setAttribute("login", LoadBalancedStoreOperations.isLoggedIn(getSessionBlob(request)));
 		request.setAttribute("storeIcon",
-				LoadBalancedImageOperations.getWebImage("icon", ImageSizePreset.ICON.getSize()));
+				getWebImage(request, "icon", ImageSizePreset.ICON.getSize()));
 
 		request.getRequestDispatcher("WEB-INF/pages/index.jsp").forward(request, response);
 	}
@@ -26,7 +26,6 @@ import jakarta.servlet.http.HttpServletResponse;
 import tools.descartes.teastore.registryclient.Service;
 import tools.descartes.teastore.registryclient.loadbalancers.LoadBalancerTimeoutException;
 import tools.descartes.teastore.registryclient.rest.LoadBalancedCRUDOperations;
-import tools.descartes.teastore.registryclient.rest.LoadBalancedImageOperations;
 import tools.descartes.teastore.registryclient.rest.LoadBalancedRecommenderOperations;
 import tools.descartes.teastore.registryclient.rest.LoadBalancedStoreOperations;
 import tools.descartes.teastore.webui.servlet.elhelper.ELHelperUtils;
@@ -89,11 +88,11 @@ public class ProductServlet extends AbstractUIServlet {
       }
       request.setAttribute("Advertisment", ads);
 
-      request.setAttribute("productImages", LoadBalancedImageOperations.getProductImages(ads,
+      request.setAttribute("productImages", getProductImages(request, ads,
           ImageSizePreset.RECOMMENDATION.getSize()));
-      request.setAttribute("productImage", LoadBalancedImageOperations.getProductImage(p));
+      request.setAttribute("productImage", getProductImage(request, p, ImageSizePreset.FULL.getSize()));
       request.setAttribute("storeIcon",
-          LoadBalancedImageOperations.getWebImage("icon", ImageSizePreset.ICON.getSize()));
+          getWebImage(request, "icon", ImageSizePreset.ICON.getSize()));
       request.setAttribute("helper", ELHelperUtils.UTILS);
 
       request.getRequestDispatcher("WEB-INF/pages/product.jsp").forward(request, response);
@@ -24,7 +24,6 @@ import jakarta.servlet.http.HttpServletResponse;
 import tools.descartes.teastore.registryclient.Service;
 import tools.descartes.teastore.registryclient.loadbalancers.LoadBalancerTimeoutException;
 import tools.descartes.teastore.registryclient.rest.LoadBalancedCRUDOperations;
-import tools.descartes.teastore.registryclient.rest.LoadBalancedImageOperations;
 import tools.descartes.teastore.registryclient.rest.LoadBalancedStoreOperations;
 import tools.descartes.teastore.webui.servlet.elhelper.ELHelperUtils;
 import tools.descartes.teastore.entities.Category;
@@ -61,7 +60,7 @@ public class ProfileServlet extends AbstractUIServlet {
     } else {
 
       request.setAttribute("storeIcon",
-          LoadBalancedImageOperations.getWebImage("icon", ImageSizePreset.ICON.getSize()));
+          getWebImage(request, "icon", ImageSizePreset.ICON.getSize()));
       request.setAttribute("CategoryList", LoadBalancedCRUDOperations
           .getEntities(Service.PERSISTENCE, "categories", Category.class, -1, -1));
       request.setAttribute("title", "TeaStore Home");
@@ -28,7 +28,6 @@ import tools.descartes.teastore.registryclient.RegistryClient;
 import tools.descartes.teastore.registryclient.Service;
 import tools.descartes.teastore.registryclient.loadbalancers.LoadBalancerTimeoutException;
 import tools.descartes.teastore.registryclient.loadbalancers.ServiceLoadBalancer;
-import tools.descartes.teastore.registryclient.rest.LoadBalancedImageOperations;
 import tools.descartes.teastore.entities.ImageSizePreset;
 
 /**
@@ -56,7 +55,7 @@ public class StatusServlet extends AbstractUIServlet {
     checkforCookie(request, response);
     String iconImage = null;
     try {
-      iconImage = LoadBalancedImageOperations.getWebImage("icon", ImageSizePreset.ICON.getSize());
+      iconImage = getWebImage(request, "icon", ImageSizePreset.ICON.getSize());
     } catch (NullPointerException e) {
 
     }
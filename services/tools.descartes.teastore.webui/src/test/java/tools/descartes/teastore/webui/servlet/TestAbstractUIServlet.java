@@ -0,0 +1,95 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tools.descartes.teastore.webui.servlet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import tools.descartes.teastore.entities.ImageSize;
+import tools.descartes.teastore.entities.Product;
+
+public class TestAbstractUIServlet {
+
+  private static final ImageSize SIZE = new ImageSize(64, 32);
+
+  private AbstractUIServlet servlet;
+  private HttpServletRequest request;
+
+  @Before
+  public void initialize() {
+    servlet = new AbstractUIServlet() {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected void handleGETRequest(HttpServletRequest request, HttpServletResponse response) {
+      }
+    };
+    request = mock(HttpServletRequest.class);
+    when(request.getContextPath()).thenReturn("/tools.descartes.teastore.webui");
+  }
+
+  @After
+  public void cleanup() throws ReflectiveOperationException {
+    setImageLinks(null);
+  }
+
+  @Test
+  public void testImageLinksDisabledByDefault() {
+    assertFalse(AbstractUIServlet.useImageLinks());
+  }
+
+  @Test
+  public void testProductImageLinks() throws Exception {
+    setImageLinks(true);
+    Product product = new Product();
+    product.setId(7);
+    Product other = new Product();
+    other.setId(8);
+
+    assertEquals("/tools.descartes.teastore.webui/image?id=7&size=" + SIZE,
+        servlet.getProductImage(request, product, SIZE));
+    HashMap<Long, String> links = servlet.getProductImages(request, Arrays.asList(product, other), SIZE);
+    assertEquals(2, links.size());
+    assertEquals("/tools.descartes.teastore.webui/image?id=8&size=" + SIZE, links.get(8L));
+  }
+
+  @Test
+  public void testWebImageLinks() throws Exception {
+    setImageLinks(true);
+    assertEquals("/tools.descartes.teastore.webui/image?name=icon&size=" + SIZE,
+        servlet.getWebImage(request, "icon", SIZE));
+    HashMap<String, String> links = servlet.getWebImages(request, Arrays.asList("icon", "tea & cup"), SIZE);
+    assertEquals(2, links.size());
+    assertEquals("/tools.descartes.teastore.webui/image?name=tea+%26+cup&size=" + SIZE, links.get("tea & cup"));
+  }
+
+  private static void setImageLinks(Boolean links) throws ReflectiveOperationException {
+    Field field = AbstractUIServlet.class.getDeclaredField("imageLinks");
+    field.setAccessible(true);
+    field.set(null, links);
+  }
+}
@@ -0,0 +1,124 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tools.descartes.teastore.webui.servlet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestImageServlet {
+
+  private static final byte[] IMAGE = { 1, 2, 3, 4 };
+  private static final String ETAG = "\"1a2b\"";
+  private static final String LAST_MODIFIED = "Sun, 18 Oct 2026 12:00:00 GMT";
+
+  private ImageServlet servlet;
+  private HttpServletResponse response;
+  private ByteArrayOutputStream body;
+
+  @Before
+  public void initialize() throws IOException {
+    servlet = new ImageServlet();
+    response = mock(HttpServletResponse.class);
+    body = new ByteArrayOutputStream();
+    when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+      @Override
+      public void write(int b) {
+        body.write(b);
+      }
+
+      @Override
+      public boolean isReady() {
+        return true;
+      }
+
+      @Override
+      public void setWriteListener(WriteListener writeListener) {
+      }
+    });
+  }
+
+  @Test
+  public void testWriteImage() throws IOException {
+    servlet.writeImage(response, image(HttpServletResponse.SC_OK));
+    verify(response, never()).setStatus(anyInt());
+    verify(response).setContentLength(IMAGE.length);
+    verify(response).setHeader(HttpHeaders.ETAG, ETAG);
+    verify(response).setHeader(HttpHeaders.LAST_MODIFIED, LAST_MODIFIED);
+    assertArrayEquals(IMAGE, body.toByteArray());
+  }
+
+  @Test
+  public void testNotModified() throws IOException {
+    Response image = image(HttpServletResponse.SC_NOT_MODIFIED);
+    servlet.writeImage(response, image);
+    verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    verify(response).setHeader(HttpHeaders.ETAG, ETAG);
+    verify(response).setHeader(HttpHeaders.LAST_MODIFIED, LAST_MODIFIED);
+    verify(image, never()).readEntity(byte[].class);
+    assertArrayEquals(new byte[0], body.toByteArray());
+  }
+
+  @Test
+  public void testMissingValidators() throws IOException {
+    Response image = mock(Response.class);
+    when(image.getStatus()).thenReturn(HttpServletResponse.SC_OK);
+    when(image.readEntity(byte[].class)).thenReturn(IMAGE);
+    servlet.writeImage(response, image);
+    verify(response, never()).setHeader(eq(HttpHeaders.ETAG), anyString());
+    verify(response, never()).setHeader(eq(HttpHeaders.LAST_MODIFIED), anyString());
+    assertArrayEquals(IMAGE, body.toByteArray());
+  }
+
+  @Test
+  public void testUnknownImage() throws IOException {
+    servlet.writeImage(response, null);
+    verify(response).sendError(HttpServletResponse.SC_NOT_FOUND);
+    assertArrayEquals(new byte[0], body.toByteArray());
+  }
+
+  @Test
+  public void testFailedImage() throws IOException {
+    servlet.writeImage(response, image(HttpServletResponse.SC_BAD_REQUEST));
+    verify(response).sendError(HttpServletResponse.SC_BAD_REQUEST);
+    verify(response, never()).setHeader(eq(HttpHeaders.ETAG), anyString());
+    assertArrayEquals(new byte[0], body.toByteArray());
+  }
+
+  private static Response image(int status) {
+    Response image = mock(Response.class);
+    when(image.getStatus()).thenReturn(status);
+    when(image.getHeaderString(HttpHeaders.ETAG)).thenReturn(ETAG);
+    when(image.getHeaderString(HttpHeaders.LAST_MODIFIED)).thenReturn(LAST_MODIFIED);
+    when(image.readEntity(byte[].class)).thenReturn(IMAGE);
+    return image;
+  }
+}
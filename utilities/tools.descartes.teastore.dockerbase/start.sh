@@ -24,6 +24,18 @@ sed -i "s/<Environment name=\"databaseHost\" value=.*/<Environment name=\"databa
 sed -i "s/<Environment name=\"databasePort\" value=.*/<Environment name=\"databasePort\" value=\"${DB_PORT}\"/g" /usr/local/tomcat/conf/context.xml
 sed -i "s/<Environment name=\"recommenderLoopTime\" value=.*/<Environment name=\"recommenderLoopTime\" value=\"${RECOMMENDER_RETRAIN_LOOP_TIME}\"/g" /usr/local/tomcat/conf/context.xml
 sed -i "s/<Environment name=\"recommenderAlgorithm\" value=.*/<Environment name=\"recommenderAlgorithm\" value=\"${RECOMMENDER_ALGORITHM}\"/g" /usr/local/tomcat/conf/context.xml
+sed -i "s/<Environment name=\"recommenderTrainingMode\" value=.*/<Environment name=\"recommenderTrainingMode\" value=\"${RECOMMENDER_TRAINING_MODE}\"/g" /usr/local/tomcat/conf/context.xml
+sed -i "s/<Environment name=\"imageCachingMode\" value=.*/<Environment name=\"imageCachingMode\" value=\"${IMAGE_CACHING_MODE}\"/g" /usr/local/tomcat/conf/context.xml
+sed -i "s/<Environment name=\"imageCachingRule\" value=.*/<Environment name=\"imageCachingRule\" value=\"${IMAGE_CACHING_RULE}\"/g" /usr/local/tomcat/conf/context.xml
+sed -i "s/<Environment name=\"imageStorageMode\" value=.*/<Environment name=\"imageStorageMode\" value=\"${IMAGE_STORAGE_MODE}\"/g" /usr/local/tomcat/conf/context.xml
+sed -i "s/<Environment name=\"imagePrerenderMode\" value=.*/<Environment name=\"imagePrerenderMode\" value=\"${IMAGE_PRERENDER_MODE}\"/g" /usr/local/tomcat/conf/context.xml
+sed -i "s/<Environment name=\"imagePersistentIndex\" value=.*/<Environment name=\"imagePersistentIndex\" value=\"${IMAGE_PERSISTENT_INDEX}\"/g" /usr/local/tomcat/conf/context.xml
+sed -i "s/<Environment name=\"imageSharedTier\" value=.*/<Environment name=\"imageSharedTier\" value=\"${IMAGE_SHARED_TIER}\"/g" /usr/local/tomcat/conf/context.xml
+sed -i "s/<Environment name=\"imageBatchTimeout\" value=.*/<Environment name=\"imageBatchTimeout\" value=\"${IMAGE_BATCH_TIMEOUT}\"/g" /usr/local/tomcat/conf/context.xml
+sed -i "s/<Environment name=\"imageEncoder\" value=.*/<Environment name=\"imageEncoder\" value=\"${IMAGE_ENCODER}\"/g" /usr/local/tomcat/conf/context.xml
+sed -i "s/<Environment name=\"imageCompressionLevel\" value=.*/<Environment name=\"imageCompressionLevel\" value=\"${IMAGE_COMPRESSION_LEVEL}\"/g" /usr/local/tomcat/conf/context.xml
+sed -i "s/<Environment name=\"imageRegenerationMode\" value=.*/<Environment name=\"imageRegenerationMode\" value=\"${IMAGE_REGENERATION_MODE}\"/g" /usr/local/tomcat/conf/context.xml
+sed -i "s/<Environment name=\"webuiImageLinks\" value=.*/<Environment name=\"webuiImageLinks\" value=\"${WEBUI_IMAGE_LINKS}\"/g" /usr/local/tomcat/conf/context.xml
 if [ "$PROXY_NAME" != "unset" ] && [ "$PROXY_PORT" != "unset" ]
 then
 	sed -i "s/<Connector port=\"8080\" protocol=\"HTTP\/1.1\".*/<Connector port=\"8080\" protocol=\"HTTP\/1.1\" proxyName=\"${PROXY_NAME}\" proxyPort=\"${PROXY_PORT}\"/g" /usr/local/tomcat/conf/server.xml
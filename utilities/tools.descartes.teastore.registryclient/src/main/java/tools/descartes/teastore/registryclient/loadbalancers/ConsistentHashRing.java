@@ -0,0 +1,81 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tools.descartes.teastore.registryclient.loadbalancers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.netflix.loadbalancer.Server;
+
+/**
+ * Consistent hash ring mapping keys to servers. Each server is placed on the ring multiple times, so keys are spread
+ * evenly and only the keys of a server joining or leaving change their server.
+ */
+public final class ConsistentHashRing {
+
+	/**
+	 * Number of positions of each server on the ring.
+	 */
+	public static final int VIRTUAL_NODES = 128;
+
+	private final TreeMap<Long, Server> ring = new TreeMap<>();
+
+	/**
+	 * Creates a ring for the given servers.
+	 * @param servers The servers on the ring.
+	 */
+	public ConsistentHashRing(Collection<Server> servers) {
+		for (Server server : servers) {
+			for (int i = 0; i < VIRTUAL_NODES; i++) {
+				ring.put(hash(server.getId() + "#" + i), server);
+			}
+		}
+	}
+
+	/**
+	 * Returns the server responsible for the given key.
+	 * @param key The key to look up.
+	 * @return The server for the key. Null, if the ring is empty.
+	 */
+	public Server getServer(long key) {
+		if (ring.isEmpty()) {
+			return null;
+		}
+		Map.Entry<Long, Server> entry = ring.ceilingEntry(mix(key));
+		if (entry == null) {
+			entry = ring.firstEntry();
+		}
+		return entry.getValue();
+	}
+
+	//FNV-1a, server IDs are only hashed when the ring is built
+	private static long hash(String id) {
+		long hash = 0xcbf29ce484222325L;
+		for (byte b : id.getBytes(StandardCharsets.UTF_8)) {
+			hash ^= b & 0xff;
+			hash *= 0x100000001b3L;
+		}
+		return mix(hash);
+	}
+
+	//spreads similar keys (e.g., consecutive product IDs) over the whole ring
+	private static long mix(long key) {
+		long x = key;
+		x = (x ^ (x >>> 30)) * 0xbf58476d1ce4e5b9L;
+		x = (x ^ (x >>> 27)) * 0x94d049bb133111ebL;
+		return x ^ (x >>> 31);
+	}
+}
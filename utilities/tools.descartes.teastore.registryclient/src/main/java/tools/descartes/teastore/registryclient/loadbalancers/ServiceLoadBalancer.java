@@ -59,6 +59,7 @@ public final class ServiceLoadBalancer {
 	private Set<Server> serviceServers = new HashSet<Server>();
 
 	private BaseLoadBalancer loadBalancer;
+	private volatile ConsistentHashRing hashRing = new ConsistentHashRing(new ArrayList<Server>());
     // retry handler that does not retry on same server, but on a different server
     private final RetryHandler retryHandler = new DefaultLoadBalancerRetryHandler(0, 2, true);
 
@@ -173,6 +174,7 @@ public final class ServiceLoadBalancer {
 	    		loadBalancer.shutdown();
 	    	}
 	    	loadBalancer = LoadBalancerBuilder.newBuilder().buildFixedServerListLoadBalancer(newServers);
+	    	hashRing = new ConsistentHashRing(newServers);
 	    	for (EndpointClientCollection<?> lb : endpointMap.values()) {
 	    		lb.updateServers(newServers);
 	    	}
@@ -246,6 +248,56 @@ public final class ServiceLoadBalancer {
 		return r;
 	}
 
+    /**
+     * Returns the instance of the service responsible for the given key, using consistent hashing over all known
+     * instances. Clients knowing the same instances choose the same instance for a key.
+     * @param targetService The service.
+     * @param key The key, e.g., a hash of the requested resource.
+     * @return The responsible instance. Null, if no instance is known.
+     */
+    public static Server getServerForKey(Service targetService, long key) {
+    	return getServiceLoadBalancer(targetService).hashRing.getServer(key);
+    }
+
+    /**
+     * Sends a REST operation to the instance of the service responsible for the given key.
+     * Does not retry on other instances, so that callers can fall back to handling the operation themselves.
+     * @param targetService The service to send to.
+     * @param key The key, e.g., a hash of the requested resource.
+     * @param endpointURI The endpoint URI (e.g., "image").
+     * @param entityClass The class of entities to send/receive.
+     * @param operation The operation to send as Java8 lambda.
+     * 				E.g.: "client -> CRUDOperations.getEntity(client, id)".
+     * @param <R> The expected return type.
+     * @param <T> The entity type of the entity to send/receive.
+     * @return The response. Null, if no instance is known or the instance is unreachable.
+     */
+    public static <T, R> R keyedRESTOperation(Service targetService, long key,
+    		String endpointURI, Class<T> entityClass, Function<RESTClient<T>, R> operation) {
+    	return getServiceLoadBalancer(targetService).keyedRESTOperation(key, endpointURI, entityClass, operation);
+    }
+
+    private <T, R> R keyedRESTOperation(long key, String endpointURI, Class<T> entityClass,
+    		Function<RESTClient<T>, R> operation) {
+    	loadBalancerModificationLock.readLock().lock();
+    	try {
+    		Server server = hashRing.getServer(key);
+    		if (server == null) {
+    			LOG.warn("No Server registered for Service: " + targetService.getServiceName());
+    			return null;
+    		}
+    		try {
+    			return operation.apply((RESTClient<T>) getEndpointClientCollection(endpointURI, entityClass)
+    					.getRESTClient(server));
+    		} catch (Exception e) {
+    			LOG.warn("Operation at " + server.getId() + " failed: " + e.getMessage());
+    			return null;
+    		}
+    	} finally {
+    		loadBalancerModificationLock.readLock().unlock();
+    	}
+    }
+
     /**
      * Sends a multicast to all known instances of the service.
      * Does not repeat failed sends.
@@ -7,7 +7,10 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import jakarta.ws.rs.client.Entity;
+import jakarta.ws.rs.client.Invocation.Builder;
+import jakarta.ws.rs.client.WebTarget;
 import jakarta.ws.rs.core.GenericType;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 
@@ -27,6 +30,11 @@ import tools.descartes.teastore.entities.Product;
  */
 public final class LoadBalancedImageOperations {
 
+	/**
+	 * Media type of binary images provided by the image service.
+	 */
+	public static final String IMAGE_MEDIA_TYPE = "image/png";
+
 	private LoadBalancedImageOperations() {
 
 	}
@@ -191,6 +199,87 @@ public final class LoadBalancedImageOperations {
 		return result;
 	}
 
+	/**
+	 * Retrieves the binary PNG image of a product. The given validators of a
+	 * client copy are forwarded, so the image service answers with status code
+	 * 304 and without image if the copy is still valid.
+	 * 
+	 * @param productId
+	 *            id of the product.
+	 * @param size
+	 *            target size
+	 * @param ifNoneMatch
+	 *            If-None-Match header of the client, may be null
+	 * @param ifModifiedSince
+	 *            If-Modified-Since header of the client, may be null
+	 * @throws NotFoundException
+	 *             If 404 was returned.
+	 * @throws LoadBalancerTimeoutException
+	 *             On receiving the 408 status code and on repeated load balancer
+	 *             socket timeouts.
+	 * @return Buffered response containing the status, the ETag and
+	 *         Last-Modified headers and the PNG encoded image, null if no image
+	 *         service is available
+	 */
+	public static Response getProductImageData(long productId, ImageSize size, String ifNoneMatch,
+			String ifModifiedSince) throws NotFoundException, LoadBalancerTimeoutException {
+		Response r = ServiceLoadBalancer.loadBalanceRESTOperation(Service.IMAGE, "image", byte[].class,
+				client -> ResponseWrapper.wrap(conditionalRequest(client.getEndpointTarget()
+						.path(String.valueOf(productId)).path(size.toString()), ifNoneMatch, ifModifiedSince)
+						.get()));
+		return bufferImageData(r);
+	}
+
+	/**
+	 * Retrieves the binary PNG image of a web interface image. The given
+	 * validators of a client copy are forwarded, so the image service answers
+	 * with status code 304 and without image if the copy is still valid.
+	 * 
+	 * @param name
+	 *            name of image.
+	 * @param size
+	 *            target size
+	 * @param ifNoneMatch
+	 *            If-None-Match header of the client, may be null
+	 * @param ifModifiedSince
+	 *            If-Modified-Since header of the client, may be null
+	 * @throws NotFoundException
+	 *             If 404 was returned.
+	 * @throws LoadBalancerTimeoutException
+	 *             On receiving the 408 status code and on repeated load balancer
+	 *             socket timeouts.
+	 * @return Buffered response containing the status, the ETag and
+	 *         Last-Modified headers and the PNG encoded image, null if no image
+	 *         service is available
+	 */
+	public static Response getWebImageData(String name, ImageSize size, String ifNoneMatch,
+			String ifModifiedSince) throws NotFoundException, LoadBalancerTimeoutException {
+		Response r = ServiceLoadBalancer.loadBalanceRESTOperation(Service.IMAGE, "image", byte[].class,
+				client -> ResponseWrapper.wrap(conditionalRequest(client.getEndpointTarget().path("web")
+						.path(name).path(size.toString()), ifNoneMatch, ifModifiedSince).get()));
+		return bufferImageData(r);
+	}
+
+	private static Builder conditionalRequest(WebTarget target, String ifNoneMatch, String ifModifiedSince) {
+		Builder builder = HttpWrapper.wrap(target).accept(IMAGE_MEDIA_TYPE);
+		if (ifNoneMatch != null) {
+			builder = builder.header(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+		}
+		if (ifModifiedSince != null) {
+			builder = builder.header(HttpHeaders.IF_MODIFIED_SINCE, ifModifiedSince);
+		}
+		return builder;
+	}
+
+	private static Response bufferImageData(Response r) {
+		if (r != null) {
+			// buffer all entities so that the connections are released to the connection
+			// pool
+			r.bufferEntity();
+		}
+		return r;
+	}
+
 	/**
 	 * Regenerates images.
 	 * 